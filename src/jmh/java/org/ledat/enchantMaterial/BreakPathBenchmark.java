@@ -0,0 +1,139 @@
+package org.ledat.enchantMaterial;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Chi phí ghi điểm của 1 lượt đập block (phần addPointsAsync có liên quan tới luồng flush: vào cổng thế hệ,
+ * cộng sổ, append journal) khi không có lượt flush nào so với khi luồng flush chạy liên tục
+ * (đổi thế hệ, rút sổ, ghi lại vùng journal, force, đổi vùng). Hai nhóm phải cho điểm breakBlock gần bằng nhau:
+ * đập block không bao giờ chờ luồng flush, chỉ tranh cache line với nó.
+ *
+ * <p>Nhóm "steady" chỉ flush khi journal quá 75% (như afterAppend) để journal không đầy giữa chừng;
+ * nhóm "flushing" flush liên tục nên gần như mọi lượt đập rơi vào giữa 1 lượt flush. Điểm của các hàm
+ * flush/maintain không dùng để so sánh.
+ *
+ * <pre>./gradlew jmh -PjmhArgs="BreakPathBenchmark"</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class BreakPathBenchmark {
+
+    private static final int JOURNAL_BYTES = 16 * 1024 * 1024;
+
+    private File file;
+    private PendingGate gate;
+    private PointsLedger ledger;
+    private PlayerJournal journal;
+
+    /** Mỗi luồng benchmark là 1 người chơi đang đào */
+    @State(Scope.Thread)
+    public static class Miner {
+        final UUID uuid = UUID.randomUUID();
+    }
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        file = Files.createTempFile("break-path", ".journal").toFile();
+        gate = new PendingGate();
+        ledger = new PointsLedger();
+        journal = PlayerJournal.open(file, JOURNAL_BYTES, 0L);
+        journal.replay(0L, gate.current(), new PlayerJournal.Visitor() {
+            @Override
+            public void delta(UUID uuid, double delta) {
+            }
+
+            @Override
+            public void absolute(UUID uuid, int level, double value) {
+            }
+
+            @Override
+            public void claim(UUID uuid, int level) {
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        journal.close();
+        file.delete();
+    }
+
+    private boolean recordBreak(UUID uuid) {
+        int generation = gate.enter();
+        try {
+            ledger.add(generation, uuid, 1D);
+            return journal.appendDelta(generation, uuid, 1D);
+        } finally {
+            gate.exit(generation);
+        }
+    }
+
+    /** Cùng thứ tự với DatabaseManager.flushPendingLocked, bỏ phần ghi DB (chạy sau khi đổi vùng, không giữ gì của đường đập) */
+    private int flushRound() {
+        PlayerJournal.Rewrite rewrite = journal.beginRewrite(gate.current() + 1);
+        Map<UUID, Double> deltas = ledger.drain(gate.advance());
+        for (Map.Entry<UUID, Double> entry : deltas.entrySet()) {
+            rewrite.flushing(PlayerJournal.PendingKind.DELTA, entry.getKey(), 0, entry.getValue());
+        }
+        rewrite.forceRegion();
+        if (journal.commit(rewrite)) {
+            rewrite.forceHeader();
+        }
+        return deltas.size();
+    }
+
+    @Benchmark
+    @Group("steady")
+    @GroupThreads(4)
+    public boolean breakBlock(Miner miner) {
+        return recordBreak(miner.uuid);
+    }
+
+    @Benchmark
+    @Group("steady")
+    @GroupThreads(1)
+    public int maintain() {
+        if (journal.needsRewrite()) return flushRound();
+        LockSupport.parkNanos(100_000L);
+        return 0;
+    }
+
+    @Benchmark
+    @Group("flushing")
+    @GroupThreads(4)
+    public boolean breakBlockDuringFlush(Miner miner) {
+        return recordBreak(miner.uuid);
+    }
+
+    @Benchmark
+    @Group("flushing")
+    @GroupThreads(1)
+    public int flush() {
+        return flushRound();
+    }
+}
@@ -0,0 +1,152 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Item;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phần việc của plugin cho 1 lượt đập block theo performance.drops.mode, chạy đúng scaleDropAmount
+ * và cùng vòng lặp với BlockBreakListener (RewardAccumulator thay bằng Blackhole):
+ * <ul>
+ *   <li>compute: gọi block.getDrops(tool), nhân số lượng, clone từng stack;</li>
+ *   <li>vanilla: giữ PendingDrop tới BlockDropItemEvent, rồi lấy/bỏ từng Item server đã tạo và nhân số lượng.</li>
+ * </ul>
+ * Loot table là 1 danh sách stack mới ở cả 2 chế độ và Block/Item là proxy, nên phần của server
+ * (tính loot table, tạo entity Item cho chế độ vanilla) KHÔNG có trong số đo - so phần đó bằng profiler
+ * trên server thật (vd spark) khi đổi chế độ.
+ *
+ * <pre>./gradlew jmh -PjmhArgs="DropModeBenchmark"</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DropModeBenchmark {
+
+    /** Số stack loot table trả về (quặng thường 1, block kiểu lapis/redstone nhiều hơn) */
+    @Param({"1", "4"})
+    public int stacks;
+
+    @Param({"5"})
+    public int bonusLevel;
+
+    private final UUID player = UUID.randomUUID();
+    private final Map<UUID, BlockBreakListener.PendingDrop> pendingVanillaDrops = new ConcurrentHashMap<>();
+    private BonusDropSampler sampler;
+    private ItemStack tool;
+    private Block block;
+    private ItemStack[] eventStacks;
+    private Item[] eventItems;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sampler = BonusDropSampler.compile(9, 0.8D);
+        tool = new ItemStack(Material.DIAMOND_PICKAXE);
+        Location location = new Location(null, 10, 64, 10);
+        block = (Block) Proxy.newProxyInstance(Block.class.getClassLoader(), new Class<?>[]{Block.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getDrops" -> loot();
+                    case "getLocation" -> location.clone();
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> null;
+                });
+
+        // Item của BlockDropItemEvent: proxy dùng lại, mỗi lượt trỏ tới stack loot mới
+        eventStacks = new ItemStack[stacks];
+        eventItems = new Item[stacks];
+        for (int i = 0; i < stacks; i++) {
+            int slot = i;
+            eventItems[i] = (Item) Proxy.newProxyInstance(Item.class.getClassLoader(), new Class<?>[]{Item.class},
+                    (proxy, method, args) -> "getItemStack".equals(method.getName()) ? eventStacks[slot] : null);
+        }
+    }
+
+    private List<ItemStack> loot() {
+        List<ItemStack> drops = new ArrayList<>(stacks);
+        for (int i = 0; i < stacks; i++) {
+            drops.add(new ItemStack(Material.DIAMOND, 1));
+        }
+        return drops;
+    }
+
+    @Benchmark
+    public void compute(Blackhole bh) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Location dropLoc = null;
+        for (ItemStack base : block.getDrops(tool)) {
+            if (base == null || base.getType() == Material.AIR) continue;
+
+            int total = BlockBreakListener.scaleDropAmount(sampler, base.getAmount(), bonusLevel, 1.5D, 1D, rnd);
+            if (total <= 0) continue;
+
+            ItemStack stack = base.clone();
+            stack.setAmount(total);
+            if (dropLoc == null) dropLoc = block.getLocation().add(0.5, 0.5, 0.5);
+            bh.consume(stack);
+        }
+        bh.consume(dropLoc);
+    }
+
+    @Benchmark
+    public void vanilla(Blackhole bh) {
+        // BlockBreakEvent
+        pendingVanillaDrops.put(player, new BlockBreakListener.PendingDrop(block, bonusLevel, 1.5D, 1D));
+
+        // Server tính loot table rồi tạo Item, gọi BlockDropItemEvent với danh sách sửa được
+        List<ItemStack> drops = loot();
+        List<Item> items = new ArrayList<>(stacks);
+        for (int i = 0; i < stacks; i++) {
+            eventStacks[i] = drops.get(i);
+            items.add(eventItems[i]);
+        }
+
+        BlockBreakListener.PendingDrop pending = pendingVanillaDrops.remove(player);
+        if (pending == null || !pending.block.equals(block)) return;
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Location dropLoc = block.getLocation().add(0.5, 0.5, 0.5);
+        Iterator<Item> it = items.iterator();
+        while (it.hasNext()) {
+            ItemStack base = it.next().getItemStack();
+            it.remove();
+            if (base == null || base.getType() == Material.AIR) continue;
+
+            int total = BlockBreakListener.scaleDropAmount(sampler, base.getAmount(), pending.bonusLevel,
+                    pending.fortuneMultiplier, pending.dropMultiplier, rnd);
+            if (total <= 0) continue;
+
+            ItemStack stack = base.clone();
+            stack.setAmount(total);
+            bh.consume(stack);
+        }
+        bh.consume(dropLoc);
+    }
+}
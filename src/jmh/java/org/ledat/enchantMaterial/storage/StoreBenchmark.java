@@ -0,0 +1,134 @@
+package org.ledat.enchantMaterial.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * MappedPlayerStore so với H2 (engine mặc định) qua cùng interface PlayerRepository, trên file thật:
+ * <ul>
+ *   <li>loadOnJoin: đọc 1 người chơi khi vào server;</li>
+ *   <li>flush: 1 lượt ghi của luồng flush - {@link #FLUSH_ROWS} bản ghi tuyệt đối + {@link #FLUSH_DELTAS} delta;</li>
+ *   <li>fullScan: duyệt điểm mọi người chơi (dựng bảng xếp hạng lúc khởi động).</li>
+ * </ul>
+ * H2 dùng DDL và cách nối repository của JdbcFixture (bộ test H2StorageTest) trên pool Hikari như plugin.
+ * flush gồm cả force/commit xuống đĩa nên phụ thuộc nhiều vào ổ đĩa của máy chạy.
+ *
+ * <pre>./gradlew jmh -PjmhArgs="StoreBenchmark"</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreBenchmark {
+
+    static final int FLUSH_ROWS = 50;
+    static final int FLUSH_DELTAS = 200;
+
+    @Param({"mapped", "h2"})
+    public String store;
+
+    @Param({"10000"})
+    public int players;
+
+    private Path dir;
+    private HikariDataSource pool;
+    private MappedPlayerStore mapped;
+    private PlayerRepository repository;
+    private UUID[] uuids;
+    private int next;
+    private long epoch;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, SQLException {
+        dir = Files.createTempDirectory("store-bench");
+        if ("mapped".equals(store)) {
+            mapped = MappedPlayerStore.open(dir.resolve("players.dat").toFile(), players, Logger.getLogger("bench"));
+            repository = mapped;
+        } else {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(H2StorageTest.fileUrl(dir));
+            config.setMaximumPoolSize(2);
+            pool = new HikariDataSource(config);
+            repository = JdbcFixture.open(new H2Dialect(), pool::getConnection).players();
+        }
+
+        uuids = new UUID[players];
+        List<PlayerRow> rows = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            uuids[i] = new UUID(0x5EEDL, i);
+            rows.add(new PlayerRow(uuids[i], 1 + i % 50, i * 10D));
+        }
+        repository.write(rows, Collections.emptyMap(), id -> 1, ++epoch);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        if (mapped != null) mapped.close();
+        if (pool != null) pool.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private UUID nextPlayer() {
+        UUID uuid = uuids[next];
+        next = (next + 1) % players;
+        return uuid;
+    }
+
+    @Benchmark
+    public PlayerRow loadOnJoin() throws SQLException {
+        return repository.load(nextPlayer());
+    }
+
+    @Benchmark
+    public void flush() throws SQLException {
+        List<PlayerRow> rows = new ArrayList<>(FLUSH_ROWS);
+        for (int i = 0; i < FLUSH_ROWS; i++) {
+            rows.add(new PlayerRow(nextPlayer(), 10, i * 3D));
+        }
+        Map<UUID, Double> deltas = new HashMap<>();
+        for (int i = 0; i < FLUSH_DELTAS; i++) {
+            deltas.put(nextPlayer(), 1.5D);
+        }
+        repository.write(rows, deltas, id -> 1, ++epoch);
+    }
+
+    @Benchmark
+    public void fullScan(Blackhole bh) throws SQLException {
+        repository.forEachPoints((uuid, points) -> bh.consume(points));
+    }
+}
@@ -2,22 +2,22 @@ package org.ledat.enchantMaterial;
 
 import org.bukkit.*;
 import org.bukkit.block.Block;
-import org.bukkit.boss.BarColor;
-import org.bukkit.boss.BarStyle;
-import org.bukkit.boss.BossBar;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockDropItemEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.entity.Item;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
+import org.ledat.enchantMaterial.BlockRuleTable.BlockData;
 import org.ledat.enchantMaterial.booster.BoosterManager;
-import org.bukkit.scheduler.BukkitRunnable;
-
-import net.md_5.bungee.api.ChatMessageType;
-import net.md_5.bungee.api.chat.TextComponent;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,167 +26,124 @@ import java.util.concurrent.ThreadLocalRandom;
 public class BlockBreakListener implements Listener {
 
     private final EnchantMaterial plugin;
-    private final Map<Player, Long> lastMessageTime = new HashMap<>();
     private final LuckyChanceBlockListener luckyChanceBlockListener;
-    private final FortuneManager fortuneManager;
+    private final PermissionProfileManager permissionProfiles;
+    private final ToolProfileCache toolProfileCache;
+    private final NotificationManager notifications;
+    private final RewardAccumulator rewardAccumulator;
 
-    // Cache nhẹ theo config
-    private final Set<String> materialWhiteListCache = new HashSet<>();
-    private final Set<String> disabledWorldsCache = new HashSet<>();
-    private final Set<String> luckyBlockTypesCache = new HashSet<>();
-    private final Map<String, BlockData> blockDataCache = new HashMap<>();
-    private long lastConfigCacheUpdate = 0;
-    private static final long CONFIG_CACHE_DURATION = 60_000; // 1 phút
+    // Bảng luật block đã biên dịch - thay thế nguyên tham chiếu khi reload
+    private volatile BlockRuleTable ruleTable;
 
     private volatile boolean allowEmptyHandBreak = false;
     private volatile boolean cancelNaturalDrops = true;
+    private volatile boolean vanillaDropMode = false;
     private volatile boolean luckyBlocksEnabled = false;
-    private volatile double extraDropChance = 0.8D;
-    private volatile double notificationBufferSeconds = 0.3D;
-    private volatile int actionBarIntervalTicks = 8;
-    private volatile String notificationMode = "actionbar";
-    private volatile String actionBarTemplate = "§a+%score% điểm §7(%block%)";
-    private volatile String actionBarPvpTemplate = "§a+%score% điểm §7(%block%) §6(-%pvp_mul%x khu an toàn)";
-
-    // Ánh xạ ngược: Material -> các display strings yêu cầu (từ enchantments.*)
-    private final Map<Material, Set<String>> requiredDisplaysByMaterial = new EnumMap<>(Material.class);
-    private long lastEnchantCacheUpdate = 0;
-
-    // Bossbar (giữ nguyên logic cũ)
-    private final Map<Player, BossBar> playerBossBars = new ConcurrentHashMap<>();
-    private final Map<Player, BukkitRunnable> bossBarTasks = new ConcurrentHashMap<>();
-
-    // Throttle + buffer cho ActionBar/điểm
-    private final Map<UUID, Long> lastActionBarTime = new ConcurrentHashMap<>();
-    private final Map<UUID, Double> pointsBuffer = new ConcurrentHashMap<>();
-    private final Map<UUID, Long> lastBufferTime = new ConcurrentHashMap<>();
-
-    public BlockBreakListener(FortuneManager fortuneManager, LuckyChanceBlockListener luckyChanceBlockListener) {
+    private volatile BonusDropSampler bonusDropSampler = BonusDropSampler.compile(0, 0.8D);
+
+    // Chế độ drops.mode = vanilla: hệ số của lần đập gần nhất, chờ BlockDropItemEvent (cùng tick)
+    private final Map<UUID, PendingDrop> pendingVanillaDrops = new ConcurrentHashMap<>();
+
+    static final class PendingDrop {
+        final Block block;
+        final int bonusLevel;
+        final double fortuneMultiplier;
+        final double dropMultiplier;
+
+        PendingDrop(Block block, int bonusLevel, double fortuneMultiplier, double dropMultiplier) {
+            this.block = block;
+            this.bonusLevel = bonusLevel;
+            this.fortuneMultiplier = fortuneMultiplier;
+            this.dropMultiplier = dropMultiplier;
+        }
+    }
+
+    public BlockBreakListener(PermissionProfileManager permissionProfiles, LuckyChanceBlockListener luckyChanceBlockListener,
+                              ToolProfileCache toolProfileCache, NotificationManager notifications) {
         this.plugin = EnchantMaterial.getInstance();
-        this.fortuneManager = fortuneManager;
+        this.permissionProfiles = permissionProfiles;
+        this.toolProfileCache = toolProfileCache;
+        this.notifications = notifications;
         this.luckyChanceBlockListener = luckyChanceBlockListener;
-        updateConfigCache();
-        updateEnchantCache();
+        this.rewardAccumulator = new RewardAccumulator(plugin);
+        reloadRules();
     }
 
-    private void updateConfigCache() {
-        long now = System.currentTimeMillis();
-        if (now - lastConfigCacheUpdate < CONFIG_CACHE_DURATION) return;
-
-        // material-whitelist
-        materialWhiteListCache.clear();
-        materialWhiteListCache.addAll(plugin.getConfig().getStringList("material-whitelist"));
-
-        // disable-world
-        disabledWorldsCache.clear();
-        disabledWorldsCache.addAll(plugin.getConfig().getStringList("disable-world"));
-
-        // lucky-block types
-        luckyBlockTypesCache.clear();
-        luckyBlockTypesCache.addAll(plugin.getConfig().getStringList("lucky-blocks.block-replace"));
-
-        allowEmptyHandBreak = plugin.getConfig().getBoolean("settings.empty_hand_break", false);
-        cancelNaturalDrops = plugin.getConfig().getBoolean("performance.drops.cancel_natural_drops", true);
-        luckyBlocksEnabled = plugin.getConfig().getBoolean("lucky-blocks.enabled");
-        extraDropChance = Math.max(0D, Math.min(1D,
-                plugin.getConfig().getDouble("performance.drops.bonus_chance", 0.8D)));
-        notificationBufferSeconds = plugin.getConfig().getDouble("performance.notification_buffer_seconds", 0.3D);
-        actionBarIntervalTicks = plugin.getConfig().getInt("performance.actionbar_interval_ticks", 8);
-        notificationMode = plugin.getConfig()
-                .getString("notification.mode", "actionbar")
-                .toLowerCase(Locale.ROOT);
-        actionBarTemplate = plugin.getConfig().getString(
-                "notification.actionbar",
-                "§a+%score% điểm §7(%block%)");
-        actionBarPvpTemplate = plugin.getConfig().getString(
-                "notification.actionbar_pvp",
-                "§a+%score% điểm §7(%block%) §6(-%pvp_mul%x khu an toàn)");
-
-        // block-whitelist (exp/score/chance)
-        blockDataCache.clear();
-        for (Map<?, ?> m : plugin.getConfig().getMapList("block-whitelist")) {
-            Object typeObj = m.get("type");
-            if (typeObj == null) continue;
-            String name = String.valueOf(typeObj);
-            if (name.isEmpty()) continue;
-            BlockData data = BlockData.fromConfig(m.get("exp"), m.get("score"), m.get("chance"));
-            blockDataCache.put(name, data);
-        }
-
-        lastConfigCacheUpdate = now;
+    /**
+     * Biên dịch lại bảng luật block và các setting từ config. Gọi khi load/reload config.yml.
+     */
+    public void reloadRules() {
+        FileConfiguration config = plugin.getConfig();
+
+        allowEmptyHandBreak = config.getBoolean("settings.empty_hand_break", false);
+        cancelNaturalDrops = config.getBoolean("performance.drops.cancel_natural_drops", true);
+        vanillaDropMode = "vanilla".equalsIgnoreCase(config.getString("performance.drops.mode", "compute"));
+        if (!vanillaDropMode) pendingVanillaDrops.clear();
+        luckyBlocksEnabled = config.getBoolean("lucky-blocks.enabled");
+        double extraDropChance = Math.max(0D, Math.min(1D,
+                config.getDouble("performance.drops.bonus_chance", 0.8D)));
+        bonusDropSampler = BonusDropSampler.compile(maxEnchantLevel(config) - 1, extraDropChance);
+
+        ruleTable = BlockRuleTable.compile(config);
     }
 
-    private void updateEnchantCache() {
-        long now = System.currentTimeMillis();
-        if (now - lastEnchantCacheUpdate < CONFIG_CACHE_DURATION) return;
-
-        requiredDisplaysByMaterial.clear();
-
-        if (plugin.getConfig().contains("enchantments")) {
-            for (String encKey : plugin.getConfig().getConfigurationSection("enchantments").getKeys(false)) {
-                List<String> mats = plugin.getConfig().getStringList("enchantments." + encKey + ".material");
-                String display = plugin.getConfig().getString("enchantments." + encKey + ".display_type");
-                if (display == null || display.isEmpty()) continue;
-                for (String matName : mats) {
-                    try {
-                        Material m = Material.valueOf(matName);
-                        requiredDisplaysByMaterial.computeIfAbsent(m, k -> new HashSet<>()).add(display);
-                    } catch (IllegalArgumentException ignored) {}
-                }
+    private static int maxEnchantLevel(FileConfiguration config) {
+        ConfigurationSection enchantments = config.getConfigurationSection("enchantments");
+        int max = 1;
+        if (enchantments != null) {
+            for (String key : enchantments.getKeys(false)) {
+                max = Math.max(max, enchantments.getInt(key + ".max_level", 1));
             }
         }
-        lastEnchantCacheUpdate = now;
+        return max;
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
 
         Player player = event.getPlayer();
-        if (player.hasPermission("enchantmaterial.admin")) return; // bỏ qua admin
+        PermissionProfile perms = permissionProfiles.get(player);
+        if (perms.isAdmin()) return; // bỏ qua admin
 
         // Region check
         if (!plugin.getRegionManager().isInAllowedRegion(event.getBlock().getLocation())) return;
 
-        // Tải cache nếu quá hạn
-        long now = System.currentTimeMillis();
-        if (now - lastConfigCacheUpdate > CONFIG_CACHE_DURATION) {
-            updateConfigCache();
-            updateEnchantCache();
-        }
+        // Đọc 1 lần, dùng suốt sự kiện (reload giữa chừng không ảnh hưởng)
+        BlockRuleTable rules = ruleTable;
 
         Block block = event.getBlock();
         Material blockType = block.getType();
-        String blockTypeName = blockType.name();
         ItemStack tool = player.getInventory().getItemInMainHand();
 
         // World disable
-        if (disabledWorldsCache.contains(player.getWorld().getName())) return;
+        if (rules.isWorldDisabled(player.getWorld())) return;
 
         // Whitelist vật liệu
-        if (!materialWhiteListCache.contains(blockTypeName)) {
+        if (!rules.isWhitelisted(blockType)) {
             event.setCancelled(true);
             return;
         }
 
         // Tay không (nếu không cho phép)
         if (tool.getType() == Material.AIR && !allowEmptyHandBreak) {
-            if (canSendMessage(player)) player.sendMessage(ChatColor.RED + "Bạn không thể đập block bằng tay không!");
+            if (notifications.canSendMessage(player)) player.sendMessage(ChatColor.RED + "Bạn không thể đập block bằng tay không!");
             event.setCancelled(true);
             return;
         }
 
-        // Kiểm tra lore/enchant cần có cho material này (nếu được cấu hình)
-        Set<String> requires = requiredDisplaysByMaterial.get(blockType);
-        if (requires != null && !requires.isEmpty()) {
-            if (!hasAnyDisplay(tool, requires)) {
-                if (canSendMessage(player)) player.sendMessage(ChatColor.RED + "Khối này yêu cầu bổ trợ phù hợp.");
+        // Kiểm tra bổ trợ cần có cho material này (profile dụng cụ được cache đến khi đổi item)
+        ToolProfile toolProfile = toolProfileCache.get(player, tool, rules);
+        String[] requires = rules.getRequiredEnchants(blockType);
+        if (requires != null && requires.length > 0) {
+            if (!toolProfile.canBreak(blockType)) {
+                if (notifications.canSendMessage(player)) player.sendMessage(ChatColor.RED + "Khối này yêu cầu bổ trợ phù hợp.");
                 event.setCancelled(true);
                 return;
             }
         } else {
-            // fallback nhẹ: vẫn giữ logic "Bổ trợ:" nếu server bạn đang sử dụng
-            if (!hasEnchantMaterial(tool)) {
-                if (canSendMessage(player)) player.sendMessage(ChatColor.RED + "Dụng cụ của bạn không có bổ trợ phù hợp.");
+            // fallback nhẹ: dụng cụ chỉ cần có bất kỳ bổ trợ nào
+            if (!toolProfile.hasAnyEnchant()) {
+                if (notifications.canSendMessage(player)) player.sendMessage(ChatColor.RED + "Dụng cụ của bạn không có bổ trợ phù hợp.");
                 event.setCancelled(true);
                 return;
             }
@@ -195,8 +152,8 @@ public class BlockBreakListener implements Listener {
         ThreadLocalRandom random = ThreadLocalRandom.current();
 
         // Lucky Block
-        if (luckyBlocksEnabled && luckyBlockTypesCache.contains(blockTypeName)) {
-            double chance = luckyChanceBlockListener.getPlayerLuckyChance(player);
+        if (luckyBlocksEnabled && rules.isLuckyBlock(blockType)) {
+            double chance = perms.getLuckyChance();
             if (random.nextDouble() < chance) {
                 event.setCancelled(true);
                 block.setType(Material.LIME_GLAZED_TERRACOTTA);
@@ -206,9 +163,9 @@ public class BlockBreakListener implements Listener {
         }
 
         // EXP – CHUYỂN THẲNG, KHÔNG SPAWN ORB
-        BlockData blockData = blockDataCache.get(blockTypeName);
+        BlockData blockData = rules.getBlockData(blockType);
         BoosterManager boosterManager = plugin.getBoosterManager();
-        double fortuneMultiplier = fortuneManager.getMultiplier(player);
+        double fortuneMultiplier = perms.getFortuneMultiplier();
         double dropMultiplier = boosterManager.getDropMultiplier(player);
         double pointsMultiplier = boosterManager.getPointsMultiplier(player);
         double expMultiplier = boosterManager.getExpMultiplier(player);
@@ -221,102 +178,114 @@ public class BlockBreakListener implements Listener {
             if (exp > 0) {
                 int finalExp = Math.max(0, (int) Math.round(exp * expMultiplier));
                 if (finalExp > 0) {
-                    // Cộng XP trực tiếp cho người chơi (vào thanh XP, không rơi orb)
-                    player.giveExp(finalExp);
+                    // Cộng XP trực tiếp cho người chơi (vào thanh XP, không rơi orb) - gộp, trả cuối tick
+                    rewardAccumulator.addExp(player, finalExp);
                 }
             }
         }
 
-        // Drop – hủy drop tự nhiên và tự xử lý
-        if (cancelNaturalDrops) {
-            event.setDropItems(false);
+        // Drop
+        if (vanillaDropMode) {
+            // Để server tự tính loot table 1 lần, nhân số lượng trong onBlockDropItem
+            pendingVanillaDrops.put(player.getUniqueId(),
+                    new PendingDrop(block, toolProfile.getBonusLevel(), fortuneMultiplier, dropMultiplier));
+        } else {
+            // Hủy drop tự nhiên và tự xử lý
+            if (cancelNaturalDrops) {
+                event.setDropItems(false);
+            }
+            handleDrops(player, tool, toolProfile.getBonusLevel(), block, fortuneMultiplier, dropMultiplier, random);
         }
-        handleDrops(player, tool, block, fortuneMultiplier, dropMultiplier, random);
 
         // Điểm – non-blocking, gộp + throttle UI
         addPoints(player, blockType, blockData, fortuneMultiplier, pointsMultiplier, random);
     }
 
     // --- Helpers ---
-    /** GỘP DROP: addItem 1 lần, drop dư 1 lần */
-    private void handleDrops(Player player, ItemStack tool, Block block,
+    /** GỘP DROP: tính số lượng rồi đưa vào RewardAccumulator, addItem 1 lần/tick */
+    private void handleDrops(Player player, ItemStack tool, int bonusLvl, Block block,
                              double fortuneMul, double boosterMul, ThreadLocalRandom rnd) {
-        int bonusLvl = DropBonusUtils.getBonusLevel(tool);
-        double extraChance = this.extraDropChance;
+        Location dropLoc = null;
 
         for (ItemStack base : block.getDrops(tool)) {
             if (base == null || base.getType() == Material.AIR) continue;
 
-            int baseAmount = base.getAmount();
-            // Nhân tổng hợp cho số lượng item
-            double expected = baseAmount * (fortuneMul * boosterMul);
-            int total = (int) Math.floor(expected);
-            double frac = expected - total;
-            if (rnd.nextDouble() < frac) total += 1;
-
-            // Bonus theo level: mỗi level có cơ hội thêm baseAmount
-            for (int i = 0; i < Math.max(0, bonusLvl - 1); i++) {
-                if (rnd.nextDouble() < extraChance) total += baseAmount;
-            }
-
+            int total = scaleDropAmount(bonusDropSampler, base.getAmount(), bonusLvl, fortuneMul, boosterMul, rnd);
             if (total <= 0) continue;
 
             ItemStack stack = base.clone();
             stack.setAmount(total);
 
-            // Thêm vào túi 1 lần
-            Map<Integer, ItemStack> leftover = player.getInventory().addItem(stack);
-
-            // Rơi phần dư (nếu có)
-            if (!leftover.isEmpty()) {
-                Location dropLoc = block.getLocation().add(0.5, 0.5, 0.5);
-                World w = block.getWorld();
-                for (ItemStack rem : leftover.values()) {
-                    if (rem != null && rem.getType() != Material.AIR) {
-                        w.dropItemNaturally(dropLoc, rem);
-                    }
-                }
-            }
+            // Phần dư (túi đầy) sẽ rơi tại block cuối cùng của tick
+            if (dropLoc == null) dropLoc = block.getLocation().add(0.5, 0.5, 0.5);
+            rewardAccumulator.addDrop(player, stack, dropLoc);
         }
     }
 
-    private boolean canSendMessage(Player player) {
-        long now = System.currentTimeMillis();
-        long last = lastMessageTime.getOrDefault(player, 0L);
-        if (now - last > 5000) { // 5s
-            lastMessageTime.put(player, now);
-            return true;
+    /**
+     * Chế độ drops.mode = vanilla: dùng luôn các Item server đã tính, nhân số lượng
+     * và chuyển vào túi qua RewardAccumulator thay vì spawn ra đất.
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockDropItem(BlockDropItemEvent event) {
+        if (!vanillaDropMode) return;
+
+        Player player = event.getPlayer();
+        PendingDrop pending = pendingVanillaDrops.remove(player.getUniqueId());
+        if (pending == null || !pending.block.equals(event.getBlock())) return;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Location dropLoc = event.getBlock().getLocation().add(0.5, 0.5, 0.5);
+
+        Iterator<Item> it = event.getItems().iterator();
+        while (it.hasNext()) {
+            ItemStack base = it.next().getItemStack();
+            it.remove();
+            if (base == null || base.getType() == Material.AIR) continue;
+
+            int total = scaleDropAmount(bonusDropSampler, base.getAmount(), pending.bonusLevel,
+                    pending.fortuneMultiplier, pending.dropMultiplier, random);
+            if (total <= 0) continue;
+
+            ItemStack stack = base.clone();
+            stack.setAmount(total);
+            rewardAccumulator.addDrop(player, stack, dropLoc);
         }
-        return false;
     }
 
-    /** Fallback “Bổ trợ:” nếu không cấu hình enchant-display cho material */
-    private boolean hasEnchantMaterial(ItemStack tool) {
-        if (tool == null || !tool.hasItemMeta()) return false;
-        ItemMeta meta = tool.getItemMeta();
-        if (meta != null && meta.hasLore()) {
-            for (String line : meta.getLore()) {
-                if (line != null && ChatColor.stripColor(line).contains("Bổ trợ:")) return true;
-            }
-        }
-        return false;
+    /** Số lượng item sau khi nhân fortune × booster và cộng bonus theo level */
+    static int scaleDropAmount(BonusDropSampler sampler, int baseAmount, int bonusLvl, double fortuneMul,
+                               double boosterMul, ThreadLocalRandom rnd) {
+        // Nhân tổng hợp cho số lượng item
+        double expected = baseAmount * (fortuneMul * boosterMul);
+        int total = (int) Math.floor(expected);
+        double frac = expected - total;
+        if (rnd.nextDouble() < frac) total += 1;
+
+        // Bonus theo level: mỗi level có cơ hội thêm baseAmount (bốc 1 lần từ bảng nhị thức)
+        total += sampler.sample(bonusLvl - 1, rnd) * baseAmount;
+        return total;
     }
 
-    /** Kiểm tra lore có chứa bất kỳ display string nào yêu cầu cho material này */
-    private boolean hasAnyDisplay(ItemStack item, Set<String> displays) {
-        if (item == null || !item.hasItemMeta() || displays == null || displays.isEmpty()) return false;
-        ItemMeta meta = item.getItemMeta();
-        if (meta == null || !meta.hasLore()) return false;
-        List<String> lore = meta.getLore();
-        if (lore == null || lore.isEmpty()) return false;
-
-        for (String line : lore) {
-            if (line == null) continue;
-            for (String d : displays) {
-                if (d != null && !d.isEmpty() && line.contains(d)) return true;
-            }
-        }
-        return false;
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        pendingVanillaDrops.remove(event.getPlayer().getUniqueId());
+    }
+
+    // World load sau khi biên dịch bảng luật (Multiverse...): đánh dấu disable-world theo chỉ số
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        ruleTable.resolveWorld(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        WorldIndex.unregister(event.getWorld());
+    }
+
+    /** Trả ngay drop/exp đang gộp (gọi khi tắt plugin, lúc scheduler không còn chạy) */
+    public void flushPendingRewards() {
+        rewardAccumulator.flush();
     }
 
     /** Cộng điểm non-blocking + buffer/throttle UI */
@@ -345,142 +314,16 @@ public class BlockBreakListener implements Listener {
         // NON-BLOCKING: chỉ cộng delta vào cache + pending
         DatabaseManager.addPointsAsync(player.getUniqueId(), rounded);
 
-        // UI: buffer + throttle ActionBar
-        bufferAndNotify(player, rounded, blockType.name());
+        // UI: chỉ cộng dồn, NotificationManager gửi theo chu kỳ
+        notifications.addScore(player, rounded, blockType, pvpMul < 1.0D);
 
-        // Kiểm tra lên cấp (không block): dùng cache nếu có
+        // Kiểm tra lên cấp ngay trên main thread (đang trong BlockBreakEvent), dùng cache nếu có
         PlayerData pd = DatabaseManager.getCached(player.getUniqueId());
         if (pd != null) {
-            Bukkit.getScheduler().runTask(plugin, () -> checkLevelUp(player, pd.getPoints()));
+            checkLevelUp(player, pd);
         }
     }
 
-    /** Gộp điểm trong ~0.3s rồi gửi 1 actionbar; throttle theo ticks */
-    private void bufferAndNotify(Player player, double delta, String blockName) {
-        UUID id = player.getUniqueId();
-        long now = System.currentTimeMillis();
-        pointsBuffer.merge(id, delta, Double::sum);
-
-        long bufferMillis = (long) (Math.max(0D, notificationBufferSeconds) * 1000.0D);
-
-        // Chưa tới thời gian gộp
-        long last = lastBufferTime.getOrDefault(id, 0L);
-        if (now - last < bufferMillis) return;
-
-        // Xả buffer
-        lastBufferTime.put(id, now);
-        double totalAdded = pointsBuffer.getOrDefault(id, 0.0);
-        pointsBuffer.put(id, 0.0);
-        if (totalAdded <= 0) {
-            return;
-        }
-
-        // Throttle theo ticks (tính theo ms)
-        long tickMs = Math.max(0, actionBarIntervalTicks) * 50L;
-
-        long lastSend = lastActionBarTime.getOrDefault(id, 0L);
-        if (now - lastSend < tickMs) return;
-        lastActionBarTime.put(id, now);
-
-        // Chỉ xử lý khi mode actionbar (các mode khác giữ nguyên sendNotification cũ)
-        if (!"actionbar".equals(notificationMode)) {
-            // fallback: dùng sendNotification cũ cho mode chat/title/bossbar
-            sendNotification(player, totalAdded, blockName);
-            return;
-        }
-
-        String template = actionBarTemplate != null && !actionBarTemplate.isEmpty()
-                ? actionBarTemplate
-                : "§a+%score% điểm §7(%block%)";
-        String fmt = template
-                .replace("%score%", String.format(Locale.US, "%.2f", totalAdded))
-                .replace("%block%", blockName);
-
-        // KHÔNG dùng reflection — dùng Spigot API
-        player.spigot().sendMessage(ChatMessageType.ACTION_BAR, TextComponent.fromLegacyText(fmt));
-    }
-
-    private void sendNotification(Player player, double score, String blockName) {
-        String mode = notificationMode != null ? notificationMode : "actionbar";
-        String scoreStr = String.format(Locale.US, "%.2f", score);
-
-        // Xác định trạng thái PvP-protect (đang ở khu an toàn và có bật giảm)
-        boolean pvpActive = plugin.isPvpReductionEnabled(player) && plugin.isPvpProtected(player);
-        double pvpMul = plugin.getPvpMultiplier(); // ví dụ 0.5
-        String pvpMulStr = String.format(Locale.US, "%.2f", pvpMul);
-
-        switch (mode) {
-            case "chat":
-                player.sendMessage("§aBạn nhận được §f" + scoreStr + " điểm §7(" + blockName + ")");
-                break;
-
-            case "title": {
-                String title = plugin.getConfig().getString("notification.title.text", "Bạn đã nhận được %score% điểm!")
-                        .replace("%score%", scoreStr);
-                String subtitle = plugin.getConfig().getString("notification.title.subtitle", "Từ khối %block%")
-                        .replace("%block%", blockName);
-                player.sendTitle(title, subtitle, 10, 70, 20);
-                break;
-            }
-
-            case "bossbar": {
-                String bossbar = plugin.getConfig().getString("notification.bossbar", "Điểm nhận: %score% từ %block%")
-                        .replace("%score%", scoreStr).replace("%block%", blockName);
-                showBossBar(player, bossbar);
-                break;
-            }
-
-            case "actionbar":
-            default: {
-                // Nếu đang PvP-protect -> dùng template khác
-                String template = pvpActive ? actionBarPvpTemplate : actionBarTemplate;
-                if (template == null || template.isEmpty()) {
-                    template = pvpActive
-                            ? "§a+%score% điểm §7(%block%) §6(-%pvp_mul%x khu an toàn)"
-                            : "§a+%score% điểm §7(%block%)";
-                }
-                String msg = template
-                        .replace("%score%", scoreStr)
-                        .replace("%block%", blockName)
-                        .replace("%pvp_mul%", pvpMulStr);
-
-                player.spigot().sendMessage(ChatMessageType.ACTION_BAR, TextComponent.fromLegacyText(msg));
-                break;
-            }
-        }
-    }
-
-    private void showBossBar(Player player, String message) {
-        BossBar bossBar = playerBossBars.get(player);
-        if (bossBar == null) {
-            bossBar = Bukkit.createBossBar(message, BarColor.GREEN, BarStyle.SOLID);
-            bossBar.addPlayer(player);
-            bossBar.setProgress(1.0);
-            playerBossBars.put(player, bossBar);
-        } else {
-            bossBar.setTitle(message);
-            bossBar.setProgress(1.0);
-        }
-
-        final BossBar finalBossBar = bossBar;
-
-        BukkitRunnable previousTask = bossBarTasks.get(player);
-        if (previousTask != null) previousTask.cancel();
-
-        BukkitRunnable task = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (finalBossBar != null && player.isOnline()) {
-                    finalBossBar.removePlayer(player);
-                }
-                playerBossBars.remove(player);
-                bossBarTasks.remove(player);
-            }
-        };
-        task.runTaskLater(plugin, 60L);
-        bossBarTasks.put(player, task);
-    }
-
     // === Level/Points helpers giữ nguyên, chỉ bỏ block sync nếu có thể ===
 
     private void setPoints(Player player, double points) {
@@ -532,14 +375,10 @@ public class BlockBreakListener implements Listener {
         plugin.getLogger().finer("Level cache miss (set) trong BlockBreak cho " + player.getName());
     }
 
-    private void checkLevelUp(Player player, double points) {
-        List<Double> req = plugin.getConfig().getDoubleList("level-request");
-        int cur = getCurrentLevel(player);
-
-        for (int i = cur; i < req.size(); i++) {
-            if (points >= req.get(i)) {
-                levelUp(player, i + 1);
-            } else break;
+    private void checkLevelUp(Player player, PlayerData data) {
+        int target = plugin.getLevelCurve().levelFor(data.getPoints());
+        if (target > data.getLevel()) {
+            levelUp(player, target);
         }
     }
 
@@ -549,184 +388,12 @@ public class BlockBreakListener implements Listener {
 
         setPlayerLevel(player, newLevel);
 
-        String title = ChatColor.translateAlternateColorCodes('&',
-                plugin.getConfig().getString("level-up-title.title")
-                        .replace("%next_level%", String.valueOf(newLevel)));
-        String subtitle = ChatColor.translateAlternateColorCodes('&',
-                plugin.getConfig().getString("level-up-title.subtitle")
-                        .replace("%next_level%", String.valueOf(newLevel)));
+        String title = MessageTemplate.of(plugin.getConfig().getString("level-up-title.title"))
+                .render("next_level", newLevel);
+        String subtitle = MessageTemplate.of(plugin.getConfig().getString("level-up-title.subtitle"))
+                .render("next_level", newLevel);
 
         player.sendTitle(title, subtitle, 10, 70, 20);
         setPoints(player, 0);
     }
-
-    // Inner class để cache block data
-    private static class BlockData {
-        private final boolean hasExp;
-        private final int expMin;
-        private final int expMax;
-        private final boolean hasScore;
-        private final double scoreMin;
-        private final double scoreMax;
-        private final double chance;
-
-        private BlockData(boolean hasExp, int expMin, int expMax,
-                          boolean hasScore, double scoreMin, double scoreMax,
-                          double chance) {
-            this.hasExp = hasExp;
-            this.expMin = expMin;
-            this.expMax = expMax;
-            this.hasScore = hasScore;
-            this.scoreMin = scoreMin;
-            this.scoreMax = scoreMax;
-            this.chance = chance;
-        }
-
-        static BlockData fromConfig(Object expObj, Object scoreObj, Object chanceObj) {
-            RangeInt expRange = parseIntRange(expObj);
-            RangeDouble scoreRange = parseDoubleRange(scoreObj);
-            double chance = parseChance(chanceObj);
-
-            boolean hasExp = expRange != null;
-            boolean hasScore = scoreRange != null;
-
-            int expMin = hasExp ? expRange.min : 0;
-            int expMax = hasExp ? expRange.max : 0;
-            double scoreMin = hasScore ? scoreRange.min : 0D;
-            double scoreMax = hasScore ? scoreRange.max : 0D;
-
-            return new BlockData(hasExp, expMin, expMax, hasScore, scoreMin, scoreMax, chance);
-        }
-
-        boolean hasExp() {
-            return hasExp;
-        }
-
-        boolean hasScore() {
-            return hasScore;
-        }
-
-        int rollExp(ThreadLocalRandom rnd) {
-            if (!hasExp) return 0;
-            if (expMax <= expMin) return expMin;
-            return rnd.nextInt(expMin, expMax + 1);
-        }
-
-        double rollScore(ThreadLocalRandom rnd) {
-            if (!hasScore) return 0D;
-            if (scoreMax <= scoreMin) return scoreMin;
-            return rnd.nextDouble(scoreMin, scoreMax);
-        }
-
-        boolean shouldReward(ThreadLocalRandom rnd) {
-            if (!hasScore) return false;
-            if (chance <= 0D) return false;
-            if (chance >= 1D) return true;
-            return rnd.nextDouble() < chance;
-        }
-
-        private static RangeInt parseIntRange(Object value) {
-            if (value == null) return null;
-            if (value instanceof Number) {
-                int v = ((Number) value).intValue();
-                return new RangeInt(v, v);
-            }
-            String str = value.toString();
-            if (str == null) return null;
-            str = str.trim();
-            if (str.isEmpty() || "null".equalsIgnoreCase(str)) {
-                return null;
-            }
-            try {
-                if (str.contains("-")) {
-                    String[] parts = str.split("-");
-                    if (parts.length >= 2) {
-                        int min = Integer.parseInt(parts[0].trim());
-                        int max = Integer.parseInt(parts[1].trim());
-                        if (max < min) {
-                            int tmp = min;
-                            min = max;
-                            max = tmp;
-                        }
-                        return new RangeInt(min, max);
-                    }
-                }
-                int single = Integer.parseInt(str);
-                return new RangeInt(single, single);
-            } catch (NumberFormatException ignored) {
-                return null;
-            }
-        }
-
-        private static RangeDouble parseDoubleRange(Object value) {
-            if (value == null) return null;
-            if (value instanceof Number) {
-                double v = ((Number) value).doubleValue();
-                return new RangeDouble(v, v);
-            }
-            String str = value.toString();
-            if (str == null) return null;
-            str = str.trim();
-            if (str.isEmpty() || "null".equalsIgnoreCase(str)) {
-                return null;
-            }
-            try {
-                if (str.contains("-")) {
-                    String[] parts = str.split("-");
-                    if (parts.length >= 2) {
-                        double min = Double.parseDouble(parts[0].trim());
-                        double max = Double.parseDouble(parts[1].trim());
-                        if (max < min) {
-                            double tmp = min;
-                            min = max;
-                            max = tmp;
-                        }
-                        return new RangeDouble(min, max);
-                    }
-                }
-                double single = Double.parseDouble(str);
-                return new RangeDouble(single, single);
-            } catch (NumberFormatException ignored) {
-                return null;
-            }
-        }
-
-        private static double parseChance(Object value) {
-            double defaultChance = 1.0D;
-            if (value == null) return defaultChance;
-            if (value instanceof Number) {
-                return clampChance(((Number) value).doubleValue());
-            }
-            try {
-                return clampChance(Double.parseDouble(value.toString().trim()));
-            } catch (Exception ignored) {
-                return defaultChance;
-            }
-        }
-
-        private static double clampChance(double value) {
-            if (Double.isNaN(value)) return 0D;
-            if (value < 0D) return 0D;
-            if (value > 1D) return 1D;
-            return value;
-        }
-
-        private static final class RangeInt {
-            final int min;
-            final int max;
-            RangeInt(int min, int max) {
-                this.min = min;
-                this.max = max;
-            }
-        }
-
-        private static final class RangeDouble {
-            final double min;
-            final double max;
-            RangeDouble(double min, double max) {
-                this.min = min;
-                this.max = max;
-            }
-        }
-    }
 }
@@ -0,0 +1,340 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bảng luật block đã biên dịch sẵn từ config.yml.
+ * Mọi tra cứu trên đường nóng (BlockBreakEvent) chỉ là 1 lần index mảng theo Material.ordinal(),
+ * không hash String và không rebuild định kỳ. Bảng là bất biến - khi reload sẽ tạo bảng mới
+ * và thay tham chiếu (volatile) trong BlockBreakListener. Ngoại lệ duy nhất là bitset world bị tắt, nằm
+ * trong field volatile riêng: world load sau (Multiverse...) được đánh dấu khi WorldLoadEvent bằng cách
+ * publish bản sao mới, nên luồng đọc không bao giờ thấy bitset đang bị sửa.
+ */
+public final class BlockRuleTable {
+
+    private static final String[] NO_KEYS = new String[0];
+
+    private final boolean[] whitelisted;
+    private final boolean[] luckyBlocks;
+    private final BlockData[] blockData;
+    private final String[][] requiredEnchants;
+    private final Map<String, String> enchantKeyByDisplay;
+    private final Map<String, BitSet> materialsByEnchant;
+
+    // World bị tắt: bitset theo WorldIndex (copy-on-write, không sửa sau khi publish);
+    // tên chỉ dùng để đánh dấu world load sau
+    private volatile BitSet disabledWorlds;
+    private final Set<String> disabledWorldNames;
+
+    private BlockRuleTable(boolean[] whitelisted, boolean[] luckyBlocks, BlockData[] blockData,
+                           String[][] requiredEnchants, Map<String, String> enchantKeyByDisplay,
+                           Map<String, BitSet> materialsByEnchant, BitSet disabledWorlds, Set<String> disabledWorldNames) {
+        this.whitelisted = whitelisted;
+        this.luckyBlocks = luckyBlocks;
+        this.blockData = blockData;
+        this.requiredEnchants = requiredEnchants;
+        this.enchantKeyByDisplay = enchantKeyByDisplay;
+        this.materialsByEnchant = materialsByEnchant;
+        this.disabledWorlds = disabledWorlds;
+        this.disabledWorldNames = disabledWorldNames;
+    }
+
+    /**
+     * Biên dịch bảng luật từ config hiện tại. Chỉ gọi khi load/reload, không gọi trên đường nóng.
+     */
+    public static BlockRuleTable compile(FileConfiguration config) {
+        int size = Material.values().length;
+        boolean[] whitelisted = new boolean[size];
+        boolean[] luckyBlocks = new boolean[size];
+        BlockData[] blockData = new BlockData[size];
+        String[][] requiredEnchants = new String[size][];
+
+        // material-whitelist
+        for (String name : config.getStringList("material-whitelist")) {
+            Material material = Material.matchMaterial(name);
+            if (material != null) whitelisted[material.ordinal()] = true;
+        }
+
+        // lucky-blocks.block-replace
+        for (String name : config.getStringList("lucky-blocks.block-replace")) {
+            Material material = Material.matchMaterial(name);
+            if (material != null) luckyBlocks[material.ordinal()] = true;
+        }
+
+        // block-whitelist (exp/score/chance)
+        for (Map<?, ?> m : config.getMapList("block-whitelist")) {
+            Object typeObj = m.get("type");
+            if (typeObj == null) continue;
+            Material material = Material.matchMaterial(String.valueOf(typeObj));
+            if (material == null) continue;
+            blockData[material.ordinal()] = BlockData.fromConfig(m.get("exp"), m.get("score"), m.get("chance"));
+        }
+
+        // Ánh xạ ngược: Material -> các enchant key yêu cầu (từ enchantments.*)
+        Map<Material, Set<String>> enchantsByMaterial = new EnumMap<>(Material.class);
+        Map<String, BitSet> materialsByEnchant = new HashMap<>();
+        ConfigurationSection enchantSection = config.getConfigurationSection("enchantments");
+        if (enchantSection != null) {
+            for (String encKey : enchantSection.getKeys(false)) {
+                String display = enchantSection.getString(encKey + ".display_type");
+                if (display == null || display.isEmpty()) continue;
+                for (String matName : enchantSection.getStringList(encKey + ".material")) {
+                    try {
+                        Material m = Material.valueOf(matName);
+                        enchantsByMaterial.computeIfAbsent(m, k -> new LinkedHashSet<>()).add(encKey);
+                        materialsByEnchant.computeIfAbsent(encKey, k -> new BitSet(size)).set(m.ordinal());
+                    } catch (IllegalArgumentException ignored) {}
+                }
+            }
+        }
+        for (Map.Entry<Material, Set<String>> entry : enchantsByMaterial.entrySet()) {
+            requiredEnchants[entry.getKey().ordinal()] = entry.getValue().toArray(NO_KEYS);
+        }
+        Map<String, String> enchantKeyByDisplay = EnchantTagMigrator.buildKeyByDisplay(enchantSection);
+
+        // disable-world: world đã load đánh dấu ngay, world load sau đánh dấu ở resolveWorld()
+        BlockRuleTable table = new BlockRuleTable(whitelisted, luckyBlocks, blockData, requiredEnchants,
+                enchantKeyByDisplay, materialsByEnchant, new BitSet(),
+                Collections.unmodifiableSet(new HashSet<>(config.getStringList("disable-world"))));
+        for (World world : Bukkit.getWorlds()) {
+            table.resolveWorld(world);
+        }
+        return table;
+    }
+
+    /**
+     * Đăng ký world vào WorldIndex và đánh dấu nếu nằm trong disable-world (publish bitset mới).
+     * Gọi trên main thread khi biên dịch và khi WorldLoadEvent.
+     */
+    public void resolveWorld(World world) {
+        int index = WorldIndex.register(world);
+        if (!disabledWorldNames.contains(world.getName())) return;
+
+        BitSet current = disabledWorlds;
+        if (current.get(index)) return;
+        BitSet next = (BitSet) current.clone();
+        next.set(index);
+        disabledWorlds = next;
+    }
+
+    public boolean isWhitelisted(Material material) {
+        return whitelisted[material.ordinal()];
+    }
+
+    public boolean isLuckyBlock(Material material) {
+        return luckyBlocks[material.ordinal()];
+    }
+
+    public BlockData getBlockData(Material material) {
+        return blockData[material.ordinal()];
+    }
+
+    /**
+     * @return các enchant key yêu cầu cho material, hoặc null nếu material không cấu hình enchant riêng
+     */
+    public String[] getRequiredEnchants(Material material) {
+        return requiredEnchants[material.ordinal()];
+    }
+
+    /**
+     * Ánh xạ display_type -> enchant key, dùng để migrate lore cũ sang tag PDC.
+     */
+    public Map<String, String> getEnchantKeyByDisplay() {
+        return enchantKeyByDisplay;
+    }
+
+    /**
+     * Hợp các material mà những enchant trong tag được phép đập (theo enchantments.*.material).
+     * Kết quả là bản sao mới, caller được giữ lại (ToolProfile).
+     */
+    public BitSet allowedMaterials(EnchantTag tag) {
+        BitSet allowed = new BitSet();
+        for (String enchantKey : tag.getKeys()) {
+            BitSet materials = materialsByEnchant.get(enchantKey);
+            if (materials != null) allowed.or(materials);
+        }
+        return allowed;
+    }
+
+    public boolean isWorldDisabled(World world) {
+        int index = WorldIndex.indexOf(world);
+        return index >= 0 && disabledWorlds.get(index);
+    }
+
+    // Dữ liệu exp/score/chance của từng block
+    static final class BlockData {
+        private final boolean hasExp;
+        private final int expMin;
+        private final int expMax;
+        private final boolean hasScore;
+        private final double scoreMin;
+        private final double scoreMax;
+        private final double chance;
+
+        private BlockData(boolean hasExp, int expMin, int expMax,
+                          boolean hasScore, double scoreMin, double scoreMax,
+                          double chance) {
+            this.hasExp = hasExp;
+            this.expMin = expMin;
+            this.expMax = expMax;
+            this.hasScore = hasScore;
+            this.scoreMin = scoreMin;
+            this.scoreMax = scoreMax;
+            this.chance = chance;
+        }
+
+        static BlockData fromConfig(Object expObj, Object scoreObj, Object chanceObj) {
+            RangeInt expRange = parseIntRange(expObj);
+            RangeDouble scoreRange = parseDoubleRange(scoreObj);
+            double chance = parseChance(chanceObj);
+
+            boolean hasExp = expRange != null;
+            boolean hasScore = scoreRange != null;
+
+            int expMin = hasExp ? expRange.min : 0;
+            int expMax = hasExp ? expRange.max : 0;
+            double scoreMin = hasScore ? scoreRange.min : 0D;
+            double scoreMax = hasScore ? scoreRange.max : 0D;
+
+            return new BlockData(hasExp, expMin, expMax, hasScore, scoreMin, scoreMax, chance);
+        }
+
+        boolean hasExp() {
+            return hasExp;
+        }
+
+        boolean hasScore() {
+            return hasScore;
+        }
+
+        int rollExp(ThreadLocalRandom rnd) {
+            if (!hasExp) return 0;
+            if (expMax <= expMin) return expMin;
+            return rnd.nextInt(expMin, expMax + 1);
+        }
+
+        double rollScore(ThreadLocalRandom rnd) {
+            if (!hasScore) return 0D;
+            if (scoreMax <= scoreMin) return scoreMin;
+            return rnd.nextDouble(scoreMin, scoreMax);
+        }
+
+        boolean shouldReward(ThreadLocalRandom rnd) {
+            if (!hasScore) return false;
+            if (chance <= 0D) return false;
+            if (chance >= 1D) return true;
+            return rnd.nextDouble() < chance;
+        }
+
+        private static RangeInt parseIntRange(Object value) {
+            if (value == null) return null;
+            if (value instanceof Number) {
+                int v = ((Number) value).intValue();
+                return new RangeInt(v, v);
+            }
+            String str = value.toString();
+            if (str == null) return null;
+            str = str.trim();
+            if (str.isEmpty() || "null".equalsIgnoreCase(str)) {
+                return null;
+            }
+            try {
+                if (str.contains("-")) {
+                    String[] parts = str.split("-");
+                    if (parts.length >= 2) {
+                        int min = Integer.parseInt(parts[0].trim());
+                        int max = Integer.parseInt(parts[1].trim());
+                        if (max < min) {
+                            int tmp = min;
+                            min = max;
+                            max = tmp;
+                        }
+                        return new RangeInt(min, max);
+                    }
+                }
+                int single = Integer.parseInt(str);
+                return new RangeInt(single, single);
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+
+        private static RangeDouble parseDoubleRange(Object value) {
+            if (value == null) return null;
+            if (value instanceof Number) {
+                double v = ((Number) value).doubleValue();
+                return new RangeDouble(v, v);
+            }
+            String str = value.toString();
+            if (str == null) return null;
+            str = str.trim();
+            if (str.isEmpty() || "null".equalsIgnoreCase(str)) {
+                return null;
+            }
+            try {
+                if (str.contains("-")) {
+                    String[] parts = str.split("-");
+                    if (parts.length >= 2) {
+                        double min = Double.parseDouble(parts[0].trim());
+                        double max = Double.parseDouble(parts[1].trim());
+                        if (max < min) {
+                            double tmp = min;
+                            min = max;
+                            max = tmp;
+                        }
+                        return new RangeDouble(min, max);
+                    }
+                }
+                double single = Double.parseDouble(str);
+                return new RangeDouble(single, single);
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+
+        private static double parseChance(Object value) {
+            double defaultChance = 1.0D;
+            if (value == null) return defaultChance;
+            if (value instanceof Number) {
+                return clampChance(((Number) value).doubleValue());
+            }
+            try {
+                return clampChance(Double.parseDouble(value.toString().trim()));
+            } catch (Exception ignored) {
+                return defaultChance;
+            }
+        }
+
+        private static double clampChance(double value) {
+            if (Double.isNaN(value)) return 0D;
+            if (value < 0D) return 0D;
+            if (value > 1D) return 1D;
+            return value;
+        }
+
+        private static final class RangeInt {
+            final int min;
+            final int max;
+            RangeInt(int min, int max) {
+                this.min = min;
+                this.max = max;
+            }
+        }
+
+        private static final class RangeDouble {
+            final double min;
+            final double max;
+            RangeDouble(double min, double max) {
+                this.min = min;
+                this.max = max;
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.ledat.enchantMaterial;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Bốc số lượt drop thêm theo level bổ trợ bằng 1 lần random.
+ * Số lượt thêm của (bonusLevel - 1) lần thử, mỗi lần xác suất bonus_chance, là phân phối
+ * nhị thức B(n, p) - bảng CDF cho từng n được tính sẵn khi biên dịch config.
+ * n lớn hơn bảng (item có level vượt max_level) thì quay về cách tung từng lần.
+ */
+public final class BonusDropSampler {
+
+    private final double chance;
+    private final double[][] cdfByTrials; // cdfByTrials[n][k] = P(X <= k), X ~ B(n, chance)
+
+    private BonusDropSampler(double chance, double[][] cdfByTrials) {
+        this.chance = chance;
+        this.cdfByTrials = cdfByTrials;
+    }
+
+    /**
+     * @param maxTrials số lần thử lớn nhất cần bảng (max_level lớn nhất - 1)
+     * @param chance    bonus_chance, đã kẹp trong [0, 1]
+     */
+    public static BonusDropSampler compile(int maxTrials, double chance) {
+        int max = Math.max(0, maxTrials);
+        double[][] tables = new double[max + 1][];
+        for (int n = 0; n <= max; n++) {
+            tables[n] = buildCdf(n, chance);
+        }
+        return new BonusDropSampler(chance, tables);
+    }
+
+    private static double[] buildCdf(int n, double p) {
+        double[] cdf = new double[n + 1];
+        if (p <= 0D) {
+            Arrays.fill(cdf, 1D);
+            return cdf;
+        }
+        if (p >= 1D) {
+            cdf[n] = 1D;
+            return cdf;
+        }
+
+        // pmf(k + 1) = pmf(k) * (n - k) / (k + 1) * p / (1 - p), tính theo log để không underflow khi n lớn
+        double logP = Math.log(p);
+        double logQ = Math.log1p(-p);
+        double logPmf = n * logQ;
+        double sum = 0D;
+        for (int k = 0; k <= n; k++) {
+            sum += Math.exp(logPmf);
+            cdf[k] = Math.min(1D, sum);
+            if (k < n) {
+                logPmf += Math.log((double) (n - k) / (k + 1)) + logP - logQ;
+            }
+        }
+        cdf[n] = 1D;
+        return cdf;
+    }
+
+    /**
+     * @param trials số lần thử (bonusLevel - 1)
+     * @param rnd    ThreadLocalRandom trên đường nóng, Random có seed trong test
+     * @return số lần thành công
+     */
+    public int sample(int trials, Random rnd) {
+        if (trials <= 0) return 0;
+        if (trials >= cdfByTrials.length) {
+            int hits = 0;
+            for (int i = 0; i < trials; i++) {
+                if (rnd.nextDouble() < chance) hits++;
+            }
+            return hits;
+        }
+
+        double[] cdf = cdfByTrials[trials];
+        double u = rnd.nextDouble();
+        // k nhỏ nhất có cdf[k] > u
+        int lo = 0;
+        int hi = trials;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] > u) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+}
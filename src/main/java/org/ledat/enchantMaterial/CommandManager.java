@@ -84,6 +84,7 @@ public class CommandManager implements CommandExecutor {
             
             // 1. Reload config.yml chính
             EnchantMaterial.getInstance().reloadConfig();
+            EnchantMaterial.getInstance().reloadRuntimeCaches();
             sender.sendMessage("§a✅ Đã reload config.yml");
             
             // 2. Reload booster.yml
@@ -200,7 +201,13 @@ public class CommandManager implements CommandExecutor {
             }
 
             meta.setLore(lore);
+
+            // Tag PDC là nguồn dữ liệu chính, lore chỉ để hiển thị
+            EnchantTag tag = EnchantTagMigrator.readOrLegacy(meta, EnchantTagMigrator.buildKeyByDisplay(
+                    EnchantMaterial.getInstance().getConfig().getConfigurationSection("enchantments")));
+            tag.withLevel(enchantKey, level).write(meta);
             tool.setItemMeta(meta);
+            EnchantMaterial.getInstance().getToolProfileCache().invalidate(player.getUniqueId());
 
             sender.sendMessage("§aĐã thêm enchant '" + enchantKey + "' level " + level + " vào dụng cụ!");
         }
@@ -480,9 +487,10 @@ public class CommandManager implements CommandExecutor {
         double currentPoints = data.getPoints();
         int currentLevel = data.getLevel();
 
-        List<Double> levelRequests = EnchantMaterial.getInstance().getConfig().getDoubleList("level-request");
+        LevelCurve levelCurve = EnchantMaterial.getInstance().getLevelCurve();
+        boolean maxLevelReached = levelCurve.isMaxLevel(currentLevel);
 
-        double pointsForNextLevel = currentLevel < levelRequests.size() ? levelRequests.get(currentLevel) : 0;
+        double pointsForNextLevel = maxLevelReached ? 0 : levelCurve.pointsToNext(currentLevel);
         double pointsNeeded = pointsForNextLevel - currentPoints;
 
         List<String> messageTemplate = EnchantMaterial.getInstance().getConfig().getStringList("level-info-message.message");
@@ -495,7 +503,7 @@ public class CommandManager implements CommandExecutor {
                         .replace("{points_needed}", String.format("%.2f", pointsNeeded))
                         .replace("{points_for_next_level}", String.format("%.2f", pointsForNextLevel))
                         .replace("{next_level}", String.valueOf(currentLevel + 1))
-                        .replace("{max_level_reached}", currentLevel >= levelRequests.size() ? "true" : "false");
+                        .replace("{max_level_reached}", maxLevelReached ? "true" : "false");
 
                 player.sendMessage(ChatColor.translateAlternateColorCodes('&', formatted));
             }
@@ -506,7 +514,7 @@ public class CommandManager implements CommandExecutor {
         player.sendMessage("§a📊 Cấp độ hiện tại: §f" + currentLevel);
         player.sendMessage("§a💎 Điểm hiện tại: §f" + String.format("%.2f", currentPoints));
 
-        if (currentLevel < levelRequests.size()) {
+        if (!maxLevelReached) {
             player.sendMessage("§e⭐ Điểm cần thiết để lên cấp tiếp theo: §f" + String.format("%.2f", pointsNeeded));
             player.sendMessage("§e🎯 Điểm cần để lên cấp " + (currentLevel + 1) + ": §f" + String.format("%.2f", pointsForNextLevel));
         } else {
@@ -618,17 +626,8 @@ public class CommandManager implements CommandExecutor {
     }
 
     private void handleLevelUpdate(Player player, PlayerData data) {
-        List<Double> levelRequests = EnchantMaterial.getInstance().getConfig().getDoubleList("level-request");
         int currentLevel = data.getLevel();
-        int calculatedLevel = currentLevel;
-
-        for (int i = 0; i < levelRequests.size(); i++) {
-            if (data.getPoints() >= levelRequests.get(i)) {
-                calculatedLevel = i + 1;
-            } else {
-                break;
-            }
-        }
+        int calculatedLevel = EnchantMaterial.getInstance().getLevelCurve().levelFor(data.getPoints());
 
         if (calculatedLevel <= currentLevel) {
             return;
@@ -638,12 +637,10 @@ public class CommandManager implements CommandExecutor {
         final int finalNewLevel = calculatedLevel;
 
         Bukkit.getScheduler().runTask(EnchantMaterial.getInstance(), () -> {
-            String title = ChatColor.translateAlternateColorCodes('&',
-                    EnchantMaterial.getInstance().getConfig().getString("level-up-title.title")
-                            .replace("%next_level%", String.valueOf(finalNewLevel)));
-            String subtitle = ChatColor.translateAlternateColorCodes('&',
-                    EnchantMaterial.getInstance().getConfig().getString("level-up-title.subtitle")
-                            .replace("%next_level%", String.valueOf(finalNewLevel)));
+            String title = MessageTemplate.of(EnchantMaterial.getInstance().getConfig().getString("level-up-title.title"))
+                    .render("next_level", finalNewLevel);
+            String subtitle = MessageTemplate.of(EnchantMaterial.getInstance().getConfig().getString("level-up-title.subtitle"))
+                    .render("next_level", finalNewLevel);
 
             player.sendTitle(title, subtitle, 10, 70, 20);
             player.sendMessage("§a✨ Chúc mừng! Bạn đã lên cấp " + finalNewLevel + "!");
@@ -728,6 +725,7 @@ public class CommandManager implements CommandExecutor {
             switch (configType) {
                 case "config":
                     EnchantMaterial.getInstance().reloadConfig();
+                    EnchantMaterial.getInstance().reloadRuntimeCaches();
                     sender.sendMessage("§a✅ Đã reload config.yml");
                     break;
                 case "booster":
@@ -779,6 +777,16 @@ public class CommandManager implements CommandExecutor {
         if (adminAction.equals("allow")) {
             return handleAllowCommand(sender, args);
         }
+
+        if (adminAction.equals("dbstats")) {
+            DatabaseExecutor executor = DatabaseManager.getExecutor();
+            sender.sendMessage(executor != null ? "§e" + executor.describe() : "§cDatabase chưa khởi tạo");
+            for (String line : DatabaseManager.describeWrites()) {
+                sender.sendMessage("§e" + line);
+            }
+            sender.sendMessage("§e" + DatabaseManager.describeRankings());
+            return true;
+        }
     
         sendAdminUsage(sender);
         return true;
@@ -876,6 +884,7 @@ public class CommandManager implements CommandExecutor {
     private void sendAdminUsage(CommandSender sender) {
         sender.sendMessage("§6=== Admin Commands ===");
         sender.sendMessage("§e/em admin allow §7- Quản lý khu vực cho phép đào");
+        sender.sendMessage("§e/em admin dbstats §7- Thống kê executor, luồng ghi và độ trễ commit database");
     }
 
     private void sendAllowUsage(CommandSender sender) {
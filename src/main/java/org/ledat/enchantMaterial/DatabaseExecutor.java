@@ -0,0 +1,224 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.Bukkit;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Executor riêng cho JDBC, thay cho ForkJoinPool chung của JVM (dùng chung với mọi plugin khác).
+ * - Số luồng và độ dài hàng đợi cố định; Java 21+ dùng virtual thread, Java 17 dùng platform thread
+ * - Task có key (flush, load 1 người chơi...) được gộp: gửi lại khi bản trước CHƯA chạy thì dùng chung future,
+ *   nên khi quá tải các yêu cầu trùng không làm dài hàng đợi
+ * - Hàng đợi đầy: luồng gọi không phải main thread thì tự chạy task; main thread nhận future lỗi
+ *   (không bao giờ chạy JDBC trên main thread)
+ * - Số liệu: độ sâu hàng đợi, thời gian chờ và thời gian chạy (tổng + max), số task gộp/từ chối
+ */
+public final class DatabaseExecutor {
+
+    private final String name;
+    private final boolean virtualThreads;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService scheduler; // chỉ hẹn giờ, việc nặng chuyển sang executor
+    private final Map<String, CompletableFuture<?>> pendingByKey = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalExecNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong maxExecNanos = new AtomicLong();
+
+    public DatabaseExecutor(String name, int threads, int queueCapacity, boolean preferVirtualThreads) {
+        this.name = name;
+        ThreadFactory virtual = preferVirtualThreads ? virtualThreadFactory(name) : null;
+        this.virtualThreads = virtual != null;
+        int size = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                virtual != null ? virtual : platformThreadFactory(name));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(platformThreadFactory(name + "-Scheduler"));
+    }
+
+    /** Thread.ofVirtual() qua reflection để vẫn build với Java 17; null nếu JVM không hỗ trợ */
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            builder = nameMethod.invoke(builder, name + "-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        submit(future, task, null);
+        return future;
+    }
+
+    public CompletableFuture<Void> run(Runnable task) {
+        return supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Như {@link #supply(Supplier)} nhưng gộp theo key: nếu đã có task cùng key đang chờ trong hàng đợi
+     * thì trả về future của task đó. Key được nhả ngay khi task bắt đầu chạy, nên yêu cầu đến sau
+     * thời điểm đó luôn được 1 lượt chạy mới (không bỏ sót thay đổi mới).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> supplyCoalesced(String key, Supplier<T> task) {
+        CompletableFuture<T> fresh = new CompletableFuture<>();
+        CompletableFuture<?> existing = pendingByKey.putIfAbsent(key, fresh);
+        if (existing != null) {
+            coalesced.increment();
+            return (CompletableFuture<T>) existing;
+        }
+        submit(fresh, task, key);
+        return fresh;
+    }
+
+    public CompletableFuture<Void> runCoalesced(String key, Runnable task) {
+        return supplyCoalesced(key, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /** Hẹn giờ trên luồng scheduler - task phải nhẹ hoặc tự chuyển việc sang executor */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        return scheduler.scheduleAtFixedRate(() -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                EnchantMaterial.getInstance().getLogger().warning("Lỗi task định kỳ " + name + ": " + t.getMessage());
+            }
+        }, initialDelay, period, unit);
+    }
+
+    private <T> void submit(CompletableFuture<T> future, Supplier<T> task, String key) {
+        submitted.increment();
+        long enqueuedAt = System.nanoTime();
+        Runnable body = () -> {
+            if (key != null) pendingByKey.remove(key, future);
+            long startedAt = System.nanoTime();
+            record(totalWaitNanos, maxWaitNanos, startedAt - enqueuedAt);
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                record(totalExecNanos, maxExecNanos, System.nanoTime() - startedAt);
+                completed.increment();
+            }
+        };
+
+        try {
+            executor.execute(body);
+        } catch (RejectedExecutionException e) {
+            if (!executor.isShutdown() && !Bukkit.isPrimaryThread()) {
+                // Quá tải: luồng gọi (async) tự chạy, tạo áp lực ngược lên nơi sinh task
+                callerRuns.increment();
+                body.run();
+                return;
+            }
+            rejected.increment();
+            if (key != null) pendingByKey.remove(key, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static void record(LongAdder total, AtomicLong max, long nanos) {
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /** Dừng nhận task mới, chờ task trong hàng đợi chạy xong tối đa timeout */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        scheduler.shutdownNow();
+        executor.shutdown();
+        if (!executor.awaitTermination(timeout, unit)) {
+            executor.shutdownNow();
+        }
+    }
+
+    // ===== METRICS =====
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0D : totalWaitNanos.sum() / 1_000_000D / count;
+    }
+
+    public double getAverageExecMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0D : totalExecNanos.sum() / 1_000_000D / count;
+    }
+
+    public String describe() {
+        return String.format(Locale.US,
+                "%s [%s, %d luồng] hàng đợi=%d/%d đang chạy=%d | gửi=%d xong=%d gộp=%d tự-chạy=%d từ-chối=%d | " +
+                        "chờ tb=%.2fms max=%.2fms | chạy tb=%.2fms max=%.2fms",
+                name, virtualThreads ? "virtual" : "platform", executor.getMaximumPoolSize(),
+                getQueueDepth(), getQueueDepth() + executor.getQueue().remainingCapacity(), getActiveCount(),
+                submitted.sum(), completed.sum(), coalesced.sum(), callerRuns.sum(), rejected.sum(),
+                getAverageWaitMillis(), maxWaitNanos.get() / 1_000_000D,
+                getAverageExecMillis(), maxExecNanos.get() / 1_000_000D);
+    }
+}
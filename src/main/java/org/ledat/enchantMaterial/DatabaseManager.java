@@ -3,20 +3,27 @@ package org.ledat.enchantMaterial;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.ledat.enchantMaterial.rebirth.RebirthData;
+import org.ledat.enchantMaterial.rewards.ClaimedLevels;
+import org.ledat.enchantMaterial.storage.MappedPlayerStore;
+import org.ledat.enchantMaterial.storage.PlayerRow;
+import org.ledat.enchantMaterial.storage.SqlDialect;
+import org.ledat.enchantMaterial.storage.SqlWork;
+import org.ledat.enchantMaterial.storage.StorageBackend;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 public class DatabaseManager {
@@ -24,11 +31,24 @@ public class DatabaseManager {
     // ===== PHẦN 1: CONNECTION POOLING =====
     // Thay vì 1 connection, giờ có pool nhiều connections
     private static HikariDataSource dataSource;
+    // Ghi: 1 luồng writer + pool 1 connection gom lệnh ghi thành transaction; pool ở trên chỉ còn đọc.
+    // Tắt performance.db_writer.enabled thì writeDataSource == dataSource và mỗi lệnh ghi tự mở transaction.
+    private static HikariDataSource writeDataSource;
+    private static volatile DatabaseWriter writer;
+    private static final LatencyHistogram writerCommitLatency = new LatencyHistogram();
+    private static final LatencyHistogram directCommitLatency = new LatencyHistogram();
+    // Repository theo engine chọn từ database.url (H2 nhúng / SQLite / MySQL-MariaDB)
+    private static volatile StorageBackend storage;
+    // Giá trị mặc định cũ trong config.yml - coi như "dùng file H2 nhúng sẵn có"
+    private static final String LEGACY_DEFAULT_URL = "jdbc:h2:./plugins/EnchantMaterial/data";
+    // database.player-store: mmap -> level/điểm/chuyển sinh nằm trong file players.dat thay vì SQL
+    private static volatile MappedPlayerStore playerStore;
 
     // ===== PHẦN 2: CACHING SYSTEM =====
     // Cache để giảm database calls
     private static final Map<UUID, PlayerData> playerDataCache = new ConcurrentHashMap<>();
-    private static final Map<String, Set<Integer>> claimedRewardsCache = new ConcurrentHashMap<>();
+    // Mốc thưởng đã nhận dạng bitset, nạp cùng người chơi khi vào (getPlayerDataBatchAsync)
+    private static final Map<UUID, ClaimedLevels> claimedRewardsCache = new ConcurrentHashMap<>();
     private static final long CACHE_DURATION = 300000; // 5 phút
     private static final Map<UUID, Long> cacheTimestamps = new ConcurrentHashMap<>();
     private static final Map<UUID, RebirthData> rebirthDataCache = new ConcurrentHashMap<>();
@@ -36,14 +56,66 @@ public class DatabaseManager {
 
     // ===== PHẦN 3: BATCH PROCESSING =====
     // Gom nhiều operations thành 1 lần để giảm database load
-    private static final Map<UUID, PlayerData> pendingUpdates = new ConcurrentHashMap<>();
-    private static final ScheduledExecutorService batchExecutor = Executors.newScheduledThreadPool(2);
+    // Bản ghi level/điểm tuyệt đối chờ MERGE (ảnh chụp giá trị, không phải object đang sống)
+    private static final Map<UUID, PendingRow> pendingUpdates = new ConcurrentHashMap<>();
+    // Mốc thưởng vừa nhận chờ batch ghi vào level_rewards (Set đồng thời, thêm/bớt qua compute theo UUID)
+    private static final Map<UUID, Set<Integer>> pendingClaims = new ConcurrentHashMap<>();
+    // Delta điểm từ đập block, ghi bằng "points = points + ?"
+    private static final PointsLedger pointsLedger = new PointsLedger();
+    // Thế hệ dữ liệu chờ ghi: gameplay ghi sổ/journal trong enter-exit, luồng flush advance() để chụp
+    private static final PendingGate pendingGate = new PendingGate();
+    // Mọi JDBC async chạy trên executor riêng (không dùng ForkJoinPool chung); tạo trong initializeDatabase
+    private static volatile DatabaseExecutor executor;
+    private static final String FLUSH_KEY = "batch-flush";
+
+    // Write-ahead journal: mọi thay đổi trong pendingUpdates/pointsLedger được ghi vào file mmap,
+    // viết lại sang vùng kia ở mỗi lượt ghi DB và replay khi khởi động (bỏ phần DB đã commit theo epoch).
+    // null nếu tắt hoặc không mở được. Append không lock; chỉ luồng flush (FLUSH_LOCK) ghi lại/đổi vùng.
+    private static volatile PlayerJournal journal;
+    private static volatile boolean journalOverflowWarned = false;
+    // Đã xin 1 lượt ghi sớm vì journal quá 75% (bỏ cờ khi đổi vùng xong)
+    private static final AtomicBoolean journalRewriteRequested = new AtomicBoolean();
+
+    // Chuyển schema (VARCHAR -> UUID) chạy nền lúc khởi động. Trong lúc chạy: luồng ghi batch tạm dừng
+    // (dữ liệu vẫn nằm trong pendingUpdates + journal), truy vấn ngoài main thread chờ xong,
+    // truy vấn trên main thread báo lỗi ngay thay vì đứng server.
+    private static volatile CompletableFuture<Void> schemaReady = CompletableFuture.completedFuture(null);
+
+    // Ghi dữ liệu khi thoát: hàng đợi gom lượt thoát + future theo UUID làm "rào" cho lượt vào lại
+    private static final Map<UUID, CompletableFuture<Void>> quitFlushes = new ConcurrentHashMap<>();
+    private static final Queue<QuitFlush> quitQueue = new ConcurrentLinkedQueue<>();
+
+    // Top điểm giữ trong bộ nhớ cho placeholder %enchantmaterial_top_*%, cập nhật theo mỗi lần điểm đổi
+    private static volatile LeaderboardIndex leaderboard;
+    private static volatile long lastLeaderboardReconcile;
+    // Top chuyển sinh cho %enchantmaterial_rebirth_top_*%, cập nhật khi saveRebirthData ghi xong
+    private static volatile RebirthLeaderboard rebirthLeaderboard;
+    private static volatile long lastRebirthLeaderboardRefresh;
+    // Thứ hạng của mọi người chơi cho %enchantmaterial_rank% / percentile, dựng 1 lần lúc khởi động
+    private static volatile RankIndex rankIndex;
+
+    private static final class QuitFlush {
+        final UUID uuid;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        QuitFlush(UUID uuid) {
+            this.uuid = uuid;
+        }
+    }
 
     // ===== PHẦN 4: KHỞI TẠO DATABASE =====
     public static void initializeDatabase() {
         try {
+            setupExecutor();
             setupConnectionPool();
+            recoverSchemaSwap();
             createTables();
+            openPlayerStore();
+            // Đọc trước khi chuyển schema: trong lúc chuyển, getConnection phải chờ (hoặc lỗi trên main thread)
+            long committedEpoch = readCommittedJournalEpoch();
+            startSchemaMigration();
+            setupLeaderboard();
+            openJournal(committedEpoch);
             startBatchProcessor();
             startCacheCleanup();
         } catch (Exception e) {
@@ -52,19 +124,96 @@ public class DatabaseManager {
         }
     }
 
+    private static void setupExecutor() {
+        FileConfiguration config = EnchantMaterial.getInstance().getConfig();
+        executor = new DatabaseExecutor("EnchantMaterial-DB",
+                config.getInt("performance.db_executor.threads", 4),
+                config.getInt("performance.db_executor.queue_capacity", 1024),
+                config.getBoolean("performance.db_executor.virtual_threads", true));
+    }
+
+    /** Executor JDBC dùng chung (BoosterStorage, lệnh thống kê) */
+    public static DatabaseExecutor getExecutor() {
+        return executor;
+    }
+
+    private static boolean executorAvailable() {
+        DatabaseExecutor current = executor;
+        return current != null && !current.isShutdown();
+    }
+
+    /** Xếp 1 lượt ghi batch (gộp với lượt đang chờ nếu có) */
+    private static CompletableFuture<Void> requestFlush() {
+        return executor.runCoalesced(FLUSH_KEY, () -> {
+            if (hasAnyPendingWrites() || journalRewriteRequested.get()) {
+                processBatchUpdates();
+            }
+        });
+    }
+
     private static void setupConnectionPool() {
-        // Tạo HikariCP connection pool - giúp quản lý nhiều connections hiệu quả
-        HikariConfig config = new HikariConfig();
+        FileConfiguration pluginConfig = EnchantMaterial.getInstance().getConfig();
 
         // Tạo đường dẫn database
         File dataFolder = new File(EnchantMaterial.getInstance().getDataFolder(), "data");
         if (!dataFolder.exists()) dataFolder.mkdirs();
 
-        String dbPath = dataFolder.getAbsolutePath().replace("\\", "/") + "/data";
-        config.setJdbcUrl("jdbc:h2:file:" + dbPath + ";TRACE_LEVEL_FILE=0;DB_CLOSE_DELAY=-1");
-        config.setDriverClassName("org.h2.Driver");
-        config.setUsername("sa");
-        config.setPassword("");
+        String url = pluginConfig.getString("database.url", "").trim();
+        String jdbcUrl;
+        String user;
+        String password;
+        SqlDialect dialect;
+        if (url.isEmpty() || url.equalsIgnoreCase(LEGACY_DEFAULT_URL)) {
+            // Mặc định: file H2 nhúng trong thư mục plugin (giữ nguyên dữ liệu của các bản trước)
+            dialect = SqlDialect.fromUrl("jdbc:h2:");
+            String dbPath = dataFolder.getAbsolutePath().replace("\\", "/") + "/data";
+            jdbcUrl = "jdbc:h2:file:" + dbPath + ";TRACE_LEVEL_FILE=0;DB_CLOSE_DELAY=-1";
+            user = "sa";
+            password = "";
+        } else {
+            dialect = SqlDialect.fromUrl(url);
+            jdbcUrl = url;
+            user = pluginConfig.getString("database.user", "");
+            password = pluginConfig.getString("database.password", "");
+        }
+
+        boolean singleWriter = pluginConfig.getBoolean("performance.db_writer.enabled", true);
+        if (singleWriter) {
+            HikariConfig read = newPoolConfig(dialect, jdbcUrl, user, password, "EnchantMaterial-Read");
+            read.setMaximumPoolSize(Math.max(1, pluginConfig.getInt("performance.db_writer.read_pool_size", 3)));
+            read.setMinimumIdle(1);
+            dialect.configureReadPool(read);
+            dataSource = new HikariDataSource(read);
+
+            HikariConfig write = newPoolConfig(dialect, jdbcUrl, user, password, "EnchantMaterial-Write");
+            write.setMaximumPoolSize(1);
+            write.setMinimumIdle(1);
+            writeDataSource = new HikariDataSource(write);
+
+            writer = new DatabaseWriter("EnchantMaterial-DB-Writer", writeDataSource,
+                    pluginConfig.getInt("performance.db_writer.max_batch", 64),
+                    pluginConfig.getInt("performance.db_writer.queue_capacity", 4096),
+                    writerCommitLatency, EnchantMaterial.getInstance().getLogger());
+        } else {
+            dataSource = new HikariDataSource(newPoolConfig(dialect, jdbcUrl, user, password, "EnchantMaterial-DB"));
+            writeDataSource = dataSource;
+        }
+
+        storage = new StorageBackend(dialect, DatabaseManager::getConnection, DatabaseManager::executeWrite,
+                EnchantMaterial.getInstance().getLogger());
+        EnchantMaterial.getInstance().getLogger().info(
+                "Database: " + dialect.getName() + (singleWriter ? " (1 luồng ghi + pool đọc)" : ""));
+    }
+
+    private static HikariConfig newPoolConfig(SqlDialect dialect, String jdbcUrl, String user, String password,
+                                              String poolName) {
+        // Tạo HikariCP connection pool - giúp quản lý nhiều connections hiệu quả
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(dialect.jdbcUrl(jdbcUrl));
+        config.setDriverClassName(dialect.getDriverClassName());
+        config.setUsername(user);
+        config.setPassword(password);
 
         // Cấu hình pool - QUAN TRỌNG để tránh lag
         config.setMaximumPoolSize(10);        // Tối đa 10 connections
@@ -78,8 +227,272 @@ public class DatabaseManager {
         config.addDataSourceProperty("cachePrepStmts", "true");
         config.addDataSourceProperty("prepStmtCacheSize", "250");
         config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        dialect.configurePool(config);
+        return config;
+    }
+
+    /**
+     * Chạy 1 lệnh ghi của repository: qua luồng writer (gom transaction) hoặc transaction riêng trên pool.
+     * Chờ chuyển schema như getConnection - không bao giờ chặn main thread vì việc đó.
+     */
+    private static void executeWrite(SqlWork work) throws SQLException {
+        awaitSchema();
+        DatabaseWriter current = writer;
+        if (current != null) {
+            current.execute(work);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (Connection connection = writeDataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                work.run(connection);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            directCommitLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Số liệu ghi DB cho /em admin dbstats: độ trễ commit của từng chế độ để so sánh trước/sau */
+    public static List<String> describeWrites() {
+        List<String> lines = new ArrayList<>();
+        DatabaseWriter current = writer;
+        if (current != null) lines.add(current.describe());
+        lines.add("Commit qua writer: " + writerCommitLatency.describe());
+        lines.add("Commit trực tiếp: " + directCommitLatency.describe());
+        return lines;
+    }
+
+    /** Bộ repository đang dùng (BoosterStorage, leaderboard...) */
+    public static StorageBackend getStorage() {
+        return storage;
+    }
+
+    /**
+     * Chế độ mmap: mở players.dat (lần đầu thì chép player_data + rebirth_data từ SQL sang).
+     * Chạy trước khi chuyển schema, lúc getConnection chưa phải chờ.
+     */
+    private static void openPlayerStore() {
+        FileConfiguration config = EnchantMaterial.getInstance().getConfig();
+        if (!"mmap".equalsIgnoreCase(config.getString("database.player-store", "sql"))) return;
+
+        File file = new File(new File(EnchantMaterial.getInstance().getDataFolder(), "data"), "players.dat");
+        try {
+            MappedPlayerStore store = MappedPlayerStore.open(file,
+                    config.getInt("performance.player_store.initial_capacity", 4096),
+                    EnchantMaterial.getInstance().getLogger());
+            if (store.isNewlyCreated()) {
+                try {
+                    int imported = store.importFrom(storage.players(), storage.rebirths());
+                    EnchantMaterial.getInstance().getLogger().info("Đã chép " + imported + " người chơi từ "
+                            + storage.getDialect().getName() + " sang " + file.getName());
+                } catch (SQLException e) {
+                    // Xoá file chép dở để lần khởi động sau chép lại từ đầu
+                    store.close();
+                    file.delete();
+                    throw e;
+                }
+            }
+            playerStore = store;
+            storage = storage.withPlayerStore(store, store.rebirths());
+            EnchantMaterial.getInstance().getLogger().info("Player store: " + file.getName() + " (" + store.size() + " bản ghi)");
+        } catch (IOException | SQLException e) {
+            EnchantMaterial.getInstance().getLogger().severe("Không mở được " + file.getName()
+                    + ", tạm dùng player_data trong database (có thể cũ hơn file): " + e.getMessage());
+        }
+    }
+
+    // ===== PHẦN 4b: SCHEMA VERSION / MIGRATION =====
+    private static SchemaMigrator newSchemaMigrator() {
+        int batchSize = EnchantMaterial.getInstance().getConfig().getInt("performance.migration.batch_size", 5000);
+        return new SchemaMigrator(writeDataSource, EnchantMaterial.getInstance().getLogger(), batchSize);
+    }
+
+    /** Trước createTables: CREATE TABLE IF NOT EXISTS không được tạo bảng rỗng đè lên bước đổi tên dở */
+    private static void recoverSchemaSwap() throws SQLException {
+        if (!storage.getDialect().supportsUuidMigration()) return;
+        newSchemaMigrator().recoverInterruptedSwaps();
+    }
+
+    private static void startSchemaMigration() throws SQLException {
+        // Chỉ H2 có thể còn bảng cũ uuid VARCHAR từ các bản trước
+        if (!storage.getDialect().supportsUuidMigration()) return;
+        SchemaMigrator migrator = newSchemaMigrator();
+        if (migrator.readVersion() >= SchemaMigrator.CURRENT_VERSION) return;
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        schemaReady = future;
+        Thread thread = new Thread(() -> {
+            try {
+                migrator.migrate();
+            } catch (SQLException e) {
+                // Bảng cũ còn nguyên (H2 tự ép UUID <-> VARCHAR khi bind), thử lại lần khởi động sau
+                EnchantMaterial.getInstance().getLogger().severe(
+                        "Lỗi chuyển schema database, tiếp tục với schema cũ: " + e.getMessage());
+                // Lỗi ngay sau DROP: đổi tên _v2 trước khi ensureTablesExist tạo bảng rỗng
+                try {
+                    migrator.recoverInterruptedSwaps();
+                } catch (SQLException ex) {
+                    EnchantMaterial.getInstance().getLogger().severe("Lỗi khôi phục bảng _v2: " + ex.getMessage());
+                }
+            } finally {
+                future.complete(null);
+            }
+            // Ghi phần dữ liệu đã dồn trong lúc chuyển
+            if (executorAvailable() && hasAnyPendingWrites()) {
+                requestFlush();
+            }
+        }, "EnchantMaterial-SchemaMigration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // ===== PHẦN 4c: LEADERBOARD =====
+    private static void setupLeaderboard() {
+        FileConfiguration config = EnchantMaterial.getInstance().getConfig();
+        leaderboard = new LeaderboardIndex(config.getInt("performance.leaderboard.size", 10),
+                DatabaseManager::requestLeaderboardReconcile);
+
+        rebirthLeaderboard = new RebirthLeaderboard(config.getInt("performance.leaderboard.rebirth_size", 10),
+                DatabaseManager::requestRebirthLeaderboardRefresh);
+
+        // Nạp lần đầu khi schema sẵn sàng, sau đó định kỳ để bắt thay đổi ngoài plugin (sửa DB khi offline...)
+        schemaReady.thenRun(() -> {
+            requestLeaderboardReconcile();
+            requestRebirthLeaderboardRefresh();
+        });
+        long interval = Math.max(10, config.getLong("performance.leaderboard.reconcile_seconds", 60L));
+        executor.scheduleAtFixedRate(() -> {
+            requestLeaderboardReconcile();
+            requestRebirthLeaderboardRefresh();
+        }, interval, interval, TimeUnit.SECONDS);
+
+        RankIndex ranks = new RankIndex();
+        rankIndex = ranks;
+        schemaReady.thenRun(() -> executor.run(() -> buildRankIndex(ranks)));
+    }
+
+    /**
+     * Quét player_data 1 lượt (theo luồng, không gom cả bảng) vào RankIndex.
+     * Điểm đổi trong lúc quét đã được update() trước nên dòng DB của người đó bị bỏ qua.
+     */
+    private static void buildRankIndex(RankIndex ranks) {
+        long start = System.currentTimeMillis();
+        try {
+            storage.players().forEachPoints(ranks::load);
+            // Cache có thể mới hơn DB (dữ liệu chưa ghi)
+            for (Map.Entry<UUID, PlayerData> entry : playerDataCache.entrySet()) {
+                ranks.update(entry.getKey(), entry.getValue().getPoints());
+            }
+            ranks.markReady();
+            EnchantMaterial.getInstance().getLogger().info("Đã nạp thứ hạng sau "
+                    + (System.currentTimeMillis() - start) + "ms - " + ranks.describe());
+        } catch (SQLException e) {
+            EnchantMaterial.getInstance().getLogger().warning("Lỗi nạp thứ hạng người chơi: " + e.getMessage());
+        }
+    }
+
+    static RankIndex getRankIndex() {
+        return rankIndex;
+    }
+
+    /** Dòng thống kê RankIndex cho /em admin dbstats */
+    public static String describeRankings() {
+        RankIndex ranks = rankIndex;
+        return ranks != null ? ranks.describe() : "Rank index: chưa khởi tạo";
+    }
+
+    static LeaderboardIndex getLeaderboard() {
+        return leaderboard;
+    }
+
+    /** Xếp 1 lượt nạp lại top (gộp với lượt đang chờ, tối đa 1 lần / 5 giây) */
+    private static void requestLeaderboardReconcile() {
+        if (!executorAvailable() || !isSchemaReady()) return;
+        long now = System.currentTimeMillis();
+        if (now - lastLeaderboardReconcile < 5000L) return;
+        lastLeaderboardReconcile = now;
+        executor.runCoalesced("leaderboard-reconcile", DatabaseManager::reconcileLeaderboard);
+    }
+
+    private static void reconcileLeaderboard() {
+        LeaderboardIndex index = leaderboard;
+        if (index == null) return;
+        int limit = index.getCapacity();
+        try {
+            List<PlayerRow> top = storage.players().loadTop(limit);
+            Map<UUID, Double> seed = new HashMap<>();
+            for (PlayerRow row : top) {
+                seed.put(row.getUuid(), row.getPoints());
+            }
+            // Cache giữ object đang sống (mới hơn DB khi còn dữ liệu chưa ghi) nên được phủ lên sau
+            Map<UUID, Double> live = new HashMap<>();
+            for (Map.Entry<UUID, PlayerData> entry : playerDataCache.entrySet()) {
+                live.put(entry.getKey(), entry.getValue().getPoints());
+            }
+            index.reset(seed, top.size() < limit, live);
+        } catch (SQLException e) {
+            EnchantMaterial.getInstance().getLogger().warning("Lỗi nạp bảng xếp hạng: " + e.getMessage());
+        }
+    }
+
+    static RebirthLeaderboard getRebirthLeaderboard() {
+        return rebirthLeaderboard;
+    }
+
+    /** Xếp 1 lượt nạp lại top chuyển sinh (gộp với lượt đang chờ, tối đa 1 lần / 5 giây) */
+    private static void requestRebirthLeaderboardRefresh() {
+        if (!executorAvailable() || !isSchemaReady()) return;
+        long now = System.currentTimeMillis();
+        if (now - lastRebirthLeaderboardRefresh < 5000L) return;
+        lastRebirthLeaderboardRefresh = now;
+        executor.runCoalesced("rebirth-leaderboard-refresh", DatabaseManager::refreshRebirthLeaderboard);
+    }
+
+    private static void refreshRebirthLeaderboard() {
+        RebirthLeaderboard board = rebirthLeaderboard;
+        if (board == null) return;
+        int limit = board.getCapacity();
+        try {
+            List<RebirthData> top = storage.rebirths().loadTop(limit);
+            board.reset(top, top.size() < limit, new ArrayList<>(rebirthDataCache.values()));
+        } catch (SQLException e) {
+            EnchantMaterial.getInstance().getLogger().warning("Lỗi nạp top chuyển sinh: " + e.getMessage());
+        }
+    }
+
+    /** Điểm của 1 người chơi vừa đổi: cập nhật top-N và thứ hạng (O(log n), không chạm DB) */
+    private static void updateRankings(UUID uuid, double points) {
+        LeaderboardIndex index = leaderboard;
+        if (index != null) index.update(uuid, points);
+        RankIndex ranks = rankIndex;
+        if (ranks != null) ranks.update(uuid, points);
+    }
+
+    public static boolean isSchemaReady() {
+        return schemaReady.isDone();
+    }
 
-        dataSource = new HikariDataSource(config);
+    /** Chạy task trên main thread khi schema đã sẵn sàng (ngay tick sau nếu đã xong) */
+    public static void whenSchemaReady(Runnable task) {
+        schemaReady.thenRun(() -> Bukkit.getScheduler().runTask(EnchantMaterial.getInstance(), task));
+    }
+
+    /** Chờ chuyển schema xong - không bao giờ chặn main thread */
+    private static void awaitSchema() throws SQLException {
+        CompletableFuture<Void> future = schemaReady;
+        if (future.isDone()) return;
+        if (Bukkit.isPrimaryThread()) {
+            throw new SQLException("Database đang chuyển đổi schema, thử lại sau");
+        }
+        future.join();
     }
 
     // ===== PHẦN 5: BATCH PROCESSOR =====
@@ -87,143 +500,469 @@ public class DatabaseManager {
 
     // Tối ưu batch processor
     private static void startBatchProcessor() {
-        batchExecutor.scheduleAtFixedRate(() -> {
-            if (!pendingUpdates.isEmpty()) {
+        // Có journal thì có thể kéo dài chu kỳ batch mà không sợ mất dữ liệu khi crash
+        long interval = Math.max(1, EnchantMaterial.getInstance().getConfig()
+                .getInt("performance.batch_interval_seconds", 5));
+        executor.scheduleAtFixedRate(() -> {
+            if (hasAnyPendingWrites()) {
+                requestFlush();
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    // ===== PHẦN 5b: WRITE-AHEAD JOURNAL =====
+    /** Epoch journal DB đã commit; -1 nếu không đọc được (replay toàn bộ journal) */
+    private static long readCommittedJournalEpoch() {
+        try {
+            return storage.players().committedJournalEpoch();
+        } catch (SQLException e) {
+            EnchantMaterial.getInstance().getLogger().warning(
+                    "Không đọc được epoch journal, replay toàn bộ journal (có thể cộng trùng điểm): " + e.getMessage());
+            return -1L;
+        }
+    }
+
+    private static void openJournal(long committedEpoch) {
+        FileConfiguration config = EnchantMaterial.getInstance().getConfig();
+        if (!config.getBoolean("performance.journal.enabled", true)) return;
+
+        File dataFolder = new File(EnchantMaterial.getInstance().getDataFolder(), "data");
+        File file = new File(dataFolder, "pending.journal");
+        int sizeBytes = Math.max(1, config.getInt("performance.journal.size_mb", 4)) * 1024 * 1024;
+        long fsyncMillis = Math.max(10, config.getLong("performance.journal.fsync_interval_ms", 200L));
+
+        try {
+            PlayerJournal opened = PlayerJournal.open(file, sizeBytes, committedEpoch);
+            // Chạy lúc khởi động, trước khi gameplay/luồng batch chạm tới sổ
+            int generation = pendingGate.current();
+            int replayed = opened.replay(committedEpoch, generation, new PlayerJournal.Visitor() {
+                @Override
+                public void delta(UUID uuid, double delta) {
+                    pointsLedger.add(generation, uuid, delta);
+                }
+
+                @Override
+                public void absolute(UUID uuid, int level, double points) {
+                    pointsLedger.discard(uuid);
+                    pendingUpdates.put(uuid, new PendingRow(uuid, level, points, generation));
+                }
+
+                @Override
+                public void claim(UUID uuid, int level) {
+                    addPendingClaim(uuid, level);
+                }
+            });
+            journal = opened;
+
+            if (replayed > 0) {
+                EnchantMaterial.getInstance().getLogger().info(
+                        "Khôi phục " + replayed + " thay đổi chưa lưu từ journal, đang ghi vào database...");
                 processBatchUpdates();
             }
-        }, 5, 5, TimeUnit.SECONDS); // Chạy mỗi 5 giây thay vì 3 giây
+
+            // fsync nhẹ, chạy thẳng trên luồng scheduler
+            executor.scheduleAtFixedRate(() -> {
+                PlayerJournal j = journal;
+                if (j != null) j.force();
+            }, fsyncMillis, fsyncMillis, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            EnchantMaterial.getInstance().getLogger().warning(
+                    "Không mở được journal " + file.getName() + ", chạy không có journal: " + e.getMessage());
+        }
     }
 
-    // Thêm lock để đồng bộ hóa
-    private static final Object BATCH_LOCK = new Object();
+    // Các hàm journal* gọi trong enter/exit của pendingGate, với đúng thế hệ đã vào.
+    // Quá 75% thì xin ngay 1 lượt ghi (không chờ chu kỳ batch); vẫn đầy thì cảnh báo.
+    private static void journalDelta(int generation, UUID uuid, double delta) {
+        PlayerJournal j = journal;
+        if (j != null) afterAppend(j, j.appendDelta(generation, uuid, delta));
+    }
 
-    private static void processBatchUpdates() {
-        synchronized (BATCH_LOCK) {
-            if (pendingUpdates.isEmpty()) return;
+    private static void journalAbsolute(int generation, PendingRow row) {
+        PlayerJournal j = journal;
+        if (j != null) afterAppend(j, j.appendAbsolute(generation, row.uuid, row.level, row.points));
+    }
 
-            // KHÔNG clear ngay, mà copy trước
-            Map<UUID, PlayerData> toUpdate = new HashMap<>(pendingUpdates);
+    private static void journalClaim(int generation, UUID uuid, int level) {
+        PlayerJournal j = journal;
+        if (j != null) afterAppend(j, j.appendClaim(generation, uuid, level));
+    }
 
-            try (Connection connection = dataSource.getConnection()) {
-                connection.setAutoCommit(false);
+    private static void afterAppend(PlayerJournal j, boolean appended) {
+        if (!appended) warnJournalOverflow();
+        if (j.needsRewrite() && journalRewriteRequested.compareAndSet(false, true) && executorAvailable()) {
+            requestFlush();
+        }
+    }
 
-                String sql = "MERGE INTO player_data KEY(uuid) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    private static void warnJournalOverflow() {
+        if (journalOverflowWarned) return;
+        journalOverflowWarned = true;
+        EnchantMaterial.getInstance().getLogger().warning(
+                "Journal đầy, một phần thay đổi chưa được ghi - tăng performance.journal.size_mb");
+    }
 
-                    for (PlayerData data : toUpdate.values()) {
-                        statement.setString(1, data.getUuid().toString());
-                        statement.setInt(2, data.getLevel());
-                        statement.setDouble(3, data.getPoints());
-                        statement.addBatch();
-                    }
+    // Chỉ các luồng ghi DB chờ nhau; gameplay (addPointsAsync/savePlayerDataAsync) không lấy lock này - chỉ vào
+    // pendingGate, luồng flush chờ tối đa các lượt ghi sổ đang dở. Lượt load cũng không lấy (xem inFlight).
+    private static final Object FLUSH_LOCK = new Object();
+    // Lượt ghi DB đang chạy: delta đã rút khỏi sổ mà DB chưa commit. Mỗi lượt ghi (và mỗi lúc rảnh) 1 object mới,
+    // nên lượt load so identity là biết có lượt ghi nào bắt đầu xen giữa lúc đọc dòng và lúc cộng sổ hay không.
+    private static volatile InFlight inFlight = InFlight.idle();
+
+    private static final class InFlight {
+        private volatile Set<UUID> drained; // null: đang rút sổ
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        static InFlight idle() {
+            InFlight flight = new InFlight();
+            flight.drained = Collections.emptySet();
+            flight.done.complete(null);
+            return flight;
+        }
 
-                    statement.executeBatch();
-                    connection.commit();
+        /** Lượt ghi này có delta của ai trong nhóm không (chờ phần rút sổ xong - vài µs) */
+        boolean affects(Collection<UUID> uuids) {
+            Set<UUID> set;
+            while ((set = drained) == null) {
+                Thread.onSpinWait();
+            }
+            for (UUID uuid : uuids) {
+                if (set.contains(uuid)) return true;
+            }
+            return false;
+        }
 
-                    // CHỈ clear sau khi save thành công
-                    for (UUID uuid : toUpdate.keySet()) {
-                        pendingUpdates.remove(uuid);
-                    }
+        boolean contains(UUID uuid) {
+            Set<UUID> set = drained;
+            return set != null && set.contains(uuid);
+        }
 
-                    // Update cache
-                    for (PlayerData data : toUpdate.values()) {
-                        playerDataCache.put(data.getUuid(), data);
-                        cacheTimestamps.put(data.getUuid(), System.currentTimeMillis());
-                    }
+        void finish() {
+            if (drained == null) drained = Collections.emptySet();
+            done.complete(null);
+        }
+    }
 
-                } catch (SQLException e) {
-                    connection.rollback();
-                    throw e;
+    private static final class PendingRow {
+        final UUID uuid;
+        final int level;
+        final double points;
+        final PlayerData data; // null với bản ghi replay từ journal
+        final long version;    // version của data lúc chụp
+        final int generation;  // thế hệ pendingGate lúc xếp (quyết định lượt flush nào ghi bản ghi này)
+
+        PendingRow(UUID uuid, int level, double points, int generation) {
+            this(uuid, level, points, null, 0L, generation);
+        }
+
+        PendingRow(UUID uuid, int level, double points, PlayerData data, long version, int generation) {
+            this.uuid = uuid;
+            this.level = level;
+            this.points = points;
+            this.data = data;
+            this.version = version;
+            this.generation = generation;
+        }
+
+        /** Đã có lần ghi khác (savePlayerDataSync) phủ version này */
+        boolean alreadyPersisted() {
+            return data != null && version <= data.getPersistedVersion();
+        }
+
+        void markPersisted() {
+            if (data != null) data.markPersisted(version);
+        }
+    }
+
+    private static void processBatchUpdates() {
+        flushPending(null);
+    }
+
+    /** Ghi ngay 1 nhóm người chơi (bản ghi + delta) trong 1 transaction */
+    private static void flushPlayersSync(Collection<UUID> uuids) {
+        flushPending(uuids);
+    }
+
+    /**
+     * 1 lượt ghi DB: đóng thế hệ hiện tại của pendingGate (chỉ chờ các lượt ghi sổ đang dở), rút delta và
+     * chụp bản ghi của thế hệ đó, ghi lại journal sang vùng kia rồi mới ghi DB cùng flushEpoch.
+     * Gameplay chạy tiếp ở thế hệ mới suốt lượt ghi; bản ghi/delta thế hệ mới để lượt sau.
+     *
+     * @param only null = mọi người chơi; khác null = chỉ ghi nhóm này, phần còn lại giữ nguyên chờ
+     */
+    private static void flushPending(Collection<UUID> only) {
+        if (!isSchemaReady()) return; // giữ trong pendingUpdates/journal tới khi chuyển schema xong
+        synchronized (FLUSH_LOCK) {
+            // Công bố TRƯỚC khi rút sổ: lượt load đọc sổ sau lúc này sẽ thấy identity đổi và đọc lại
+            InFlight flight = new InFlight();
+            inFlight = flight;
+            try {
+                flushPendingLocked(only, flight);
+            } finally {
+                inFlight = InFlight.idle();
+                flight.finish();
+            }
+        }
+    }
+
+    private static void flushPendingLocked(Collection<UUID> only, InFlight flight) {
+        PlayerJournal target = journal;
+        int next = pendingGate.current() + 1;
+        // Mở lượt ghi lại TRƯỚC khi đổi thế hệ: append thế hệ mới nhận pendingEpoch và được chép sang
+        PlayerJournal.Rewrite rewrite = target != null ? target.beginRewrite(next) : null;
+        int closed = pendingGate.advance();
+
+        Map<UUID, PendingRow> rows = new HashMap<>();
+        List<PendingRow> keptRows = new ArrayList<>();
+        for (PendingRow row : pendingUpdates.values()) {
+            if (row.generation > closed) continue; // xếp sau lúc đóng thế hệ: journal tự chép sang
+            if (row.alreadyPersisted()) {
+                pendingUpdates.remove(row.uuid, row);
+            } else if (only == null || only.contains(row.uuid)) {
+                rows.put(row.uuid, row);
+            } else {
+                keptRows.add(row);
+            }
+        }
+        Map<UUID, Double> deltas = pointsLedger.drain(closed);
+        flight.drained = new HashSet<>(deltas.keySet());
+        Map<UUID, Double> keptDeltas = new HashMap<>();
+        if (only != null) {
+            for (Iterator<Map.Entry<UUID, Double>> it = deltas.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<UUID, Double> entry = it.next();
+                if (!only.contains(entry.getKey())) {
+                    keptDeltas.put(entry.getKey(), entry.getValue());
+                    it.remove();
                 }
-            } catch (SQLException e) {
-                EnchantMaterial.getInstance().getLogger().warning("Lỗi batch update: " + e.getMessage());
-                // Không cần putAll vì chưa remove khỏi pendingUpdates
             }
+            restoreDeltas(keptDeltas);
+        }
+        Map<UUID, Set<Integer>> claims = snapshotClaims(only);
+        boolean writeRows = !rows.isEmpty() || !deltas.isEmpty();
+        // Không có điểm để ghi nhưng vùng đã quá 75% (vd chỉ toàn mốc thưởng): vẫn ghi lại để dọn chỗ
+        boolean compact = target != null && target.needsRewrite();
+        if (!writeRows && claims.isEmpty() && !compact) return;
+
+        long flushEpoch = 0L;
+        if (target != null && (writeRows || compact)) {
+            if (!rewriteJournal(target, rewrite, rows.values(), deltas, keptRows, keptDeltas)) {
+                // Lượt ghi lại thiếu chỗ thì KHÔNG đổi vùng: vùng cũ vẫn hiệu lực và giữ toàn bộ dữ liệu,
+                // nên cũng không ghi DB với flushEpoch này (replay sẽ cộng trùng)
+                restoreDeltas(deltas);
+                EnchantMaterial.getInstance().getLogger().warning(
+                        "Journal không đủ chỗ cho lượt ghi lại, hoãn ghi điểm tới lượt sau - tăng performance.journal.size_mb");
+                writeClaims(claims);
+                return;
+            }
+            flushEpoch = rewrite.flushEpoch;
+        }
+        if (!writeRows) {
+            writeClaims(claims);
+            return;
         }
+
+        try {
+            storage.players().write(toPlayerRows(rows.values()), deltas, DatabaseManager::levelForNewRow, flushEpoch);
+
+            // CHỈ bỏ đúng bản ghi đã ghi (CAS theo object) - bản mới hơn xếp vào giữa chừng vẫn được giữ,
+            // và persistedVersion chỉ tiến tới version đã chụp nên thay đổi sau đó vẫn còn dirty
+            for (PendingRow row : rows.values()) {
+                row.markPersisted();
+                pendingUpdates.remove(row.uuid, row);
+            }
+        } catch (SQLException e) {
+            EnchantMaterial.getInstance().getLogger().warning(only == null
+                    ? "Lỗi batch update: " + e.getMessage()
+                    : "Lỗi save dữ liệu " + only.size() + " người chơi: " + e.getMessage());
+            // Bản ghi tuyệt đối vẫn còn trong pendingUpdates; trả delta về sổ.
+            // Journal vẫn giữ chúng (epoch chưa commit), lượt ghi lại sau gắn epoch mới.
+            restoreDeltas(deltas);
+        }
+        writeClaims(claims);
+    }
+
+    /**
+     * Ghi phần chụp vào vùng journal chưa dùng, đổi vùng rồi force header (gọi trong FLUSH_LOCK).
+     * Phải xong TRƯỚC khi ghi DB: replay bỏ bản ghi flushEpoch khi DB đã commit epoch đó.
+     *
+     * @return false nếu không đổi được vùng (thiếu chỗ)
+     */
+    private static boolean rewriteJournal(PlayerJournal target, PlayerJournal.Rewrite rewrite,
+                                          Collection<PendingRow> flushRows, Map<UUID, Double> flushDeltas,
+                                          Collection<PendingRow> keptRows, Map<UUID, Double> keptDeltas) {
+        // Bản ghi tuyệt đối trước, delta sau (delta cùng thế hệ trong ledger luôn mới hơn bản ghi tuyệt đối)
+        for (PendingRow row : flushRows) {
+            rewrite.flushing(PlayerJournal.PendingKind.ABSOLUTE, row.uuid, row.level, row.points);
+        }
+        for (Map.Entry<UUID, Double> entry : flushDeltas.entrySet()) {
+            rewrite.flushing(PlayerJournal.PendingKind.DELTA, entry.getKey(), 0, entry.getValue());
+        }
+        for (PendingRow row : keptRows) {
+            rewrite.pending(PlayerJournal.PendingKind.ABSOLUTE, row.uuid, row.level, row.points);
+        }
+        for (Map.Entry<UUID, Double> entry : keptDeltas.entrySet()) {
+            rewrite.pending(PlayerJournal.PendingKind.DELTA, entry.getKey(), 0, entry.getValue());
+        }
+        // Mọi mốc thưởng còn chờ (kể cả mốc sắp ghi: writeClaims chạy sau, replay ghi lại mốc đã có cũng không sao)
+        for (Map.Entry<UUID, Set<Integer>> entry : pendingClaims.entrySet()) {
+            for (int level : entry.getValue()) {
+                rewrite.pending(PlayerJournal.PendingKind.CLAIM, entry.getKey(), level, 0D);
+            }
+        }
+        rewrite.forceRegion();
+        if (!target.commit(rewrite)) return false;
+        rewrite.forceHeader();
+        journalOverflowWarned = false;
+        journalRewriteRequested.set(false);
+        return true;
+    }
+
+    /** Chép các mốc thưởng đang chờ (null = mọi người chơi); giữ nguyên trong pendingClaims/journal tới khi ghi xong */
+    private static Map<UUID, Set<Integer>> snapshotClaims(Collection<UUID> uuids) {
+        Map<UUID, Set<Integer>> claims = new HashMap<>();
+        if (pendingClaims.isEmpty()) return claims;
+        for (Map.Entry<UUID, Set<Integer>> entry : pendingClaims.entrySet()) {
+            if (uuids != null && !uuids.contains(entry.getKey())) continue;
+            Set<Integer> levels = new HashSet<>(entry.getValue());
+            if (!levels.isEmpty()) claims.put(entry.getKey(), levels);
+        }
+        return claims;
+    }
+
+    /**
+     * Ghi các mốc đã chép bằng 1 lô upsert; lỗi thì để nguyên trong pendingClaims cho batch sau.
+     * Bản ghi nhận thưởng trong journal không cần epoch: replay ghi lại mốc đã có cũng không sao.
+     */
+    private static void writeClaims(Map<UUID, Set<Integer>> claims) {
+        if (claims.isEmpty()) return;
+        try {
+            storage.rewardClaims().claimAll(claims);
+        } catch (SQLException e) {
+            EnchantMaterial.getInstance().getLogger().warning("Lỗi ghi mốc thưởng đã nhận: " + e.getMessage());
+            return;
+        }
+        for (Map.Entry<UUID, Set<Integer>> entry : claims.entrySet()) {
+            pendingClaims.computeIfPresent(entry.getKey(), (uuid, levels) -> {
+                levels.removeAll(entry.getValue());
+                return levels.isEmpty() ? null : levels;
+            });
+        }
+    }
+
+    /** Cùng khoá entry với writeClaims: mốc không rơi vào Set vừa bị bỏ khỏi map */
+    private static void addPendingClaim(UUID uuid, int level) {
+        pendingClaims.compute(uuid, (k, levels) -> {
+            Set<Integer> out = levels != null ? levels : ConcurrentHashMap.newKeySet();
+            out.add(level);
+            return out;
+        });
+    }
+
+    private static List<PlayerRow> toPlayerRows(Collection<PendingRow> rows) {
+        List<PlayerRow> out = new ArrayList<>(rows.size());
+        for (PendingRow row : rows) {
+            out.add(new PlayerRow(row.uuid, row.level, row.points));
+        }
+        return out;
+    }
+
+    /** Level cho dòng mới tạo từ delta điểm (người chơi chưa có dòng trong DB) */
+    private static int levelForNewRow(UUID uuid) {
+        PlayerData cached = playerDataCache.get(uuid);
+        return cached != null ? cached.getLevel() : 1;
+    }
+
+    /** Trả delta đã rút về sổ (thế hệ hiện tại); journal vẫn giữ chúng tới lượt ghi lại sau */
+    private static void restoreDeltas(Map<UUID, Double> deltas) {
+        if (deltas.isEmpty()) return;
+        int generation = pendingGate.enter();
+        try {
+            for (Map.Entry<UUID, Double> entry : deltas.entrySet()) {
+                // Bản ghi tuyệt đối xếp sau lúc rút (thế hệ hiện tại) đã gồm delta này thì không trả lại
+                pendingUpdates.compute(entry.getKey(), (uuid, row) -> {
+                    if (row == null || row.generation != generation) {
+                        pointsLedger.add(generation, uuid, entry.getValue());
+                    }
+                    return row;
+                });
+            }
+        } finally {
+            pendingGate.exit(generation);
+        }
+    }
+
+    private static boolean hasPendingWrites(UUID uuid) {
+        return pendingUpdates.containsKey(uuid) || pointsLedger.hasPending(uuid) || pendingClaims.containsKey(uuid)
+                || inFlight.contains(uuid);
+    }
+
+    private static boolean hasAnyPendingWrites() {
+        return !pendingUpdates.isEmpty() || !pointsLedger.isEmpty() || !pendingClaims.isEmpty();
     }
 
     // ===== PHẦN 6: CACHE CLEANUP - SỬA LẠI =====
     private static void startCacheCleanup() {
-        batchExecutor.scheduleAtFixedRate(() -> {
-            synchronized (BATCH_LOCK) {
-                long currentTime = System.currentTimeMillis();
+        executor.scheduleAtFixedRate(() -> executor.runCoalesced("cache-cleanup", () -> {
+            long currentTime = System.currentTimeMillis();
 
-                // Save pending updates trước
-                if (!pendingUpdates.isEmpty()) {
-                    processBatchUpdates();
-                }
+            // Save pending updates trước
+            if (hasAnyPendingWrites()) {
+                processBatchUpdates();
+            }
 
-                // Cleanup cache an toàn hơn
-                List<UUID> toRemove = new ArrayList<>();
-                for (Map.Entry<UUID, Long> entry : cacheTimestamps.entrySet()) {
-                    UUID uuid = entry.getKey();
-                    if (currentTime - entry.getValue() > CACHE_DURATION &&
-                            !pendingUpdates.containsKey(uuid)) {
-                        toRemove.add(uuid);
-                    }
+            // Cleanup cache an toàn hơn - người chơi còn online (đứng AFK) thì giữ: đường đập block
+            // và kiểm tra lên cấp chỉ đọc cache, không tự nạp lại
+            List<UUID> toRemove = new ArrayList<>();
+            for (Map.Entry<UUID, Long> entry : cacheTimestamps.entrySet()) {
+                UUID uuid = entry.getKey();
+                if (currentTime - entry.getValue() > CACHE_DURATION && !hasPendingWrites(uuid)
+                        && Bukkit.getPlayer(uuid) == null) {
+                    toRemove.add(uuid);
                 }
+            }
 
-                for (UUID uuid : toRemove) {
-                    playerDataCache.remove(uuid);
-                    claimedRewardsCache.remove(uuid.toString());
-                    cacheTimestamps.remove(uuid);
-                    rebirthDataCache.remove(uuid);
-                    rebirthCacheTimestamps.remove(uuid);
-                }
+            for (UUID uuid : toRemove) {
+                // Cùng khoá entry với addPointsAsync: delta xen vào giữa chừng thì giữ object lại
+                playerDataCache.computeIfPresent(uuid, (k, data) -> {
+                    if (hasPendingWrites(k)) return data;
+                    pointsLedger.evict(k);
+                    return null;
+                });
+                claimedRewardsCache.remove(uuid);
+                cacheTimestamps.remove(uuid);
+                rebirthDataCache.remove(uuid);
+                rebirthCacheTimestamps.remove(uuid);
             }
-        }, 60, 60, TimeUnit.SECONDS);
+        }), 60, 60, TimeUnit.SECONDS);
     }
 
     // ===== THÊM PHƯƠNG THỨC SAVE NGAY LẬP TỨC CHO DỮ LIỆU QUAN TRỌNG =====
     public static void savePlayerDataImmediate(PlayerData playerData) {
-        // Save ngay vào database
+        // Save ngay vào database (savePlayerDataSync tự bỏ bản ghi/delta đang chờ)
         savePlayerDataSync(playerData);
-
-        // Xóa khỏi pending updates vì đã save rồi
-        pendingUpdates.remove(playerData.getUuid());
     }
 
     // ===== SỬA PHƯƠNG THỨC getPlayerDataAsync =====
     public static CompletableFuture<PlayerData> getPlayerDataAsync(UUID uuid) {
-        // Kiểm tra pending updates trước
-        PlayerData pending = pendingUpdates.get(uuid);
-        if (pending != null) {
-            // Có dữ liệu pending, trả về ngay
-            return CompletableFuture.completedFuture(pending);
-        }
-
-        // Kiểm tra cache
+        // Kiểm tra cache (còn dữ liệu chưa ghi thì cache luôn là bản mới nhất)
         PlayerData cached = playerDataCache.get(uuid);
         Long cacheTime = cacheTimestamps.get(uuid);
 
-        if (cached != null && cacheTime != null &&
-                System.currentTimeMillis() - cacheTime < CACHE_DURATION) {
+        if (cached != null && (hasPendingWrites(uuid) || (cacheTime != null &&
+                System.currentTimeMillis() - cacheTime < CACHE_DURATION))) {
             return CompletableFuture.completedFuture(cached);
         }
 
-        // Load từ database
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection connection = dataSource.getConnection()) {
-                String query = "SELECT * FROM player_data WHERE uuid = ?";
-                try (PreparedStatement statement = connection.prepareStatement(query)) {
-                    statement.setString(1, uuid.toString());
-                    ResultSet resultSet = statement.executeQuery();
-
-                    PlayerData data;
-                    if (resultSet.next()) {
-                        int level = resultSet.getInt("level");
-                        double points = resultSet.getDouble("points");
-                        data = new PlayerData(uuid, level, points);
-                    } else {
-                        data = new PlayerData(uuid, 1, 0.0);
-                    }
-
-                    // Cache kết quả
-                    playerDataCache.put(uuid, data);
-                    cacheTimestamps.put(uuid, System.currentTimeMillis());
+        // Vừa thoát và đang ghi dở: chờ ghi xong rồi mới đọc, tránh đọc dòng cũ
+        CompletableFuture<Void> quitFlush = quitFlushes.get(uuid);
+        if (quitFlush != null && !quitFlush.isDone()) {
+            return quitFlush.thenCompose(ignored -> getPlayerDataAsync(uuid));
+        }
 
-                    return data;
-                }
+        // Load từ database (nhiều yêu cầu cùng người chơi khi đang chờ được gộp làm 1)
+        return executor.supplyCoalesced("player:" + uuid, () -> {
+            try {
+                return loadPlayerData(uuid);
             } catch (SQLException e) {
                 EnchantMaterial.getInstance().getLogger().warning("Lỗi load player data: " + e.getMessage());
                 return new PlayerData(uuid, 1, 0.0);
@@ -231,13 +970,220 @@ public class DatabaseManager {
         });
     }
 
+    /**
+     * Đọc dòng DB rồi cộng phần còn trong sổ, không lấy FLUSH_LOCK. Chỉ chờ lượt ghi đang chạy khi nó giữ
+     * delta của chính người chơi này (đã rời sổ, DB chưa commit); lượt ghi bắt đầu xen giữa thì đọc lại.
+     */
+    private static PlayerData loadPlayerData(UUID uuid) throws SQLException {
+        List<UUID> one = Collections.singletonList(uuid);
+        while (true) {
+            InFlight flight = awaitFlight(one);
+            PlayerData loaded = cacheLoaded(uuid, storage.players().load(uuid), System.currentTimeMillis(), flight);
+            if (loaded != null) return loaded;
+        }
+    }
+
+    /** Lượt ghi hiện tại, sau khi đã chờ xong lượt ghi nào đang giữ delta của nhóm người chơi này */
+    private static InFlight awaitFlight(Collection<UUID> uuids) {
+        while (true) {
+            InFlight flight = inFlight;
+            if (!flight.affects(uuids)) return flight;
+            flight.done.join();
+        }
+    }
+
+    /**
+     * Đưa dòng vừa đọc vào cache. addPointsAsync khi người chơi chưa load chỉ ghi delta vào sổ, nên
+     * object mới = dòng DB + delta còn trong sổ; object đang sống còn dữ liệu chưa ghi thì giữ nguyên.
+     * compute giữ khoá entry cùng addPointsAsync nên delta không lọt giữa lúc đọc sổ và lúc đặt object.
+     *
+     * @param flight lượt ghi lúc đọc dòng ({@link #awaitFlight})
+     * @return null nếu có lượt ghi mới bắt đầu sau lúc đọc dòng (sổ có thể đã rút mà dòng chưa có): đọc lại
+     */
+    private static PlayerData cacheLoaded(UUID uuid, PlayerRow row, long now, InFlight flight) {
+        boolean[] replaced = new boolean[1];
+        boolean[] stale = new boolean[1];
+        PlayerData loaded = playerDataCache.compute(uuid, (k, cached) -> {
+            if (cached != null && hasPendingWrites(k)) return cached;
+
+            double unflushed = pointsLedger.pending(k);
+            // Đọc sổ TRƯỚC rồi mới so: lượt ghi công bố inFlight trước khi rút sổ
+            if (inFlight != flight) {
+                stale[0] = true;
+                return cached;
+            }
+            PlayerData data = toPlayerData(k, row);
+            if (unflushed != 0D) data.addLedgerPoints(unflushed);
+            replaced[0] = true;
+            return data;
+        });
+        if (stale[0]) return null;
+        if (replaced[0]) cacheTimestamps.put(uuid, now);
+        return loaded;
+    }
+
+    /** Dòng DB -> PlayerData đã khớp DB (không dirty); chưa có dòng thì dữ liệu mặc định */
+    private static PlayerData toPlayerData(UUID uuid, PlayerRow row) {
+        if (row == null) return new PlayerData(uuid, 1, 0.0);
+        PlayerData data = new PlayerData(uuid, row.getLevel(), row.getPoints());
+        data.markPersisted(data.getVersion());
+        return data;
+    }
+
+    // ===== LOAD HÀNG LOẠT (startup / reload / nhiều người vào cùng lúc) =====
+
+    /**
+     * Load player_data, rebirth_data và level_rewards cho cả nhóm người chơi bằng các truy vấn
+     * WHERE uuid IN (...) chia lô theo performance.batch_load_chunk_size; 3 bảng chạy song song
+     * và ghi vào cache 1 lượt. Object đang sống (còn dữ liệu chưa ghi) trong cache không bị đè.
+     * Booster không nằm ở đây: BoosterManager đã giữ toàn bộ booster còn hạn trong bộ nhớ.
+     */
+    public static CompletableFuture<Map<UUID, PlayerData>> getPlayerDataBatchAsync(Collection<UUID> uuids) {
+        if (uuids == null || uuids.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(uuids));
+        int chunkSize = Math.max(1, EnchantMaterial.getInstance().getConfig()
+                .getInt("performance.batch_load_chunk_size", 500));
+
+        // Ai vừa thoát và đang được ghi thì chờ ghi xong trước khi đọc
+        List<CompletableFuture<Void>> barriers = new ArrayList<>();
+        for (UUID uuid : ids) {
+            CompletableFuture<Void> quitFlush = quitFlushes.get(uuid);
+            if (quitFlush != null && !quitFlush.isDone()) barriers.add(quitFlush);
+        }
+        CompletableFuture<Void> ready = CompletableFuture.allOf(barriers.toArray(new CompletableFuture[0]));
+
+        CompletableFuture<Map<UUID, PlayerData>> players = ready.thenCompose(ignored ->
+                executor.supply(() -> loadPlayerDataBatch(ids, chunkSize)));
+        CompletableFuture<Void> rebirths = ready.thenCompose(ignored ->
+                executor.run(() -> loadRebirthDataBatch(ids, chunkSize)));
+        CompletableFuture<Void> rewards = ready.thenCompose(ignored ->
+                executor.run(() -> loadClaimedLevelsBatch(ids, chunkSize)));
+
+        return CompletableFuture.allOf(players, rebirths, rewards).thenApply(ignored -> players.join());
+    }
+
+    private static Map<UUID, PlayerData> loadPlayerDataBatch(List<UUID> ids, int chunkSize) {
+        Map<UUID, PlayerData> result = new HashMap<>();
+        List<UUID> toQuery = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (UUID uuid : ids) {
+            // Cùng quy tắc với getPlayerDataAsync: cache còn hạn hoặc còn dữ liệu chưa ghi thì dùng luôn
+            PlayerData cached = playerDataCache.get(uuid);
+            Long cacheTime = cacheTimestamps.get(uuid);
+            if (cached != null && (hasPendingWrites(uuid) || (cacheTime != null && now - cacheTime < CACHE_DURATION))) {
+                result.put(uuid, cached);
+            } else {
+                toQuery.add(uuid);
+            }
+        }
+        if (toQuery.isEmpty()) return result;
+
+        // Như loadPlayerData: không lấy FLUSH_LOCK, ai bị lượt ghi bắt đầu xen giữa thì đọc lại
+        while (!toQuery.isEmpty()) {
+            InFlight flight = awaitFlight(toQuery);
+            Map<UUID, PlayerRow> loaded;
+            try {
+                loaded = storage.players().loadAll(toQuery, chunkSize);
+            } catch (SQLException e) {
+                EnchantMaterial.getInstance().getLogger().warning("Lỗi load player data hàng loạt: " + e.getMessage());
+                return result;
+            }
+
+            List<UUID> retry = new ArrayList<>();
+            for (UUID uuid : toQuery) {
+                PlayerData data = cacheLoaded(uuid, loaded.get(uuid), now, flight);
+                if (data != null) {
+                    result.put(uuid, data);
+                } else {
+                    retry.add(uuid);
+                }
+            }
+            toQuery = retry;
+        }
+        return result;
+    }
+
+    private static void loadRebirthDataBatch(List<UUID> ids, int chunkSize) {
+        Map<UUID, RebirthData> loaded;
+        try {
+            loaded = storage.rebirths().loadAll(ids, chunkSize);
+        } catch (SQLException e) {
+            EnchantMaterial.getInstance().getLogger().warning("Lỗi load rebirth data hàng loạt: " + e.getMessage());
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (UUID uuid : ids) {
+            Long ts = rebirthCacheTimestamps.get(uuid);
+            if (rebirthDataCache.containsKey(uuid) && ts != null && now - ts < CACHE_DURATION) continue;
+            RebirthData data = loaded.get(uuid);
+            rebirthDataCache.put(uuid, data != null ? data : new RebirthData(uuid, 0, 0));
+            rebirthCacheTimestamps.put(uuid, now);
+        }
+    }
+
+    private static void loadClaimedLevelsBatch(List<UUID> ids, int chunkSize) {
+        Map<UUID, Set<Integer>> loaded;
+        try {
+            loaded = storage.rewardClaims().loadAll(ids, chunkSize);
+        } catch (SQLException e) {
+            EnchantMaterial.getInstance().getLogger().warning("Lỗi load claimed rewards hàng loạt: " + e.getMessage());
+            return;
+        }
+
+        for (UUID uuid : ids) {
+            // putIfAbsent: không đè cache đã có (claim đang chạy có thể chưa nằm trong kết quả truy vấn)
+            Set<Integer> levels = loaded.get(uuid);
+            claimedRewardsCache.putIfAbsent(uuid, toClaimedLevels(uuid, levels));
+        }
+    }
+
     // ===== THÊM PHƯƠNG THỨC ĐỒNG BỘ DỮ LIỆU KHI PLAYER THOÁT =====
-    public static void onPlayerQuit(UUID uuid) {
-        // Force save dữ liệu của player khi họ thoát
-        PlayerData pending = pendingUpdates.get(uuid);
-        if (pending != null) {
-            savePlayerDataSync(pending);
-            pendingUpdates.remove(uuid);
+    /**
+     * Xếp lượt ghi dữ liệu của người chơi vừa thoát - main thread không chạm JDBC.
+     * Nhiều lượt thoát trong cùng lúc được gom vào 1 transaction. Future hoàn tất khi đã ghi xong;
+     * vào lại trước đó thì getPlayerDataAsync chờ future này thay vì đọc dòng cũ.
+     */
+    public static CompletableFuture<Void> onPlayerQuit(UUID uuid) {
+        if (!hasPendingWrites(uuid) || !executorAvailable()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        QuitFlush flush = new QuitFlush(uuid);
+        quitFlushes.put(uuid, flush.future);
+        quitQueue.add(flush);
+        // Key được nhả khi lượt drain bắt đầu chạy: lượt thoát đến sau đó sẽ có lượt drain mới
+        CompletableFuture<Void> drain = executor.runCoalesced("quit-drain", DatabaseManager::drainQuitFlushes);
+        if (drain.isCompletedExceptionally()) {
+            // Executor từ chối (đang shutdown/quá tải): dữ liệu vẫn nằm trong pendingUpdates/journal
+            quitQueue.remove(flush);
+            quitFlushes.remove(uuid, flush.future);
+            flush.future.complete(null);
+        }
+        return flush.future;
+    }
+
+    private static void drainQuitFlushes() {
+        List<QuitFlush> batch = new ArrayList<>();
+        QuitFlush next;
+        while ((next = quitQueue.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) return;
+
+        Set<UUID> uuids = new HashSet<>();
+        for (QuitFlush flush : batch) {
+            uuids.add(flush.uuid);
+        }
+        try {
+            flushPlayersSync(uuids);
+        } finally {
+            for (QuitFlush flush : batch) {
+                quitFlushes.remove(flush.uuid, flush.future);
+                flush.future.complete(null);
+            }
         }
     }
 
@@ -245,20 +1191,38 @@ public class DatabaseManager {
     public static void shutdown() {
         try {
             // Save tất cả pending updates trước khi shutdown
-            if (!pendingUpdates.isEmpty()) {
-                for (PlayerData data : new ArrayList<>(pendingUpdates.values())) {
-                    savePlayerDataSync(data);
+            if (hasAnyPendingWrites()) {
+                processBatchUpdates();
+            }
+
+            // Shutdown executor (task đang xếp hàng được chạy nốt tối đa 10 giây)
+            if (executor != null) {
+                executor.shutdown(10, TimeUnit.SECONDS);
+            }
+
+            // Cùng lock với lượt ghi lại: không đóng giữa lúc đổi vùng
+            synchronized (FLUSH_LOCK) {
+                if (journal != null) {
+                    journal.close();
+                    journal = null;
                 }
-                pendingUpdates.clear();
             }
 
-            // Shutdown executors
-            batchExecutor.shutdown();
-            if (!batchExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
-                batchExecutor.shutdownNow();
+            if (playerStore != null) {
+                playerStore.close();
+                playerStore = null;
+            }
+
+            // Dừng luồng ghi sau executor (task cuối của executor có thể còn xếp lệnh ghi)
+            if (writer != null) {
+                writer.shutdown(10, TimeUnit.SECONDS);
+                writer = null;
             }
 
             // Close connection pool
+            if (writeDataSource != null && writeDataSource != dataSource && !writeDataSource.isClosed()) {
+                writeDataSource.close();
+            }
             if (dataSource != null && !dataSource.isClosed()) {
                 dataSource.close();
             }
@@ -271,6 +1235,8 @@ public class DatabaseManager {
      * Đảm bảo tất cả các bảng cần thiết đều tồn tại
      */
     public static void ensureTablesExist() {
+        // Đang chuyển schema thì bảng có thể tạm vắng mặt giữa DROP và RENAME - không tạo lại
+        if (!isSchemaReady()) return;
         try {
             createTables();
         } catch (SQLException e) {
@@ -278,24 +1244,23 @@ public class DatabaseManager {
             e.printStackTrace();
         }
     }
+
+    /** Connection từ pool đọc (chỉ đọc khi bật writer) - lệnh ghi đi qua repository/executeWrite */
     public static Connection getConnection() throws SQLException {
         if (dataSource == null || dataSource.isClosed()) {
             throw new SQLException("DataSource is not initialized or closed");
         }
+        awaitSchema();
         return dataSource.getConnection();
     }
 
     // Thêm phương thức này vào DatabaseManager
     public static CompletableFuture<Void> forceSaveAllPendingDataAsync() {
-        if (pendingUpdates.isEmpty() || batchExecutor.isShutdown()) {
+        if (!hasAnyPendingWrites() || !executorAvailable()) {
             return CompletableFuture.completedFuture(null);
         }
 
-        return CompletableFuture.runAsync(() -> {
-            if (!pendingUpdates.isEmpty()) {
-                processBatchUpdates();
-            }
-        }, batchExecutor);
+        return requestFlush();
     }
 
     public static void forceSaveAllPendingData() {
@@ -312,41 +1277,74 @@ public class DatabaseManager {
 
     // Sửa phương thức savePlayerDataAsync để có tùy chọn save ngay lập tức
     public static void savePlayerDataSync(PlayerData playerData) {
-        try (Connection connection = dataSource.getConnection()) {
-            String sql = "MERGE INTO player_data KEY(uuid) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setString(1, playerData.getUuid().toString());
-                statement.setInt(2, playerData.getLevel());
-                statement.setDouble(3, playerData.getPoints());
-                statement.executeUpdate();
-
-                // Update cache
-                playerDataCache.put(playerData.getUuid(), playerData);
-                cacheTimestamps.put(playerData.getUuid(), System.currentTimeMillis());
-            }
-        } catch (SQLException e) {
-            EnchantMaterial.getInstance().getLogger().warning("Lỗi save player data sync: " + e.getMessage());
+        UUID uuid = playerData.getUuid();
+        if (!isSchemaReady()) {
+            savePlayerDataAsync(playerData);
+            return;
+        }
+        if (playerData.isDirty() || hasPendingWrites(uuid)) {
+            // Giá trị tuyệt đối đã gồm mọi delta/bản ghi đang chờ; lỗi ghi thì bản ghi ở lại cho batch sau
+            queueRow(playerData);
+            flushPlayersSync(Collections.singleton(uuid));
         }
+
+        // Update cache
+        playerDataCache.put(uuid, playerData);
+        cacheTimestamps.put(uuid, System.currentTimeMillis());
     }
 
+    /**
+     * Xếp bản ghi level/điểm tuyệt đối để batch ghi. Không bao giờ chờ JDBC.
+     */
     public static void savePlayerDataAsync(PlayerData playerData) {
-        synchronized (BATCH_LOCK) {
-            pendingUpdates.put(playerData.getUuid(), playerData);
-            // Update cache ngay lập tức
-            playerDataCache.put(playerData.getUuid(), playerData);
-            cacheTimestamps.put(playerData.getUuid(), System.currentTimeMillis());
+        UUID uuid = playerData.getUuid();
+        long version = playerData.getVersion();
+        PendingRow queued = pendingUpdates.get(uuid);
+        if (!playerData.isDirty() || (queued != null && queued.data == playerData && queued.version == version)) {
+            // Không có thay đổi mới (vd setPoints cùng giá trị, hoặc chỉ có delta đã nằm trong ledger)
+            playerDataCache.put(uuid, playerData);
+            cacheTimestamps.put(uuid, System.currentTimeMillis());
+            return;
+        }
+
+        queueRow(playerData);
+        cacheTimestamps.put(uuid, System.currentTimeMillis());
+    }
+
+    /**
+     * Chụp giá trị tuyệt đối, bỏ delta cũ và xếp bản ghi + journal trong cùng 1 thế hệ pendingGate.
+     * Chụp trong khoá entry của cache (cùng addPointsAsync) nên delta bị bỏ luôn nằm trong giá trị đã chụp.
+     */
+    private static void queueRow(PlayerData playerData) {
+        UUID uuid = playerData.getUuid();
+        PendingRow[] queued = new PendingRow[1];
+        int generation = pendingGate.enter();
+        try {
+            playerDataCache.compute(uuid, (k, cur) -> {
+                PendingRow row = new PendingRow(k, playerData.getLevel(), playerData.getPoints(), playerData,
+                        playerData.getVersion(), generation);
+                // Bỏ delta TRƯỚC rồi mới xếp bản ghi (bản ghi đã bao gồm các delta đó)
+                pendingUpdates.compute(k, (id, old) -> {
+                    pointsLedger.discard(id);
+                    return row;
+                });
+                queued[0] = row;
+                return playerData;
+            });
+            journalAbsolute(generation, queued[0]);
+        } finally {
+            pendingGate.exit(generation);
         }
+        updateRankings(uuid, queued[0].points);
     }
 
     // ====== PHẦN BỔ SUNG: API HIỆU NĂNG CHO GAMEPLAY ======
 
     /**
      * (MỚI) Lấy nhanh dữ liệu người chơi từ bộ nhớ (không chạm DB).
-     * Ưu tiên pendingUpdates (mới nhất), sau đó tới playerDataCache. Có thể trả về null nếu chưa từng load.
+     * playerDataCache luôn giữ object đang sống (mọi thay đổi đều ghi vào đây). Có thể trả về null nếu chưa từng load.
      */
     public static PlayerData getCached(UUID uuid) {
-        PlayerData p = pendingUpdates.get(uuid);
-        if (p != null) return p;
         return playerDataCache.get(uuid);
     }
 
@@ -400,25 +1398,35 @@ public class DatabaseManager {
 
     /**
      * (MỚI) Cộng dồn điểm cho người chơi theo kiểu non-blocking.
-     * - Không gọi DB trên main thread.
-     * - Cập nhật cả pendingUpdates và cache để UI hiển thị tức thời.
-     * - Nếu người chơi chưa có trong cache, tạo dữ liệu mặc định level=1, points=0.
+     * - Không gọi DB, không lấy lock chung nào: chỉ cộng vào cache (cho UI), ô delta của PointsLedger và journal
+     *   (giữ chỗ bằng CAS). Luồng flush đổi thế hệ pendingGate thay vì chặn, nên lượt ghi DB không làm lượt này chờ.
+     * - Người chơi chưa load (hoặc đã bị dọn khỏi cache): KHÔNG tạo object tạm - delta chỉ nằm trong sổ,
+     *   và xin 1 lượt load (gộp theo người chơi) để cộng vào dòng thật (object tạm level 1 sẽ bị ghi đè
+     *   lên dòng DB khi lưu). Load xong thì lượt đập sau lại có object cho kiểm tra lên cấp.
      */
     public static void addPointsAsync(UUID uuid, double delta) {
         if (delta == 0.0) return;
-        long now = System.currentTimeMillis();
-        synchronized (BATCH_LOCK) {
-            PlayerData cur = pendingUpdates.get(uuid);
-            if (cur == null) cur = playerDataCache.get(uuid);
-            if (cur == null) cur = new PlayerData(uuid, 1, 0.0);
-
-            cur.setPoints(cur.getPoints() + delta);
-
-            // Ghi vào pending và cache để flush theo batch
-            pendingUpdates.put(uuid, cur);
-            playerDataCache.put(uuid, cur);
-            cacheTimestamps.put(uuid, now);
+        PlayerData cur;
+        int generation = pendingGate.enter();
+        try {
+            // Khoá entry của cache (không phải lock chung), cùng cacheLoaded/queueRow: delta vào object vừa load
+            // hoặc nằm trong sổ trước khi load đọc, không mất/không trùng
+            cur = playerDataCache.compute(uuid, (k, data) -> {
+                if (data != null) data.addLedgerPoints(delta);
+                // Luồng flush ghi "points = points + delta"; journal giữ lại delta nếu server crash trước đó
+                pointsLedger.add(generation, k, delta);
+                return data;
+            });
+            journalDelta(generation, uuid, delta);
+        } finally {
+            pendingGate.exit(generation);
+        }
+        if (cur == null) {
+            if (executorAvailable()) getPlayerDataAsync(uuid);
+            return;
         }
+        cacheTimestamps.put(uuid, System.currentTimeMillis());
+        updateRankings(uuid, cur.getPoints());
     }
 
     public static RebirthData getCachedRebirthData(UUID uuid) {
@@ -432,7 +1440,7 @@ public class DatabaseManager {
             return CompletableFuture.completedFuture(cached);
         }
 
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.supply(() -> {
             try {
                 return getRebirthData(uuid);
             } catch (SQLException e) {
@@ -498,37 +1506,84 @@ public class DatabaseManager {
         return defaultData;
     }
 
-    /**
-     * Kiểm tra xem player đã claim reward level nào đó chưa (async)
-     */
-    public static CompletableFuture<Boolean> hasClaimedRewardAsync(UUID uuid, int level) {
-        return CompletableFuture.supplyAsync(() -> {
+    /** Bitset mốc thưởng đã nhận trong cache, null nếu chưa nạp (bình thường đã nạp cùng người chơi khi vào) */
+    public static ClaimedLevels getCachedClaimedLevels(UUID uuid) {
+        return claimedRewardsCache.get(uuid);
+    }
+
+    /** Mốc thưởng đã nhận - có trong cache thì trả ngay, chưa có thì nạp trên executor */
+    public static CompletableFuture<ClaimedLevels> getClaimedLevelsAsync(UUID uuid) {
+        ClaimedLevels cached = claimedRewardsCache.get(uuid);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        return executor.supply(() -> {
             try {
-                Set<Integer> claimedLevels = getClaimedLevels(uuid.toString());
-                return claimedLevels.contains(level);
+                return loadClaimedLevels(uuid);
             } catch (SQLException e) {
-                EnchantMaterial.getInstance().getLogger().warning("Lỗi kiểm tra claimed reward: " + e.getMessage());
-                return false;
+                throw new CompletionException(e);
             }
         });
     }
 
+    /**
+     * Đã nhận mốc level chưa: 1 phép thử bit trên cache.
+     * Chỉ chạm DB khi người chơi chưa được nạp (không gọi trên main thread trong trường hợp đó).
+     */
+    public static boolean hasClaimed(UUID uuid, int level) throws SQLException {
+        return loadClaimedLevels(uuid).has(level);
+    }
+
+    /**
+     * Nhận mốc level: bật bit trong cache, ghi journal và xếp vào batch ghi level_rewards (write-behind).
+     *
+     * @return false nếu mốc này đã nhận từ trước (an toàn khi 2 lượt nhận chạy cùng lúc)
+     */
+    public static boolean claim(UUID uuid, int level) throws SQLException {
+        if (!loadClaimedLevels(uuid).add(level)) return false;
+        int generation = pendingGate.enter();
+        try {
+            addPendingClaim(uuid, level);
+            journalClaim(generation, uuid, level);
+        } finally {
+            pendingGate.exit(generation);
+        }
+        return true;
+    }
+
+    private static ClaimedLevels loadClaimedLevels(UUID uuid) throws SQLException {
+        ClaimedLevels cached = claimedRewardsCache.get(uuid);
+        if (cached != null) return cached;
+        ClaimedLevels loaded = toClaimedLevels(uuid, storage.rewardClaims().claimedLevels(uuid));
+        ClaimedLevels raced = claimedRewardsCache.putIfAbsent(uuid, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    /** Dữ liệu DB + các mốc đã nhận nhưng batch chưa ghi */
+    private static ClaimedLevels toClaimedLevels(UUID uuid, Set<Integer> stored) {
+        ClaimedLevels claimed = stored != null ? ClaimedLevels.of(stored) : ClaimedLevels.empty();
+        Set<Integer> pending = pendingClaims.get(uuid);
+        if (pending != null) claimed.addAll(pending);
+        return claimed;
+    }
+
+    /**
+     * Kiểm tra xem player đã claim reward level nào đó chưa (async)
+     */
+    public static CompletableFuture<Boolean> hasClaimedRewardAsync(UUID uuid, int level) {
+        return getClaimedLevelsAsync(uuid)
+                .thenApply(claimed -> claimed.has(level))
+                .exceptionally(e -> {
+                    EnchantMaterial.getInstance().getLogger().warning("Lỗi kiểm tra claimed reward: " + e.getMessage());
+                    return false;
+                });
+    }
+
     /**
      * Claim reward cho player (async)
      */
     public static CompletableFuture<Void> claimRewardAsync(UUID uuid, int level) {
-        return CompletableFuture.runAsync(() -> {
-            try (Connection connection = dataSource.getConnection()) {
-                String sql = "MERGE INTO level_rewards (uuid, level, claimed_at) KEY(uuid, level) VALUES (?, ?, CURRENT_TIMESTAMP)";
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                    statement.setString(1, uuid.toString());
-                    statement.setInt(2, level);
-                    statement.executeUpdate();
-
-                    // Update cache
-                    Set<Integer> claimedLevels = claimedRewardsCache.computeIfAbsent(uuid.toString(), k -> new HashSet<>());
-                    claimedLevels.add(level);
-                }
+        return executor.run(() -> {
+            try {
+                claim(uuid, level);
             } catch (SQLException e) {
                 EnchantMaterial.getInstance().getLogger().warning("Lỗi claim reward: " + e.getMessage());
             }
@@ -536,62 +1591,12 @@ public class DatabaseManager {
     }
 
     private static void createTables() throws SQLException {
-        try (Connection connection = dataSource.getConnection()) {
-            // Bảng player_data
-            String createPlayerTable = "CREATE TABLE IF NOT EXISTS player_data (" +
-                    "uuid VARCHAR(36) PRIMARY KEY," +
-                    "level INT DEFAULT 1," +
-                    "points DOUBLE DEFAULT 0.0," +
-                    "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
-
-            // Bảng level_rewards
-            String createRewardsTable = "CREATE TABLE IF NOT EXISTS level_rewards (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "uuid VARCHAR(36) NOT NULL," +
-                    "level INT NOT NULL," +
-                    "claimed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "UNIQUE(uuid, level)" +
-                    ")";
-
-            // Bảng boosters
-            String createBoostersTable = "CREATE TABLE IF NOT EXISTS boosters (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                    "uuid VARCHAR(36) NOT NULL, " +
-                    "type VARCHAR(10) NOT NULL, " +
-                    "multiplier DOUBLE NOT NULL, " +
-                    "end_time BIGINT NOT NULL, " +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
-
-            // Tạo từng bảng
-            try (PreparedStatement stmt1 = connection.prepareStatement(createPlayerTable)) {
-                stmt1.executeUpdate();
-            }
-            try (PreparedStatement stmt2 = connection.prepareStatement(createRewardsTable)) {
-                stmt2.executeUpdate();
-            }
-            try (PreparedStatement stmt3 = connection.prepareStatement(createBoostersTable)) {
-                stmt3.executeUpdate();
-                // Indexes
-                try (PreparedStatement idxUuidStmt = connection.prepareStatement("CREATE INDEX IF NOT EXISTS idx_uuid ON boosters(uuid)")) {
-                    idxUuidStmt.executeUpdate();
-                }
-                try (PreparedStatement idxEndTimeStmt = connection.prepareStatement("CREATE INDEX IF NOT EXISTS idx_end_time ON boosters(end_time)")) {
-                    idxEndTimeStmt.executeUpdate();
-                }
-            }
-
-            // Bảng rebirth_data
-            String createRebirthTable = "CREATE TABLE IF NOT EXISTS rebirth_data (" +
-                    "uuid VARCHAR(36) PRIMARY KEY," +
-                    "rebirth_level INT DEFAULT 0," +
-                    "last_rebirth_time BIGINT DEFAULT 0," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
-
-            try (PreparedStatement stmt4 = connection.prepareStatement(createRebirthTable)) {
-                stmt4.executeUpdate();
+        // Cài mới tạo thẳng schema hiện tại của engine; bảng H2 cũ (uuid VARCHAR) được SchemaMigrator chuyển sau
+        try (Connection connection = writeDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            storage.getDialect().inspect(connection.getMetaData());
+            for (String sql : storage.getDialect().createTableStatements()) {
+                statement.executeUpdate(sql);
             }
         }
     }
@@ -604,48 +1609,43 @@ public class DatabaseManager {
             return cached;
         }
 
-        try (Connection connection = dataSource.getConnection()) {
-            String query = "SELECT * FROM rebirth_data WHERE uuid = ?";
-            try (PreparedStatement statement = connection.prepareStatement(query)) {
-                statement.setString(1, uuid.toString());
-                ResultSet resultSet = statement.executeQuery();
-
-                RebirthData data;
-                if (resultSet.next()) {
-                    int rebirthLevel = resultSet.getInt("rebirth_level");
-                    long lastRebirthTime = resultSet.getLong("last_rebirth_time");
-                    data = new RebirthData(uuid, rebirthLevel, lastRebirthTime);
-                } else {
-                    data = new RebirthData(uuid, 0, 0);
-                }
-
-                rebirthDataCache.put(uuid, data);
-                rebirthCacheTimestamps.put(uuid, System.currentTimeMillis());
-                return data;
-            }
+        RebirthData data = storage.rebirths().load(uuid);
+        if (data == null) {
+            data = new RebirthData(uuid, 0, 0);
         }
+
+        rebirthDataCache.put(uuid, data);
+        rebirthCacheTimestamps.put(uuid, System.currentTimeMillis());
+        return data;
     }
 
     public static void saveRebirthData(RebirthData rebirthData) throws SQLException {
-        try (Connection connection = dataSource.getConnection()) {
-            String query = "MERGE INTO rebirth_data (uuid, rebirth_level, last_rebirth_time) " +
-                    "KEY(uuid) VALUES (?, ?, ?)";
-
-            try (PreparedStatement statement = connection.prepareStatement(query)) {
-                statement.setString(1, rebirthData.getUuid().toString());
-                statement.setInt(2, rebirthData.getRebirthLevel());
-                statement.setLong(3, rebirthData.getLastRebirthTime());
-                statement.executeUpdate();
-
-                rebirthDataCache.put(rebirthData.getUuid(), rebirthData);
-                rebirthCacheTimestamps.put(rebirthData.getUuid(), System.currentTimeMillis());
-            }
+        if (!isSchemaReady()) {
+            // Chuyển sinh không được mất: giữ trong cache, ghi ngay khi chuyển schema xong
+            rebirthDataCache.put(rebirthData.getUuid(), rebirthData);
+            rebirthCacheTimestamps.put(rebirthData.getUuid(), System.currentTimeMillis());
+            schemaReady.thenCompose(ignored -> executor.run(() -> {
+                try {
+                    saveRebirthData(rebirthData);
+                } catch (SQLException e) {
+                    EnchantMaterial.getInstance().getLogger().warning("Lỗi save rebirth data: " + e.getMessage());
+                }
+            }));
+            return;
+        }
+        storage.rebirths().save(rebirthData);
+        RebirthLeaderboard board = rebirthLeaderboard;
+        if (board != null) {
+            board.update(rebirthData.getUuid(), rebirthData.getRebirthLevel(), rebirthData.getLastRebirthTime());
         }
+
+        rebirthDataCache.put(rebirthData.getUuid(), rebirthData);
+        rebirthCacheTimestamps.put(rebirthData.getUuid(), System.currentTimeMillis());
     }
 
-    // Thêm method này để force refresh cache cho một player cụ thể
+    // Thêm method này để force refresh cache cho một player cụ thể (mốc chưa ghi DB vẫn được giữ)
     public static void refreshClaimedRewardsCache(String uuid) {
-        claimedRewardsCache.remove(uuid);
+        claimedRewardsCache.remove(UUID.fromString(uuid));
         try {
             getClaimedLevels(uuid); // Này sẽ reload từ database và cache lại
         } catch (SQLException e) {
@@ -672,65 +1672,29 @@ public class DatabaseManager {
 
     @Deprecated
     public static boolean hasClaimedReward(String uuid, int level) throws SQLException {
-        try {
-            return hasClaimedRewardAsync(UUID.fromString(uuid), level).get();
-        } catch (Exception e) {
-            throw new SQLException("Error checking claimed reward", e);
-        }
+        return hasClaimed(UUID.fromString(uuid), level);
     }
 
     @Deprecated
     public static void claimReward(String uuid, int level) throws SQLException {
-        try {
-            claimRewardAsync(UUID.fromString(uuid), level).get();
-        } catch (Exception e) {
-            throw new SQLException("Error claiming reward", e);
-        }
+        claim(UUID.fromString(uuid), level);
     }
 
     public static Set<Integer> getClaimedLevels(String uuid) throws SQLException {
-        Set<Integer> cached = claimedRewardsCache.get(uuid);
-        if (cached != null) {
-            return new HashSet<>(cached);
-        }
-
-        try (Connection connection = dataSource.getConnection()) {
-            String query = "SELECT level FROM level_rewards WHERE uuid = ?";
-            try (PreparedStatement statement = connection.prepareStatement(query)) {
-                statement.setString(1, uuid);
-                ResultSet resultSet = statement.executeQuery();
-
-                Set<Integer> claimedLevels = new HashSet<>();
-                while (resultSet.next()) {
-                    claimedLevels.add(resultSet.getInt("level"));
-                }
-
-                claimedRewardsCache.put(uuid, claimedLevels);
-                return claimedLevels;
-            }
-        }
+        return loadClaimedLevels(UUID.fromString(uuid)).toSet();
     }
 
+    /**
+     * Toàn bộ player_data (quét cả bảng - không dùng cho đường nóng, top điểm đã có LeaderboardIndex).
+     * Người chơi đang trong cache trả về object đang sống; còn lại là bản đọc, không nhét vào cache.
+     */
     public static Map<UUID, PlayerData> getAllPlayerData() throws SQLException {
         Map<UUID, PlayerData> playerDataMap = new HashMap<>();
 
-        try (Connection connection = dataSource.getConnection()) {
-            String query = "SELECT * FROM player_data";
-            try (PreparedStatement statement = connection.prepareStatement(query)) {
-                ResultSet resultSet = statement.executeQuery();
-
-                while (resultSet.next()) {
-                    UUID uuid = UUID.fromString(resultSet.getString("uuid"));
-                    int level = resultSet.getInt("level");
-                    double points = resultSet.getDouble("points");
-                    PlayerData data = new PlayerData(uuid, level, points);
-
-                    playerDataMap.put(uuid, data);
-                    // Cache luôn
-                    playerDataCache.put(uuid, data);
-                    cacheTimestamps.put(uuid, System.currentTimeMillis());
-                }
-            }
+        for (PlayerRow row : storage.players().loadEverything().values()) {
+            UUID uuid = row.getUuid();
+            PlayerData cached = playerDataCache.get(uuid);
+            playerDataMap.put(uuid, cached != null ? cached : toPlayerData(uuid, row));
         }
 
         return playerDataMap;
@@ -753,6 +1717,13 @@ public class DatabaseManager {
             // Force save any pending data before clearing
             forceSaveAllPendingData();
 
+            // Nạp lại người chơi đang online bằng vài truy vấn IN thay vì mỗi người 1 lượt
+            List<UUID> online = new ArrayList<>();
+            for (org.bukkit.entity.Player player : Bukkit.getOnlinePlayers()) {
+                online.add(player.getUniqueId());
+            }
+            getPlayerDataBatchAsync(online);
+
             EnchantMaterial.getInstance().getLogger().info("All caches have been cleared successfully!");
         } catch (Exception e) {
             EnchantMaterial.getInstance().getLogger().warning("Error clearing caches: " + e.getMessage());
@@ -0,0 +1,183 @@
+package org.ledat.enchantMaterial;
+
+import org.ledat.enchantMaterial.storage.SqlWork;
+import org.ledat.enchantMaterial.storage.TransactionRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Luồng ghi DB duy nhất: mọi lệnh ghi (batch flush, booster, claim, rebirth...) xếp vào 1 hàng đợi,
+ * luồng writer rút tối đa maxBatch lệnh và chạy chung 1 transaction trên connection ghi riêng.
+ * Hết tranh chấp lock bảng giữa nhiều connection ghi; nhiều lệnh nhỏ chỉ tốn 1 lần commit.
+ *
+ * Mỗi lệnh chạy sau 1 savepoint: lệnh lỗi chỉ rollback phần của nó, các lệnh khác trong lượt vẫn commit.
+ * Nơi gọi chờ tới khi lượt chứa lệnh của nó commit xong (giữ nguyên ngữ nghĩa "ghi xong mới trả về").
+ */
+final class DatabaseWriter implements TransactionRunner {
+
+    private static final class Command {
+        final SqlWork work;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Command(SqlWork work) {
+            this.work = work;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final Logger logger;
+    private final int maxBatch;
+    private final BlockingQueue<Command> queue;
+    private final Thread thread;
+    private final LatencyHistogram commitLatency;
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder failedCommands = new LongAdder();
+
+    private volatile boolean running = true;
+
+    DatabaseWriter(String name, DataSource dataSource, int maxBatch, int queueCapacity,
+                   LatencyHistogram commitLatency, Logger logger) {
+        this.dataSource = dataSource;
+        this.logger = logger;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.commitLatency = commitLatency;
+        this.thread = new Thread(this::loop, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void execute(SqlWork work) throws SQLException {
+        if (Thread.currentThread() == thread) {
+            throw new SQLException("Không được xếp lệnh ghi từ chính luồng writer");
+        }
+        if (!running) {
+            throw new SQLException("Database writer đã dừng");
+        }
+
+        Command command = new Command(work);
+        try {
+            // Hàng đợi đầy thì nơi gọi chờ (áp lực ngược), không bỏ lệnh ghi
+            queue.put(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Bị ngắt khi xếp lệnh ghi", e);
+        }
+
+        try {
+            command.done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            throw new SQLException(cause.getMessage(), cause);
+        }
+    }
+
+    private void loop() {
+        List<Command> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Command first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                runBatch(batch);
+            } catch (InterruptedException e) {
+                if (!running) break;
+            } catch (Throwable t) {
+                logger.warning("Lỗi luồng ghi database: " + t.getMessage());
+                for (Command command : batch) {
+                    command.done.completeExceptionally(t);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        // Dừng hẳn: lệnh còn sót báo lỗi để nơi gọi giữ lại dữ liệu (pendingUpdates/journal)
+        Command left;
+        while ((left = queue.poll()) != null) {
+            left.done.completeExceptionally(new SQLException("Database writer đã dừng"));
+        }
+    }
+
+    private void runBatch(List<Command> batch) {
+        long startedAt = System.nanoTime();
+        for (Command command : batch) {
+            queueLatency.record(startedAt - command.enqueuedAt);
+        }
+
+        List<Command> succeeded = new ArrayList<>(batch.size());
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (Command command : batch) {
+                    Savepoint savepoint = batch.size() > 1 ? connection.setSavepoint() : null;
+                    try {
+                        command.work.run(connection);
+                        succeeded.add(command);
+                    } catch (SQLException | RuntimeException e) {
+                        if (savepoint == null) throw e;
+                        connection.rollback(savepoint);
+                        failedCommands.increment();
+                        command.done.completeExceptionally(e);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (Command command : batch) {
+                command.done.completeExceptionally(e);
+            }
+            if (batch.size() == 1) failedCommands.increment();
+            return;
+        } finally {
+            commitLatency.record(System.nanoTime() - startedAt);
+            transactions.increment();
+            commands.add(batch.size());
+        }
+
+        for (Command command : succeeded) {
+            command.done.complete(null);
+        }
+    }
+
+    /** Chạy nốt các lệnh đã xếp (tối đa timeout) rồi dừng luồng */
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        running = false;
+        thread.join(unit.toMillis(timeout));
+        if (thread.isAlive()) {
+            thread.interrupt();
+        }
+    }
+
+    String describe() {
+        long tx = transactions.sum();
+        return String.format(Locale.US,
+                "DB-Writer hàng đợi=%d | transaction=%d lệnh=%d (tb %.1f lệnh/tx) lỗi=%d | chờ: %s",
+                queue.size(), tx, commands.sum(), tx == 0 ? 0D : commands.sum() / (double) tx,
+                failedCommands.sum(), queueLatency.describe());
+    }
+}
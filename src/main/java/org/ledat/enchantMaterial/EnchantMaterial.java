@@ -11,6 +11,7 @@ import org.ledat.enchantMaterial.booster.BoosterStorage;
 import org.ledat.enchantMaterial.gui.LevelRewardsGUI;
 import org.ledat.enchantMaterial.gui.RebirthConfigEditorGUI;
 import org.ledat.enchantMaterial.gui.RebirthGUI;
+import org.ledat.enchantMaterial.listeners.PlayerJoinListener;
 import org.ledat.enchantMaterial.listeners.PlayerQuitListener;
 import org.ledat.enchantMaterial.rebirth.RebirthManager;
 import org.ledat.enchantMaterial.rewards.LevelRewardsManager;
@@ -19,7 +20,6 @@ import org.bukkit.plugin.RegisteredServiceProvider;
 
 import java.lang.reflect.Method;
 import java.io.File;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +35,11 @@ public class EnchantMaterial extends JavaPlugin {
     private YamlConfiguration levelSystemConfig;
     private FortuneManager fortuneManager;
     private LuckyChanceBlockListener luckyChanceBlockListener;
+    private BlockBreakListener blockBreakListener;
+    private ToolProfileCache toolProfileCache;
+    private PermissionProfileManager permissionProfiles;
+    private NotificationManager notificationManager;
+    private volatile LevelCurve levelCurve = LevelCurve.EMPTY;
     private BoosterManager boosterManager;
     private BoosterStorage boosterStorage;
     private File boosterFile;
@@ -57,6 +62,7 @@ public class EnchantMaterial extends JavaPlugin {
         instance = this;
         saveDefaultConfig();
         reloadConfig();
+        loadLevelCurve();
         loadBoosterConfig();
         hookBaoVePvP();
 
@@ -70,7 +76,16 @@ public class EnchantMaterial extends JavaPlugin {
         // Khởi tạo FortuneManager và LuckyChanceBlockListener
         fortuneManager = new FortuneManager(this);
         luckyChanceBlockListener = new LuckyChanceBlockListener(this);
-        getServer().getPluginManager().registerEvents(new BlockBreakListener(fortuneManager, luckyChanceBlockListener), this);
+        permissionProfiles = new PermissionProfileManager(this);
+        toolProfileCache = new ToolProfileCache();
+        notificationManager = new NotificationManager(this);
+        blockBreakListener = new BlockBreakListener(permissionProfiles, luckyChanceBlockListener, toolProfileCache,
+                notificationManager);
+        getServer().getPluginManager().registerEvents(permissionProfiles, this);
+        getServer().getPluginManager().registerEvents(toolProfileCache, this);
+        getServer().getPluginManager().registerEvents(notificationManager, this);
+        notificationManager.start();
+        getServer().getPluginManager().registerEvents(blockBreakListener, this);
 
         getCommand("enchantmaterial").setExecutor(new CommandManager());
         getCommand("enchantmaterial").setTabCompleter(new EnchantMaterialTabCompleter());
@@ -101,8 +116,8 @@ public class EnchantMaterial extends JavaPlugin {
             // Khởi tạo BoosterManager sau khi BoosterStorage đã sẵn sàng
             boosterManager = new BoosterManager(this);
             
-            // Load boosters từ database
-            Bukkit.getScheduler().runTaskLater(this, () -> {
+            // Load boosters từ database (sau khi chuyển schema xong nếu đang chuyển)
+            DatabaseManager.whenSchemaReady(() -> Bukkit.getScheduler().runTaskLater(this, () -> {
                 if (boosterStorage.isTableExists()) {
                     Map<UUID, List<Booster>> loaded = boosterStorage.loadBoosters();
                     for (Map.Entry<UUID, List<Booster>> entry : loaded.entrySet()) {
@@ -117,7 +132,7 @@ public class EnchantMaterial extends JavaPlugin {
                 } else {
                     getLogger().warning("Bảng boosters không tồn tại, không thể load boosters!");
                 }
-            }, 20L); // Đợi 1 giây
+            }, 20L)); // Đợi 1 giây
         } catch (Exception e) {
             getLogger().severe("Lỗi khởi động plugin: " + e.getMessage());
             e.printStackTrace();
@@ -129,6 +144,7 @@ public class EnchantMaterial extends JavaPlugin {
         levelRewardsManager = new LevelRewardsManager(this);
         levelRewardsGUI = new LevelRewardsGUI(this, levelRewardsManager);
         getServer().getPluginManager().registerEvents(levelRewardsGUI, this);
+        getServer().getPluginManager().registerEvents(new PlayerJoinListener(), this);
         getServer().getPluginManager().registerEvents(new PlayerQuitListener(), this);
         getLogger().info("Level Rewards system has been initialized!");
     
@@ -143,17 +159,17 @@ public class EnchantMaterial extends JavaPlugin {
         regionManager = new RegionManager(this);
         getLogger().info("Region system has been initialized!");
 
-        // Load dữ liệu người chơi khi server start
+        // Snapshot quyền cho người chơi đang online (reload plugin) + làm mới định kỳ
+        permissionProfiles.refreshAll();
+        permissionProfiles.start();
+
+        // Load dữ liệu người chơi đang online (reload plugin) bằng vài truy vấn IN, không chặn main thread
         Bukkit.getScheduler().runTask(this, () -> {
+            List<UUID> online = new ArrayList<>();
             for (Player player : Bukkit.getOnlinePlayers()) {
-                try {
-                    PlayerData playerData = DatabaseManager.getPlayerData(player.getUniqueId().toString());
-                    setPlayerLevel(player, playerData.getLevel());
-                    setPlayerPoints(player, playerData.getPoints());
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
+                online.add(player.getUniqueId());
             }
+            DatabaseManager.getPlayerDataBatchAsync(online);
         });
 
         // Gộp auto-save player + booster vào 1 task với tần suất cao hơn
@@ -194,6 +210,11 @@ public class EnchantMaterial extends JavaPlugin {
     @Override
     public void onDisable() {
         getLogger().info("EnchantMaterial has been disabled!");
+
+        // Trả nốt drop/exp đang gộp trong tick hiện tại
+        if (blockBreakListener != null) {
+            blockBreakListener.flushPendingRewards();
+        }
     
         List<CompletableFuture<Void>> shutdownTasks = new ArrayList<>();
         shutdownTasks.add(DatabaseManager.forceSaveAllPendingDataAsync());
@@ -226,6 +247,13 @@ public class EnchantMaterial extends JavaPlugin {
         if (boosterManager != null) {
             boosterManager.shutdown();
         }
+
+        if (notificationManager != null) {
+            notificationManager.shutdown();
+        }
+        if (permissionProfiles != null) {
+            permissionProfiles.shutdown();
+        }
         
         if (rebirthManager != null) {
             getLogger().info("Rebirth system has been disabled!");
@@ -279,11 +307,38 @@ public class EnchantMaterial extends JavaPlugin {
         getLogger().info("Booster config has been reloaded!");
     }
     
+    // Biên dịch level-request thành LevelCurve (dùng chung cho break, lệnh và placeholder)
+    private void loadLevelCurve() {
+        LevelCurve curve = LevelCurve.compile(getConfig().getDoubleList("level-request"));
+        if (!curve.isMonotonic()) {
+            getLogger().warning("level-request có giá trị giảm dần, các ngưỡng đó sẽ được nâng bằng ngưỡng trước.");
+        }
+        levelCurve = curve;
+    }
+
+    // Áp dụng lại config.yml cho các cache runtime (level curve, bảng luật block, fortune, thông báo, permission profile)
+    public void reloadRuntimeCaches() {
+        loadLevelCurve();
+        if (blockBreakListener != null) {
+            blockBreakListener.reloadRules();
+        }
+        if (fortuneManager != null) {
+            fortuneManager.reload();
+        }
+        if (notificationManager != null) {
+            notificationManager.reload();
+        }
+        if (permissionProfiles != null) {
+            permissionProfiles.reload();
+        }
+    }
+
     // Thêm phương thức reload toàn bộ
     public void reloadAllConfigs() {
         try {
             // Reload tất cả config files
             reloadConfig(); // config.yml
+            reloadRuntimeCaches(); // level curve, bảng luật block, fortune, permission profile
             loadBoosterConfig(); // booster.yml
             loadLuckyBlockConfig(); // luckyblock.yml
             loadRebirthConfig(); // rebirth.yml
@@ -389,8 +444,7 @@ public class EnchantMaterial extends JavaPlugin {
     /** true nếu BẬT giảm điểm khi có PvP prot & người chơi KHÔNG có quyền bypass */
     public boolean isPvpReductionEnabled(Player p) {
         if (!getConfig().getBoolean("pvp-protection.enabled", true)) return false;
-        String perm = getConfig().getString("pvp-protection.bypass-permission", "");
-        return perm == null || perm.isEmpty() || !p.hasPermission(perm);
+        return !permissionProfiles.get(p).isPvpBypass();
     }
 
     /** multiplier khi bảo vệ PvP (ví dụ 0.5) */
@@ -419,6 +473,26 @@ public class EnchantMaterial extends JavaPlugin {
         return fortuneManager;
     }
 
+    public BlockBreakListener getBlockBreakListener() {
+        return blockBreakListener;
+    }
+
+    public ToolProfileCache getToolProfileCache() {
+        return toolProfileCache;
+    }
+
+    public LevelCurve getLevelCurve() {
+        return levelCurve;
+    }
+
+    public PermissionProfileManager getPermissionProfiles() {
+        return permissionProfiles;
+    }
+
+    public LuckyChanceBlockListener getLuckyChanceBlockListener() {
+        return luckyChanceBlockListener;
+    }
+
     public BoosterManager getBoosterManager() {
         return boosterManager;
     }
@@ -14,7 +14,6 @@ import org.ledat.enchantMaterial.rebirth.RebirthManager;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 public class EnchantMaterialPlaceholder extends PlaceholderExpansion {
 
@@ -61,9 +60,9 @@ public class EnchantMaterialPlaceholder extends PlaceholderExpansion {
         double points = data != null ? data.getPoints() : 0.0;
         int level = data != null ? data.getLevel() : 1;
         BoosterManager manager = EnchantMaterial.getInstance().getBoosterManager();
-        List<Double> levelRequests = plugin.getConfig().getDoubleList("level-request");
+        LevelCurve levelCurve = plugin.getLevelCurve();
 
-        double nextLevelPoints = (level < levelRequests.size()) ? levelRequests.get(level) : -1;
+        double nextLevelPoints = levelCurve.pointsToNext(level);
         double progressPercent = (nextLevelPoints > 0) ? Math.min(1.0, points / nextLevelPoints) : 1.0;
 
         switch (params.toLowerCase()) {
@@ -72,7 +71,7 @@ public class EnchantMaterialPlaceholder extends PlaceholderExpansion {
             case "level":
                 return String.valueOf(level);
             case "level_next":
-                return (level < levelRequests.size()) ? String.valueOf(level + 1) : "MAX";
+                return !levelCurve.isMaxLevel(level) ? String.valueOf(level + 1) : "MAX";
             case "progress":
                 return (nextLevelPoints > 0)
                         ? String.format("%.0f/%.0f", points, nextLevelPoints)
@@ -318,6 +317,22 @@ public class EnchantMaterialPlaceholder extends PlaceholderExpansion {
                 } else return "x1.0";
             }
 
+            // Thứ hạng trong toàn server (RankIndex trong bộ nhớ, không chạm DB)
+            case "rank": {
+                RankIndex ranks = DatabaseManager.getRankIndex();
+                int rank = ranks != null ? ranks.rank(uuid) : -1;
+                return rank > 0 ? String.valueOf(rank) : "-";
+            }
+            case "rank_total": {
+                RankIndex ranks = DatabaseManager.getRankIndex();
+                return ranks != null ? String.valueOf(ranks.size()) : "0";
+            }
+            case "percentile": {
+                RankIndex ranks = DatabaseManager.getRankIndex();
+                double percentile = ranks != null ? ranks.percentile(uuid) : -1D;
+                return percentile >= 0 ? String.format("%.1f%%", percentile) : "-";
+            }
+
             default:
                 if (params.startsWith("top_")) {
                     return handleTop(params);
@@ -339,24 +354,23 @@ public class EnchantMaterialPlaceholder extends PlaceholderExpansion {
             return null;
         }
 
-        // Lấy top rebirth từ database
         try {
-            List<RebirthData> topRebirth = getTopRebirthPlayers();
-            
-            if (index >= topRebirth.size()) return "";
+            // Đọc mảng top chuyển sinh trong bộ nhớ, không truy vấn/sắp xếp
+            RebirthLeaderboard leaderboard = DatabaseManager.getRebirthLeaderboard();
+            RebirthLeaderboard.Entry entry = leaderboard != null ? leaderboard.get(index) : null;
+            if (entry == null) return "";
 
-            RebirthData rebirthData = topRebirth.get(index);
             String sub = parts[3];
 
             switch (sub.toLowerCase()) {
                 case "name":
-                    return Bukkit.getOfflinePlayer(rebirthData.getUuid()).getName();
+                    return Bukkit.getOfflinePlayer(entry.getUuid()).getName();
                 case "level":
-                    return String.valueOf(rebirthData.getRebirthLevel());
+                    return String.valueOf(entry.getRebirthLevel());
                 case "last_time":
-                    if (rebirthData.getLastRebirthTime() == 0) return "Chưa từng";
+                    if (entry.getLastRebirthTime() == 0) return "Chưa từng";
                     SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
-                    return sdf.format(new Date(rebirthData.getLastRebirthTime()));
+                    return sdf.format(new Date(entry.getLastRebirthTime()));
                 default:
                     return null;
             }
@@ -364,17 +378,6 @@ public class EnchantMaterialPlaceholder extends PlaceholderExpansion {
             return "N/A";
         }
     }
-    
-    private List<RebirthData> getTopRebirthPlayers() {
-        // Tạo một method helper để lấy top rebirth players
-        // Bạn có thể implement logic này trong DatabaseManager
-        try {
-            // Tạm thời return empty list, bạn cần implement method này trong DatabaseManager
-            return new ArrayList<>();
-        } catch (Exception e) {
-            return new ArrayList<>();
-        }
-    }
 
     private String handleTop(String params) {
         String[] parts = params.split("_");
@@ -388,23 +391,20 @@ public class EnchantMaterialPlaceholder extends PlaceholderExpansion {
         }
 
         try {
-            Map<UUID, PlayerData> allData = DatabaseManager.getAllPlayerData();
-            List<Map.Entry<UUID, PlayerData>> sorted = allData.entrySet().stream()
-                    .sorted(Comparator.comparingDouble(e -> -e.getValue().getPoints()))
-                    .collect(Collectors.toList());
-
-            if (index >= sorted.size()) return "";
+            // Đọc snapshot top-N trong bộ nhớ, không chạm DB
+            LeaderboardIndex leaderboard = DatabaseManager.getLeaderboard();
+            LeaderboardIndex.Entry entry = leaderboard != null ? leaderboard.get(index) : null;
+            if (entry == null) return "";
 
-            Map.Entry<UUID, PlayerData> entry = sorted.get(index);
             String sub = parts[2];
 
             switch (sub.toLowerCase()) {
                 case "name":
-                    return Bukkit.getOfflinePlayer(entry.getKey()).getName();
+                    return Bukkit.getOfflinePlayer(entry.getUuid()).getName();
                 case "points":
-                    return String.format("%.2f", entry.getValue().getPoints());
+                    return String.format("%.2f", entry.getPoints());
                 case "points_format":
-                    return formatValue(entry.getValue().getPoints());
+                    return formatValue(entry.getPoints());
                 default:
                     return null;
             }
@@ -0,0 +1,232 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.ChatColor;
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tag bổ trợ lưu trong PersistentDataContainer của dụng cụ (dạng nhị phân gọn).
+ * Thứ tự entry giống thứ tự lore cũ: bổ trợ mới thêm nằm đầu, cập nhật giữ nguyên vị trí.
+ * Lore chỉ còn là phần hiển thị - mọi kiểm tra trên đường nóng đọc tag này.
+ *
+ * Định dạng: [version:1 byte][count:1 byte] rồi mỗi entry [len:1 byte][key UTF-8][level:int]
+ */
+public final class EnchantTag {
+
+    public static final EnchantTag EMPTY = new EnchantTag(new String[0], new int[0]);
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int MAX_ENTRIES = 255;
+    private static final Pattern TRAILING_NUMBER = Pattern.compile("(\\d+)$");
+
+    private static volatile NamespacedKey tagKey;
+
+    private final String[] keys;
+    private final int[] levels;
+
+    private EnchantTag(String[] keys, int[] levels) {
+        this.keys = keys;
+        this.levels = levels;
+    }
+
+    private static NamespacedKey key() {
+        NamespacedKey k = tagKey;
+        if (k == null) {
+            k = new NamespacedKey(EnchantMaterial.getInstance(), "enchants");
+            tagKey = k;
+        }
+        return k;
+    }
+
+    /**
+     * Đọc tag từ meta.
+     *
+     * @return tag, hoặc null nếu item chưa có tag (chưa migrate)
+     */
+    public static EnchantTag read(ItemMeta meta) {
+        if (meta == null) return null;
+        byte[] raw = meta.getPersistentDataContainer().get(key(), PersistentDataType.BYTE_ARRAY);
+        if (raw == null) return null;
+        return decode(raw);
+    }
+
+    /**
+     * Ghi tag vào meta (caller tự gọi setItemMeta).
+     */
+    public void write(ItemMeta meta) {
+        PersistentDataContainer pdc = meta.getPersistentDataContainer();
+        pdc.set(key(), PersistentDataType.BYTE_ARRAY, encode());
+    }
+
+    /**
+     * Dựng tag từ lore kiểu cũ (dòng theo messages.add_lore_format rồi " <level>"). Định dạng lore đổi được
+     * trong config nên không dựa vào chữ cố định nào: dòng nào chứa display_type và kết thúc bằng số là 1 bổ trợ,
+     * nhiều display_type cùng khớp thì lấy cái dài nhất ("Đá đỏ" thắng "Đá").
+     *
+     * @param keyByDisplay ánh xạ display_type -> enchant key trong config
+     * @return tag, hoặc null nếu lore không có dòng bổ trợ nào
+     */
+    public static EnchantTag fromLegacyLore(List<String> lore, Map<String, String> keyByDisplay) {
+        if (lore == null || lore.isEmpty() || keyByDisplay.isEmpty()) return null;
+
+        // So trên chữ đã bỏ mã màu: display_type có thể viết bằng & hoặc § và khác màu với dòng lore
+        String[] displays = new String[keyByDisplay.size()];
+        String[] displayKeys = new String[displays.length];
+        int displayCount = 0;
+        for (Map.Entry<String, String> entry : keyByDisplay.entrySet()) {
+            String display = ChatColor.stripColor(ChatColor.translateAlternateColorCodes('&', entry.getKey()));
+            if (display == null || display.trim().isEmpty()) continue;
+            displays[displayCount] = display.trim();
+            displayKeys[displayCount] = entry.getValue();
+            displayCount++;
+        }
+
+        String[] keys = new String[Math.min(lore.size(), MAX_ENTRIES)];
+        int[] levels = new int[keys.length];
+        int count = 0;
+
+        for (String line : lore) {
+            if (line == null || count >= keys.length) continue;
+            String raw = ChatColor.stripColor(line);
+            if (raw == null) continue;
+            raw = raw.trim();
+
+            Matcher matcher = TRAILING_NUMBER.matcher(raw);
+            if (!matcher.find()) continue;
+
+            String enchantKey = null;
+            int matchedLength = 0;
+            for (int i = 0; i < displayCount; i++) {
+                if (displays[i].length() > matchedLength && raw.contains(displays[i])) {
+                    enchantKey = displayKeys[i];
+                    matchedLength = displays[i].length();
+                }
+            }
+            if (enchantKey == null || indexOf(keys, count, enchantKey) >= 0) continue;
+
+            int level;
+            try {
+                level = Integer.parseInt(matcher.group(1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            keys[count] = enchantKey;
+            levels[count] = level;
+            count++;
+        }
+
+        if (count == 0) return null;
+        return new EnchantTag(Arrays.copyOf(keys, count), Arrays.copyOf(levels, count));
+    }
+
+    /**
+     * @return tag mới với level của enchant đã cập nhật (enchant mới được thêm vào đầu)
+     */
+    public EnchantTag withLevel(String enchantKey, int level) {
+        int idx = indexOf(keys, keys.length, enchantKey);
+        if (idx >= 0) {
+            int[] newLevels = levels.clone();
+            newLevels[idx] = level;
+            return new EnchantTag(keys, newLevels);
+        }
+        if (keys.length >= MAX_ENTRIES) return this;
+
+        String[] newKeys = new String[keys.length + 1];
+        int[] newLevels = new int[levels.length + 1];
+        newKeys[0] = enchantKey;
+        newLevels[0] = level;
+        System.arraycopy(keys, 0, newKeys, 1, keys.length);
+        System.arraycopy(levels, 0, newLevels, 1, levels.length);
+        return new EnchantTag(newKeys, newLevels);
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public boolean has(String enchantKey) {
+        return indexOf(keys, keys.length, enchantKey) >= 0;
+    }
+
+    public boolean hasAny(String[] enchantKeys) {
+        for (String k : enchantKeys) {
+            if (has(k)) return true;
+        }
+        return false;
+    }
+
+    public int getLevel(String enchantKey) {
+        int idx = indexOf(keys, keys.length, enchantKey);
+        return idx >= 0 ? levels[idx] : 0;
+    }
+
+    /**
+     * Cấp bổ trợ dùng cho bonus drop: level của entry đầu tiên (giống dòng lore đầu tiên trước đây).
+     */
+    public int getBonusLevel() {
+        return levels.length > 0 ? levels[0] : 1;
+    }
+
+    public String[] getKeys() {
+        return keys.clone();
+    }
+
+    private byte[] encode() {
+        byte[][] encodedKeys = new byte[keys.length][];
+        int size = 2;
+        for (int i = 0; i < keys.length; i++) {
+            byte[] k = keys[i].getBytes(StandardCharsets.UTF_8);
+            if (k.length > 255) k = Arrays.copyOf(k, 255);
+            encodedKeys[i] = k;
+            size += 1 + k.length + 4;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(FORMAT_VERSION);
+        buffer.put((byte) keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            buffer.put((byte) encodedKeys[i].length);
+            buffer.put(encodedKeys[i]);
+            buffer.putInt(levels[i]);
+        }
+        return buffer.array();
+    }
+
+    private static EnchantTag decode(byte[] raw) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(raw);
+            if (buffer.get() != FORMAT_VERSION) return EMPTY;
+            int count = buffer.get() & 0xFF;
+            String[] keys = new String[count];
+            int[] levels = new int[count];
+            for (int i = 0; i < count; i++) {
+                byte[] k = new byte[buffer.get() & 0xFF];
+                buffer.get(k);
+                keys[i] = new String(k, StandardCharsets.UTF_8);
+                levels[i] = buffer.getInt();
+            }
+            return count == 0 ? EMPTY : new EnchantTag(keys, levels);
+        } catch (BufferUnderflowException e) {
+            return EMPTY;
+        }
+    }
+
+    private static int indexOf(String[] keys, int length, String key) {
+        for (int i = 0; i < length; i++) {
+            if (keys[i].equals(key)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,67 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Đọc tag bổ trợ của dụng cụ, tự chuyển dụng cụ chỉ có lore cũ (messages.add_lore_format) sang PDC ở lần dùng đầu tiên.
+ */
+public final class EnchantTagMigrator {
+
+    private EnchantTagMigrator() {
+    }
+
+    /**
+     * Lấy tag bổ trợ của dụng cụ. Nếu dụng cụ chỉ có lore kiểu cũ thì ghi tag vào item ngay.
+     *
+     * @return tag của dụng cụ, EnchantTag.EMPTY nếu không có bổ trợ
+     */
+    public static EnchantTag resolve(ItemStack tool, Map<String, String> keyByDisplay) {
+        if (tool == null || !tool.hasItemMeta()) return EnchantTag.EMPTY;
+
+        ItemMeta meta = tool.getItemMeta();
+        if (meta == null) return EnchantTag.EMPTY;
+
+        EnchantTag tag = EnchantTag.read(meta);
+        if (tag != null) return tag;
+
+        if (!meta.hasLore()) return EnchantTag.EMPTY;
+        EnchantTag legacy = EnchantTag.fromLegacyLore(meta.getLore(), keyByDisplay);
+        if (legacy == null) return EnchantTag.EMPTY;
+
+        legacy.write(meta);
+        tool.setItemMeta(meta);
+        return legacy;
+    }
+
+    /**
+     * Như resolve nhưng làm việc trên meta có sẵn, không ghi tag (dùng khi caller sẽ tự setItemMeta).
+     */
+    public static EnchantTag readOrLegacy(ItemMeta meta, Map<String, String> keyByDisplay) {
+        EnchantTag tag = EnchantTag.read(meta);
+        if (tag != null) return tag;
+        if (meta == null || !meta.hasLore()) return EnchantTag.EMPTY;
+        EnchantTag legacy = EnchantTag.fromLegacyLore(meta.getLore(), keyByDisplay);
+        return legacy != null ? legacy : EnchantTag.EMPTY;
+    }
+
+    /**
+     * Ánh xạ display_type -> enchant key từ section enchantments.* trong config.
+     */
+    public static Map<String, String> buildKeyByDisplay(ConfigurationSection enchantments) {
+        if (enchantments == null) return Collections.emptyMap();
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String enchantKey : enchantments.getKeys(false)) {
+            String display = enchantments.getString(enchantKey + ".display_type");
+            if (display != null && !display.isEmpty()) {
+                result.putIfAbsent(display, enchantKey);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+}
@@ -96,6 +96,19 @@ public class FortuneManager {
         }
 
         // 2) Tính lại multiplier
+        double maxMul = resolveMultiplier(player);
+
+        // 3) Ghi cache
+        CacheEntry ne = new CacheEntry(maxMul, now);
+        cache.put(player.getUniqueId(), ne);
+        return maxMul;
+    }
+
+    /**
+     * Quét permission tier và trả về multiplier lớn nhất (không cache).
+     * PermissionProfileManager dùng hàm này khi tính snapshot quyền.
+     */
+    public double resolveMultiplier(Player player) {
         double maxMul = this.defaultMultiplier;
 
         // Quét các tier cấu hình — lấy giá trị lớn nhất mà player có permission
@@ -110,10 +123,6 @@ public class FortuneManager {
                 if (v > maxMul) maxMul = v;
             }
         }
-
-        // 3) Ghi cache
-        CacheEntry ne = new CacheEntry(maxMul, now);
-        cache.put(player.getUniqueId(), ne);
         return maxMul;
     }
 
@@ -0,0 +1,67 @@
+package org.ledat.enchantMaterial;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram độ trễ theo bucket lũy thừa 2 của micro giây (1µs .. ~34s), ghi không lock.
+ * Phân vị trả về cận trên của bucket nên sai số tối đa 2 lần - đủ để so sánh trước/sau.
+ */
+final class LatencyHistogram {
+
+    private static final int BUCKETS = 26;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        long micros = Math.max(1L, nanos / 1000L);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    /** Phân vị (0..1) tính bằng ms */
+    double percentileMillis(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) return 0D;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return (1L << (i + 1)) / 1000D;
+            }
+        }
+        return maxNanos.get() / 1_000_000D;
+    }
+
+    String describe() {
+        long n = count.sum();
+        if (n == 0) return "n=0";
+        return String.format(Locale.US, "n=%d tb=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                n, totalNanos.sum() / 1_000_000D / n, percentileMillis(0.50), percentileMillis(0.95),
+                percentileMillis(0.99), maxNanos.get() / 1_000_000D);
+    }
+}
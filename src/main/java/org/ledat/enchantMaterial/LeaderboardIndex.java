@@ -0,0 +1,166 @@
+package org.ledat.enchantMaterial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Bảng xếp hạng điểm top-N giữ trong bộ nhớ, thay cho việc đọc cả bảng player_data mỗi lần placeholder chạy.
+ * - Nạp bằng "ORDER BY points DESC LIMIT capacity" rồi cập nhật dần theo mỗi lần điểm đổi (ledger / bản ghi tuyệt đối)
+ * - Giữ capacity = 2 * size phần tử sắp theo (điểm giảm dần, uuid); outsideMax là cận trên điểm của mọi người
+ *   KHÔNG nằm trong tập, nên phần tử có điểm >= outsideMax chắc chắn đúng thứ hạng
+ * - Placeholder chỉ đọc snapshot bất biến (dựng lại khi có thay đổi); thiếu phần tử chắc chắn thì xin reconcile
+ */
+final class LeaderboardIndex {
+
+    /** 1 dòng bảng xếp hạng (bất biến) */
+    static final class Entry {
+        final UUID uuid;
+        final double points;
+
+        Entry(UUID uuid, double points) {
+            this.uuid = uuid;
+            this.points = points;
+        }
+
+        UUID getUuid() {
+            return uuid;
+        }
+
+        double getPoints() {
+            return points;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int byPoints = Double.compare(b.points, a.points);
+        return byPoints != 0 ? byPoints : a.uuid.compareTo(b.uuid);
+    };
+
+    private final int size;
+    private final int capacity;
+    private final Runnable reconcileRequest;
+
+    private final TreeSet<Entry> sorted = new TreeSet<>(ORDER);
+    private final Map<UUID, Entry> members = new HashMap<>();
+    private double outsideMax = Double.POSITIVE_INFINITY; // chưa nạp: không phần tử nào chắc chắn
+
+    private volatile List<Entry> snapshot = Collections.emptyList();
+    private volatile boolean dirty;
+
+    /**
+     * @param reconcileRequest gọi khi top-N không còn đủ phần tử chắc chắn (chạy lại truy vấn nền)
+     */
+    LeaderboardIndex(int size, Runnable reconcileRequest) {
+        this.size = Math.max(1, size);
+        this.capacity = this.size * 2;
+        this.reconcileRequest = reconcileRequest;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Thay toàn bộ bằng kết quả truy vấn top (đã sắp hoặc chưa) rồi phủ giá trị mới nhất từ cache.
+     *
+     * @param complete true nếu truy vấn trả về ít hơn limit dòng (tập chứa mọi người chơi trong DB)
+     */
+    synchronized void reset(Map<UUID, Double> top, boolean complete, Map<UUID, Double> live) {
+        sorted.clear();
+        members.clear();
+        outsideMax = Double.NEGATIVE_INFINITY;
+        double lowest = Double.POSITIVE_INFINITY;
+        for (Map.Entry<UUID, Double> row : top.entrySet()) {
+            insert(new Entry(row.getKey(), row.getValue()));
+            lowest = Math.min(lowest, row.getValue());
+        }
+        if (!complete && !top.isEmpty()) {
+            outsideMax = lowest;
+        }
+        trim();
+        for (Map.Entry<UUID, Double> row : live.entrySet()) {
+            updateLocked(row.getKey(), row.getValue());
+        }
+        dirty = true;
+    }
+
+    /** Điểm của 1 người chơi vừa đổi (main thread, mỗi lần cộng điểm) - O(log capacity) */
+    synchronized void update(UUID uuid, double points) {
+        updateLocked(uuid, points);
+    }
+
+    private void updateLocked(UUID uuid, double points) {
+        Entry current = members.get(uuid);
+        if (current != null) {
+            if (current.points == points) return;
+            sorted.remove(current);
+            members.remove(uuid);
+            if (points < outsideMax) {
+                // Rơi xuống dưới cận của người ngoài tập: không biết thứ hạng nữa -> bỏ khỏi tập
+                dirty = true;
+                return;
+            }
+        } else if (points <= outsideMax) {
+            return; // vẫn không vào được top
+        }
+        insert(new Entry(uuid, points));
+        trim();
+        dirty = true;
+    }
+
+    private void insert(Entry entry) {
+        sorted.add(entry);
+        members.put(entry.uuid, entry);
+    }
+
+    private void trim() {
+        while (sorted.size() > capacity) {
+            Entry evicted = sorted.pollLast();
+            members.remove(evicted.uuid);
+            outsideMax = Math.max(outsideMax, evicted.points);
+        }
+    }
+
+    /** Top-N hiện tại (bất biến, có thể ít hơn N) - an toàn gọi từ mọi luồng */
+    List<Entry> snapshot() {
+        if (dirty) {
+            publish();
+        }
+        return snapshot;
+    }
+
+    /** Vị trí (0-based) trong top-N, null nếu không có */
+    Entry get(int index) {
+        List<Entry> current = snapshot();
+        return index >= 0 && index < current.size() ? current.get(index) : null;
+    }
+
+    private void publish() {
+        boolean needsReconcile;
+        synchronized (this) {
+            if (!dirty) return;
+            dirty = false;
+            List<Entry> top = new ArrayList<>(size);
+            for (Entry entry : sorted) {
+                if (top.size() == size || entry.points < outsideMax) break;
+                top.add(entry);
+            }
+            snapshot = Collections.unmodifiableList(top);
+            // Có người ngoài tập có thể đứng trong top-N mà ta không biết -> nạp lại
+            needsReconcile = top.size() < size && outsideMax != Double.NEGATIVE_INFINITY;
+        }
+        if (needsReconcile) {
+            reconcileRequest.run();
+        }
+    }
+}
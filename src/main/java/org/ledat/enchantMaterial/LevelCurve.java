@@ -0,0 +1,81 @@
+package org.ledat.enchantMaterial;
+
+import java.util.List;
+
+/**
+ * Ngưỡng điểm lên cấp (level-request) đã biên dịch thành double[].
+ * thresholds[i] = số điểm cần có ở cấp i để lên cấp i + 1.
+ * Mảng được ép không giảm (running max) để tra cứu bằng binary search.
+ */
+public final class LevelCurve {
+
+    public static final LevelCurve EMPTY = new LevelCurve(new double[0], true);
+
+    private final double[] thresholds;
+    private final boolean monotonic;
+
+    private LevelCurve(double[] thresholds, boolean monotonic) {
+        this.thresholds = thresholds;
+        this.monotonic = monotonic;
+    }
+
+    public static LevelCurve compile(List<Double> levelRequests) {
+        if (levelRequests == null || levelRequests.isEmpty()) return EMPTY;
+
+        double[] thresholds = new double[levelRequests.size()];
+        boolean monotonic = true;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < thresholds.length; i++) {
+            Double v = levelRequests.get(i);
+            double value = v != null ? v : 0D;
+            if (value < max) {
+                monotonic = false;
+                value = max;
+            }
+            max = value;
+            thresholds[i] = value;
+        }
+        return new LevelCurve(thresholds, monotonic);
+    }
+
+    /**
+     * @return false nếu level-request trong config có giá trị giảm dần (đã được nâng lên bằng giá trị trước đó)
+     */
+    public boolean isMonotonic() {
+        return monotonic;
+    }
+
+    /** Số ngưỡng trong level-request - cấp lớn nhất có thể đạt */
+    public int getMaxLevel() {
+        return thresholds.length;
+    }
+
+    public boolean isMaxLevel(int level) {
+        return level >= thresholds.length;
+    }
+
+    /**
+     * Cấp tương ứng với số điểm: số ngưỡng liên tiếp từ đầu mà điểm đã đạt. O(log n).
+     */
+    public int levelFor(double points) {
+        int lo = 0;
+        int hi = thresholds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (thresholds[mid] <= points) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Số điểm cần có ở cấp này để lên cấp tiếp theo, hoặc -1 nếu đã đạt cấp tối đa.
+     */
+    public double pointsToNext(int level) {
+        if (level < 0 || level >= thresholds.length) return -1D;
+        return thresholds[level];
+    }
+}
@@ -293,18 +293,33 @@ public class LuckyChanceBlockListener implements Listener {
         }
     }
 
+    /**
+     * Tỉ lệ lucky của người chơi, đọc từ PermissionProfile (không gọi hasPermission).
+     */
     public double getPlayerLuckyChance(Player player) {
+        return plugin.getPermissionProfiles().get(player).getLuckyChance();
+    }
+
+    /**
+     * Quét permission perm-chance.values và trả về tỉ lệ cao nhất người chơi có (không cache).
+     * Lấy giá trị lớn nhất để kết quả không phụ thuộc thứ tự duyệt HashMap.
+     */
+    public double resolveLuckyChance(Player player) {
         updateCache();
-        
-        // Kiểm tra permission từ cao xuống thấp
+
+        boolean matched = false;
+        double best = 0D;
         for (Map.Entry<String, Double> entry : permissionChanceCache.entrySet()) {
-            if (!"default".equals(entry.getKey()) && 
+            if (!"default".equals(entry.getKey()) &&
                 player.hasPermission(cachedPermissionPrefix + entry.getKey())) {
-                return entry.getValue();
+                if (!matched || entry.getValue() > best) {
+                    best = entry.getValue();
+                    matched = true;
+                }
             }
         }
-        
-        return cachedDefaultChance;
+
+        return matched ? best : cachedDefaultChance;
     }
 
     public void giveMoney(Player player, double amount) {
@@ -0,0 +1,233 @@
+package org.ledat.enchantMaterial;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chuỗi cấu hình đã biên dịch sẵn: mã màu &x và hex &#RRGGBB được dịch 1 lần,
+ * %placeholder% được tách thành mảng đoạn. Render chỉ còn 1 lượt StringBuilder.
+ *
+ * Dùng {@link #of(String)} cho chuỗi đọc từ config lúc chạy (có cache theo nội dung),
+ * {@link #compile(String)} cho chuỗi được giữ làm field và biên dịch khi reload.
+ */
+public final class MessageTemplate {
+
+    public static final MessageTemplate EMPTY = new MessageTemplate("", new String[]{""}, new String[0]);
+
+    private static final char COLOR_CHAR = '§';
+    private static final String LEGACY_CODES = "0123456789AaBbCcDdEeFfKkLlMmNnOoRrXx";
+    private static final int CACHE_LIMIT = 2048;
+    private static final Map<String, MessageTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String colored;     // toàn bộ chuỗi đã dịch màu, giữ nguyên %placeholder%
+    private final String[] literals;  // literals.length == names.length + 1
+    private final String[] names;     // tên placeholder, không có dấu %
+
+    private MessageTemplate(String colored, String[] literals, String[] names) {
+        this.colored = colored;
+        this.literals = literals;
+        this.names = names;
+    }
+
+    /** Lấy template từ cache (biên dịch nếu chưa có) */
+    public static MessageTemplate of(String raw) {
+        if (raw == null || raw.isEmpty()) return EMPTY;
+        MessageTemplate template = CACHE.get(raw);
+        if (template == null) {
+            template = compile(raw);
+            if (CACHE.size() >= CACHE_LIMIT) CACHE.clear();
+            CACHE.put(raw, template);
+        }
+        return template;
+    }
+
+    /** Dịch màu (& và &#RRGGBB), không đụng tới %placeholder% */
+    public static String colorize(String raw) {
+        return raw == null ? null : of(raw).colored;
+    }
+
+    public static MessageTemplate compile(String raw) {
+        if (raw == null || raw.isEmpty()) return EMPTY;
+        String colored = translateColors(raw);
+
+        int count = 0;
+        for (int i = 0; i < colored.length(); i++) {
+            int end = placeholderEnd(colored, i);
+            if (end > 0) {
+                count++;
+                i = end;
+            }
+        }
+        if (count == 0) {
+            return new MessageTemplate(colored, new String[]{colored}, new String[0]);
+        }
+
+        String[] literals = new String[count + 1];
+        String[] names = new String[count];
+        int n = 0;
+        int literalStart = 0;
+        for (int i = 0; i < colored.length(); i++) {
+            int end = placeholderEnd(colored, i);
+            if (end > 0) {
+                literals[n] = colored.substring(literalStart, i);
+                names[n] = colored.substring(i + 1, end);
+                n++;
+                i = end;
+                literalStart = end + 1;
+            }
+        }
+        literals[n] = colored.substring(literalStart);
+        return new MessageTemplate(colored, literals, names);
+    }
+
+    /**
+     * Vị trí dấu % đóng nếu tại i là %ten_placeholder% hợp lệ (chữ, số, _ , -), ngược lại -1.
+     */
+    private static int placeholderEnd(String s, int i) {
+        if (s.charAt(i) != '%') return -1;
+        for (int j = i + 1; j < s.length(); j++) {
+            char c = s.charAt(j);
+            if (c == '%') return j > i + 1 ? j : -1;
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') return -1;
+        }
+        return -1;
+    }
+
+    private static String translateColors(String text) {
+        if (text.indexOf('&') < 0) return text;
+
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c == '&' && i + 1 < len) {
+                char next = text.charAt(i + 1);
+                if (next == '#' && i + 7 < len && isHex(text, i + 2, i + 8)) {
+                    // &#RRGGBB -> §x§R§R§G§G§B§B
+                    sb.append(COLOR_CHAR).append('x');
+                    for (int j = i + 2; j < i + 8; j++) {
+                        sb.append(COLOR_CHAR).append(Character.toLowerCase(text.charAt(j)));
+                    }
+                    i += 7;
+                    continue;
+                }
+                if (LEGACY_CODES.indexOf(next) >= 0) {
+                    sb.append(COLOR_CHAR).append(Character.toLowerCase(next));
+                    i++;
+                    continue;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isHex(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    public boolean hasPlaceholders() {
+        return names.length > 0;
+    }
+
+    /** Có chứa %name% không (name không kèm dấu %) */
+    public boolean hasPlaceholder(String name) {
+        for (String placeholder : names) {
+            if (placeholder.equals(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Render 1 placeholder số nguyên (level, next_level, current_level...) - không boxing, không mảng varargs.
+     */
+    public String render(String name, int value) {
+        if (names.length == 0) return colored;
+
+        StringBuilder sb = new StringBuilder(colored.length() + names.length * 8);
+        for (int i = 0; i < names.length; i++) {
+            sb.append(literals[i]);
+            if (names[i].equals(name)) {
+                sb.append(value);
+            } else {
+                sb.append('%').append(names[i]).append('%');
+            }
+        }
+        sb.append(literals[names.length]);
+        return sb.toString();
+    }
+
+    public String render(String name, String value) {
+        return render(name, value, null, null, null, null);
+    }
+
+    /** Bộ placeholder của thông báo đập block: render("score", scoreStr, "block", blockName) */
+    public String render(String name1, String value1, String name2, String value2) {
+        return render(name1, value1, name2, value2, null, null);
+    }
+
+    /**
+     * Tối đa 3 placeholder kiểu chuỗi (score, block, pvp_mul) - dùng trên đường nóng thay cho render(Object...).
+     * Tên null = không dùng cặp đó.
+     */
+    public String render(String name1, String value1, String name2, String value2, String name3, String value3) {
+        if (names.length == 0) return colored;
+
+        StringBuilder sb = new StringBuilder(colored.length() + names.length * 8);
+        for (int i = 0; i < names.length; i++) {
+            sb.append(literals[i]);
+            String name = names[i];
+            if (name.equals(name1)) {
+                if (value1 != null) sb.append(value1);
+            } else if (name.equals(name2)) {
+                if (value2 != null) sb.append(value2);
+            } else if (name.equals(name3)) {
+                if (value3 != null) sb.append(value3);
+            } else {
+                sb.append('%').append(name).append('%');
+            }
+        }
+        sb.append(literals[names.length]);
+        return sb.toString();
+    }
+
+    /**
+     * Render với các cặp (tên, giá trị): render("score", 1.5, "block", "STONE").
+     * Placeholder không có trong danh sách được giữ nguyên dạng %ten%.
+     * Đường nóng dùng các overload có kiểu ở trên.
+     */
+    public String render(Object... pairs) {
+        if (names.length == 0) return colored;
+
+        StringBuilder sb = new StringBuilder(colored.length() + names.length * 8);
+        for (int i = 0; i < names.length; i++) {
+            sb.append(literals[i]);
+            Object value = lookup(names[i], pairs);
+            if (value != null) {
+                sb.append(value);
+            } else {
+                sb.append('%').append(names[i]).append('%');
+            }
+        }
+        sb.append(literals[names.length]);
+        return sb.toString();
+    }
+
+    private static Object lookup(String name, Object[] pairs) {
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            if (name.equals(pairs[i])) {
+                Object value = pairs[i + 1];
+                return value != null ? value : "";
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return colored;
+    }
+}
@@ -0,0 +1,191 @@
+package org.ledat.enchantMaterial;
+
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarStyle;
+import org.bukkit.boss.BossBar;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thông báo điểm khi đập block.
+ * - Đường đập block chỉ cộng điểm vào NotificationState (không format, không gửi)
+ * - 1 task lặp mỗi performance.actionbar_interval_ticks render actionbar/chat/title/bossbar
+ *   cho người chơi có điểm mới, đồng thời ẩn bossbar đã hết hạn
+ */
+public class NotificationManager implements Listener {
+
+    private static final long BOSSBAR_DURATION_TICKS = 60L;
+    private static final long DENIED_MESSAGE_COOLDOWN_MS = 5000L;
+
+    private final EnchantMaterial plugin;
+    private final Map<UUID, NotificationState> states = new ConcurrentHashMap<>();
+
+    private volatile int intervalTicks = 8;
+    private volatile String mode = "actionbar";
+    private volatile MessageTemplate actionBarTemplate = MessageTemplate.EMPTY;
+    private volatile MessageTemplate actionBarPvpTemplate = MessageTemplate.EMPTY;
+    private volatile MessageTemplate chatTemplate = MessageTemplate.EMPTY;
+    private volatile MessageTemplate titleTemplate = MessageTemplate.EMPTY;
+    private volatile MessageTemplate subtitleTemplate = MessageTemplate.EMPTY;
+    private volatile MessageTemplate bossBarTemplate = MessageTemplate.EMPTY;
+
+    private BukkitTask task;
+    private long ticks;
+
+    public NotificationManager(EnchantMaterial plugin) {
+        this.plugin = plugin;
+        loadSettings();
+    }
+
+    private void loadSettings() {
+        FileConfiguration config = plugin.getConfig();
+        intervalTicks = Math.max(1, config.getInt("performance.actionbar_interval_ticks", 8));
+        mode = config.getString("notification.mode", "actionbar").toLowerCase(Locale.ROOT);
+        actionBarTemplate = MessageTemplate.compile(orDefault(config.getString("notification.actionbar"),
+                "§a+%score% điểm §7(%block%)"));
+        actionBarPvpTemplate = MessageTemplate.compile(orDefault(config.getString("notification.actionbar_pvp"),
+                "§a+%score% điểm §7(%block%) §6(-%pvp_mul%x khu an toàn)"));
+        chatTemplate = MessageTemplate.compile("§aBạn nhận được §f%score% điểm §7(%block%)");
+        titleTemplate = MessageTemplate.compile(config.getString("notification.title.text", "Bạn đã nhận được %score% điểm!"));
+        subtitleTemplate = MessageTemplate.compile(config.getString("notification.title.subtitle", "Từ khối %block%"));
+        bossBarTemplate = MessageTemplate.compile(config.getString("notification.bossbar", "Điểm nhận: %score% từ %block%"));
+    }
+
+    private static String orDefault(String value, String def) {
+        return value == null || value.isEmpty() ? def : value;
+    }
+
+    public void start() {
+        if (task != null) task.cancel();
+        final long interval = intervalTicks;
+        task = Bukkit.getScheduler().runTaskTimer(plugin, () -> tick(interval), interval, interval);
+    }
+
+    /** Đọc lại config; khởi động lại task nếu chu kỳ thay đổi */
+    public void reload() {
+        int oldInterval = intervalTicks;
+        loadSettings();
+        if (task != null && oldInterval != intervalTicks) {
+            start();
+        }
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (NotificationState state : states.values()) {
+            if (state.bossBar != null) state.bossBar.removeAll();
+        }
+        states.clear();
+    }
+
+    /** Hot path: chỉ cộng dồn, render ở lượt task kế tiếp */
+    public void addScore(Player player, double score, Material block, boolean pvpActive) {
+        state(player).add(score, block, pvpActive);
+    }
+
+    /** Throttle tin nhắn từ chối (5 giây/lần) */
+    public boolean canSendMessage(Player player) {
+        NotificationState state = state(player);
+        long now = System.currentTimeMillis();
+        if (now - state.lastDeniedMessageAt > DENIED_MESSAGE_COOLDOWN_MS) {
+            state.lastDeniedMessageAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    private NotificationState state(Player player) {
+        return states.computeIfAbsent(player.getUniqueId(), k -> new NotificationState());
+    }
+
+    private void tick(long interval) {
+        ticks += interval;
+        if (states.isEmpty()) return;
+
+        for (Map.Entry<UUID, NotificationState> entry : states.entrySet()) {
+            NotificationState state = entry.getValue();
+
+            if (state.bossBar != null && ticks >= state.bossBarHideAt) {
+                state.bossBar.removeAll();
+                state.bossBar = null;
+            }
+
+            if (!state.isDirty()) continue;
+
+            Player player = Bukkit.getPlayer(entry.getKey());
+            double score = state.pendingScore;
+            state.clearPending();
+            if (player == null || !player.isOnline()) continue;
+
+            render(player, state, score);
+        }
+    }
+
+    private void render(Player player, NotificationState state, double score) {
+        String scoreStr = String.format(Locale.US, "%.2f", score);
+        String blockName = state.lastBlock != null ? state.lastBlock.name() : "";
+
+        switch (mode) {
+            case "chat":
+                player.sendMessage(chatTemplate.render("score", scoreStr, "block", blockName));
+                break;
+
+            case "title":
+                player.sendTitle(
+                        titleTemplate.render("score", scoreStr, "block", blockName),
+                        subtitleTemplate.render("score", scoreStr, "block", blockName),
+                        10, 70, 20);
+                break;
+
+            case "bossbar":
+                showBossBar(player, state, bossBarTemplate.render("score", scoreStr, "block", blockName));
+                break;
+
+            case "actionbar":
+            default: {
+                // Nếu đang PvP-protect -> dùng template khác
+                String msg = state.pvpActive
+                        ? actionBarPvpTemplate.render("score", scoreStr, "block", blockName,
+                                "pvp_mul", String.format(Locale.US, "%.2f", plugin.getPvpMultiplier()))
+                        : actionBarTemplate.render("score", scoreStr, "block", blockName);
+                player.spigot().sendMessage(ChatMessageType.ACTION_BAR, TextComponent.fromLegacyText(msg));
+                break;
+            }
+        }
+    }
+
+    private void showBossBar(Player player, NotificationState state, String message) {
+        if (state.bossBar == null) {
+            state.bossBar = Bukkit.createBossBar(message, BarColor.GREEN, BarStyle.SOLID);
+            state.bossBar.addPlayer(player);
+        } else {
+            state.bossBar.setTitle(message);
+        }
+        state.bossBar.setProgress(1.0);
+        state.bossBarHideAt = ticks + BOSSBAR_DURATION_TICKS;
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        NotificationState state = states.remove(event.getPlayer().getUniqueId());
+        if (state != null && state.bossBar != null) {
+            state.bossBar.removeAll();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.Material;
+import org.bukkit.boss.BossBar;
+
+/**
+ * Trạng thái thông báo của 1 người chơi. Chỉ truy cập trên main thread:
+ * đường đập block chỉ cộng vào pendingScore, NotificationManager render theo chu kỳ.
+ */
+final class NotificationState {
+
+    double pendingScore;
+    Material lastBlock;
+    boolean pvpActive;
+
+    BossBar bossBar;
+    long bossBarHideAt; // tick của NotificationManager
+
+    long lastDeniedMessageAt;
+
+    boolean isDirty() {
+        return pendingScore > 0D;
+    }
+
+    void add(double score, Material block, boolean pvp) {
+        pendingScore += score;
+        lastBlock = block;
+        pvpActive = pvp;
+    }
+
+    void clearPending() {
+        pendingScore = 0D;
+    }
+}
@@ -0,0 +1,49 @@
+package org.ledat.enchantMaterial;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cổng thế hệ cho dữ liệu chờ ghi: gameplay vào cổng, ghi sổ + journal theo thế hệ nhận được rồi ra;
+ * luồng flush tăng thế hệ và chỉ chờ các lượt ghi đang dở của thế hệ cũ (vài chục ns).
+ * Sau {@link #advance()} thế hệ cũ không còn ai ghi, nên rút sổ/chụp journal của nó là 1 lát cắt
+ * nhất quán mà không lượt đập block nào phải chờ luồng flush.
+ */
+final class PendingGate {
+
+    private final AtomicInteger[] active = {new AtomicInteger(), new AtomicInteger()};
+    private volatile int generation;
+
+    /** @return thế hệ đã vào; phải gọi {@link #exit(int)} với đúng giá trị này */
+    int enter() {
+        while (true) {
+            int g = generation;
+            AtomicInteger counter = active[g & 1];
+            counter.incrementAndGet();
+            if (generation == g) return g;
+            counter.decrementAndGet(); // vừa đổi thế hệ: vào lại thế hệ mới
+        }
+    }
+
+    void exit(int generation) {
+        active[generation & 1].decrementAndGet();
+    }
+
+    int current() {
+        return generation;
+    }
+
+    /**
+     * Chuyển sang thế hệ mới rồi chờ các lượt ghi của thế hệ cũ xong. Chỉ 1 luồng gọi (FLUSH_LOCK).
+     *
+     * @return thế hệ vừa đóng
+     */
+    int advance() {
+        int old = generation;
+        generation = old + 1;
+        AtomicInteger counter = active[old & 1];
+        while (counter.get() != 0) {
+            Thread.onSpinWait();
+        }
+        return old;
+    }
+}
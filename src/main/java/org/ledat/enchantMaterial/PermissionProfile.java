@@ -0,0 +1,53 @@
+package org.ledat.enchantMaterial;
+
+import org.ledat.enchantMaterial.booster.BoosterType;
+
+/**
+ * Ảnh chụp các quyền liên quan tới đường đập block của 1 người chơi, đã quy về số nguyên thủy.
+ * Bất biến - PermissionProfileManager thay nguyên object khi tính lại.
+ */
+public final class PermissionProfile {
+
+    private final boolean admin;
+    private final double[] boosterMultipliers; // index theo BoosterType.ordinal()
+    private final double fortuneMultiplier;
+    private final double luckyChance;
+    private final boolean pvpBypass;
+    private final long computedAt;
+
+    PermissionProfile(boolean admin, double[] boosterMultipliers, double fortuneMultiplier,
+                      double luckyChance, boolean pvpBypass, long computedAt) {
+        this.admin = admin;
+        this.boosterMultipliers = boosterMultipliers;
+        this.fortuneMultiplier = fortuneMultiplier;
+        this.luckyChance = luckyChance;
+        this.pvpBypass = pvpBypass;
+        this.computedAt = computedAt;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    /** Multiplier từ permission-booster cho loại booster (1.0 nếu không có quyền nào) */
+    public double getBoosterMultiplier(BoosterType type) {
+        return boosterMultipliers[type.ordinal()];
+    }
+
+    public double getFortuneMultiplier() {
+        return fortuneMultiplier;
+    }
+
+    public double getLuckyChance() {
+        return luckyChance;
+    }
+
+    /** true nếu có quyền bỏ qua giảm điểm PvP */
+    public boolean isPvpBypass() {
+        return pvpBypass;
+    }
+
+    long getComputedAt() {
+        return computedAt;
+    }
+}
@@ -0,0 +1,186 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.scheduler.BukkitTask;
+import org.ledat.enchantMaterial.booster.BoosterManager;
+import org.ledat.enchantMaterial.booster.BoosterType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Quản lý PermissionProfile cho người chơi online.
+ * - Tính khi join, khi /em reload, sau các lệnh đổi quyền (lp, pex, ...) và định kỳ làm fallback
+ * - Đường đập block chỉ đọc map, không gọi hasPermission
+ */
+public class PermissionProfileManager implements Listener {
+
+    private static final List<String> DEFAULT_REFRESH_COMMANDS = Arrays.asList(
+            "lp", "luckperms", "perm", "perms", "permission", "permissions",
+            "pex", "manuadd", "manudel", "manuaddp", "manudelp");
+
+    private final EnchantMaterial plugin;
+    private final Map<UUID, PermissionProfile> profiles = new ConcurrentHashMap<>();
+
+    private volatile long refreshIntervalMillis = 30_000L;
+    private volatile Set<String> refreshCommands = new HashSet<>(DEFAULT_REFRESH_COMMANDS);
+    private volatile String pvpBypassPermission = "";
+
+    private BukkitTask refreshTask;
+    private BukkitTask pendingRefreshAll;
+
+    public PermissionProfileManager(EnchantMaterial plugin) {
+        this.plugin = plugin;
+        loadSettings();
+    }
+
+    private void loadSettings() {
+        refreshIntervalMillis = Math.max(1, plugin.getConfig().getInt("performance.permission_refresh_seconds", 30)) * 1000L;
+
+        List<String> commands = plugin.getConfig().getStringList("performance.permission_refresh_commands");
+        Set<String> set = new HashSet<>();
+        for (String cmd : commands.isEmpty() ? DEFAULT_REFRESH_COMMANDS : commands) {
+            set.add(cmd.toLowerCase(Locale.ROOT));
+        }
+        refreshCommands = set;
+
+        String perm = plugin.getConfig().getString("pvp-protection.bypass-permission", "");
+        pvpBypassPermission = perm == null ? "" : perm;
+    }
+
+    /**
+     * Bắt đầu task làm mới định kỳ. Mỗi giây chỉ tính lại những profile đã quá hạn,
+     * nên chi phí được rải theo thời điểm join thay vì dồn vào 1 tick.
+     */
+    public void start() {
+        if (refreshTask != null) refreshTask.cancel();
+        refreshTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+            long now = System.currentTimeMillis();
+            long interval = refreshIntervalMillis;
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                PermissionProfile profile = profiles.get(player.getUniqueId());
+                if (profile == null || now - profile.getComputedAt() >= interval) {
+                    refresh(player);
+                }
+            }
+        }, 20L, 20L);
+    }
+
+    public void shutdown() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+        if (pendingRefreshAll != null) {
+            pendingRefreshAll.cancel();
+            pendingRefreshAll = null;
+        }
+        profiles.clear();
+    }
+
+    /** Đọc lại config và tính lại toàn bộ (gọi khi /em reload) */
+    public void reload() {
+        loadSettings();
+        refreshAll();
+    }
+
+    /**
+     * Lấy profile của người chơi; tính ngay nếu chưa có (lần đầu sau join/reload).
+     */
+    public PermissionProfile get(Player player) {
+        PermissionProfile profile = profiles.get(player.getUniqueId());
+        return profile != null ? profile : refresh(player);
+    }
+
+    public PermissionProfile refresh(Player player) {
+        PermissionProfile profile = compute(player);
+        profiles.put(player.getUniqueId(), profile);
+        return profile;
+    }
+
+    public void refreshAll() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            refresh(player);
+        }
+    }
+
+    public void invalidate(UUID uuid) {
+        profiles.remove(uuid);
+    }
+
+    private PermissionProfile compute(Player player) {
+        BoosterManager boosterManager = plugin.getBoosterManager();
+        double[] boosterMultipliers = new double[BoosterType.values().length];
+        for (BoosterType type : BoosterType.values()) {
+            boosterMultipliers[type.ordinal()] = boosterManager != null
+                    ? boosterManager.getPermissionMultiplier(player, type)
+                    : 1.0D;
+        }
+
+        FortuneManager fortuneManager = plugin.getFortuneManager();
+        double fortune = fortuneManager != null ? fortuneManager.resolveMultiplier(player) : 1.0D;
+
+        LuckyChanceBlockListener lucky = plugin.getLuckyChanceBlockListener();
+        double luckyChance = lucky != null ? lucky.resolveLuckyChance(player) : 0D;
+
+        String bypass = pvpBypassPermission;
+        boolean pvpBypass = !bypass.isEmpty() && player.hasPermission(bypass);
+
+        return new PermissionProfile(
+                player.hasPermission("enchantmaterial.admin"),
+                boosterMultipliers,
+                fortune,
+                luckyChance,
+                pvpBypass,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Lệnh đổi quyền thường được plugin quyền xử lý bất đồng bộ, nên đợi 1 giây rồi tính lại tất cả.
+     * Nhiều lệnh liên tiếp chỉ tạo 1 lần tính lại.
+     */
+    private void scheduleRefreshAll() {
+        if (pendingRefreshAll != null) return;
+        pendingRefreshAll = Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            pendingRefreshAll = null;
+            refreshAll();
+        }, 20L);
+    }
+
+    private boolean isRefreshCommand(String commandLine) {
+        String line = commandLine.startsWith("/") ? commandLine.substring(1) : commandLine;
+        int space = line.indexOf(' ');
+        String root = (space >= 0 ? line.substring(0, space) : line).toLowerCase(Locale.ROOT);
+        int colon = root.indexOf(':');
+        if (colon >= 0) root = root.substring(colon + 1);
+        return refreshCommands.contains(root);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        refresh(event.getPlayer());
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        if (isRefreshCommand(event.getMessage())) scheduleRefreshAll();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onServerCommand(ServerCommandEvent event) {
+        if (isRefreshCommand(event.getCommand())) scheduleRefreshAll();
+    }
+}
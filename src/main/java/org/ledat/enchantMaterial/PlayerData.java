@@ -1,11 +1,17 @@
 package org.ledat.enchantMaterial;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PlayerData {
     private UUID uuid;
-    private int level;
-    private double points;
+    private volatile int level;
+    private volatile double points;
+
+    // version tăng mỗi khi level/points đổi giá trị; persistedVersion = version mới nhất đã ghi DB.
+    // Object mới tạo coi như chưa ghi; DatabaseManager đánh dấu đã ghi khi load từ DB.
+    private final AtomicLong version = new AtomicLong(1);
+    private final AtomicLong persistedVersion = new AtomicLong(0);
 
     // Constructor
     public PlayerData(UUID uuid, int level, double points) {
@@ -31,10 +37,43 @@ public class PlayerData {
     }
 
     public void setLevel(int level) {
+        if (this.level == level) return;
         this.level = level;
+        version.incrementAndGet();
     }
 
     public void setPoints(double points) {
+        if (Double.compare(this.points, points) == 0) return;
         this.points = points;
+        version.incrementAndGet();
+    }
+
+    /**
+     * Cộng điểm đã được PointsLedger ghi riêng dạng delta - không làm tăng version
+     * (không cần MERGE cả dòng cho thay đổi này).
+     */
+    void addLedgerPoints(double delta) {
+        this.points += delta;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public long getPersistedVersion() {
+        return persistedVersion.get();
+    }
+
+    /** Còn thay đổi level/points chưa ghi DB */
+    public boolean isDirty() {
+        return version.get() > persistedVersion.get();
+    }
+
+    /**
+     * Đánh dấu đã ghi tới version này (CAS, chỉ tiến lên): luồng flush ghi ảnh chụp version N
+     * không bao giờ xoá dấu dirty của thay đổi N+1 xảy ra trong lúc đang ghi.
+     */
+    public void markPersisted(long writtenVersion) {
+        persistedVersion.accumulateAndGet(writtenVersion, Math::max);
     }
 }
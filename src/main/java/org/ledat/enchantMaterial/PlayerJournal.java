@@ -0,0 +1,506 @@
+package org.ledat.enchantMaterial;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Nhật ký ghi trước (write-ahead) cho dữ liệu điểm/level và mốc thưởng đã nhận chưa ghi DB.
+ * File memory-mapped: header 64 byte rồi 2 vùng bằng nhau, mỗi lúc chỉ 1 vùng có hiệu lực.
+ * Header: [magic:4][recordSize:4][active:8][regionSize:4] - active = (baseEpoch << 1) | vùng.
+ * Bản ghi cố định 40 byte: [type:1][pad:3][level:4][epoch:8][uuid msb:8][uuid lsb:8][value:8]
+ * (bản ghi nhận thưởng: level = mốc, value bỏ trống). Byte type xoá về 0 trước, ghi SAU CÙNG làm dấu hoàn tất.
+ *
+ * Epoch làm replay idempotent:
+ * - Mỗi lượt ghi DB mở 1 lượt ghi lại (rewrite): phần đang ghi DB gắn flushEpoch, phần còn chờ và mọi
+ *   append của thế hệ {@link PendingGate} kế tiếp gắn pendingEpoch (> flushEpoch). DB lưu flushEpoch trong
+ *   CÙNG transaction với dữ liệu, nên replay bỏ mọi bản ghi có epoch <= epoch DB đã commit
+ * - Ghi lại vào vùng KIA rồi mới đổi vùng bằng 1 lần putLong header, nên crash giữa lượt ghi lại
+ *   vẫn còn nguyên vùng cũ; bản ghi cũ sót trong vùng mới luôn có epoch < baseEpoch và bị bỏ
+ *
+ * Append không lock: giữ chỗ bằng CAS trên {@code state} rồi ghi thẳng vào mmap. Trong lúc đổi vùng
+ * (SWITCHING) mỗi append giữ chỗ ở cả 2 vùng và ghi cả 2, nên dù crash trước hay sau khi header đổi
+ * bản ghi vẫn nằm trong vùng có hiệu lực. beginRewrite/commit chỉ do luồng đang giữ FLUSH_LOCK gọi.
+ */
+final class PlayerJournal {
+
+    static final int MAGIC = 0x454D4A32; // "EMJ2"
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 40;
+    static final byte TYPE_DELTA = 1;
+    static final byte TYPE_ABSOLUTE = 2;
+    static final byte TYPE_CLAIM = 3;
+
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_RECORD_SIZE = 4;
+    private static final int OFF_ACTIVE = 8;
+    private static final int OFF_REGION_SIZE = 16;
+
+    // state: [switching:1][vùng:1][chỉ số vùng đang dùng:31][chỉ số vùng đích khi SWITCHING:31]
+    private static final long SWITCHING = 1L << 63;
+    private static final long REGION_BIT = 1L << 62;
+    private static final int INDEX_SHIFT = 31;
+    private static final long INDEX_MASK = (1L << 31) - 1;
+
+    interface Visitor {
+        void delta(UUID uuid, double delta);
+
+        void absolute(UUID uuid, int level, double points);
+
+        void claim(UUID uuid, int level);
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int regionSize;
+    private final int capacity; // số bản ghi mỗi vùng
+    private final int rewriteThreshold; // qua mốc này (75%) thì nên ghi lại sớm, trước khi append bắt đầu rơi
+
+    private final AtomicLong state = new AtomicLong();
+    // Epoch gắn cho append theo thế hệ (chẵn/lẻ) của PendingGate
+    private final AtomicLongArray epochs = new AtomicLongArray(2);
+    // Append thường đã ghi xong theo vùng (tính từ lifetimeStart) / append kép đã ghi xong
+    private final AtomicInteger[] normalWritten = {new AtomicInteger(), new AtomicInteger()};
+    private final AtomicInteger switchWritten = new AtomicInteger();
+    private volatile boolean dirty;
+
+    // Chỉ luồng flush (hoặc open/replay) đụng tới
+    private final int[] lifetimeStart = new int[2];
+    private long baseEpoch;  // bản ghi hợp lệ của vùng có epoch >= baseEpoch
+    private long lastEpoch;  // epoch lớn nhất đã cấp
+
+    private PlayerJournal(RandomAccessFile file, FileChannel channel, MappedByteBuffer buffer, int regionSize) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.regionSize = regionSize;
+        this.capacity = regionSize / RECORD_SIZE;
+        this.rewriteThreshold = capacity - capacity / 4;
+    }
+
+    /**
+     * Mở journal; file có vùng nhỏ hơn cấu hình (vừa tăng performance.journal.size_mb)
+     * được chép sang file tạm rồi đổi tên nguyên tử trước khi mở.
+     *
+     * @param committedEpoch epoch DB đã commit (-1 nếu không đọc được: replay mọi bản ghi)
+     */
+    static PlayerJournal open(File path, int capacityBytes, long committedEpoch) throws IOException {
+        int regionSize = regionSizeFor(capacityBytes);
+        if (path.length() > 0) {
+            regionSize = convertIfNeeded(path, regionSize, committedEpoch);
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(path, "rw");
+        long length = HEADER_SIZE + 2L * regionSize;
+        if (raf.length() < length) {
+            raf.setLength(length);
+        }
+        FileChannel channel = raf.getChannel();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        PlayerJournal journal = new PlayerJournal(raf, channel, buffer, regionSize);
+        if (buffer.getInt(OFF_MAGIC) != MAGIC) {
+            journal.initialize(firstEpoch(committedEpoch, 0L));
+        } else {
+            long active = buffer.getLong(OFF_ACTIVE);
+            journal.state.set(pack(false, (int) (active & 1L), 0, 0));
+            journal.baseEpoch = active >>> 1;
+            journal.lastEpoch = Math.max(journal.baseEpoch, committedEpoch);
+        }
+        return journal;
+    }
+
+    /**
+     * Epoch đầu tiên cho file mới/chép sang vùng lớn hơn: sau epoch DB đã commit. Không đọc được epoch DB
+     * thì lấy theo thời gian, để lớn hơn mọi epoch DB có thể đã lưu (nếu không replay lần sau sẽ bỏ nhầm).
+     */
+    private static long firstEpoch(long committedEpoch, long maxRecordEpoch) {
+        long after = committedEpoch >= 0 ? committedEpoch : System.currentTimeMillis();
+        return Math.max(after, maxRecordEpoch) + 1;
+    }
+
+    private static int regionSizeFor(int capacityBytes) {
+        int half = Math.max(RECORD_SIZE * 64, (capacityBytes - HEADER_SIZE) / 2);
+        return half - half % RECORD_SIZE;
+    }
+
+    /** File mới (toàn 0 hoặc vừa tạo): xoá sạch rồi ghi header, magic ghi sau cùng */
+    private void initialize(long firstEpoch) {
+        for (int pos = 0; pos < buffer.capacity(); pos += 8) {
+            buffer.putLong(pos, 0L);
+        }
+        state.set(pack(false, 0, 0, 0));
+        baseEpoch = firstEpoch;
+        lastEpoch = firstEpoch;
+        buffer.putInt(OFF_RECORD_SIZE, RECORD_SIZE);
+        buffer.putInt(OFF_REGION_SIZE, regionSize);
+        buffer.putLong(OFF_ACTIVE, baseEpoch << 1);
+        buffer.putInt(OFF_MAGIC, MAGIC);
+        buffer.force();
+    }
+
+    /**
+     * Đọc bản ghi hoàn tất của vùng đang có hiệu lực theo thứ tự ghi, bỏ bản ghi đã commit vào DB.
+     * Quét cả vùng (append giữ chỗ song song nên có thể còn ô trống giữa chừng), đặt vị trí ghi tiếp theo
+     * sau bản ghi hợp lệ cuối cùng và cấp epoch cho append của thế hệ hiện tại.
+     *
+     * @return số bản ghi đã replay
+     */
+    int replay(long committedEpoch, int generation, Visitor visitor) {
+        int region = region(state.get());
+        int start = regionStart(region);
+        int count = 0;
+        int end = 0;
+        for (int index = 0; index < capacity; index++) {
+            int at = start + index * RECORD_SIZE;
+            byte type = buffer.get(at);
+            long recordEpoch = buffer.getLong(at + 8);
+            if (!isType(type) || recordEpoch < baseEpoch) continue;
+
+            end = index + 1;
+            lastEpoch = Math.max(lastEpoch, recordEpoch);
+            if (recordEpoch > committedEpoch) {
+                visit(type, buffer.getInt(at + 4), new UUID(buffer.getLong(at + 16), buffer.getLong(at + 24)),
+                        buffer.getDouble(at + 32), visitor);
+                count++;
+            }
+        }
+        lifetimeStart[region] = end;
+        normalWritten[region].set(0);
+        state.set(pack(false, region, end, 0));
+        epochs.set(generation & 1, ++lastEpoch);
+        return count;
+    }
+
+    /** @return false nếu journal đầy (chờ lượt ghi lại sau) */
+    boolean appendDelta(int generation, UUID uuid, double delta) {
+        return append(generation, TYPE_DELTA, uuid, 0, delta);
+    }
+
+    /** @return false nếu journal đầy (chờ lượt ghi lại sau) */
+    boolean appendAbsolute(int generation, UUID uuid, int level, double points) {
+        return append(generation, TYPE_ABSOLUTE, uuid, level, points);
+    }
+
+    /** @return false nếu journal đầy (chờ lượt ghi lại sau) */
+    boolean appendClaim(int generation, UUID uuid, int level) {
+        return append(generation, TYPE_CLAIM, uuid, level, 0D);
+    }
+
+    /** Gọi trong khoảng enter/exit của PendingGate với đúng thế hệ đã vào */
+    private boolean append(int generation, byte type, UUID uuid, int level, double value) {
+        long recordEpoch = epochs.get(generation & 1);
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        while (true) {
+            long s = state.get();
+            int region = region(s);
+            int index = index(s);
+            if (index >= capacity) return false;
+            if ((s & SWITCHING) == 0) {
+                if (!state.compareAndSet(s, s + (1L << INDEX_SHIFT))) continue;
+                put(slot(region, index), type, recordEpoch, msb, lsb, level, value);
+                normalWritten[region].incrementAndGet();
+            } else {
+                int target = target(s);
+                if (target >= capacity) return false;
+                if (!state.compareAndSet(s, s + (1L << INDEX_SHIFT) + 1L)) continue;
+                put(slot(region, index), type, recordEpoch, msb, lsb, level, value);
+                put(slot(1 - region, target), type, recordEpoch, msb, lsb, level, value);
+                switchWritten.incrementAndGet();
+            }
+            if (!dirty) dirty = true;
+            return true;
+        }
+    }
+
+    /**
+     * Mở lượt ghi lại vào vùng kia - gọi TRƯỚC {@link PendingGate#advance()}: append của thế hệ mới
+     * nhận pendingEpoch, vẫn vào vùng hiện tại và được chép sang khi {@link #commit(Rewrite)}.
+     */
+    Rewrite beginRewrite(int nextGeneration) {
+        long flushEpoch = ++lastEpoch;
+        long pendingEpoch = ++lastEpoch;
+        epochs.set(nextGeneration & 1, pendingEpoch);
+        long s = state.get();
+        return new Rewrite(1 - region(s), flushEpoch, pendingEpoch, index(s));
+    }
+
+    /**
+     * Đổi sang vùng vừa ghi: chuyển state sang SWITCHING (append mới ghi cả 2 vùng), chờ append thường
+     * đã giữ chỗ ghi xong, chép append của thế hệ mới (pendingEpoch) giữ nguyên thứ tự, force rồi
+     * 1 lần putLong header. Gọi {@link Rewrite#forceHeader()} trước khi ghi DB.
+     *
+     * @return false nếu không đổi vùng (lượt ghi lại thiếu chỗ): vùng cũ giữ nguyên hiệu lực,
+     *         KHÔNG được ghi DB với flushEpoch của lượt này
+     */
+    boolean commit(Rewrite rewrite) {
+        if (!rewrite.complete) return false;
+        int target = rewrite.target;
+        switchWritten.set(0);
+
+        long s;
+        int targetStart;
+        do {
+            s = state.get();
+            targetStart = rewrite.count + (index(s) - rewrite.carryFrom);
+            if (targetStart > capacity) return false;
+        } while (!state.compareAndSet(s, s | SWITCHING | targetStart));
+        int region = region(s);
+        int end = index(s);
+
+        int reserved = end - lifetimeStart[region];
+        while (normalWritten[region].get() < reserved) {
+            Thread.onSpinWait();
+        }
+
+        // Thế hệ cũ đã nằm trong phần chụp: chỉ chép bản ghi pendingEpoch, ô còn lại để trống (type 0)
+        for (int index = rewrite.carryFrom; index < end; index++) {
+            int at = slot(region, index);
+            int dst = slot(target, rewrite.count + index - rewrite.carryFrom);
+            byte type = buffer.get(at);
+            if (isType(type) && buffer.getLong(at + 8) == rewrite.pendingEpoch) {
+                put(dst, type, rewrite.pendingEpoch, buffer.getLong(at + 16), buffer.getLong(at + 24),
+                        buffer.getInt(at + 4), buffer.getDouble(at + 32));
+            } else {
+                buffer.put(dst, (byte) 0);
+            }
+        }
+        if (targetStart > rewrite.count) {
+            buffer.force(slot(target, rewrite.count), (targetStart - rewrite.count) * RECORD_SIZE);
+        }
+
+        baseEpoch = rewrite.flushEpoch;
+        buffer.putLong(OFF_ACTIVE, (baseEpoch << 1) | target);
+        normalWritten[target].set(0);
+        long switched;
+        do {
+            switched = state.get();
+        } while (!state.compareAndSet(switched, pack(false, target, target(switched), 0)));
+        lifetimeStart[target] = target(switched);
+
+        // Append kép giữ chỗ trước khi về NORMAL phải xong trước lần commit kế tiếp
+        int dual = target(switched) - targetStart;
+        while (switchWritten.get() < dual) {
+            Thread.onSpinWait();
+        }
+        dirty = true;
+        return true;
+    }
+
+    /** Dữ liệu chờ ghi chụp sau khi đóng thế hệ cũ, ghi vào vùng chưa dùng */
+    final class Rewrite {
+        final long flushEpoch;
+        final long pendingEpoch;
+        private final int target;
+        private final int carryFrom;
+        private int count;
+        private boolean complete = true;
+
+        private Rewrite(int target, long flushEpoch, long pendingEpoch, int carryFrom) {
+            this.target = target;
+            this.flushEpoch = flushEpoch;
+            this.pendingEpoch = pendingEpoch;
+            this.carryFrom = carryFrom;
+        }
+
+        /** Phần đang ghi DB (bị bỏ khi replay nếu DB đã commit flushEpoch) */
+        void flushing(PendingKind kind, UUID uuid, int level, double value) {
+            add(kind, flushEpoch, uuid, level, value);
+        }
+
+        /** Phần vẫn còn chờ sau lượt ghi DB này */
+        void pending(PendingKind kind, UUID uuid, int level, double value) {
+            add(kind, pendingEpoch, uuid, level, value);
+        }
+
+        private void add(PendingKind kind, long recordEpoch, UUID uuid, int level, double value) {
+            if (count >= capacity) {
+                complete = false;
+                return;
+            }
+            put(slot(target, count), kind.type, recordEpoch, uuid.getMostSignificantBits(),
+                    uuid.getLeastSignificantBits(), level, value);
+            count++;
+        }
+
+        /** Đẩy phần đã chụp xuống đĩa trước khi đổi vùng */
+        void forceRegion() {
+            if (count > 0) buffer.force(slot(target, 0), count * RECORD_SIZE);
+        }
+
+        /** Đổi vùng phải bền trước khi DB commit flushEpoch */
+        void forceHeader() {
+            buffer.force(0, HEADER_SIZE);
+        }
+    }
+
+    /** Loại bản ghi khi ghi lại phần chụp */
+    enum PendingKind {
+        DELTA(TYPE_DELTA),
+        ABSOLUTE(TYPE_ABSOLUTE),
+        CLAIM(TYPE_CLAIM);
+
+        final byte type;
+
+        PendingKind(byte type) {
+            this.type = type;
+        }
+    }
+
+    /** Xoá dấu hoàn tất trước, ghi nội dung rồi mới đặt type: crash giữa chừng để lại ô không hợp lệ */
+    private void put(int at, byte type, long recordEpoch, long msb, long lsb, int level, double value) {
+        buffer.put(at, (byte) 0);
+        VarHandle.storeStoreFence();
+        buffer.put(at + 1, (byte) 0);
+        buffer.put(at + 2, (byte) 0);
+        buffer.put(at + 3, (byte) 0);
+        buffer.putInt(at + 4, level);
+        buffer.putLong(at + 8, recordEpoch);
+        buffer.putLong(at + 16, msb);
+        buffer.putLong(at + 24, lsb);
+        buffer.putDouble(at + 32, value);
+        VarHandle.storeStoreFence();
+        buffer.put(at, type); // dấu hoàn tất
+    }
+
+    private static long pack(boolean switching, int region, int index, int target) {
+        return (switching ? SWITCHING : 0L) | (region == 1 ? REGION_BIT : 0L)
+                | ((long) index << INDEX_SHIFT) | target;
+    }
+
+    private static int region(long state) {
+        return (state & REGION_BIT) != 0 ? 1 : 0;
+    }
+
+    private static int index(long state) {
+        return (int) ((state >>> INDEX_SHIFT) & INDEX_MASK);
+    }
+
+    private static int target(long state) {
+        return (int) (state & INDEX_MASK);
+    }
+
+    private int slot(int region, int index) {
+        return regionStart(region) + index * RECORD_SIZE;
+    }
+
+    private int regionStart(int index) {
+        return HEADER_SIZE + index * regionSize;
+    }
+
+    private static boolean isType(byte type) {
+        return type == TYPE_DELTA || type == TYPE_ABSOLUTE || type == TYPE_CLAIM;
+    }
+
+    private static void visit(byte type, int level, UUID uuid, double value, Visitor visitor) {
+        if (type == TYPE_DELTA) {
+            visitor.delta(uuid, value);
+        } else if (type == TYPE_CLAIM) {
+            visitor.claim(uuid, level);
+        } else {
+            visitor.absolute(uuid, level, value);
+        }
+    }
+
+    /** Số ô đã giữ chỗ trong vùng đang dùng (kể cả ô để trống khi chép) */
+    int size() {
+        return index(state.get());
+    }
+
+    /** Vùng đang dùng đã quá 75%: cần 1 lượt ghi lại (kể cả khi không có gì để ghi DB) để dọn chỗ */
+    boolean needsRewrite() {
+        return index(state.get()) >= rewriteThreshold;
+    }
+
+    /** Group fsync: chỉ force khi có ghi mới từ lần trước */
+    void force() {
+        if (!dirty) return;
+        dirty = false;
+        buffer.force();
+    }
+
+    void close() {
+        try {
+            buffer.force();
+            channel.close();
+            file.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // ===== TĂNG KÍCH THƯỚC =====
+
+    /**
+     * Vùng nhỏ hơn cấu hình: chép bản ghi còn hiệu lực (giữ thứ tự) sang file tạm với 1 epoch mới,
+     * force rồi đổi tên nguyên tử đè lên file cũ. Crash giữa chừng file cũ còn nguyên.
+     * File không nhận ra (không có magic) được mở như file mới.
+     *
+     * @return kích thước vùng của file sau khi mở
+     */
+    private static int convertIfNeeded(File path, int regionSize, long committedEpoch) throws IOException {
+        byte[] records;
+        long maxEpoch = 0L;
+        try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
+            ByteBuffer source = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (source.capacity() < HEADER_SIZE || source.getInt(OFF_MAGIC) != MAGIC) {
+                return regionSize; // rỗng / không nhận ra: mở như file mới
+            }
+            int existing = source.getInt(OFF_REGION_SIZE);
+            if (source.getInt(OFF_RECORD_SIZE) == RECORD_SIZE && existing >= regionSize
+                    && source.capacity() >= HEADER_SIZE + 2L * existing) {
+                return existing;
+            }
+            long active = source.getLong(OFF_ACTIVE);
+            int start = HEADER_SIZE + (int) (active & 1L) * existing;
+            long base = active >>> 1;
+            // Chỉ giữ bản ghi DB chưa commit (chép sang sẽ mang epoch mới)
+            ByteBuffer kept = ByteBuffer.allocate(existing);
+            for (int pos = 0; pos + RECORD_SIZE <= existing; pos += RECORD_SIZE) {
+                int at = start + pos;
+                long recordEpoch = source.getLong(at + 8);
+                if (!isType(source.get(at)) || recordEpoch < base) continue;
+                maxEpoch = Math.max(maxEpoch, recordEpoch);
+                if (recordEpoch <= committedEpoch) continue;
+                byte[] record = new byte[RECORD_SIZE];
+                source.get(at, record);
+                kept.put(record);
+            }
+            records = Arrays.copyOf(kept.array(), kept.position());
+        }
+
+        int count = records.length / RECORD_SIZE;
+        int targetRegion = Math.max(regionSize, ((count + 64) * RECORD_SIZE));
+        long convertedEpoch = firstEpoch(committedEpoch, maxEpoch);
+        File tmp = new File(path.getParentFile(), path.getName() + ".tmp");
+        Files.deleteIfExists(tmp.toPath());
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            long length = HEADER_SIZE + 2L * targetRegion;
+            out.setLength(length);
+            MappedByteBuffer dst = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            dst.position(HEADER_SIZE);
+            dst.put(records);
+            for (int i = 0; i < count; i++) {
+                dst.putLong(HEADER_SIZE + i * RECORD_SIZE + 8, convertedEpoch);
+            }
+            dst.putInt(OFF_RECORD_SIZE, RECORD_SIZE);
+            dst.putInt(OFF_REGION_SIZE, targetRegion);
+            dst.putLong(OFF_ACTIVE, convertedEpoch << 1);
+            dst.putInt(OFF_MAGIC, MAGIC);
+            dst.force();
+        }
+        Files.move(tmp.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return targetRegion;
+    }
+}
@@ -0,0 +1,80 @@
+package org.ledat.enchantMaterial;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Sổ cộng dồn điểm chưa ghi DB, mỗi người chơi 1 ô DoubleAdder cho mỗi thế hệ của {@link PendingGate}.
+ * Đường đập block chỉ add vào ô của thế hệ hiện tại (không lock); luồng flush đổi thế hệ rồi rút
+ * cả nhóm ô thế hệ cũ bằng sumThenReset, nên rút không bao giờ giành ô với lượt add đang chạy.
+ * Chỉ có 2 nhóm ô: thế hệ g và g + 2 không bao giờ cùng mở (flush chạy tuần tự trong FLUSH_LOCK).
+ */
+final class PointsLedger {
+
+    @SuppressWarnings("unchecked")
+    private final Map<UUID, DoubleAdder>[] cells = new Map[]{new ConcurrentHashMap<>(), new ConcurrentHashMap<>()};
+
+    void add(int generation, UUID uuid, double delta) {
+        cells[generation & 1].computeIfAbsent(uuid, k -> new DoubleAdder()).add(delta);
+    }
+
+    /**
+     * Bỏ phần delta chưa ghi - gọi TRƯỚC khi xếp 1 bản ghi điểm tuyệt đối (đã bao gồm các delta này).
+     */
+    void discard(UUID uuid) {
+        for (Map<UUID, DoubleAdder> slot : cells) {
+            DoubleAdder cell = slot.get(uuid);
+            if (cell != null) cell.reset();
+        }
+    }
+
+    /** Rút toàn bộ delta khác 0 của 1 thế hệ đã đóng ({@link PendingGate#advance()}) */
+    Map<UUID, Double> drain(int generation) {
+        Map<UUID, Double> out = new HashMap<>();
+        for (Map.Entry<UUID, DoubleAdder> entry : cells[generation & 1].entrySet()) {
+            double delta = entry.getValue().sumThenReset();
+            if (delta != 0D) out.put(entry.getKey(), delta);
+        }
+        return out;
+    }
+
+    /** Delta chưa rút của 1 người chơi, cả 2 thế hệ (không reset) */
+    double pending(UUID uuid) {
+        double sum = 0D;
+        for (Map<UUID, DoubleAdder> slot : cells) {
+            DoubleAdder cell = slot.get(uuid);
+            if (cell != null) sum += cell.sum();
+        }
+        return sum;
+    }
+
+    boolean hasPending(UUID uuid) {
+        for (Map<UUID, DoubleAdder> slot : cells) {
+            DoubleAdder cell = slot.get(uuid);
+            if (cell != null && cell.sum() != 0D) return true;
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        for (Map<UUID, DoubleAdder> slot : cells) {
+            for (DoubleAdder cell : slot.values()) {
+                if (cell.sum() != 0D) return false;
+            }
+        }
+        return true;
+    }
+
+    /** Bỏ ô đã rỗng của người chơi không còn trong cache */
+    void evict(UUID uuid) {
+        for (Map<UUID, DoubleAdder> slot : cells) {
+            DoubleAdder cell = slot.get(uuid);
+            if (cell != null && cell.sum() == 0D) {
+                slot.remove(uuid, cell);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.ledat.enchantMaterial;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Thứ hạng điểm của MỌI người chơi trong bộ nhớ, cho %enchantmaterial_rank% / percentile mà không cần sắp cả bảng.
+ * - Cây order-statistic (treap) trên mảng nguyên thuỷ: mỗi người chơi là 1 nút, khoá = điểm fixed-point (long)
+ *   sắp giảm dần, hoà điểm thì theo id nút; size[] của cây con cho phép đếm "số người điểm cao hơn" trong O(log n)
+ * - Độ ưu tiên treap suy ra từ id nút (hàm băm), không lưu
+ * - UUID -> nút: bảng băm địa chỉ mở int[] (dò tuyến tính, không bao giờ xoá vì player_data không xoá dòng)
+ * - Khoảng 40-55 byte / người chơi: 3 long + 3 int mỗi nút, 1-2 ô int của bảng băm và phần dư khi mảng nở
+ */
+final class RankIndex {
+
+    /** Điểm làm tròn tới 0.001 trước khi so sánh */
+    static final double SCALE = 1000D;
+
+    private static final int NIL = -1;
+    private static final int INITIAL_NODES = 1024;
+
+    private long[] msb = new long[INITIAL_NODES];
+    private long[] lsb = new long[INITIAL_NODES];
+    private long[] key = new long[INITIAL_NODES];
+    private int[] left = new int[INITIAL_NODES];
+    private int[] right = new int[INITIAL_NODES];
+    private int[] size = new int[INITIAL_NODES];
+    private int count;
+    private int root = NIL;
+
+    private int[] table = new int[INITIAL_NODES * 2]; // id nút + 1, 0 = trống
+
+    // Kết quả split (chỉ dùng bên trong lock)
+    private int splitLeft;
+    private int splitRight;
+
+    private volatile boolean ready;
+
+    static long toFixed(double points) {
+        if (Double.isNaN(points)) return 0L;
+        return Math.round(points * SCALE);
+    }
+
+    /** Đặt điểm mới nhất của 1 người chơi (thêm nếu chưa có) - O(log n) */
+    synchronized void update(UUID uuid, double points) {
+        put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), toFixed(points), true);
+    }
+
+    /**
+     * Nạp 1 dòng khi quét player_data lúc khởi động: bỏ qua nếu người chơi đã được {@link #update} trước đó
+     * (giá trị trong bộ nhớ mới hơn dòng DB).
+     */
+    synchronized void load(UUID uuid, double points) {
+        put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), toFixed(points), false);
+    }
+
+    /** Đánh dấu đã quét xong player_data - trước đó thứ hạng chỉ gồm người chơi đã thấy */
+    void markReady() {
+        ready = true;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /** Thứ hạng (1 = cao nhất, hoà điểm cùng hạng), -1 nếu chưa có người chơi này */
+    synchronized int rank(UUID uuid) {
+        int node = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return node == NIL ? -1 : countAboveFixed(key[node]) + 1;
+    }
+
+    /** Số người chơi có điểm lớn hơn points */
+    synchronized int countAbove(double points) {
+        return countAboveFixed(toFixed(points));
+    }
+
+    /** % người chơi có điểm <= người này (100 = cao nhất), -1 nếu chưa có */
+    synchronized double percentile(UUID uuid) {
+        int node = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (node == NIL) return -1D;
+        return (count - countAboveFixed(key[node])) * 100D / count;
+    }
+
+    /** Byte đang cấp phát cho các mảng (gồm phần dư khi mảng nở thêm 50%) */
+    synchronized long memoryBytes() {
+        return (long) key.length * (3 * Long.BYTES + 3 * Integer.BYTES) + (long) table.length * Integer.BYTES;
+    }
+
+    String describe() {
+        long bytes;
+        int players;
+        synchronized (this) {
+            bytes = memoryBytes();
+            players = count;
+        }
+        return String.format(Locale.US, "Rank index: %d người chơi%s, %.1f KB (%.1f byte/người)",
+                players, ready ? "" : " (đang nạp)", bytes / 1024D, players == 0 ? 0D : (double) bytes / players);
+    }
+
+    // ===== CÂY =====
+
+    private void put(long hi, long lo, long fixed, boolean overwrite) {
+        int node = find(hi, lo);
+        if (node != NIL) {
+            if (!overwrite || key[node] == fixed) return;
+            root = remove(root, node);
+        } else {
+            node = allocate(hi, lo);
+        }
+        key[node] = fixed;
+        left[node] = NIL;
+        right[node] = NIL;
+        size[node] = 1;
+        split(root, node);
+        root = merge(merge(splitLeft, node), splitRight);
+    }
+
+    private int countAboveFixed(long fixed) {
+        int above = 0;
+        int t = root;
+        while (t != NIL) {
+            if (key[t] > fixed) {
+                // t và cả cây con trái (điểm cao hơn) đều đứng trên
+                above += sizeOf(left[t]) + 1;
+                t = right[t];
+            } else {
+                t = left[t];
+            }
+        }
+        return above;
+    }
+
+    /** a đứng trước b: điểm cao hơn, hoà thì id nhỏ hơn */
+    private boolean before(int a, int b) {
+        return key[a] > key[b] || (key[a] == key[b] && a < b);
+    }
+
+    /** Tách t thành [các nút trước pivot] (splitLeft) và [còn lại] (splitRight) */
+    private void split(int t, int pivot) {
+        if (t == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+        if (before(t, pivot)) {
+            split(right[t], pivot);
+            right[t] = splitLeft;
+            pull(t);
+            splitLeft = t;
+        } else {
+            split(left[t], pivot);
+            left[t] = splitRight;
+            pull(t);
+            splitRight = t;
+        }
+    }
+
+    /** Ghép 2 cây, mọi nút của a đứng trước mọi nút của b */
+    private int merge(int a, int b) {
+        if (a == NIL) return b;
+        if (b == NIL) return a;
+        if (priority(a) > priority(b)) {
+            right[a] = merge(right[a], b);
+            pull(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        pull(b);
+        return b;
+    }
+
+    private int remove(int t, int node) {
+        if (t == node) return merge(left[t], right[t]);
+        if (before(node, t)) {
+            left[t] = remove(left[t], node);
+        } else {
+            right[t] = remove(right[t], node);
+        }
+        pull(t);
+        return t;
+    }
+
+    private void pull(int t) {
+        size[t] = sizeOf(left[t]) + sizeOf(right[t]) + 1;
+    }
+
+    private int sizeOf(int t) {
+        return t == NIL ? 0 : size[t];
+    }
+
+    private static int priority(int node) {
+        // fmix32 của MurmurHash3
+        int h = node * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    // ===== BẢNG BĂM UUID -> NÚT =====
+
+    private int find(long hi, long lo) {
+        int mask = table.length - 1;
+        for (int i = slot(hi, lo, mask); ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == 0) return NIL;
+            int node = entry - 1;
+            if (msb[node] == hi && lsb[node] == lo) return node;
+        }
+    }
+
+    private int allocate(long hi, long lo) {
+        if (count == key.length) {
+            int grown = key.length + (key.length >> 1);
+            msb = Arrays.copyOf(msb, grown);
+            lsb = Arrays.copyOf(lsb, grown);
+            key = Arrays.copyOf(key, grown);
+            left = Arrays.copyOf(left, grown);
+            right = Arrays.copyOf(right, grown);
+            size = Arrays.copyOf(size, grown);
+        }
+        int node = count++;
+        msb[node] = hi;
+        lsb[node] = lo;
+        if (count * 4 > table.length * 3) {
+            rehash(table.length * 2);
+        } else {
+            insertSlot(node);
+        }
+        return node;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int node = 0; node < count; node++) {
+            insertSlot(node);
+        }
+    }
+
+    private void insertSlot(int node) {
+        int mask = table.length - 1;
+        int i = slot(msb[node], lsb[node], mask);
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = node + 1;
+    }
+
+    private static int slot(long hi, long lo, int mask) {
+        long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
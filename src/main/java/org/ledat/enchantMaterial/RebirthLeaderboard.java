@@ -0,0 +1,144 @@
+package org.ledat.enchantMaterial;
+
+import org.ledat.enchantMaterial.rebirth.RebirthData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Top chuyển sinh cho %enchantmaterial_rebirth_top_*%: cấp cao hơn đứng trên, cùng cấp thì ai đạt trước đứng trên.
+ * - Nạp bằng truy vấn theo index idx_rebirth_rank, cập nhật mỗi lần saveRebirthData ghi xong
+ * - Giữ tối đa 2 * size người; khi chưa đủ (complete = false) thì mọi người ngoài danh sách đều xếp sau
+ *   người cuối danh sách, nên chỉ nhận người mới đứng trên người cuối
+ * - Placeholder đọc mảng bất biến (volatile), không truy vấn và không sắp xếp
+ */
+final class RebirthLeaderboard {
+
+    /** 1 dòng bảng xếp hạng (bất biến) */
+    static final class Entry {
+        final UUID uuid;
+        final int rebirthLevel;
+        final long lastRebirthTime;
+
+        Entry(UUID uuid, int rebirthLevel, long lastRebirthTime) {
+            this.uuid = uuid;
+            this.rebirthLevel = rebirthLevel;
+            this.lastRebirthTime = lastRebirthTime;
+        }
+
+        UUID getUuid() {
+            return uuid;
+        }
+
+        int getRebirthLevel() {
+            return rebirthLevel;
+        }
+
+        long getLastRebirthTime() {
+            return lastRebirthTime;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt((Entry e) -> -e.rebirthLevel)
+            .thenComparingLong(e -> e.lastRebirthTime)
+            .thenComparing(e -> e.uuid);
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final int size;
+    private final int capacity;
+    private final Runnable refreshRequest;
+
+    private final List<Entry> entries = new ArrayList<>(); // đã sắp theo ORDER
+    private boolean complete; // entries chứa mọi người có rebirth_level > 0
+    private volatile Entry[] snapshot = EMPTY;
+
+    RebirthLeaderboard(int size, Runnable refreshRequest) {
+        this.size = Math.max(1, size);
+        this.capacity = this.size * 2;
+        this.refreshRequest = refreshRequest;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Thay toàn bộ bằng kết quả truy vấn top rồi phủ dữ liệu mới nhất trong cache.
+     *
+     * @param complete true nếu truy vấn trả về ít hơn limit dòng
+     */
+    void reset(List<RebirthData> top, boolean complete, Collection<RebirthData> live) {
+        boolean needsRefresh;
+        synchronized (this) {
+            entries.clear();
+            for (RebirthData data : top) {
+                entries.add(new Entry(data.getUuid(), data.getRebirthLevel(), data.getLastRebirthTime()));
+            }
+            entries.sort(ORDER);
+            this.complete = complete;
+            for (RebirthData data : live) {
+                updateLocked(data.getUuid(), data.getRebirthLevel(), data.getLastRebirthTime());
+            }
+            needsRefresh = publish();
+        }
+        if (needsRefresh) refreshRequest.run();
+    }
+
+    /** Chuyển sinh của 1 người chơi vừa được ghi */
+    void update(UUID uuid, int rebirthLevel, long lastRebirthTime) {
+        boolean needsRefresh;
+        synchronized (this) {
+            if (!updateLocked(uuid, rebirthLevel, lastRebirthTime)) return;
+            needsRefresh = publish();
+        }
+        if (needsRefresh) refreshRequest.run();
+    }
+
+    /** @return true nếu danh sách đổi */
+    private boolean updateLocked(UUID uuid, int rebirthLevel, long lastRebirthTime) {
+        boolean changed = false;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry current = entries.get(i);
+            if (current.uuid.equals(uuid)) {
+                if (current.rebirthLevel == rebirthLevel && current.lastRebirthTime == lastRebirthTime) return false;
+                entries.remove(i);
+                changed = true;
+                break;
+            }
+        }
+        if (rebirthLevel <= 0) return changed;
+
+        Entry entry = new Entry(uuid, rebirthLevel, lastRebirthTime);
+        if (!complete && (entries.isEmpty() || ORDER.compare(entry, entries.get(entries.size() - 1)) > 0)) {
+            // Có thể có người ngoài danh sách đứng trên -> không biết thứ hạng, bỏ ra ngoài
+            return changed;
+        }
+        int at = 0;
+        while (at < entries.size() && ORDER.compare(entries.get(at), entry) < 0) {
+            at++;
+        }
+        entries.add(at, entry);
+        if (entries.size() > capacity) {
+            entries.remove(entries.size() - 1);
+            complete = false;
+        }
+        return true;
+    }
+
+    /** @return true nếu không còn đủ size người chắc chắn (cần nạp lại) */
+    private boolean publish() {
+        int shown = Math.min(size, entries.size());
+        snapshot = entries.subList(0, shown).toArray(EMPTY);
+        return !complete && shown < size;
+    }
+
+    /** Hạng thứ index (0-based), null nếu không có - O(1) */
+    Entry get(int index) {
+        Entry[] current = snapshot;
+        return index >= 0 && index < current.length ? current[index] : null;
+    }
+}
@@ -0,0 +1,118 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+
+/**
+ * Gộp drop + exp của mỗi người chơi trong 1 tick rồi trả 1 lần ở cuối tick:
+ * 1 lần addItem (1 lượt quét túi đồ) và 1 lần giveExp cho mỗi người chơi,
+ * thay vì mỗi block 1 lần. Chỉ dùng trên main thread.
+ */
+public class RewardAccumulator {
+
+    private final EnchantMaterial plugin;
+    private final Map<UUID, Pending> pending = new HashMap<>();
+    private boolean flushScheduled = false;
+
+    private static final class Pending {
+        final Player player;
+        final List<ItemStack> items = new ArrayList<>(4);
+        int exp;
+        Location dropLocation;
+
+        Pending(Player player) {
+            this.player = player;
+        }
+    }
+
+    public RewardAccumulator(EnchantMaterial plugin) {
+        this.plugin = plugin;
+    }
+
+    /** Cộng dồn item (gộp theo loại item giống nhau) */
+    public void addDrop(Player player, ItemStack stack, Location dropLocation) {
+        if (stack == null || stack.getType() == Material.AIR || stack.getAmount() <= 0) return;
+        Pending p = pendingFor(player);
+        p.dropLocation = dropLocation;
+        for (ItemStack existing : p.items) {
+            if (existing.isSimilar(stack)) {
+                existing.setAmount(existing.getAmount() + stack.getAmount());
+                return;
+            }
+        }
+        p.items.add(stack);
+    }
+
+    /** Cộng dồn exp để giveExp 1 lần */
+    public void addExp(Player player, int exp) {
+        if (exp <= 0) return;
+        pendingFor(player).exp += exp;
+    }
+
+    private Pending pendingFor(Player player) {
+        Pending p = pending.computeIfAbsent(player.getUniqueId(), k -> new Pending(player));
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Bukkit.getScheduler().runTask(plugin, this::flush);
+        }
+        return p;
+    }
+
+    /**
+     * Trả toàn bộ phần thưởng đang gộp. Được gọi tự động 1 lần/tick; gọi tay khi tắt plugin.
+     */
+    public void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty()) return;
+
+        for (Pending p : pending.values()) {
+            Player player = p.player;
+            boolean online = player.isOnline();
+
+            if (!p.items.isEmpty()) {
+                Collection<ItemStack> leftovers = online
+                        ? player.getInventory().addItem(p.items.toArray(new ItemStack[0])).values()
+                        : p.items;
+                dropLeftovers(leftovers, p.dropLocation);
+            }
+
+            if (online && p.exp > 0) {
+                player.giveExp(p.exp);
+            }
+        }
+        pending.clear();
+    }
+
+    private void dropLeftovers(Collection<ItemStack> leftovers, Location location) {
+        if (leftovers.isEmpty() || location == null) return;
+        World world = location.getWorld();
+        if (world == null) return;
+        for (ItemStack rem : leftovers) {
+            if (rem != null && rem.getType() != Material.AIR) {
+                dropSplit(world, location, rem);
+            }
+        }
+    }
+
+    /** Stack đã gộp có thể vượt getMaxStackSize() - tách ra trước khi spawn item entity */
+    private static void dropSplit(World world, Location location, ItemStack stack) {
+        int max = Math.max(1, stack.getMaxStackSize());
+        int remaining = stack.getAmount();
+        while (remaining > max) {
+            ItemStack part = stack.clone();
+            part.setAmount(max);
+            world.dropItemNaturally(location, part);
+            remaining -= max;
+        }
+        if (remaining > 0) {
+            stack.setAmount(remaining);
+            world.dropItemNaturally(location, stack);
+        }
+    }
+}
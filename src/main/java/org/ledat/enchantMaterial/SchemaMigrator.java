@@ -0,0 +1,317 @@
+package org.ledat.enchantMaterial;
+
+import org.ledat.enchantMaterial.storage.H2Dialect;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Schema có đánh version (bảng schema_version, 1 dòng).
+ * - v1: cột uuid kiểu VARCHAR(36)
+ * - v2: cột uuid kiểu UUID gốc của H2 (16 byte) - index nhỏ hơn hơn 2 lần, không còn toString/fromString
+ *
+ * Chuyển v1 -> v2 từng bảng: tạo bảng &lt;tên&gt;_v2, chép theo lô (keyset, mỗi lô 1 transaction),
+ * rồi DROP bảng cũ + RENAME. Bảng cũ còn nguyên cho tới bước đổi tên, nên lỗi/crash giữa chừng
+ * chỉ cần chạy lại lần khởi động sau (bảng nào đã là UUID thì bỏ qua).
+ * Crash giữa DROP và RENAME chỉ còn &lt;tên&gt;_v2: {@link #recoverInterruptedSwaps()} phải chạy TRƯỚC
+ * CREATE TABLE IF NOT EXISTS, nếu không bảng rỗng được tạo lại và bản _v2 (bản duy nhất) bị coi là rác.
+ * Chỉ dùng cho H2 - SQLite/MySQL luôn được tạo mới với uuid dạng nhị phân.
+ */
+final class SchemaMigrator {
+
+    static final int CURRENT_VERSION = 2;
+
+    /**
+     * 1 bảng cần chuyển: keyColumn dùng để chia lô (uuid dạng chuỗi hoặc id tự tăng),
+     * mergeKey != null thì ghi bằng MERGE (bỏ trùng uuid khác hoa/thường), null thì INSERT.
+     */
+    private static final class TableSpec {
+        final String name;
+        final String ddl;
+        final String keyColumn;
+        final String[] columns; // các cột ngoài uuid, chép nguyên giá trị
+        final String mergeKey;
+
+        TableSpec(String name, String ddl, String keyColumn, String[] columns, String mergeKey) {
+            this.name = name;
+            this.ddl = ddl;
+            this.keyColumn = keyColumn;
+            this.columns = columns;
+            this.mergeKey = mergeKey;
+        }
+
+        boolean numericKey() {
+            return !"uuid".equals(keyColumn);
+        }
+    }
+
+    private static final List<TableSpec> TABLES = Arrays.asList(
+            new TableSpec("player_data", H2Dialect.PLAYER_DATA_DDL, "uuid",
+                    new String[]{"level", "points", "last_updated"}, "uuid"),
+            new TableSpec("level_rewards", H2Dialect.LEVEL_REWARDS_DDL, "id",
+                    new String[]{"level", "claimed_at"}, "uuid, level"),
+            new TableSpec("boosters", H2Dialect.BOOSTERS_DDL, "id",
+                    new String[]{"type", "multiplier", "end_time", "created_at"}, null),
+            new TableSpec("rebirth_data", H2Dialect.REBIRTH_DATA_DDL, "uuid",
+                    new String[]{"rebirth_level", "last_rebirth_time", "created_at"}, "uuid")
+    );
+
+    private final DataSource dataSource;
+    private final Logger logger;
+    private final int batchSize;
+
+    SchemaMigrator(DataSource dataSource, Logger logger, int batchSize) {
+        this.dataSource = dataSource;
+        this.logger = logger;
+        this.batchSize = Math.max(100, batchSize);
+    }
+
+    /**
+     * Đọc version hiện tại; lần đầu (chưa có dòng) thì suy ra từ kiểu cột uuid và ghi lại.
+     */
+    int readVersion() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "id INT PRIMARY KEY, version INT NOT NULL)");
+                try (ResultSet rs = statement.executeQuery("SELECT version FROM schema_version WHERE id = 1")) {
+                    if (rs.next()) return rs.getInt(1);
+                }
+            }
+
+            int version = CURRENT_VERSION;
+            for (TableSpec table : TABLES) {
+                if (!isNativeUuid(uuidColumnType(connection, table.name))) {
+                    version = 1;
+                    break;
+                }
+            }
+            writeVersion(connection, version);
+            return version;
+        }
+    }
+
+    /**
+     * Hoàn tất bước đổi tên bị crash cắt ngang: bảng chính không còn mà &lt;tên&gt;_v2 còn thì đổi tên lại.
+     * Gọi lúc khởi động, trước khi tạo bảng.
+     */
+    void recoverInterruptedSwaps() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            for (TableSpec table : TABLES) {
+                String target = table.name + "_v2";
+                if (uuidColumnType(connection, table.name) == null && uuidColumnType(connection, target) != null) {
+                    logger.warning("[Schema] " + table.name + ": hoàn tất bước đổi tên " + target + " bị gián đoạn");
+                    swap(connection, table, target, false);
+                }
+            }
+        }
+    }
+
+    /** Chuyển toàn bộ bảng lên v2. Chạy ngoài main thread. */
+    void migrate() throws SQLException {
+        long start = System.currentTimeMillis();
+        logger.info("Bắt đầu chuyển schema database v1 -> v" + CURRENT_VERSION + " (uuid VARCHAR -> UUID)...");
+
+        for (TableSpec table : TABLES) {
+            migrateTable(table);
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            writeVersion(connection, CURRENT_VERSION);
+        }
+        logger.info("Hoàn tất chuyển schema database sau " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void migrateTable(TableSpec table) throws SQLException {
+        String target = table.name + "_v2";
+
+        try (Connection connection = dataSource.getConnection()) {
+            String currentType = uuidColumnType(connection, table.name);
+            if (currentType == null && uuidColumnType(connection, target) != null) {
+                // Crash ngay sau DROP ở lần trước: chỉ còn thiếu bước đổi tên
+                swap(connection, table, target, false);
+                return;
+            }
+            if (isNativeUuid(currentType)) {
+                dropLeftover(connection, table, target);
+                return;
+            }
+
+            // Chép lại từ đầu (bảng _v2 sót lại từ lần chạy dở bị bỏ)
+            execute(connection, "DROP TABLE IF EXISTS " + target);
+            execute(connection, String.format(table.ddl, target));
+        }
+
+        long total = countRows(table.name);
+        long copied = 0;
+        long skipped = 0;
+        int nextLogPercent = 10;
+        Object lastKey = table.numericKey() ? (Object) Long.MIN_VALUE : "";
+
+        String columns = String.join(", ", table.columns);
+        String select = "SELECT " + (table.numericKey() ? table.keyColumn + ", " : "") + "uuid, " + columns +
+                " FROM " + table.name + " WHERE " + table.keyColumn + " > ? ORDER BY " + table.keyColumn +
+                " LIMIT " + batchSize;
+        String placeholders = String.join(", ", Collections.nCopies(table.columns.length + 1, "?"));
+        String write = (table.mergeKey != null
+                ? "MERGE INTO " + target + " (uuid, " + columns + ") KEY(" + table.mergeKey + ")"
+                : "INSERT INTO " + target + " (uuid, " + columns + ")") +
+                " VALUES (" + placeholders + ")";
+
+        while (true) {
+            int read = 0;
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement selectStmt = connection.prepareStatement(select);
+                     PreparedStatement writeStmt = connection.prepareStatement(write)) {
+                    selectStmt.setObject(1, lastKey);
+                    int batched = 0;
+                    try (ResultSet rs = selectStmt.executeQuery()) {
+                        while (rs.next()) {
+                            read++;
+                            String rawUuid = rs.getString("uuid");
+                            lastKey = table.numericKey() ? (Object) rs.getLong(table.keyColumn) : rawUuid;
+
+                            UUID uuid = parseUuid(rawUuid);
+                            if (uuid == null) {
+                                skipped++;
+                                continue;
+                            }
+                            writeStmt.setObject(1, uuid);
+                            for (int i = 0; i < table.columns.length; i++) {
+                                writeStmt.setObject(i + 2, rs.getObject(table.columns[i]));
+                            }
+                            writeStmt.addBatch();
+                            batched++;
+                        }
+                    }
+                    if (batched > 0) writeStmt.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+
+            if (read == 0) break;
+            copied += read;
+            int percent = total > 0 ? (int) Math.min(100, copied * 100 / total) : 100;
+            if (percent >= nextLogPercent) {
+                logger.info("[Schema] " + table.name + ": " + copied + "/" + total + " dòng (" + percent + "%)");
+                nextLogPercent = (percent / 10 + 1) * 10;
+            }
+            if (read < batchSize) break;
+        }
+
+        if (skipped > 0) {
+            logger.warning("[Schema] " + table.name + ": bỏ qua " + skipped + " dòng có uuid không hợp lệ");
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            swap(connection, table, target, true);
+        }
+        logger.info("[Schema] " + table.name + ": đã chuyển " + (copied - skipped) + " dòng sang UUID");
+    }
+
+    /**
+     * Bảng đã là UUID mà _v2 vẫn còn: chỉ xoá khi _v2 rỗng. _v2 có dữ liệu cạnh bảng chính rỗng
+     * (bảng bị tạo lại sau crash giữa DROP/RENAME) thì _v2 mới là dữ liệu thật - đổi vào thay thế.
+     */
+    private void dropLeftover(Connection connection, TableSpec table, String target) throws SQLException {
+        if (uuidColumnType(connection, target) == null) return;
+        long leftover = countRows(connection, target);
+        if (leftover == 0) {
+            execute(connection, "DROP TABLE " + target);
+        } else if (countRows(connection, table.name) == 0) {
+            logger.warning("[Schema] " + table.name + " rỗng, khôi phục " + leftover + " dòng từ " + target);
+            swap(connection, table, target, true);
+        } else {
+            logger.warning("[Schema] " + table.name + " và " + target + " đều có dữ liệu - giữ nguyên "
+                    + target + ", kiểm tra và xoá thủ công");
+        }
+    }
+
+    private void swap(Connection connection, TableSpec table, String target, boolean dropOld) throws SQLException {
+        if (dropOld) execute(connection, "DROP TABLE " + table.name);
+        execute(connection, "ALTER TABLE " + target + " RENAME TO " + table.name);
+        // Index bị xoá cùng bảng cũ - tạo lại trên bảng mới
+        for (String index : indexesOf(table.name)) {
+            execute(connection, index);
+        }
+    }
+
+    private static String[] indexesOf(String table) {
+        switch (table) {
+            case "boosters":
+                return H2Dialect.BOOSTER_INDEXES;
+            case "player_data":
+                return H2Dialect.PLAYER_INDEXES;
+            case "rebirth_data":
+                return H2Dialect.REBIRTH_INDEXES;
+            default:
+                return new String[0];
+        }
+    }
+
+    private long countRows(String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return countRows(connection, table);
+        }
+    }
+
+    private static long countRows(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    /** Kiểu cột uuid của bảng, null nếu bảng không tồn tại */
+    private static String uuidColumnType(Connection connection, String table) throws SQLException {
+        String sql = "SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = ? AND COLUMN_NAME = 'UUID'";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, table.toUpperCase(Locale.ROOT));
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static boolean isNativeUuid(String type) {
+        return type != null && "UUID".equalsIgnoreCase(type);
+    }
+
+    private static UUID parseUuid(String raw) {
+        if (raw == null) return null;
+        try {
+            return UUID.fromString(raw.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeVersion(Connection connection, int version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "MERGE INTO schema_version (id, version) KEY(id) VALUES (1, ?)")) {
+            statement.setInt(1, version);
+            statement.executeUpdate();
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+}
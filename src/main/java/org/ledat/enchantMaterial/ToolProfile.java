@@ -0,0 +1,56 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.Material;
+
+import java.util.BitSet;
+
+/**
+ * Thông tin đã giải mã của dụng cụ đang cầm: tag bổ trợ, cấp bonus và tập material được phép đập.
+ * Bất biến - gắn với bảng luật đã dùng để tính, đổi bảng (reload) thì profile tự hết hiệu lực.
+ */
+public final class ToolProfile {
+
+    private final Material toolType;
+    private final EnchantTag enchantTag;
+    private final int bonusLevel;
+    private final BitSet allowedMaterials;
+    private final BlockRuleTable rules;
+
+    private ToolProfile(Material toolType, EnchantTag enchantTag, BitSet allowedMaterials, BlockRuleTable rules) {
+        this.toolType = toolType;
+        this.enchantTag = enchantTag;
+        this.bonusLevel = enchantTag.getBonusLevel();
+        this.allowedMaterials = allowedMaterials;
+        this.rules = rules;
+    }
+
+    static ToolProfile create(Material toolType, EnchantTag enchantTag, BlockRuleTable rules) {
+        return new ToolProfile(toolType, enchantTag, rules.allowedMaterials(enchantTag), rules);
+    }
+
+    /**
+     * Profile còn dùng được cho dụng cụ này với bảng luật hiện tại hay không.
+     */
+    boolean matches(Material currentType, BlockRuleTable currentRules) {
+        return toolType == currentType && rules == currentRules;
+    }
+
+    public EnchantTag getEnchantTag() {
+        return enchantTag;
+    }
+
+    public int getBonusLevel() {
+        return bonusLevel;
+    }
+
+    public boolean hasAnyEnchant() {
+        return !enchantTag.isEmpty();
+    }
+
+    /**
+     * @return true nếu bổ trợ trên dụng cụ cho phép đập material này
+     */
+    public boolean canBreak(Material material) {
+        return allowedMaterials.get(material.ordinal());
+    }
+}
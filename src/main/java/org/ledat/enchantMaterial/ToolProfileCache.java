@@ -0,0 +1,106 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache ToolProfile theo người chơi: dụng cụ chỉ được giải mã lại khi đổi/chỉnh item trên tay chính,
+ * không phải mỗi block.
+ *
+ * Không xoá cache theo PlayerItemDamageEvent/PlayerItemMendEvent: 2 sự kiện này bắn gần như mỗi block
+ * và không đổi tag bổ trợ. Item vỡ hoặc bị thay bằng loại khác được bắt bởi PlayerItemBreakEvent
+ * và phép so material trong {@link ToolProfile#matches}.
+ */
+public class ToolProfileCache implements Listener {
+
+    private final Map<UUID, ToolProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * Lấy profile của dụng cụ trên tay chính, giải mã (và migrate lore cũ) nếu cache trống/hết hiệu lực.
+     */
+    public ToolProfile get(Player player, ItemStack tool, BlockRuleTable rules) {
+        UUID uuid = player.getUniqueId();
+        ToolProfile profile = profiles.get(uuid);
+        if (profile != null && profile.matches(tool.getType(), rules)) {
+            return profile;
+        }
+
+        EnchantTag tag = EnchantTagMigrator.resolve(tool, rules.getEnchantKeyByDisplay());
+        profile = ToolProfile.create(tool.getType(), tag, rules);
+        profiles.put(uuid, profile);
+        return profile;
+    }
+
+    public void invalidate(UUID uuid) {
+        profiles.remove(uuid);
+    }
+
+    public void invalidateAll() {
+        profiles.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemHeld(PlayerItemHeldEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwapHands(PlayerSwapHandItemsEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDropItem(PlayerDropItemEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onItemBreak(PlayerItemBreakEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (!(event.getWhoClicked() instanceof Player)) return;
+        Player player = (Player) event.getWhoClicked();
+        int heldSlot = player.getInventory().getHeldItemSlot();
+
+        boolean touchesMainHand =
+                (event.getClickedInventory() == player.getInventory() && event.getSlot() == heldSlot)
+                        || event.getHotbarButton() == heldSlot
+                        // shift-click/gom item có thể đổ vào ô tay chính đang trống
+                        || event.getAction() == InventoryAction.MOVE_TO_OTHER_INVENTORY
+                        || event.getAction() == InventoryAction.COLLECT_TO_CURSOR;
+
+        if (touchesMainHand) {
+            invalidate(player.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        if (event.getWhoClicked() instanceof Player) {
+            invalidate(event.getWhoClicked().getUniqueId());
+        }
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,57 @@
+package org.ledat.enchantMaterial;
+
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Chỉ số nhỏ, ổn định cho từng world (theo UID) để luật theo world là bitset thay vì Set&lt;String&gt;.
+ * - Gán chỉ số khi world load (WorldLoadEvent / lúc biên dịch bảng luật), chỉ chạy trên main thread
+ * - indexOf() trên đường nóng chỉ so tham chiếu trên mảng nhỏ (server thường vài world), không hash
+ * - Unload giữ nguyên chỉ số, load lại cùng UID dùng lại chỉ số cũ
+ */
+final class WorldIndex {
+
+    private static final Map<UUID, Integer> indexByUid = new HashMap<>();
+    private static volatile World[] worlds = new World[0];
+
+    private WorldIndex() {}
+
+    /** Chỉ số của world, gán mới nếu chưa có */
+    static synchronized int register(World world) {
+        Integer index = indexByUid.get(world.getUID());
+        if (index == null) {
+            index = indexByUid.size();
+            indexByUid.put(world.getUID(), index);
+        }
+        World[] current = worlds;
+        if (index >= current.length || current[index] != world) {
+            World[] next = Arrays.copyOf(current, Math.max(current.length, index + 1));
+            next[index] = world;
+            worlds = next;
+        }
+        return index;
+    }
+
+    /** Bỏ tham chiếu tới world đã unload (giữ chỉ số) */
+    static synchronized void unregister(World world) {
+        Integer index = indexByUid.get(world.getUID());
+        World[] current = worlds;
+        if (index == null || index >= current.length || current[index] != world) return;
+        World[] next = current.clone();
+        next[index] = null;
+        worlds = next;
+    }
+
+    /** Chỉ số của world đã đăng ký, -1 nếu chưa */
+    static int indexOf(World world) {
+        World[] current = worlds;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == world) return i;
+        }
+        return -1;
+    }
+}
@@ -1,13 +1,13 @@
 package org.ledat.enchantMaterial.booster;
 
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
 import org.bukkit.boss.*;
 import org.bukkit.entity.Player;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 import org.ledat.enchantMaterial.EnchantMaterial;
+import org.ledat.enchantMaterial.MessageTemplate;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -449,20 +449,18 @@ public class BoosterManager {
             "enchantmaterial.booster"
         ) + "." + type.name().toLowerCase() + ".";
         
-        double maxMultiplier = 1.0;
-        
         // Lấy giới hạn kiểm tra từ config
         String configPath = "permission-booster.max-check-levels." + type.name().toLowerCase();
         int maxCheck = plugin.getConfig().getInt(configPath, getDefaultMaxCheck(type));
         
-        for (int i = 1; i <= maxCheck; i++) {
-            String permission = permissionPrefix + i;
-            if (player.hasPermission(permission)) {
-                maxMultiplier = Math.max(maxMultiplier, i);
+        // Quét từ cao xuống, quyền đầu tiên khớp chính là mức lớn nhất
+        for (int i = maxCheck; i > 1; i--) {
+            if (player.hasPermission(permissionPrefix + i)) {
+                return i;
             }
         }
         
-        return maxMultiplier;
+        return 1.0;
     }
     
     /**
@@ -503,8 +501,10 @@ public class BoosterManager {
         // 2. Global Booster Multiplier (nếu có)
         double globalMultiplier = getGlobalBoosterMultiplier(type);
         
-        // 3. Permission Booster Multiplier
-        double permissionMultiplier = getPermissionMultiplier(player, type);
+        // 3. Permission Booster Multiplier (từ PermissionProfile, không quét hasPermission)
+        double permissionMultiplier = player != null
+                ? plugin.getPermissionProfiles().get(player).getBoosterMultiplier(type)
+                : 1.0;
         
         // 4. Tính toán tổng hợp theo công thức: (Personal × Global) + (Permission - 1)
         // Ví dụ: Personal 2x, Global 1.5x, Permission 3x = (2 × 1.5) + (3 - 1) = 3 + 2 = 5x
@@ -742,7 +742,7 @@ public class BoosterManager {
 
             bar.setColor(color);
             bar.setStyle(style);
-            bar.setTitle(ChatColor.translateAlternateColorCodes('&', title));
+            bar.setTitle(title);
 
             double progress = calculateBossBarProgress(boosters);
             bar.setProgress(Math.max(0.0, Math.min(1.0, progress)));
@@ -757,38 +757,28 @@ public class BoosterManager {
 
         if (boosters.size() == 1) {
             Booster booster = boosters.get(0);
-            return wrapper.singleTitle()
-                    .replace("%type%", booster.getType().getFormattedName())
-                    .replace("%multiplier%", String.format(Locale.US, "%.1f", booster.getMultiplier()))
-                    .replace("%time%", booster.formatTimeLeft());
+            return MessageTemplate.of(wrapper.singleTitle()).render(
+                    "type", booster.getType().getFormattedName(),
+                    "multiplier", String.format(Locale.US, "%.1f", booster.getMultiplier()),
+                    "time", booster.formatTimeLeft());
         }
 
         Booster first = boosters.get(0);
         Booster second = boosters.size() > 1 ? boosters.get(1) : first;
 
-        String base;
-        if (boosters.size() == 2) {
-            base = wrapper.doubleTitle();
-        } else {
-            base = wrapper.multiTitle();
-        }
-
-        base = base
-                .replace("%type1%", first.getType().getFormattedName())
-                .replace("%multiplier1%", String.format(Locale.US, "%.1f", first.getMultiplier()))
-                .replace("%time1%", first.formatTimeLeft())
-                .replace("%type2%", second.getType().getFormattedName())
-                .replace("%multiplier2%", String.format(Locale.US, "%.1f", second.getMultiplier()))
-                .replace("%time2%", second.formatTimeLeft());
-
-        if (boosters.size() > 2) {
-            int remaining = boosters.size() - 2;
-            base = base.replace("%more%", wrapper.multiMoreFormat().replace("%count%", String.valueOf(remaining)));
-        } else {
-            base = base.replace("%more%", "");
-        }
-
-        return base;
+        String base = boosters.size() == 2 ? wrapper.doubleTitle() : wrapper.multiTitle();
+        String more = boosters.size() > 2
+                ? MessageTemplate.of(wrapper.multiMoreFormat()).render("count", boosters.size() - 2)
+                : "";
+
+        return MessageTemplate.of(base).render(
+                "type1", first.getType().getFormattedName(),
+                "multiplier1", String.format(Locale.US, "%.1f", first.getMultiplier()),
+                "time1", first.formatTimeLeft(),
+                "type2", second.getType().getFormattedName(),
+                "multiplier2", String.format(Locale.US, "%.1f", second.getMultiplier()),
+                "time2", second.formatTimeLeft(),
+                "more", more);
     }
     
     private BarColor determineBossBarColor(List<Booster> boosters) {
@@ -11,6 +11,7 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.ledat.enchantMaterial.EnchantMaterial;
+import org.ledat.enchantMaterial.MessageTemplate;
 import org.ledat.enchantMaterial.rebirth.RebirthManager;
 import org.ledat.enchantMaterial.rebirth.RebirthData;
 import org.ledat.enchantMaterial.DatabaseManager;
@@ -39,7 +40,7 @@ public class RebirthGUI implements Listener {
     
     public void openGUI(Player player) {
         try {
-            String title = ChatColor.translateAlternateColorCodes('&', 
+            String title = MessageTemplate.colorize(
                     rebirthManager.getConfig().getString("rebirth.gui.title", "&6&lChuyển Sinh"));
             int size = rebirthManager.getConfig().getInt("rebirth.gui.size", 54);
             Inventory gui = Bukkit.createInventory(null, size, title);
@@ -138,7 +139,7 @@ public class RebirthGUI implements Listener {
     private void fillBorder(Inventory gui) {
         // SỬA: Thêm "rebirth." vào đầu path
         String borderMaterial = rebirthManager.getConfig().getString("rebirth.gui.border.material", "GRAY_STAINED_GLASS_PANE");
-        String borderName = ChatColor.translateAlternateColorCodes('&', 
+        String borderName = MessageTemplate.colorize(
                 rebirthManager.getConfig().getString("rebirth.gui.border.name", " "));
         
         Material borderType = resolveMaterial(borderMaterial, "rebirth.gui.border.material");
@@ -176,7 +177,7 @@ public class RebirthGUI implements Listener {
             
             List<Integer> slots = rebirthManager.getConfig().getIntegerList(path + ".slots");
             String material = rebirthManager.getConfig().getString(path + ".material", "STONE");
-            String name = ChatColor.translateAlternateColorCodes('&', 
+            String name = MessageTemplate.colorize(
                     rebirthManager.getConfig().getString(path + ".name", ""));
             List<String> lore = rebirthManager.getConfig().getStringList(path + ".lore");
             
@@ -540,21 +541,16 @@ public class RebirthGUI implements Listener {
         ItemMeta meta = item.getItemMeta();
         
         if (meta != null) {
+            // Giá trị placeholder tính 1 lần cho cả tên và lore
+            Object[] placeholders = player != null ? placeholderValues(player, level) : new Object[0];
+
             // Set display name with placeholders
-            String displayName = ChatColor.translateAlternateColorCodes('&', name);
-            if (player != null) {
-                displayName = replacePlaceholders(displayName, player, level);
-            }
-            meta.setDisplayName(displayName);
+            meta.setDisplayName(MessageTemplate.of(name).render(placeholders));
             
             // Set lore with placeholders
             List<String> finalLore = new ArrayList<>();
             for (String line : lore) {
-                String coloredLine = ChatColor.translateAlternateColorCodes('&', line);
-                if (player != null) {
-                    coloredLine = replacePlaceholders(coloredLine, player, level);
-                }
-                finalLore.add(coloredLine);
+                finalLore.add(MessageTemplate.of(line).render(placeholders));
             }
             meta.setLore(finalLore);
             
@@ -564,29 +560,34 @@ public class RebirthGUI implements Listener {
         return item;
     }
     
-    private String replacePlaceholders(String text, Player player, Integer level) {
+    /**
+     * Cặp (tên, giá trị) cho MessageTemplate.render. Lỗi thì trả mảng rỗng (giữ nguyên placeholder).
+     */
+    private Object[] placeholderValues(Player player, Integer level) {
         try {
             PlayerData playerData = DatabaseManager.getPlayerData(player.getUniqueId().toString());
             RebirthData rebirthData = DatabaseManager.getRebirthDataCachedOrAsync(player.getUniqueId());
             
-            text = text.replace("%player%", player.getName())
-                      .replace("%current_level%", String.valueOf(playerData.getLevel()))
-                      .replace("%points%", String.format("%.0f", playerData.getPoints()))
-                      .replace("%rebirth_level%", String.valueOf(rebirthData.getRebirthLevel()));
+            List<Object> values = new ArrayList<>(12);
+            Collections.addAll(values,
+                    "player", player.getName(),
+                    "current_level", playerData.getLevel(),
+                    "points", String.format("%.0f", playerData.getPoints()),
+                    "rebirth_level", rebirthData.getRebirthLevel());
             
             if (level != null) {
-                text = text.replace("%level%", String.valueOf(level));
+                Collections.addAll(values, "level", level);
             }
             
             if (economy != null) {
-                text = text.replace("%money%", String.format("%.0f", economy.getBalance(player)));
+                Collections.addAll(values, "money", String.format("%.0f", economy.getBalance(player)));
             }
+            return values.toArray();
             
         } catch (Exception e) {
             plugin.getLogger().warning("Lỗi replace placeholders: " + e.getMessage());
+            return new Object[0];
         }
-        
-        return text;
     }
     
     @EventHandler
@@ -597,7 +598,7 @@ public class RebirthGUI implements Listener {
         String title = ChatColor.stripColor(event.getView().getTitle());
         
         // Check if it's rebirth GUI
-        String guiTitle = ChatColor.stripColor(ChatColor.translateAlternateColorCodes('&', 
+        String guiTitle = ChatColor.stripColor(MessageTemplate.colorize(
                 rebirthManager.getConfig().getString("rebirth.gui.title", "Chuyển Sinh")));
         
         if (!title.contains(guiTitle)) return;
@@ -611,7 +612,7 @@ public class RebirthGUI implements Listener {
         
         // Handle close button
         // SỬA: Thêm "rebirth." vào đầu path
-        String closeButtonName = ChatColor.stripColor(ChatColor.translateAlternateColorCodes('&', 
+        String closeButtonName = ChatColor.stripColor(MessageTemplate.colorize(
                 rebirthManager.getConfig().getString("rebirth.gui.close-button.name", "Đóng")));
         if (itemName.contains(closeButtonName)) {
             player.closeInventory();
@@ -654,7 +655,7 @@ public class RebirthGUI implements Listener {
                         // Send message about requirements
                         String message = rebirthManager.getConfig().getString("rebirth.messages.cannot-rebirth", 
                                 "§c✗ Bạn không thể chuyển sinh cấp này!");
-                        player.sendMessage(ChatColor.translateAlternateColorCodes('&', message));
+                        player.sendMessage(MessageTemplate.colorize(message));
                     }
                 } catch (Exception e) {
                     plugin.getLogger().warning("Lỗi xử lý click rebirth: " + e.getMessage());
@@ -665,7 +666,7 @@ public class RebirthGUI implements Listener {
     }
     
     private void openConfirmationGUI(Player player, int level) {
-        String title = ChatColor.translateAlternateColorCodes('&', 
+        String title = MessageTemplate.colorize(
                 rebirthManager.getConfig().getString("rebirth.gui.confirmation-gui.title", "&c&lXác Nhận Chuyển Sinh"));
 
         
@@ -0,0 +1,244 @@
+package org.ledat.enchantMaterial.gui;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.ledat.enchantMaterial.MessageTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Item của GUI phần thưởng level, dựng 1 lần cho mỗi lần nạp level-rewards.yml và dùng chung cho mọi người chơi.
+ * - Tên/lore của mỗi trạng thái biên dịch thành MessageTemplate 1 lần, mọi mốc level dùng chung
+ * - Mỗi (mốc level, trạng thái) là 1 ItemStack đã render %level% sẵn
+ * - Item có placeholder theo người chơi (%current_level%) giữ template, chỉ render lại các item đó
+ * - Danh sách mốc đã sắp, viền và nút chuyển trang cũng dựng sẵn
+ */
+final class RewardItemCache {
+
+    static final int ITEMS_PER_PAGE = 36;
+
+    enum State {
+        CLAIMED("claimed", Material.CHEST_MINECART),
+        AVAILABLE("available", Material.CHEST_MINECART),
+        LOCKED("locked", Material.MINECART);
+
+        final String key;
+        final Material material;
+
+        State(String key, Material material) {
+            this.key = key;
+            this.material = material;
+        }
+    }
+
+    private static final String CURRENT_LEVEL = "current_level";
+    private static final MessageTemplate REWARDS_HEADER = MessageTemplate.compile("&6&lPHẦN THƯỞNG:");
+
+    /** Tên + lore của 1 trạng thái, biên dịch 1 lần mỗi lần nạp config */
+    private static final class StateTemplate {
+        final MessageTemplate name;
+        final List<MessageTemplate> lore;
+
+        StateTemplate(YamlConfiguration config, State state) {
+            String path = "level-rewards.reward-item." + state.key;
+            this.name = MessageTemplate.compile(config.getString(path + ".name", "&7Level %level%"));
+            List<MessageTemplate> lines = new ArrayList<>();
+            for (String line : config.getStringList(path + ".lore")) {
+                lines.add(MessageTemplate.compile(line));
+            }
+            this.lore = lines;
+        }
+    }
+
+    /** 1 item đã dựng; perPlayer = còn %current_level% phải render theo người chơi */
+    private static final class RewardItem {
+        final ItemStack base;
+        final String level;
+        final MessageTemplate name;
+        final List<MessageTemplate> lore;
+        final boolean perPlayer;
+
+        RewardItem(ItemStack base, String level, MessageTemplate name, List<MessageTemplate> lore, boolean perPlayer) {
+            this.base = base;
+            this.level = level;
+            this.name = name;
+            this.lore = lore;
+            this.perPlayer = perPlayer;
+        }
+    }
+
+    private final YamlConfiguration source;
+    private final List<Integer> levels;
+    private final Map<Integer, RewardItem[]> items = new HashMap<>();
+    private final String title;
+    private final ItemStack border;
+    private final ItemStack previousPage;
+    private final ItemStack nextPage;
+    private final ItemStack loading;
+
+    RewardItemCache(YamlConfiguration config) {
+        this.source = config;
+        this.title = MessageTemplate.colorize(config.getString("level-rewards.gui.title", "&6&lLevel Rewards"));
+
+        List<Integer> sorted = new ArrayList<>();
+        ConfigurationSection rewards = config.getConfigurationSection("rewards");
+        if (rewards != null) {
+            for (String key : rewards.getKeys(false)) {
+                try {
+                    sorted.add(Integer.parseInt(key));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        Collections.sort(sorted);
+        this.levels = Collections.unmodifiableList(sorted);
+
+        StateTemplate[] templates = new StateTemplate[State.values().length];
+        for (State state : State.values()) {
+            templates[state.ordinal()] = new StateTemplate(config, state);
+        }
+        for (int level : sorted) {
+            List<MessageTemplate> customLore = customLore(config, level);
+            RewardItem[] states = new RewardItem[State.values().length];
+            for (State state : State.values()) {
+                states[state.ordinal()] = build(templates[state.ordinal()], customLore, level, state);
+            }
+            items.put(level, states);
+        }
+
+        this.border = simpleItem(Material.BLACK_STAINED_GLASS_PANE, " ", Collections.emptyList());
+        this.previousPage = simpleItem(Material.RED_STAINED_GLASS_PANE,
+                config.getString("level-rewards.navigation.previous-page.name", "&c&lTrang trước"),
+                config.getStringList("level-rewards.navigation.previous-page.lore"));
+        this.nextPage = simpleItem(Material.LIME_STAINED_GLASS_PANE,
+                config.getString("level-rewards.navigation.next-page.name", "&a&lTrang tiếp theo"),
+                config.getStringList("level-rewards.navigation.next-page.lore"));
+        this.loading = simpleItem(Material.GRAY_STAINED_GLASS_PANE,
+                config.getString("level-rewards.reward-item.loading.name", "&7Đang tải..."),
+                Collections.emptyList());
+    }
+
+    /** Khối "PHẦN THƯỞNG" của mốc, rỗng nếu mốc không có custom-lore */
+    private static List<MessageTemplate> customLore(YamlConfiguration config, int level) {
+        List<String> lines = config.getStringList("rewards." + level + ".custom-lore");
+        if (lines.isEmpty()) return Collections.emptyList();
+
+        List<MessageTemplate> lore = new ArrayList<>(lines.size() + 3);
+        lore.add(MessageTemplate.EMPTY);
+        lore.add(REWARDS_HEADER);
+        lore.add(MessageTemplate.EMPTY);
+        for (String line : lines) {
+            lore.add(MessageTemplate.compile(line));
+        }
+        return lore;
+    }
+
+    private static RewardItem build(StateTemplate template, List<MessageTemplate> customLore, int level, State state) {
+        List<MessageTemplate> lore = new ArrayList<>(template.lore.size() + customLore.size());
+        lore.addAll(template.lore);
+        lore.addAll(customLore);
+
+        // %level% render ngay; item nào còn %current_level% thì render lại theo người chơi trong item()
+        boolean perPlayer = template.name.hasPlaceholder(CURRENT_LEVEL);
+        List<String> renderedLore = new ArrayList<>(lore.size());
+        for (MessageTemplate line : lore) {
+            perPlayer |= line.hasPlaceholder(CURRENT_LEVEL);
+            renderedLore.add(line.render("level", level));
+        }
+
+        ItemStack base = new ItemStack(state.material);
+        ItemMeta meta = base.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(template.name.render("level", level));
+            meta.setLore(renderedLore);
+            base.setItemMeta(meta);
+        }
+        return new RewardItem(base, String.valueOf(level), template.name, lore, perPlayer);
+    }
+
+    private static ItemStack simpleItem(Material material, String name, List<String> lore) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(MessageTemplate.colorize(name));
+            List<String> colored = new ArrayList<>(lore.size());
+            for (String line : lore) {
+                colored.add(MessageTemplate.colorize(line));
+            }
+            meta.setLore(colored);
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+
+    /** Cache này dựng từ đúng object config hiện tại (reloadConfig tạo object mới) */
+    boolean isBuiltFrom(YamlConfiguration config) {
+        return source == config;
+    }
+
+    /**
+     * Item cho 1 mốc: dùng chung bản dựng sẵn (Inventory.setItem tự chép),
+     * chỉ tạo bản mới khi còn placeholder theo người chơi.
+     */
+    ItemStack item(int level, State state, int currentLevel) {
+        RewardItem[] states = items.get(level);
+        if (states == null) return null;
+        RewardItem item = states[state.ordinal()];
+        if (!item.perPlayer) return item.base;
+
+        String current = String.valueOf(currentLevel);
+        ItemStack copy = item.base.clone();
+        ItemMeta meta = copy.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(item.name.render("level", item.level, CURRENT_LEVEL, current));
+            List<String> lore = new ArrayList<>(item.lore.size());
+            for (MessageTemplate line : item.lore) {
+                lore.add(line.render("level", item.level, CURRENT_LEVEL, current));
+            }
+            meta.setLore(lore);
+            copy.setItemMeta(meta);
+        }
+        return copy;
+    }
+
+    List<Integer> getLevels() {
+        return levels;
+    }
+
+    int getTotalPages() {
+        return (int) Math.ceil((double) levels.size() / ITEMS_PER_PAGE);
+    }
+
+    /** Mốc level tại slot của trang, -1 nếu slot không phải ô phần thưởng */
+    int levelAt(int page, int slot) {
+        if (slot < 9 || slot > 44) return -1;
+        int index = page * ITEMS_PER_PAGE + (slot - 9);
+        return index >= 0 && index < levels.size() ? levels.get(index) : -1;
+    }
+
+    String getTitle() {
+        return title;
+    }
+
+    ItemStack getBorder() {
+        return border;
+    }
+
+    ItemStack getPreviousPage() {
+        return previousPage;
+    }
+
+    ItemStack getNextPage() {
+        return nextPage;
+    }
+
+    ItemStack getLoading() {
+        return loading;
+    }
+}
@@ -1,20 +1,39 @@
 package org.ledat.enchantMaterial.listeners;
 
+import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.ledat.enchantMaterial.DatabaseManager;
 import org.ledat.enchantMaterial.EnchantMaterial;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Listener dùng để preload dữ liệu người chơi khi họ tham gia server.  
  * Việc load dữ liệu sớm giúp tránh lag khi block break cần truy vấn database lần đầu.
+ * Người vào trong cùng 1 tick được gom lại và load bằng 1 lượt getPlayerDataBatchAsync.
  */
 public class PlayerJoinListener implements Listener {
 
+    // Chỉ dùng trên main thread
+    private final List<UUID> pendingJoins = new ArrayList<>();
+
     @EventHandler
     public void onJoin(PlayerJoinEvent e) {
         EnchantMaterial.getInstance().getFortuneManager().warmup(e.getPlayer());
-        DatabaseManager.getPlayerDataAsync(e.getPlayer().getUniqueId()); // ấm cache DB
+
+        if (pendingJoins.isEmpty()) {
+            Bukkit.getScheduler().runTask(EnchantMaterial.getInstance(), this::loadPendingJoins);
+        }
+        pendingJoins.add(e.getPlayer().getUniqueId()); // ấm cache DB
+    }
+
+    private void loadPendingJoins() {
+        List<UUID> batch = new ArrayList<>(pendingJoins);
+        pendingJoins.clear();
+        DatabaseManager.getPlayerDataBatchAsync(batch);
     }
-}
\ No newline at end of file
+}
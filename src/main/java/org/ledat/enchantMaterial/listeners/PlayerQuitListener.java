@@ -9,7 +9,7 @@ public class PlayerQuitListener implements Listener {
     
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        // Force save dữ liệu khi player thoát
+        // Xếp lượt ghi async khi player thoát (không chạm JDBC trên main thread)
         DatabaseManager.onPlayerQuit(event.getPlayer().getUniqueId());
      //   EnchantMaterial.getInstance().getLogger().info(
      //       "💾 Đã save dữ liệu cho " + event.getPlayer().getName() + " khi thoát"
@@ -0,0 +1,81 @@
+package org.ledat.enchantMaterial.rewards;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Các mốc level người chơi đã nhận thưởng, lưu dạng bitset long[] (bit i = đã nhận mốc i).
+ * - has() chỉ là 1 phép thử bit, đọc được từ mọi luồng không cần lock
+ * - add() chép mảng mới rồi gán lại (nhận thưởng rất hiếm so với số lần đọc)
+ */
+public final class ClaimedLevels {
+
+    private volatile long[] words;
+
+    private ClaimedLevels(long[] words) {
+        this.words = words;
+    }
+
+    public static ClaimedLevels empty() {
+        return new ClaimedLevels(new long[0]);
+    }
+
+    public static ClaimedLevels of(Collection<Integer> levels) {
+        long[] bits = new long[0];
+        for (int level : levels) {
+            if (level < 0) continue;
+            int word = level >>> 6;
+            if (word >= bits.length) bits = Arrays.copyOf(bits, word + 1);
+            bits[word] |= 1L << level;
+        }
+        return new ClaimedLevels(bits);
+    }
+
+    public boolean has(int level) {
+        if (level < 0) return false;
+        long[] current = words;
+        int word = level >>> 6;
+        return word < current.length && (current[word] & (1L << level)) != 0;
+    }
+
+    /** @return false nếu mốc này đã có từ trước */
+    public synchronized boolean add(int level) {
+        if (level < 0 || has(level)) return false;
+        int word = level >>> 6;
+        long[] next = Arrays.copyOf(words, Math.max(words.length, word + 1));
+        next[word] |= 1L << level;
+        words = next;
+        return true;
+    }
+
+    /** Gộp thêm các mốc (dữ liệu DB + phần chưa ghi) */
+    public synchronized void addAll(Collection<Integer> levels) {
+        for (int level : levels) {
+            add(level);
+        }
+    }
+
+    public int count() {
+        int total = 0;
+        for (long word : words) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    /** Bản chép dạng Set (API cũ), tăng dần */
+    public Set<Integer> toSet() {
+        long[] current = words;
+        Set<Integer> levels = new LinkedHashSet<>();
+        for (int word = 0; word < current.length; word++) {
+            long bits = current[word];
+            while (bits != 0) {
+                levels.add((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return levels;
+    }
+}
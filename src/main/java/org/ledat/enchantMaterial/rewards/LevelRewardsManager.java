@@ -1,7 +1,6 @@
 package org.ledat.enchantMaterial.rewards;
 
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -10,13 +9,13 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.ledat.enchantMaterial.DatabaseManager;
 import org.ledat.enchantMaterial.EnchantMaterial;
+import org.ledat.enchantMaterial.MessageTemplate;
 import org.ledat.enchantMaterial.PlayerData;
 
 import java.io.File;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 
 public class LevelRewardsManager {
     
@@ -24,8 +23,6 @@ public class LevelRewardsManager {
     private YamlConfiguration rewardsConfig;
     private File rewardsFile;
     
-    // Pattern để nhận diện hex color
-    private static final Pattern HEX_PATTERN = Pattern.compile("&#([A-Fa-f0-9]{6})");
     
     public LevelRewardsManager(EnchantMaterial plugin) {
         this.plugin = plugin;
@@ -48,98 +45,43 @@ public class LevelRewardsManager {
         return rewardsConfig;
     }
     
+    /** Level và mốc đã nhận đều đã nằm trong cache - kiểm tra nhận thưởng không cần chạm DB */
+    public boolean isLoaded(Player player) {
+        UUID uuid = player.getUniqueId();
+        return DatabaseManager.getCached(uuid) != null && DatabaseManager.getCachedClaimedLevels(uuid) != null;
+    }
+    
+    /** Nạp level + mốc đã nhận trên executor (bình thường PlayerJoinListener đã nạp sẵn khi vào) */
+    public CompletableFuture<Void> loadAsync(Player player) {
+        UUID uuid = player.getUniqueId();
+        return CompletableFuture.allOf(DatabaseManager.getPlayerDataAsync(uuid),
+                DatabaseManager.getClaimedLevelsAsync(uuid));
+    }
+    
     public boolean hasClaimedReward(Player player, int level) {
-        try {
-            return DatabaseManager.hasClaimedReward(player.getUniqueId().toString(), level);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+        // Thử bit trong bitset đã nạp khi người chơi vào - chưa nạp thì trả false, người gọi dùng loadAsync
+        ClaimedLevels claimed = DatabaseManager.getCachedClaimedLevels(player.getUniqueId());
+        return claimed != null && claimed.has(level);
     }
     
     public boolean canClaimReward(Player player, int level) {
-        // Lấy level từ database thay vì tính toán từ points
-        int currentLevel;
-        try {
-            PlayerData playerData = DatabaseManager.getPlayerData(player.getUniqueId().toString());
-            currentLevel = playerData.getLevel();
-            
-            // DEBUG: Thêm log để kiểm tra
-           // player.sendMessage("§e[DEBUG] Current level: " + currentLevel + ", Required level: " + level);
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
-          //  player.sendMessage("§c[ERROR] Không thể lấy dữ liệu player từ database!");
+        // Chỉ đọc cache (được gọi trên main thread): chưa nạp thì từ chối, không rơi về getPlayerData chặn
+        UUID uuid = player.getUniqueId();
+        PlayerData playerData = DatabaseManager.getCached(uuid);
+        ClaimedLevels claimed = DatabaseManager.getCachedClaimedLevels(uuid);
+        if (playerData == null || claimed == null) {
             return false;
         }
         
-        // Kiểm tra điều kiện
-        if (currentLevel < level) {
-         //   player.sendMessage("§c[DEBUG] Level không đủ: " + currentLevel + " < " + level);
-            return false;
-        }
-        
-        // Kiểm tra đã claim chưa
-        boolean hasClaimed = hasClaimedReward(player, level);
-        
-        return !hasClaimed;
+        // Kiểm tra điều kiện level, rồi đã claim chưa
+        return playerData.getLevel() >= level && !claimed.has(level);
     }
     
     /**
-     * Phương thức utility để xử lý cả màu sắc cơ bản (&) và hex color (&#RRGGBB)
+     * Xử lý cả màu sắc cơ bản (&) và hex color (&#RRGGBB) - dùng MessageTemplate đã cache
      */
     private String translateColors(String text) {
-        if (text == null) return null;
-        
-        // Xử lý hex colors trước (cho Bukkit 1.16+)
-        try {
-            Matcher matcher = HEX_PATTERN.matcher(text);
-            while (matcher.find()) {
-                String hexCode = matcher.group(1);
-                try {
-                    // Thử sử dụng net.md_5.bungee.api.ChatColor cho Bukkit 1.16+
-                    Class<?> bungeeColorClass = Class.forName("net.md_5.bungee.api.ChatColor");
-                    Object colorObj = bungeeColorClass.getMethod("of", String.class).invoke(null, "#" + hexCode);
-                    String replacement = colorObj.toString();
-                    text = text.replace("&#" + hexCode, replacement);
-                } catch (Exception e) {
-                    // Nếu không có BungeeColor, sử dụng cách khác
-                    String replacement = convertHexToLegacy(hexCode);
-                    text = text.replace("&#" + hexCode, replacement);
-                }
-            }
-        } catch (Exception e) {
-            // Nếu có lỗi, bỏ qua hex color processing
-        }
-        
-        // Sau đó xử lý màu sắc cơ bản
-        return ChatColor.translateAlternateColorCodes('&', text);
-    }
-    
-    /**
-     * Chuyển đổi hex color thành màu legacy gần nhất (fallback cho phiên bản cũ)
-     */
-    private String convertHexToLegacy(String hexCode) {
-        try {
-            int rgb = Integer.parseInt(hexCode, 16);
-            int r = (rgb >> 16) & 0xFF;
-            int g = (rgb >> 8) & 0xFF;
-            int b = rgb & 0xFF;
-            
-            // Tìm màu legacy gần nhất dựa trên RGB
-            if (r > 200 && g < 100 && b < 100) return "§c"; // Red
-            if (r < 100 && g > 200 && b < 100) return "§a"; // Green
-            if (r < 100 && g < 100 && b > 200) return "§9"; // Blue
-            if (r > 200 && g > 200 && b < 100) return "§e"; // Yellow
-            if (r > 150 && g < 100 && b > 150) return "§d"; // Light Purple
-            if (r < 100 && g > 150 && b > 150) return "§b"; // Aqua
-            if (r > 150 && g > 100 && b < 100) return "§6"; // Gold
-            if (r > 150 && g > 150 && b > 150) return "§f"; // White
-            if (r < 100 && g < 100 && b < 100) return "§8"; // Dark Gray
-            return "§7"; // Gray (default)
-        } catch (Exception e) {
-            return "§7"; // Gray fallback
-        }
+        return MessageTemplate.colorize(text);
     }
     
     public void claimReward(Player player, int level) {
@@ -147,20 +89,13 @@ public class LevelRewardsManager {
             return;
         }
         
-        // Kiểm tra lại một lần nữa để tránh race condition
-        if (hasClaimedReward(player, level)) {
-            String message = rewardsConfig.getString("messages.reward-already-claimed", "&c&lBạn đã nhận phần thưởng level %level% rồi!")
-                    .replace("%level%", String.valueOf(level));
-            player.sendMessage(translateColors(message));
-            return;
-        }
-        
         try {
-            // SỬA: Sử dụng synchronous method để đảm bảo database được cập nhật ngay
-            DatabaseManager.claimReward(player.getUniqueId().toString(), level);
-            
-            // Thay thế phần cập nhật cache bằng:
-            DatabaseManager.refreshClaimedRewardsCache(player.getUniqueId().toString());
+            // Bật bit + journal, batch ghi DB sau; false = đã nhận (tránh race condition nhận 2 lần)
+            if (!DatabaseManager.claim(player.getUniqueId(), level)) {
+                player.sendMessage(MessageTemplate.of(rewardsConfig.getString("messages.reward-already-claimed",
+                        "&c&lBạn đã nhận phần thưởng level %level% rồi!")).render("level", level));
+                return;
+            }
             
             // Execute commands
             List<String> commands = rewardsConfig.getStringList("rewards." + level + ".commands");
@@ -185,9 +120,8 @@ public class LevelRewardsManager {
             }
             
             // Send success message với translateColors
-            String message = rewardsConfig.getString("messages.reward-claimed", "&a&lBạn đã nhận phần thưởng level %level%!")
-                    .replace("%level%", String.valueOf(level));
-            player.sendMessage(translateColors(message));
+            player.sendMessage(MessageTemplate.of(rewardsConfig.getString("messages.reward-claimed",
+                    "&a&lBạn đã nhận phần thưởng level %level%!")).render("level", level));
             
         } catch (SQLException e) {
             e.printStackTrace();
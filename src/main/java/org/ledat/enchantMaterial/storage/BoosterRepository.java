@@ -0,0 +1,32 @@
+package org.ledat.enchantMaterial.storage;
+
+import org.ledat.enchantMaterial.booster.Booster;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/** Bảng boosters */
+public interface BoosterRepository {
+
+    /** Kiểm tra bảng truy vấn được (thay cho DatabaseMetaData - tên bảng hoa/thường khác nhau giữa các engine) */
+    boolean isAvailable();
+
+    /** @return số dòng đã xoá */
+    int deleteExpired(long now) throws SQLException;
+
+    /** Booster còn hạn của mọi người chơi, sắp theo uuid rồi end_time */
+    Map<UUID, List<Booster>> loadActive(long now) throws SQLException;
+
+    List<Booster> loadActive(UUID uuid, long now) throws SQLException;
+
+    /** Thay toàn bộ booster của các người chơi trong map (1 transaction), bỏ qua booster đã hết hạn */
+    void replaceAll(Map<UUID, List<Booster>> boosters) throws SQLException;
+
+    /** Thay booster cùng loại của 1 người chơi */
+    void replace(UUID uuid, Booster booster) throws SQLException;
+
+    /** Số booster còn hạn theo từng loại */
+    Map<String, Integer> countActiveByType(long now) throws SQLException;
+}
@@ -0,0 +1,10 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/** Nguồn connection cho repository (DatabaseManager::getConnection - đã chờ chuyển schema) */
+@FunctionalInterface
+public interface ConnectionProvider {
+    Connection getConnection() throws SQLException;
+}
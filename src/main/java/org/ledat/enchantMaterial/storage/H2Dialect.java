@@ -0,0 +1,121 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/** H2 nhúng (mặc định): kiểu UUID gốc, upsert bằng MERGE ... KEY(...) */
+public class H2Dialect extends SqlDialect {
+
+    public static final String PLAYER_DATA_DDL = "CREATE TABLE IF NOT EXISTS %s (" +
+            "uuid UUID PRIMARY KEY," +
+            "level INT DEFAULT 1," +
+            "points DOUBLE DEFAULT 0.0," +
+            "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")";
+
+    public static final String LEVEL_REWARDS_DDL = "CREATE TABLE IF NOT EXISTS %s (" +
+            "id INT AUTO_INCREMENT PRIMARY KEY," +
+            "uuid UUID NOT NULL," +
+            "level INT NOT NULL," +
+            "claimed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+            "UNIQUE(uuid, level)" +
+            ")";
+
+    public static final String BOOSTERS_DDL = "CREATE TABLE IF NOT EXISTS %s (" +
+            "id INT AUTO_INCREMENT PRIMARY KEY, " +
+            "uuid UUID NOT NULL, " +
+            "type VARCHAR(10) NOT NULL, " +
+            "multiplier DOUBLE NOT NULL, " +
+            "end_time BIGINT NOT NULL, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")";
+
+    public static final String REBIRTH_DATA_DDL = "CREATE TABLE IF NOT EXISTS %s (" +
+            "uuid UUID PRIMARY KEY," +
+            "rebirth_level INT DEFAULT 0," +
+            "last_rebirth_time BIGINT DEFAULT 0," +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")";
+
+    // Giá trị nội bộ của plugin (epoch journal...); "value" là từ khoá của H2 2.x nên dùng meta_value
+    public static final String STORAGE_META_DDL = "CREATE TABLE IF NOT EXISTS storage_meta (" +
+            "meta_key VARCHAR(64) PRIMARY KEY," +
+            "meta_value BIGINT NOT NULL" +
+            ")";
+
+    public static final String[] BOOSTER_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_uuid ON boosters(uuid)",
+            "CREATE INDEX IF NOT EXISTS idx_end_time ON boosters(end_time)"
+    };
+
+    public static final String[] PLAYER_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_player_points ON player_data(points)"
+    };
+
+    public static final String[] REBIRTH_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_rebirth_rank ON rebirth_data(rebirth_level DESC, last_rebirth_time ASC)"
+    };
+
+    @Override
+    public String getName() {
+        return "H2";
+    }
+
+    @Override
+    public String getDriverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    public List<String> createTableStatements() {
+        return Arrays.asList(
+                String.format(PLAYER_DATA_DDL, "player_data"),
+                String.format(LEVEL_REWARDS_DDL, "level_rewards"),
+                String.format(BOOSTERS_DDL, "boosters"),
+                String.format(REBIRTH_DATA_DDL, "rebirth_data"),
+                STORAGE_META_DDL,
+                BOOSTER_INDEXES[0],
+                BOOSTER_INDEXES[1],
+                PLAYER_INDEXES[0],
+                REBIRTH_INDEXES[0]);
+    }
+
+    @Override
+    public String upsertPlayerSql() {
+        return "MERGE INTO player_data (uuid, level, points, last_updated) KEY(uuid) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
+    }
+
+    @Override
+    public String upsertRebirthSql() {
+        return "MERGE INTO rebirth_data (uuid, rebirth_level, last_rebirth_time) KEY(uuid) VALUES (?, ?, ?)";
+    }
+
+    @Override
+    public String upsertRewardClaimSql() {
+        return "MERGE INTO level_rewards (uuid, level, claimed_at) KEY(uuid, level) VALUES (?, ?, CURRENT_TIMESTAMP)";
+    }
+
+    @Override
+    public String upsertMetaSql() {
+        return "MERGE INTO storage_meta (meta_key, meta_value) KEY(meta_key) VALUES (?, ?)";
+    }
+
+    @Override
+    public boolean supportsUuidMigration() {
+        return true;
+    }
+
+    @Override
+    public void bindUuid(PreparedStatement statement, int index, UUID uuid) throws SQLException {
+        statement.setObject(index, uuid);
+    }
+
+    @Override
+    public UUID readUuid(ResultSet resultSet, String column) throws SQLException {
+        return resultSet.getObject(column, UUID.class);
+    }
+}
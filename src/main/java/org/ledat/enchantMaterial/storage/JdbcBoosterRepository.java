@@ -0,0 +1,180 @@
+package org.ledat.enchantMaterial.storage;
+
+import org.ledat.enchantMaterial.booster.Booster;
+import org.ledat.enchantMaterial.booster.BoosterType;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+public class JdbcBoosterRepository implements BoosterRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO boosters (uuid, type, multiplier, end_time) VALUES (?, ?, ?, ?)";
+    private static final int INSERT_BATCH = 100;
+
+    private final ConnectionProvider connections;
+    private final TransactionRunner writes;
+    private final SqlDialect dialect;
+    private final Logger logger;
+
+    public JdbcBoosterRepository(ConnectionProvider connections, TransactionRunner writes, SqlDialect dialect,
+                                 Logger logger) {
+        this.connections = connections;
+        this.writes = writes;
+        this.dialect = dialect;
+        this.logger = logger;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM boosters WHERE 1 = 0");
+             ResultSet ignored = statement.executeQuery()) {
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int deleteExpired(long now) throws SQLException {
+        int[] deleted = new int[1];
+        writes.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM boosters WHERE end_time < ?")) {
+                statement.setLong(1, now);
+                deleted[0] = statement.executeUpdate();
+            }
+        });
+        return deleted[0];
+    }
+
+    @Override
+    public Map<UUID, List<Booster>> loadActive(long now) throws SQLException {
+        Map<UUID, List<Booster>> result = new LinkedHashMap<>();
+        String sql = "SELECT uuid, type, multiplier, end_time FROM boosters WHERE end_time > ? ORDER BY uuid, end_time";
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, now);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    UUID uuid = dialect.readUuid(resultSet, "uuid");
+                    Booster booster = read(resultSet, now);
+                    if (uuid != null && booster != null) {
+                        result.computeIfAbsent(uuid, k -> new ArrayList<>()).add(booster);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Booster> loadActive(UUID uuid, long now) throws SQLException {
+        List<Booster> boosters = new ArrayList<>();
+        String sql = "SELECT type, multiplier, end_time FROM boosters WHERE uuid = ? AND end_time > ?";
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            dialect.bindUuid(statement, 1, uuid);
+            statement.setLong(2, now);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Booster booster = read(resultSet, now);
+                    if (booster != null) boosters.add(booster);
+                }
+            }
+        }
+        return boosters;
+    }
+
+    /** null nếu dòng hỏng (type lạ, multiplier không hợp lệ) hoặc đã hết hạn */
+    private Booster read(ResultSet resultSet, long now) throws SQLException {
+        try {
+            BoosterType type = BoosterType.valueOf(resultSet.getString("type"));
+            double multiplier = resultSet.getDouble("multiplier");
+            long endTime = resultSet.getLong("end_time");
+            if (multiplier <= 0 || endTime <= now) return null;
+            return new Booster(type, multiplier, now, endTime);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            logger.warning("❌ Lỗi parse booster record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void replaceAll(Map<UUID, List<Booster>> boosters) throws SQLException {
+        if (boosters.isEmpty()) return;
+        writes.execute(connection -> {
+            // Xóa boosters cũ của các players có trong map
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM boosters WHERE uuid = ?")) {
+                for (UUID uuid : boosters.keySet()) {
+                    dialect.bindUuid(delete, 1, uuid);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
+
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                int batchCount = 0;
+                for (Map.Entry<UUID, List<Booster>> entry : boosters.entrySet()) {
+                    for (Booster booster : entry.getValue()) {
+                        if (booster.isExpired()) continue;
+                        bindInsert(insert, entry.getKey(), booster);
+                        insert.addBatch();
+                        if (++batchCount % INSERT_BATCH == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                }
+                if (batchCount % INSERT_BATCH != 0) {
+                    insert.executeBatch();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void replace(UUID uuid, Booster booster) throws SQLException {
+        writes.execute(connection -> {
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM boosters WHERE uuid = ? AND type = ?");
+                 PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                dialect.bindUuid(delete, 1, uuid);
+                delete.setString(2, booster.getType().name());
+                delete.executeUpdate();
+
+                bindInsert(insert, uuid, booster);
+                insert.executeUpdate();
+            }
+        });
+    }
+
+    private void bindInsert(PreparedStatement insert, UUID uuid, Booster booster) throws SQLException {
+        dialect.bindUuid(insert, 1, uuid);
+        insert.setString(2, booster.getType().name());
+        insert.setDouble(3, booster.getMultiplier());
+        insert.setLong(4, booster.getEndTime());
+    }
+
+    @Override
+    public Map<String, Integer> countActiveByType(long now) throws SQLException {
+        Map<String, Integer> counts = new HashMap<>();
+        String sql = "SELECT type, COUNT(*) AS count FROM boosters WHERE end_time > ? GROUP BY type";
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, now);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    counts.put(resultSet.getString("type"), resultSet.getInt("count"));
+                }
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,182 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ToIntFunction;
+
+public class JdbcPlayerRepository implements PlayerRepository {
+
+    private static final String SELECT_SQL = "SELECT uuid, level, points FROM player_data";
+    private static final String ADD_POINTS_SQL =
+            "UPDATE player_data SET points = points + ?, last_updated = CURRENT_TIMESTAMP WHERE uuid = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO player_data (uuid, level, points, last_updated) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
+    private static final String JOURNAL_EPOCH_KEY = "journal_epoch";
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final ConnectionProvider connections;
+    private final TransactionRunner writes;
+    private final SqlDialect dialect;
+
+    public JdbcPlayerRepository(ConnectionProvider connections, TransactionRunner writes, SqlDialect dialect) {
+        this.connections = connections;
+        this.writes = writes;
+        this.dialect = dialect;
+    }
+
+    @Override
+    public PlayerRow load(UUID uuid) throws SQLException {
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_SQL + " WHERE uuid = ?")) {
+            dialect.bindUuid(statement, 1, uuid);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? new PlayerRow(uuid, resultSet.getInt("level"), resultSet.getDouble("points")) : null;
+            }
+        }
+    }
+
+    @Override
+    public Map<UUID, PlayerRow> loadAll(List<UUID> uuids, int chunkSize) throws SQLException {
+        Map<UUID, PlayerRow> loaded = new HashMap<>();
+        JdbcSupport.queryByUuids(connections, dialect, SELECT_SQL, uuids, chunkSize, resultSet -> {
+            PlayerRow row = read(resultSet);
+            if (row != null) loaded.put(row.getUuid(), row);
+        });
+        return loaded;
+    }
+
+    @Override
+    public Map<UUID, PlayerRow> loadEverything() throws SQLException {
+        Map<UUID, PlayerRow> loaded = new HashMap<>();
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                PlayerRow row = read(resultSet);
+                if (row != null) loaded.put(row.getUuid(), row);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<PlayerRow> loadTop(int limit) throws SQLException {
+        List<PlayerRow> top = new ArrayList<>(Math.max(0, limit));
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_SQL + " ORDER BY points DESC LIMIT ?")) {
+            statement.setInt(1, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    PlayerRow row = read(resultSet);
+                    if (row != null) top.add(row);
+                }
+            }
+        }
+        return top;
+    }
+
+    @Override
+    public void forEachPoints(ObjDoubleConsumer<UUID> consumer) throws SQLException {
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT uuid, points FROM player_data")) {
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    UUID uuid = dialect.readUuid(resultSet, "uuid");
+                    if (uuid != null) consumer.accept(uuid, resultSet.getDouble("points"));
+                }
+            }
+        }
+    }
+
+    private PlayerRow read(ResultSet resultSet) throws SQLException {
+        UUID uuid = dialect.readUuid(resultSet, "uuid");
+        return uuid != null ? new PlayerRow(uuid, resultSet.getInt("level"), resultSet.getDouble("points")) : null;
+    }
+
+    @Override
+    public void write(Collection<PlayerRow> rows, Map<UUID, Double> deltas, ToIntFunction<UUID> newRowLevel,
+                      long journalEpoch) throws SQLException {
+        if (rows.isEmpty() && deltas.isEmpty()) return;
+        writes.execute(connection -> {
+            writeRows(connection, rows);
+            writeDeltas(connection, deltas, newRowLevel);
+            if (journalEpoch > 0) writeJournalEpoch(connection, journalEpoch);
+        });
+    }
+
+    @Override
+    public long committedJournalEpoch() throws SQLException {
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT meta_value FROM storage_meta WHERE meta_key = ?")) {
+            statement.setString(1, JOURNAL_EPOCH_KEY);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+            }
+        }
+    }
+
+    /** Cùng transaction với dữ liệu: replay journal bỏ đúng phần đã commit */
+    private void writeJournalEpoch(Connection connection, long journalEpoch) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(dialect.upsertMetaSql())) {
+            statement.setString(1, JOURNAL_EPOCH_KEY);
+            statement.setLong(2, journalEpoch);
+            statement.executeUpdate();
+        }
+    }
+
+    private void writeRows(Connection connection, Collection<PlayerRow> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        try (PreparedStatement statement = connection.prepareStatement(dialect.upsertPlayerSql())) {
+            for (PlayerRow row : rows) {
+                dialect.bindUuid(statement, 1, row.getUuid());
+                statement.setInt(2, row.getLevel());
+                statement.setDouble(3, row.getPoints());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void writeDeltas(Connection connection, Map<UUID, Double> deltas, ToIntFunction<UUID> newRowLevel)
+            throws SQLException {
+        if (deltas.isEmpty()) return;
+
+        List<UUID> order = new ArrayList<>(deltas.keySet());
+        int[] counts;
+        try (PreparedStatement statement = connection.prepareStatement(ADD_POINTS_SQL)) {
+            for (UUID uuid : order) {
+                statement.setDouble(1, deltas.get(uuid));
+                dialect.bindUuid(statement, 2, uuid);
+                statement.addBatch();
+            }
+            counts = statement.executeBatch();
+        }
+
+        // Người chơi chưa có dòng trong DB -> tạo mới với điểm = delta
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+            boolean hasInsert = false;
+            for (int i = 0; i < order.size(); i++) {
+                if (counts[i] != 0) continue;
+                UUID uuid = order.get(i);
+                dialect.bindUuid(insert, 1, uuid);
+                insert.setInt(2, newRowLevel.applyAsInt(uuid));
+                insert.setDouble(3, deltas.get(uuid));
+                insert.addBatch();
+                hasInsert = true;
+            }
+            if (hasInsert) insert.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.ledat.enchantMaterial.storage;
+
+import org.ledat.enchantMaterial.rebirth.RebirthData;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class JdbcRebirthRepository implements RebirthRepository {
+
+    private static final String SELECT_SQL = "SELECT uuid, rebirth_level, last_rebirth_time FROM rebirth_data";
+
+    private final ConnectionProvider connections;
+    private final TransactionRunner writes;
+    private final SqlDialect dialect;
+
+    public JdbcRebirthRepository(ConnectionProvider connections, TransactionRunner writes, SqlDialect dialect) {
+        this.connections = connections;
+        this.writes = writes;
+        this.dialect = dialect;
+    }
+
+    @Override
+    public RebirthData load(UUID uuid) throws SQLException {
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_SQL + " WHERE uuid = ?")) {
+            dialect.bindUuid(statement, 1, uuid);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next()
+                        ? new RebirthData(uuid, resultSet.getInt("rebirth_level"), resultSet.getLong("last_rebirth_time"))
+                        : null;
+            }
+        }
+    }
+
+    @Override
+    public Map<UUID, RebirthData> loadAll(List<UUID> uuids, int chunkSize) throws SQLException {
+        Map<UUID, RebirthData> loaded = new HashMap<>();
+        JdbcSupport.queryByUuids(connections, dialect, SELECT_SQL, uuids, chunkSize, resultSet -> read(resultSet, loaded));
+        return loaded;
+    }
+
+    @Override
+    public Map<UUID, RebirthData> loadEverything() throws SQLException {
+        Map<UUID, RebirthData> loaded = new HashMap<>();
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                read(resultSet, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<RebirthData> loadTop(int limit) throws SQLException {
+        List<RebirthData> top = new ArrayList<>(Math.max(0, limit));
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_SQL +
+                     " WHERE rebirth_level > 0 ORDER BY rebirth_level DESC, last_rebirth_time ASC LIMIT ?")) {
+            statement.setInt(1, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    UUID uuid = dialect.readUuid(resultSet, "uuid");
+                    if (uuid == null) continue;
+                    top.add(new RebirthData(uuid, resultSet.getInt("rebirth_level"), resultSet.getLong("last_rebirth_time")));
+                }
+            }
+        }
+        return top;
+    }
+
+    private void read(ResultSet resultSet, Map<UUID, RebirthData> into) throws SQLException {
+        UUID uuid = dialect.readUuid(resultSet, "uuid");
+        if (uuid == null) return;
+        into.put(uuid, new RebirthData(uuid, resultSet.getInt("rebirth_level"), resultSet.getLong("last_rebirth_time")));
+    }
+
+    @Override
+    public void save(RebirthData data) throws SQLException {
+        writes.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(dialect.upsertRebirthSql())) {
+                dialect.bindUuid(statement, 1, data.getUuid());
+                statement.setInt(2, data.getRebirthLevel());
+                statement.setLong(3, data.getLastRebirthTime());
+                statement.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public class JdbcRewardClaimRepository implements RewardClaimRepository {
+
+    private final ConnectionProvider connections;
+    private final TransactionRunner writes;
+    private final SqlDialect dialect;
+
+    public JdbcRewardClaimRepository(ConnectionProvider connections, TransactionRunner writes, SqlDialect dialect) {
+        this.connections = connections;
+        this.writes = writes;
+        this.dialect = dialect;
+    }
+
+    @Override
+    public Set<Integer> claimedLevels(UUID uuid) throws SQLException {
+        Set<Integer> levels = new HashSet<>();
+        try (Connection connection = connections.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT level FROM level_rewards WHERE uuid = ?")) {
+            dialect.bindUuid(statement, 1, uuid);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    levels.add(resultSet.getInt("level"));
+                }
+            }
+        }
+        return levels;
+    }
+
+    @Override
+    public Map<UUID, Set<Integer>> loadAll(List<UUID> uuids, int chunkSize) throws SQLException {
+        Map<UUID, Set<Integer>> loaded = new HashMap<>();
+        JdbcSupport.queryByUuids(connections, dialect, "SELECT uuid, level FROM level_rewards", uuids, chunkSize,
+                resultSet -> {
+                    UUID uuid = dialect.readUuid(resultSet, "uuid");
+                    if (uuid != null) loaded.computeIfAbsent(uuid, k -> new HashSet<>()).add(resultSet.getInt("level"));
+                });
+        return loaded;
+    }
+
+    @Override
+    public void claimAll(Map<UUID, ? extends Collection<Integer>> claims) throws SQLException {
+        if (claims.isEmpty()) return;
+        writes.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(dialect.upsertRewardClaimSql())) {
+                for (Map.Entry<UUID, ? extends Collection<Integer>> entry : claims.entrySet()) {
+                    for (int level : entry.getValue()) {
+                        dialect.bindUuid(statement, 1, entry.getKey());
+                        statement.setInt(2, level);
+                        statement.addBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/** Tiện ích JDBC dùng chung cho các repository */
+final class JdbcSupport {
+
+    @FunctionalInterface
+    interface RowReader {
+        void read(ResultSet resultSet) throws SQLException;
+    }
+
+    private JdbcSupport() {
+    }
+
+    /** Chạy "&lt;select&gt; WHERE uuid IN (?, ...)" theo từng lô chunkSize UUID trên 1 connection */
+    static void queryByUuids(ConnectionProvider connections, SqlDialect dialect, String select,
+                             List<UUID> ids, int chunkSize, RowReader reader) throws SQLException {
+        if (ids.isEmpty()) return;
+        int size = Math.max(1, chunkSize);
+        try (Connection connection = connections.getConnection()) {
+            for (int from = 0; from < ids.size(); from += size) {
+                List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + size));
+                String sql = select + " WHERE uuid IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        dialect.bindUuid(statement, i + 1, chunk.get(i));
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            reader.read(resultSet);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
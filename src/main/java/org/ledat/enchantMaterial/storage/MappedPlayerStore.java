@@ -0,0 +1,618 @@
+package org.ledat.enchantMaterial.storage;
+
+import org.ledat.enchantMaterial.rebirth.RebirthData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Lưu player_data + rebirth_data trong 1 file memory-mapped, không qua JDBC/SQL (chỉ dùng cho 1 server).
+ * Header 32 byte [magic:4][version:4][recordSize:4][pad:4][epoch journal:8][sequence:8] rồi các bản ghi cố định 48 byte:
+ * [flags:1][pad:3][level:4][uuid msb:8][uuid lsb:8][points:8][rebirth level:4][pad:4][last rebirth:8]
+ *
+ * - Bản ghi mới được nối vào cuối, byte flags (có FLAG_VALID) ghi SAU CÙNG làm dấu hoàn tất
+ * - Cập nhật ghi thẳng vào vị trí của bản ghi (put trên MappedByteBuffer)
+ * - Chỉ mục UUID -> slot là bảng băm địa chỉ mở trong bộ nhớ, dựng lại khi mở file
+ * - force() sau mỗi lượt write/save (tương đương commit), chỉ khi có thay đổi
+ * - write() nguyên tử: tạo đủ slot (mở rộng file) trước khi đổi giá trị nào, tính sẵn giá trị tuyệt đối,
+ *   ghi file redo (.redo, có CRC) + force rồi mới đặt vào mmap. Crash giữa chừng: lần mở sau đặt lại
+ *   redo có sequence mới hơn header - giá trị tuyệt đối nên đặt lại bao nhiêu lần cũng vậy
+ * - Header giữ sequence của lượt ghi cuối và epoch journal đi kèm (replay journal bỏ phần đã có trong store)
+ * - Khi mở: bỏ bản ghi chỉ còn giá trị mặc định và thu nhỏ file nếu dư quá nhiều chỗ (compaction)
+ */
+public final class MappedPlayerStore implements PlayerRepository {
+
+    static final int MAGIC = 0x454D5053; // "EMPS"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 48;
+
+    private static final byte FLAG_VALID = 0x01;
+    private static final byte FLAG_PLAYER = 0x02;   // có dữ liệu level/điểm
+    private static final byte FLAG_REBIRTH = 0x04;  // có dữ liệu chuyển sinh
+
+    private static final int OFF_JOURNAL_EPOCH = 16; // trong header
+    private static final int OFF_SEQUENCE = 24;      // trong header
+
+    // File redo: [magic:4][count:4][sequence:8][epoch:8] + count x [msb:8][lsb:8][level:4][points:8] + [crc:8]
+    private static final int REDO_MAGIC = 0x454D5052; // "EMPR"
+    private static final int REDO_HEADER = 24;
+    private static final int REDO_ENTRY = 28;
+
+    private static final int OFF_FLAGS = 0;
+    private static final int OFF_LEVEL = 4;
+    private static final int OFF_MSB = 8;
+    private static final int OFF_LSB = 16;
+    private static final int OFF_POINTS = 24;
+    private static final int OFF_REBIRTH_LEVEL = 32;
+    private static final int OFF_LAST_REBIRTH = 40;
+
+    private final File file;
+    private final File redoFile;
+    private final Logger logger;
+    private final int minCapacity;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity; // số bản ghi file đang chứa được
+    private int count;    // số bản ghi đã dùng
+    private UuidIndex index;
+    private boolean dirty;
+    private boolean created;
+    private final RebirthRepository rebirths = new RebirthView();
+
+    private MappedPlayerStore(File file, int minCapacity, Logger logger) {
+        this.file = file;
+        this.redoFile = new File(file.getParentFile(), file.getName() + ".redo");
+        this.minCapacity = Math.max(64, minCapacity);
+        this.logger = logger;
+    }
+
+    public static MappedPlayerStore open(File file, int initialCapacity, Logger logger) throws IOException {
+        MappedPlayerStore store = new MappedPlayerStore(file, initialCapacity, logger);
+        store.created = !file.exists() || file.length() == 0;
+        store.map(store.created ? store.minCapacity : recordsIn(file.length()));
+        store.load();
+        store.recoverRedo();
+        store.compactIfNeeded();
+        return store;
+    }
+
+    /** File vừa được tạo mới (dùng để quyết định có chép dữ liệu từ SQL sang hay không) */
+    public boolean isNewlyCreated() {
+        return created;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    private static int recordsIn(long length) {
+        return (int) Math.max(0, (length - HEADER_SIZE) / RECORD_SIZE);
+    }
+
+    private void map(int records) throws IOException {
+        long length = HEADER_SIZE + (long) records * RECORD_SIZE;
+        raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < length) {
+            raf.setLength(length);
+        }
+        channel = raf.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = records;
+
+        int magic = buffer.getInt(0);
+        if (magic == 0) {
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+        } else if (magic != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE) {
+            close();
+            throw new IOException("File " + file.getName() + " không phải player store hợp lệ");
+        }
+    }
+
+    /** Quét bản ghi hoàn tất từ đầu, dừng ở slot đầu tiên chưa có FLAG_VALID */
+    private void load() {
+        count = 0;
+        index = new UuidIndex(Math.max(16, capacity));
+        while (count < capacity) {
+            int pos = position(count);
+            if ((buffer.get(pos + OFF_FLAGS) & FLAG_VALID) == 0) break;
+            index.put(buffer.getLong(pos + OFF_MSB), buffer.getLong(pos + OFF_LSB), count);
+            count++;
+        }
+    }
+
+    private static int position(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    // ===== PlayerRepository =====
+
+    @Override
+    public synchronized PlayerRow load(UUID uuid) {
+        int slot = index.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot < 0) return null;
+        int pos = position(slot);
+        if ((buffer.get(pos + OFF_FLAGS) & FLAG_PLAYER) == 0) return null;
+        return new PlayerRow(uuid, buffer.getInt(pos + OFF_LEVEL), buffer.getDouble(pos + OFF_POINTS));
+    }
+
+    @Override
+    public synchronized Map<UUID, PlayerRow> loadAll(List<UUID> uuids, int chunkSize) {
+        Map<UUID, PlayerRow> loaded = new HashMap<>();
+        for (UUID uuid : uuids) {
+            PlayerRow row = load(uuid);
+            if (row != null) loaded.put(uuid, row);
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized Map<UUID, PlayerRow> loadEverything() {
+        Map<UUID, PlayerRow> loaded = new HashMap<>(Math.max(16, count * 2));
+        for (int slot = 0; slot < count; slot++) {
+            int pos = position(slot);
+            if ((buffer.get(pos + OFF_FLAGS) & FLAG_PLAYER) == 0) continue;
+            UUID uuid = new UUID(buffer.getLong(pos + OFF_MSB), buffer.getLong(pos + OFF_LSB));
+            loaded.put(uuid, new PlayerRow(uuid, buffer.getInt(pos + OFF_LEVEL), buffer.getDouble(pos + OFF_POINTS)));
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized void forEachPoints(ObjDoubleConsumer<UUID> consumer) {
+        for (int slot = 0; slot < count; slot++) {
+            int pos = position(slot);
+            if ((buffer.get(pos + OFF_FLAGS) & FLAG_PLAYER) == 0) continue;
+            consumer.accept(new UUID(buffer.getLong(pos + OFF_MSB), buffer.getLong(pos + OFF_LSB)),
+                    buffer.getDouble(pos + OFF_POINTS));
+        }
+    }
+
+    @Override
+    public synchronized List<PlayerRow> loadTop(int limit) {
+        if (limit <= 0) return new ArrayList<>();
+        // Heap nhỏ nhất giới hạn limit phần tử: 1 lượt quét, O(n log limit)
+        Comparator<PlayerRow> byPoints = Comparator.comparingDouble(PlayerRow::getPoints);
+        PriorityQueue<PlayerRow> heap = new PriorityQueue<>(limit + 1, byPoints);
+        for (int slot = 0; slot < count; slot++) {
+            int pos = position(slot);
+            if ((buffer.get(pos + OFF_FLAGS) & FLAG_PLAYER) == 0) continue;
+            double points = buffer.getDouble(pos + OFF_POINTS);
+            if (heap.size() == limit && points <= heap.peek().getPoints()) continue;
+            UUID uuid = new UUID(buffer.getLong(pos + OFF_MSB), buffer.getLong(pos + OFF_LSB));
+            heap.add(new PlayerRow(uuid, buffer.getInt(pos + OFF_LEVEL), points));
+            if (heap.size() > limit) heap.poll();
+        }
+        List<PlayerRow> top = new ArrayList<>(heap);
+        top.sort(byPoints.reversed());
+        return top;
+    }
+
+    @Override
+    public synchronized long committedJournalEpoch() {
+        return buffer.getLong(OFF_JOURNAL_EPOCH);
+    }
+
+    @Override
+    public synchronized void write(Collection<PlayerRow> rows, Map<UUID, Double> deltas, ToIntFunction<UUID> newRowLevel,
+                                   long journalEpoch) throws SQLException {
+        if (rows.isEmpty() && deltas.isEmpty()) return;
+
+        // Giá trị tuyệt đối sau lượt ghi (bản ghi tuyệt đối trước, delta cộng sau - như bản JDBC)
+        Map<UUID, PlayerRow> target = new LinkedHashMap<>();
+        for (PlayerRow row : rows) {
+            target.put(row.getUuid(), row);
+        }
+        for (Map.Entry<UUID, Double> entry : deltas.entrySet()) {
+            UUID uuid = entry.getKey();
+            PlayerRow base = target.get(uuid);
+            if (base == null) base = load(uuid);
+            if (base == null) base = new PlayerRow(uuid, newRowLevel.applyAsInt(uuid), 0D);
+            target.put(uuid, new PlayerRow(uuid, base.getLevel(), base.getPoints() + entry.getValue()));
+        }
+
+        long sequence = buffer.getLong(OFF_SEQUENCE) + 1;
+        try {
+            // Mở rộng file (có thể lỗi) xong hết rồi mới đổi giá trị: lỗi ở đây không để lại gì dở dang
+            for (UUID uuid : target.keySet()) {
+                slotFor(uuid);
+            }
+            writeRedo(sequence, journalEpoch, target.values());
+        } catch (IOException e) {
+            throw new SQLException("Không ghi được player store: " + e.getMessage(), e);
+        }
+        apply(sequence, journalEpoch, target.values());
+        try {
+            Files.deleteIfExists(redoFile.toPath());
+        } catch (IOException ignored) {
+            // redo cũ có sequence <= header nên lần mở sau bỏ qua
+        }
+    }
+
+    /** Đặt giá trị tuyệt đối (slot đã có sẵn) rồi sequence/epoch, force như 1 commit */
+    private void apply(long sequence, long journalEpoch, Collection<PlayerRow> values) {
+        for (PlayerRow row : values) {
+            int pos = position(index.get(row.getUuid().getMostSignificantBits(), row.getUuid().getLeastSignificantBits()));
+            buffer.putInt(pos + OFF_LEVEL, row.getLevel());
+            buffer.putDouble(pos + OFF_POINTS, row.getPoints());
+            markFlag(pos, FLAG_PLAYER);
+        }
+        if (journalEpoch > 0) buffer.putLong(OFF_JOURNAL_EPOCH, journalEpoch);
+        buffer.putLong(OFF_SEQUENCE, sequence);
+        dirty = true;
+        force();
+    }
+
+    private void writeRedo(long sequence, long journalEpoch, Collection<PlayerRow> values) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(REDO_HEADER + values.size() * REDO_ENTRY + 8);
+        out.putInt(REDO_MAGIC).putInt(values.size()).putLong(sequence).putLong(journalEpoch);
+        for (PlayerRow row : values) {
+            out.putLong(row.getUuid().getMostSignificantBits())
+                    .putLong(row.getUuid().getLeastSignificantBits())
+                    .putInt(row.getLevel())
+                    .putDouble(row.getPoints());
+        }
+        out.putLong(crc(out.array(), out.position()));
+        out.flip();
+        try (FileChannel redo = FileChannel.open(redoFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                redo.write(out);
+            }
+            redo.force(true);
+        }
+    }
+
+    /** Khi mở: redo hoàn chỉnh (CRC khớp) có sequence mới hơn header nghĩa là lượt ghi trước bị cắt ngang */
+    private void recoverRedo() throws IOException {
+        if (!redoFile.exists()) return;
+        byte[] bytes = Files.readAllBytes(redoFile.toPath());
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        boolean valid = bytes.length >= REDO_HEADER + 8 && in.getInt(0) == REDO_MAGIC;
+        int count = valid ? in.getInt(4) : -1;
+        valid &= count >= 0 && bytes.length == REDO_HEADER + count * REDO_ENTRY + 8
+                && in.getLong(bytes.length - 8) == crc(bytes, bytes.length - 8);
+        long sequence = valid ? in.getLong(8) : 0L;
+
+        if (valid && sequence > buffer.getLong(OFF_SEQUENCE)) {
+            List<PlayerRow> values = new ArrayList<>(count);
+            in.position(REDO_HEADER);
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.getLong(), in.getLong());
+                values.add(new PlayerRow(uuid, in.getInt(), in.getDouble()));
+            }
+            for (PlayerRow row : values) {
+                slotFor(row.getUuid());
+            }
+            apply(sequence, in.getLong(16), values);
+            logger.warning("[PlayerStore] Hoàn tất lượt ghi bị gián đoạn (" + count + " người chơi) từ " + redoFile.getName());
+        }
+        Files.deleteIfExists(redoFile.toPath());
+    }
+
+    private static long crc(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+
+    // ===== RebirthRepository =====
+
+    /** Dữ liệu chuyển sinh nằm chung bản ghi với level/điểm */
+    public RebirthRepository rebirths() {
+        return rebirths;
+    }
+
+    private final class RebirthView implements RebirthRepository {
+
+        @Override
+        public RebirthData load(UUID uuid) {
+            synchronized (MappedPlayerStore.this) {
+                int slot = index.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+                return slot >= 0 ? read(uuid, position(slot)) : null;
+            }
+        }
+
+        @Override
+        public Map<UUID, RebirthData> loadAll(List<UUID> uuids, int chunkSize) {
+            Map<UUID, RebirthData> loaded = new HashMap<>();
+            for (UUID uuid : uuids) {
+                RebirthData data = load(uuid);
+                if (data != null) loaded.put(uuid, data);
+            }
+            return loaded;
+        }
+
+        @Override
+        public Map<UUID, RebirthData> loadEverything() {
+            synchronized (MappedPlayerStore.this) {
+                Map<UUID, RebirthData> loaded = new HashMap<>();
+                for (int slot = 0; slot < count; slot++) {
+                    int pos = position(slot);
+                    UUID uuid = new UUID(buffer.getLong(pos + OFF_MSB), buffer.getLong(pos + OFF_LSB));
+                    RebirthData data = read(uuid, pos);
+                    if (data != null) loaded.put(uuid, data);
+                }
+                return loaded;
+            }
+        }
+
+        @Override
+        public List<RebirthData> loadTop(int limit) {
+            if (limit <= 0) return new ArrayList<>();
+            // Heap giữ limit phần tử tốt nhất, đỉnh heap là phần tử kém nhất
+            Comparator<RebirthData> best = Comparator.comparingInt(RebirthData::getRebirthLevel).reversed()
+                    .thenComparingLong(RebirthData::getLastRebirthTime);
+            PriorityQueue<RebirthData> heap = new PriorityQueue<>(limit + 1, best.reversed());
+            synchronized (MappedPlayerStore.this) {
+                for (int slot = 0; slot < count; slot++) {
+                    int pos = position(slot);
+                    if ((buffer.get(pos + OFF_FLAGS) & FLAG_REBIRTH) == 0) continue;
+                    if (buffer.getInt(pos + OFF_REBIRTH_LEVEL) <= 0) continue;
+                    RebirthData data = read(new UUID(buffer.getLong(pos + OFF_MSB), buffer.getLong(pos + OFF_LSB)), pos);
+                    heap.add(data);
+                    if (heap.size() > limit) heap.poll();
+                }
+            }
+            List<RebirthData> top = new ArrayList<>(heap);
+            top.sort(best);
+            return top;
+        }
+
+        private RebirthData read(UUID uuid, int pos) {
+            if ((buffer.get(pos + OFF_FLAGS) & FLAG_REBIRTH) == 0) return null;
+            return new RebirthData(uuid, buffer.getInt(pos + OFF_REBIRTH_LEVEL), buffer.getLong(pos + OFF_LAST_REBIRTH));
+        }
+
+        @Override
+        public void save(RebirthData data) throws SQLException {
+            synchronized (MappedPlayerStore.this) {
+                try {
+                    int pos = position(slotFor(data.getUuid()));
+                    buffer.putInt(pos + OFF_REBIRTH_LEVEL, data.getRebirthLevel());
+                    buffer.putLong(pos + OFF_LAST_REBIRTH, data.getLastRebirthTime());
+                    markFlag(pos, FLAG_REBIRTH);
+                } catch (IOException e) {
+                    throw new SQLException("Không mở rộng được player store: " + e.getMessage(), e);
+                }
+                dirty = true;
+                force();
+            }
+        }
+    }
+
+    /** Chép dữ liệu từ backend SQL sang (lần đầu bật chế độ mmap); bản ghi đã có không bị đè */
+    public synchronized int importFrom(PlayerRepository players, RebirthRepository rebirthSource) throws SQLException {
+        int imported = 0;
+        try {
+            for (PlayerRow row : players.loadEverything().values()) {
+                if (load(row.getUuid()) != null) continue;
+                int pos = position(slotFor(row.getUuid()));
+                buffer.putInt(pos + OFF_LEVEL, row.getLevel());
+                buffer.putDouble(pos + OFF_POINTS, row.getPoints());
+                markFlag(pos, FLAG_PLAYER);
+                imported++;
+            }
+            for (RebirthData data : rebirthSource.loadEverything().values()) {
+                int pos = position(slotFor(data.getUuid()));
+                if ((buffer.get(pos + OFF_FLAGS) & FLAG_REBIRTH) != 0) continue;
+                buffer.putInt(pos + OFF_REBIRTH_LEVEL, data.getRebirthLevel());
+                buffer.putLong(pos + OFF_LAST_REBIRTH, data.getLastRebirthTime());
+                markFlag(pos, FLAG_REBIRTH);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Không mở rộng được player store: " + e.getMessage(), e);
+        }
+        dirty = true;
+        force();
+        return imported;
+    }
+
+    /**
+     * Slot của UUID, tạo bản ghi mới ở cuối file nếu chưa có (mở rộng file gấp đôi khi đầy)
+     */
+    private int slotFor(UUID uuid) throws IOException {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int slot = index.get(msb, lsb);
+        if (slot >= 0) return slot;
+
+        if (count == capacity) {
+            grow(Math.max(minCapacity, capacity * 2));
+        }
+        slot = count;
+        int pos = position(slot);
+        buffer.putInt(pos + OFF_LEVEL, 1);
+        buffer.putLong(pos + OFF_MSB, msb);
+        buffer.putLong(pos + OFF_LSB, lsb);
+        buffer.putDouble(pos + OFF_POINTS, 0D);
+        buffer.putInt(pos + OFF_REBIRTH_LEVEL, 0);
+        buffer.putLong(pos + OFF_LAST_REBIRTH, 0L);
+        buffer.put(pos + OFF_FLAGS, FLAG_VALID); // dấu hoàn tất
+        index.put(msb, lsb, slot);
+        count++;
+        return slot;
+    }
+
+    private void markFlag(int pos, byte flag) {
+        byte flags = buffer.get(pos + OFF_FLAGS);
+        if ((flags & flag) == 0) {
+            buffer.put(pos + OFF_FLAGS, (byte) (flags | flag));
+        }
+    }
+
+    private void grow(int records) throws IOException {
+        buffer.force();
+        channel.close();
+        raf.close();
+        map(records);
+    }
+
+    /** Ghi trang bẩn xuống đĩa - chỉ khi có thay đổi từ lần trước */
+    public synchronized void force() {
+        if (!dirty) return;
+        dirty = false;
+        buffer.force();
+    }
+
+    // ===== COMPACTION =====
+
+    /**
+     * Bỏ bản ghi không còn dữ liệu (level 1, 0 điểm, chưa chuyển sinh) và thu nhỏ file khi
+     * dung lượng dư quá 4 lần số bản ghi. Ghi ra file tạm rồi đổi tên, nên lỗi giữa chừng không mất dữ liệu.
+     */
+    private void compactIfNeeded() throws IOException {
+        int live = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (!isEmptyRecord(position(slot))) live++;
+        }
+        int target = Math.max(minCapacity, live * 2);
+        if (live == count && capacity <= Math.max(minCapacity, count * 4)) return;
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.deleteIfExists(tmp.toPath());
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            long length = HEADER_SIZE + (long) target * RECORD_SIZE;
+            out.setLength(length);
+            MappedByteBuffer dst = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            dst.putInt(4, VERSION);
+            dst.putInt(8, RECORD_SIZE);
+            dst.putLong(OFF_JOURNAL_EPOCH, buffer.getLong(OFF_JOURNAL_EPOCH));
+            dst.putLong(OFF_SEQUENCE, buffer.getLong(OFF_SEQUENCE));
+            dst.putInt(0, MAGIC);
+            int written = 0;
+            byte[] record = new byte[RECORD_SIZE];
+            for (int slot = 0; slot < count; slot++) {
+                int pos = position(slot);
+                if (isEmptyRecord(pos)) continue;
+                buffer.get(pos, record);
+                dst.put(position(written), record);
+                written++;
+            }
+            dst.force();
+        }
+
+        close();
+        int before = count;
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Windows không cho thay file đang được map - giữ file cũ, thử lại lần khởi động sau
+            Files.deleteIfExists(tmp.toPath());
+            map(capacity);
+            load();
+            logger.warning("[PlayerStore] Không thu gọn được " + file.getName() + ": " + e.getMessage());
+            return;
+        }
+        map(target);
+        load();
+        logger.info("[PlayerStore] Thu gọn " + file.getName() + ": " + before + " -> " + count + " bản ghi");
+    }
+
+    private boolean isEmptyRecord(int pos) {
+        return buffer.getInt(pos + OFF_LEVEL) <= 1
+                && buffer.getDouble(pos + OFF_POINTS) == 0D
+                && buffer.getInt(pos + OFF_REBIRTH_LEVEL) == 0
+                && buffer.getLong(pos + OFF_LAST_REBIRTH) == 0L;
+    }
+
+    public synchronized void close() {
+        try {
+            if (buffer != null) buffer.force();
+            if (channel != null) channel.close();
+            if (raf != null) raf.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /** Bảng băm địa chỉ mở (dò tuyến tính) UUID -> slot, không xoá nên không cần tombstone */
+    private static final class UuidIndex {
+        private long[] msbs;
+        private long[] lsbs;
+        private int[] slots; // slot + 1, 0 = ô trống
+        private int size;
+
+        UuidIndex(int expected) {
+            int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            allocate(cap);
+        }
+
+        private void allocate(int cap) {
+            msbs = new long[cap];
+            lsbs = new long[cap];
+            slots = new int[cap];
+            size = 0;
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = msb ^ lsb;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+
+        int get(long msb, long lsb) {
+            int mask = slots.length - 1;
+            for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == 0) return -1;
+                if (msbs[i] == msb && lsbs[i] == lsb) return slots[i] - 1;
+            }
+        }
+
+        void put(long msb, long lsb, int slot) {
+            if ((size + 1) * 2 > slots.length) {
+                rehash();
+            }
+            int mask = slots.length - 1;
+            for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == 0) {
+                    msbs[i] = msb;
+                    lsbs[i] = lsb;
+                    slots[i] = slot + 1;
+                    size++;
+                    return;
+                }
+                if (msbs[i] == msb && lsbs[i] == lsb) {
+                    slots[i] = slot + 1;
+                    return;
+                }
+            }
+        }
+
+        private void rehash() {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            int[] oldSlots = slots;
+            allocate(oldSlots.length * 2);
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) put(oldMsbs[i], oldLsbs[i], oldSlots[i] - 1);
+            }
+        }
+    }
+}
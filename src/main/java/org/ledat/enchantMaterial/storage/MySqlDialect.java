@@ -0,0 +1,151 @@
+package org.ledat.enchantMaterial.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * MySQL/MariaDB: UUID dạng BINARY(16), upsert bằng ON DUPLICATE KEY UPDATE.
+ * Cả 2 chạy qua driver MySQL (Connector/J) server đã có sẵn; plugin không kèm driver MariaDB.
+ */
+public class MySqlDialect extends SqlDialect {
+
+    private static final String MARIADB_PREFIX = "jdbc:mariadb:";
+    private static final Pattern VERSION = Pattern.compile("^(\\d+)\\.(\\d+)\\.(\\d+)");
+
+    private final boolean mariadb;
+    // MySQL 8.0.19+: "AS new ... new.col" thay VALUES(col) (đã deprecated); MariaDB và MySQL cũ chỉ có VALUES()
+    private volatile boolean rowAlias;
+
+    public MySqlDialect(String url) {
+        this.mariadb = url != null && url.regionMatches(true, 0, MARIADB_PREFIX, 0, MARIADB_PREFIX.length());
+    }
+
+    @Override
+    public String getName() {
+        return mariadb ? "MariaDB" : "MySQL";
+    }
+
+    @Override
+    public String getDriverClassName() {
+        return "com.mysql.cj.jdbc.Driver";
+    }
+
+    @Override
+    public String jdbcUrl(String url) {
+        return mariadb ? "jdbc:mysql:" + url.substring(MARIADB_PREFIX.length()) : url;
+    }
+
+    @Override
+    public void inspect(DatabaseMetaData metaData) throws SQLException {
+        // Qua Connector/J, MariaDB báo product "MySQL" và version dạng "5.5.5-10.11.6-MariaDB"
+        String version = metaData.getDatabaseProductVersion();
+        if (version == null || version.contains("MariaDB")) {
+            rowAlias = false;
+            return;
+        }
+        Matcher matcher = VERSION.matcher(version);
+        if (!matcher.find()) {
+            rowAlias = false;
+            return;
+        }
+        int major = Integer.parseInt(matcher.group(1));
+        int minor = Integer.parseInt(matcher.group(2));
+        int patch = Integer.parseInt(matcher.group(3));
+        rowAlias = major > 8 || (major == 8 && (minor > 0 || patch >= 19));
+    }
+
+    /** INSERT ... ON DUPLICATE KEY UPDATE ghi đè các cột cho sẵn bằng giá trị vừa chèn */
+    private String upsert(String insert, String... columns) {
+        StringBuilder sql = new StringBuilder(insert);
+        boolean alias = rowAlias;
+        sql.append(alias ? " AS new ON DUPLICATE KEY UPDATE " : " ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(columns[i]).append(" = ");
+            if (alias) {
+                sql.append("new.").append(columns[i]);
+            } else {
+                sql.append("VALUES(").append(columns[i]).append(')');
+            }
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public List<String> createTableStatements() {
+        // MySQL không có CREATE INDEX IF NOT EXISTS - index khai báo luôn trong CREATE TABLE
+        return Arrays.asList(
+                "CREATE TABLE IF NOT EXISTS player_data (" +
+                        "uuid BINARY(16) PRIMARY KEY," +
+                        "level INT DEFAULT 1," +
+                        "points DOUBLE DEFAULT 0.0," +
+                        "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                        "INDEX idx_player_points (points)" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS level_rewards (" +
+                        "id INT AUTO_INCREMENT PRIMARY KEY," +
+                        "uuid BINARY(16) NOT NULL," +
+                        "level INT NOT NULL," +
+                        "claimed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                        "UNIQUE KEY uk_uuid_level (uuid, level)" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS boosters (" +
+                        "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                        "uuid BINARY(16) NOT NULL, " +
+                        "type VARCHAR(10) NOT NULL, " +
+                        "multiplier DOUBLE NOT NULL, " +
+                        "end_time BIGINT NOT NULL, " +
+                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "INDEX idx_uuid (uuid), " +
+                        "INDEX idx_end_time (end_time)" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS rebirth_data (" +
+                        "uuid BINARY(16) PRIMARY KEY," +
+                        "rebirth_level INT DEFAULT 0," +
+                        "last_rebirth_time BIGINT DEFAULT 0," +
+                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                        "INDEX idx_rebirth_rank (rebirth_level DESC, last_rebirth_time ASC)" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS storage_meta (" +
+                        "meta_key VARCHAR(64) PRIMARY KEY," +
+                        "meta_value BIGINT NOT NULL" +
+                        ")");
+    }
+
+    @Override
+    public String upsertPlayerSql() {
+        return upsert("INSERT INTO player_data (uuid, level, points, last_updated) VALUES (?, ?, ?, CURRENT_TIMESTAMP)",
+                "level", "points", "last_updated");
+    }
+
+    @Override
+    public String upsertRebirthSql() {
+        return upsert("INSERT INTO rebirth_data (uuid, rebirth_level, last_rebirth_time) VALUES (?, ?, ?)",
+                "rebirth_level", "last_rebirth_time");
+    }
+
+    @Override
+    public String upsertRewardClaimSql() {
+        return upsert("INSERT INTO level_rewards (uuid, level, claimed_at) VALUES (?, ?, CURRENT_TIMESTAMP)",
+                "claimed_at");
+    }
+
+    @Override
+    public String upsertMetaSql() {
+        return upsert("INSERT INTO storage_meta (meta_key, meta_value) VALUES (?, ?)", "meta_value");
+    }
+
+    @Override
+    public void configurePool(HikariConfig config) {
+        // cachePrepStmts... đã đặt chung trong DatabaseManager; KHÔNG bật rewriteBatchedStatements
+        // vì cộng delta điểm cần số dòng cập nhật của từng câu trong batch
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("cacheResultSetMetadata", "true");
+    }
+}
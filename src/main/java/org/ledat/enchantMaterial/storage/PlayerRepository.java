@@ -0,0 +1,40 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ToIntFunction;
+
+/** Bảng player_data: level + điểm của người chơi */
+public interface PlayerRepository {
+
+    /** null nếu chưa có dòng */
+    PlayerRow load(UUID uuid) throws SQLException;
+
+    /** Load theo lô WHERE uuid IN (...), mỗi lô tối đa chunkSize UUID; UUID không có dòng thì vắng mặt */
+    Map<UUID, PlayerRow> loadAll(List<UUID> uuids, int chunkSize) throws SQLException;
+
+    /** Toàn bộ bảng (lệnh admin, chép dữ liệu) */
+    Map<UUID, PlayerRow> loadEverything() throws SQLException;
+
+    /** limit dòng điểm cao nhất, sắp giảm dần (dùng index theo points) */
+    List<PlayerRow> loadTop(int limit) throws SQLException;
+
+    /** Quét (uuid, điểm) của mọi dòng theo luồng, không gom cả bảng vào bộ nhớ (dựng RankIndex) */
+    void forEachPoints(ObjDoubleConsumer<UUID> consumer) throws SQLException;
+
+    /**
+     * Ghi trong 1 transaction: upsert các bản ghi tuyệt đối rồi cộng delta điểm ("points = points + ?").
+     * Người chơi chưa có dòng thì delta được INSERT thành dòng mới với level lấy từ newRowLevel.
+     *
+     * @param journalEpoch epoch journal của lượt ghi, lưu cùng transaction (<= 0: không lưu)
+     */
+    void write(Collection<PlayerRow> rows, Map<UUID, Double> deltas, ToIntFunction<UUID> newRowLevel,
+               long journalEpoch) throws SQLException;
+
+    /** Epoch journal của lượt ghi gần nhất đã commit, 0 nếu chưa có */
+    long committedJournalEpoch() throws SQLException;
+}
@@ -0,0 +1,29 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.util.UUID;
+
+/** 1 dòng player_data (ảnh chụp giá trị, không phải PlayerData đang sống) */
+public final class PlayerRow {
+
+    private final UUID uuid;
+    private final int level;
+    private final double points;
+
+    public PlayerRow(UUID uuid, int level, double points) {
+        this.uuid = uuid;
+        this.level = level;
+        this.points = points;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public double getPoints() {
+        return points;
+    }
+}
@@ -0,0 +1,28 @@
+package org.ledat.enchantMaterial.storage;
+
+import org.ledat.enchantMaterial.rebirth.RebirthData;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/** Bảng rebirth_data */
+public interface RebirthRepository {
+
+    /** null nếu chưa có dòng */
+    RebirthData load(UUID uuid) throws SQLException;
+
+    Map<UUID, RebirthData> loadAll(List<UUID> uuids, int chunkSize) throws SQLException;
+
+    /** Toàn bộ bảng */
+    Map<UUID, RebirthData> loadEverything() throws SQLException;
+
+    /**
+     * limit người chuyển sinh cao nhất (rebirth_level > 0), sắp theo cấp giảm dần rồi ai đạt trước đứng trên
+     * (dùng index idx_rebirth_rank)
+     */
+    List<RebirthData> loadTop(int limit) throws SQLException;
+
+    void save(RebirthData data) throws SQLException;
+}
@@ -0,0 +1,23 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/** Bảng level_rewards: các mốc level người chơi đã nhận thưởng */
+public interface RewardClaimRepository {
+
+    Set<Integer> claimedLevels(UUID uuid) throws SQLException;
+
+    /** UUID chưa nhận mốc nào thì vắng mặt */
+    Map<UUID, Set<Integer>> loadAll(List<UUID> uuids, int chunkSize) throws SQLException;
+
+    /**
+     * Ghi các mốc vừa nhận (gom từ batch) trong 1 transaction, mỗi mốc 1 dòng.
+     * Idempotent: nhận lại cùng mốc chỉ cập nhật claimed_at.
+     */
+    void claimAll(Map<UUID, ? extends Collection<Integer>> claims) throws SQLException;
+}
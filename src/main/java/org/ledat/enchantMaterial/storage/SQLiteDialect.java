@@ -0,0 +1,100 @@
+package org.ledat.enchantMaterial.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** SQLite (driver có sẵn trong Spigot/Paper): UUID dạng BLOB 16 byte, upsert bằng ON CONFLICT */
+public class SQLiteDialect extends SqlDialect {
+
+    @Override
+    public String getName() {
+        return "SQLite";
+    }
+
+    @Override
+    public String getDriverClassName() {
+        return "org.sqlite.JDBC";
+    }
+
+    @Override
+    public List<String> createTableStatements() {
+        return Arrays.asList(
+                "CREATE TABLE IF NOT EXISTS player_data (" +
+                        "uuid BLOB PRIMARY KEY," +
+                        "level INTEGER DEFAULT 1," +
+                        "points DOUBLE DEFAULT 0.0," +
+                        "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS level_rewards (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "uuid BLOB NOT NULL," +
+                        "level INTEGER NOT NULL," +
+                        "claimed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                        "UNIQUE(uuid, level)" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS boosters (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "uuid BLOB NOT NULL, " +
+                        "type VARCHAR(10) NOT NULL, " +
+                        "multiplier DOUBLE NOT NULL, " +
+                        "end_time BIGINT NOT NULL, " +
+                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS rebirth_data (" +
+                        "uuid BLOB PRIMARY KEY," +
+                        "rebirth_level INTEGER DEFAULT 0," +
+                        "last_rebirth_time BIGINT DEFAULT 0," +
+                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS storage_meta (" +
+                        "meta_key VARCHAR(64) PRIMARY KEY," +
+                        "meta_value BIGINT NOT NULL" +
+                        ")",
+                "CREATE INDEX IF NOT EXISTS idx_uuid ON boosters(uuid)",
+                "CREATE INDEX IF NOT EXISTS idx_end_time ON boosters(end_time)",
+                "CREATE INDEX IF NOT EXISTS idx_player_points ON player_data(points)",
+                "CREATE INDEX IF NOT EXISTS idx_rebirth_rank ON rebirth_data(rebirth_level DESC, last_rebirth_time ASC)");
+    }
+
+    @Override
+    public String upsertPlayerSql() {
+        return "INSERT INTO player_data (uuid, level, points, last_updated) VALUES (?, ?, ?, CURRENT_TIMESTAMP) " +
+                "ON CONFLICT(uuid) DO UPDATE SET level = excluded.level, points = excluded.points, " +
+                "last_updated = excluded.last_updated";
+    }
+
+    @Override
+    public String upsertRebirthSql() {
+        return "INSERT INTO rebirth_data (uuid, rebirth_level, last_rebirth_time) VALUES (?, ?, ?) " +
+                "ON CONFLICT(uuid) DO UPDATE SET rebirth_level = excluded.rebirth_level, " +
+                "last_rebirth_time = excluded.last_rebirth_time";
+    }
+
+    @Override
+    public String upsertRewardClaimSql() {
+        return "INSERT INTO level_rewards (uuid, level, claimed_at) VALUES (?, ?, CURRENT_TIMESTAMP) " +
+                "ON CONFLICT(uuid, level) DO UPDATE SET claimed_at = excluded.claimed_at";
+    }
+
+    @Override
+    public String upsertMetaSql() {
+        return "INSERT INTO storage_meta (meta_key, meta_value) VALUES (?, ?) " +
+                "ON CONFLICT(meta_key) DO UPDATE SET meta_value = excluded.meta_value";
+    }
+
+    @Override
+    public void configurePool(HikariConfig config) {
+        // SQLite chỉ có 1 writer: pool chung chỉ 1 connection (pool đọc riêng được nới lại khi bật writer)
+        // + WAL để đọc không chặn ghi
+        config.setMaximumPoolSize(1);
+        config.setMinimumIdle(1);
+        config.setConnectionInitSql("PRAGMA journal_mode=WAL");
+    }
+
+    @Override
+    public void configureReadPool(HikariConfig config) {
+        // sqlite-jdbc không cho đổi cờ read-only sau khi mở connection - chỉ dựa vào việc pool này không ghi
+    }
+}
@@ -0,0 +1,91 @@
+package org.ledat.enchantMaterial.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import java.nio.ByteBuffer;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Khác biệt giữa các engine SQL: DDL, cú pháp upsert và cách lưu UUID.
+ * Câu upsert luôn nhận tham số theo thứ tự cột ghi trong tên hàm.
+ */
+public abstract class SqlDialect {
+
+    /** Chọn dialect theo tiền tố database.url */
+    public static SqlDialect fromUrl(String url) {
+        String lower = url == null ? "" : url.toLowerCase(Locale.ROOT);
+        if (lower.startsWith("jdbc:sqlite:")) return new SQLiteDialect();
+        if (lower.startsWith("jdbc:mysql:") || lower.startsWith("jdbc:mariadb:")) return new MySqlDialect(lower);
+        return new H2Dialect();
+    }
+
+    public abstract String getName();
+
+    public abstract String getDriverClassName();
+
+    /** URL đưa cho pool (mặc định giữ nguyên database.url) */
+    public String jdbcUrl(String url) {
+        return url;
+    }
+
+    /** Xem server thật trước khi tạo bảng (1 lần lúc khởi tạo), vd chọn cú pháp theo phiên bản */
+    public void inspect(DatabaseMetaData metaData) throws SQLException {
+    }
+
+    /** Tạo bảng + index nếu chưa có (chạy lần lượt, idempotent) */
+    public abstract List<String> createTableStatements();
+
+    /** upsert player_data: (uuid, level, points), cập nhật last_updated */
+    public abstract String upsertPlayerSql();
+
+    /** upsert rebirth_data: (uuid, rebirth_level, last_rebirth_time) */
+    public abstract String upsertRebirthSql();
+
+    /** upsert level_rewards: (uuid, level) */
+    public abstract String upsertRewardClaimSql();
+
+    /** upsert storage_meta: (meta_key, meta_value) */
+    public abstract String upsertMetaSql();
+
+    /** Tinh chỉnh pool riêng cho engine (mặc định không đổi gì) */
+    public void configurePool(HikariConfig config) {
+    }
+
+    /** Pool chỉ đọc (khi ghi đi qua luồng writer riêng) */
+    public void configureReadPool(HikariConfig config) {
+        config.setReadOnly(true);
+    }
+
+    /** Chỉ H2 có dữ liệu cũ dạng VARCHAR cần SchemaMigrator */
+    public boolean supportsUuidMigration() {
+        return false;
+    }
+
+    public void bindUuid(PreparedStatement statement, int index, UUID uuid) throws SQLException {
+        statement.setBytes(index, toBytes(uuid));
+    }
+
+    public UUID readUuid(ResultSet resultSet, String column) throws SQLException {
+        return fromBytes(resultSet.getBytes(column));
+    }
+
+    /** UUID 16 byte big-endian (msb rồi lsb) cho engine không có kiểu UUID gốc */
+    protected static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    protected static UUID fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,10 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/** 1 lệnh ghi chạy trên connection của transaction đang mở (không tự commit/đóng connection) */
+@FunctionalInterface
+public interface SqlWork {
+    void run(Connection connection) throws SQLException;
+}
@@ -0,0 +1,57 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.util.logging.Logger;
+
+/** Bộ repository của 1 engine SQL, chọn theo database.url */
+public final class StorageBackend {
+
+    private final SqlDialect dialect;
+    private final PlayerRepository players;
+    private final RebirthRepository rebirths;
+    private final RewardClaimRepository rewardClaims;
+    private final BoosterRepository boosters;
+
+    /**
+     * @param reads  connection cho truy vấn đọc
+     * @param writes nơi chạy mọi lệnh ghi (luồng writer hoặc transaction trực tiếp)
+     */
+    public StorageBackend(SqlDialect dialect, ConnectionProvider reads, TransactionRunner writes, Logger logger) {
+        this(dialect, new JdbcPlayerRepository(reads, writes, dialect), new JdbcRebirthRepository(reads, writes, dialect),
+                new JdbcRewardClaimRepository(reads, writes, dialect),
+                new JdbcBoosterRepository(reads, writes, dialect, logger));
+    }
+
+    private StorageBackend(SqlDialect dialect, PlayerRepository players, RebirthRepository rebirths,
+                           RewardClaimRepository rewardClaims, BoosterRepository boosters) {
+        this.dialect = dialect;
+        this.players = players;
+        this.rebirths = rebirths;
+        this.rewardClaims = rewardClaims;
+        this.boosters = boosters;
+    }
+
+    /** Bản sao dùng player store khác (vd MappedPlayerStore) cho level/điểm/chuyển sinh, giữ nguyên phần còn lại */
+    public StorageBackend withPlayerStore(PlayerRepository players, RebirthRepository rebirths) {
+        return new StorageBackend(dialect, players, rebirths, rewardClaims, boosters);
+    }
+
+    public SqlDialect getDialect() {
+        return dialect;
+    }
+
+    public PlayerRepository players() {
+        return players;
+    }
+
+    public RebirthRepository rebirths() {
+        return rebirths;
+    }
+
+    public RewardClaimRepository rewardClaims() {
+        return rewardClaims;
+    }
+
+    public BoosterRepository boosters() {
+        return boosters;
+    }
+}
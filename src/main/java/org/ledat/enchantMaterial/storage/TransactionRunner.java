@@ -0,0 +1,12 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.SQLException;
+
+/**
+ * Nơi chạy lệnh ghi của repository: luồng writer duy nhất (gom nhiều lệnh vào 1 transaction)
+ * hoặc transaction riêng trên pool. Trả về khi lệnh đã commit; lỗi của lệnh ném lại cho nơi gọi.
+ */
+@FunctionalInterface
+public interface TransactionRunner {
+    void execute(SqlWork work) throws SQLException;
+}
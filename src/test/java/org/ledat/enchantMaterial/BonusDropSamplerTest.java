@@ -0,0 +1,134 @@
+package org.ledat.enchantMaterial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * So BonusDropSampler (1 lần random + CDF) với vòng lặp tung từng lần cũ bằng kiểm định chi-square 2 mẫu.
+ * Seed cố định nên kết quả lặp lại được; ngưỡng ở mức ý nghĩa 0.001.
+ */
+class BonusDropSamplerTest {
+
+    private static final int SAMPLES = 200_000;
+    private static final double Z_999 = 3.090; // phân vị 0.999 của N(0, 1)
+
+    /** Cách cũ trong BlockBreakListener: mỗi level bổ trợ tung 1 lần */
+    private static int perTrial(int trials, double chance, Random rnd) {
+        int hits = 0;
+        for (int i = 0; i < trials; i++) {
+            if (rnd.nextDouble() < chance) hits++;
+        }
+        return hits;
+    }
+
+    @Test
+    void matchesPerTrialLoop() {
+        double[] chances = {0.05D, 0.3D, 0.5D, 0.8D, 0.97D};
+        int[] trialCounts = {1, 2, 5, 10, 20};
+        long seed = 42L;
+        for (double chance : chances) {
+            BonusDropSampler sampler = BonusDropSampler.compile(20, chance);
+            for (int trials : trialCounts) {
+                long[] fromTable = new long[trials + 1];
+                long[] fromLoop = new long[trials + 1];
+                Random a = new Random(seed++);
+                Random b = new Random(seed++);
+                for (int i = 0; i < SAMPLES; i++) {
+                    fromTable[sampler.sample(trials, a)]++;
+                    fromLoop[perTrial(trials, chance, b)]++;
+                }
+                assertHomogeneous(fromTable, fromLoop, "p=" + chance + ", n=" + trials);
+            }
+        }
+    }
+
+    @Test
+    void fallsBackAbovePrecomputedTrials() {
+        BonusDropSampler sampler = BonusDropSampler.compile(4, 0.3D);
+        int trials = 12; // vượt bảng -> tung từng lần
+        long[] fromSampler = new long[trials + 1];
+        long[] fromLoop = new long[trials + 1];
+        Random a = new Random(7L);
+        Random b = new Random(8L);
+        for (int i = 0; i < SAMPLES; i++) {
+            fromSampler[sampler.sample(trials, a)]++;
+            fromLoop[perTrial(trials, 0.3D, b)]++;
+        }
+        assertHomogeneous(fromSampler, fromLoop, "fallback n=" + trials);
+    }
+
+    @Test
+    void edgeChances() {
+        Random rnd = new Random(1L);
+        BonusDropSampler never = BonusDropSampler.compile(10, 0D);
+        BonusDropSampler always = BonusDropSampler.compile(10, 1D);
+        for (int i = 0; i < 10_000; i++) {
+            int trials = rnd.nextInt(11);
+            assertEquals(0, never.sample(trials, rnd));
+            assertEquals(trials, always.sample(trials, rnd));
+        }
+        assertEquals(0, always.sample(0, rnd));
+        assertEquals(0, always.sample(-3, rnd));
+    }
+
+    @Test
+    void resultStaysInRange() {
+        BonusDropSampler sampler = BonusDropSampler.compile(200, 0.999D);
+        Random rnd = new Random(3L);
+        for (int i = 0; i < 100_000; i++) {
+            int hits = sampler.sample(200, rnd);
+            assertTrue(hits >= 0 && hits <= 200, "hits=" + hits);
+        }
+    }
+
+    /**
+     * Chi-square 2 mẫu cùng cỡ; gộp các ô liền kề đến khi tổng >= 20 để xấp xỉ chi-square còn đúng.
+     */
+    private static void assertHomogeneous(long[] a, long[] b, String label) {
+        List<long[]> pooled = new ArrayList<>();
+        long sumA = 0;
+        long sumB = 0;
+        for (int k = 0; k < a.length; k++) {
+            sumA += a[k];
+            sumB += b[k];
+            if (sumA + sumB >= 20) {
+                pooled.add(new long[]{sumA, sumB});
+                sumA = 0;
+                sumB = 0;
+            }
+        }
+        if (sumA + sumB > 0) {
+            if (pooled.isEmpty()) {
+                pooled.add(new long[]{sumA, sumB});
+            } else {
+                long[] tail = pooled.get(pooled.size() - 1);
+                tail[0] += sumA;
+                tail[1] += sumB;
+            }
+        }
+
+        int df = pooled.size() - 1;
+        if (df <= 0) return; // chỉ 1 ô: 2 mẫu cùng cỡ nên trùng nhau
+        double chi2 = 0D;
+        for (long[] bin : pooled) {
+            double diff = bin[0] - bin[1];
+            chi2 += diff * diff / (bin[0] + bin[1]);
+        }
+        double critical = chiSquareQuantile(df);
+        assertTrue(chi2 < critical, String.format(Locale.US, "%s: chi2=%.2f >= %.2f (df=%d)", label, chi2, critical, df));
+    }
+
+    /** Phân vị 0.999 của chi-square theo xấp xỉ Wilson-Hilferty */
+    private static double chiSquareQuantile(int df) {
+        double h = 2D / (9D * df);
+        double base = 1D - h + Z_999 * Math.sqrt(h);
+        return df * base * base * base;
+    }
+}
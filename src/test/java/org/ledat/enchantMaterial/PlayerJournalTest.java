@@ -0,0 +1,262 @@
+package org.ledat.enchantMaterial;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replay journal phải idempotent: crash ở bất kỳ bước nào của lượt ghi DB không được cộng trùng delta.
+ * "Crash" = bỏ object journal không đóng rồi mở lại file (trang mmap vẫn còn trong page cache như kill -9).
+ */
+class PlayerJournalTest {
+
+    private static final int SIZE = 64 * 1024;
+    private static final UUID A = new UUID(1L, 1L);
+    private static final UUID B = new UUID(2L, 2L);
+
+    @TempDir
+    Path dir;
+
+    /** Tổng điểm replay được theo người chơi (bản ghi tuyệt đối thay giá trị, delta cộng dồn) */
+    private static Map<UUID, Double> replay(PlayerJournal journal, long committed) {
+        Map<UUID, Double> points = new HashMap<>();
+        journal.replay(committed, 0, new PlayerJournal.Visitor() {
+            @Override
+            public void delta(UUID uuid, double delta) {
+                points.merge(uuid, delta, Double::sum);
+            }
+
+            @Override
+            public void absolute(UUID uuid, int level, double value) {
+                points.put(uuid, value);
+            }
+
+            @Override
+            public void claim(UUID uuid, int level) {
+            }
+        });
+        return points;
+    }
+
+    private File file() {
+        return dir.resolve("pending.journal").toFile();
+    }
+
+    @Test
+    void committedFlushIsSkipped() throws IOException {
+        PlayerJournal journal = PlayerJournal.open(file(), SIZE, 0L);
+        replay(journal, 0L);
+        journal.appendDelta(0, A, 5D);
+        journal.appendDelta(0, B, 7D);
+
+        // Lượt ghi DB: A đang ghi, B vẫn chờ
+        PlayerJournal.Rewrite rewrite = journal.beginRewrite(1);
+        journal.appendDelta(1, A, 1D); // thế hệ mới, phát sinh trong lúc ghi lại
+        rewrite.flushing(PlayerJournal.PendingKind.DELTA, A, 0, 5D);
+        rewrite.pending(PlayerJournal.PendingKind.DELTA, B, 0, 7D);
+        journal.commit(rewrite);
+        long committed = rewrite.flushEpoch; // DB commit cùng epoch, rồi crash
+
+        Map<UUID, Double> replayed = replay(PlayerJournal.open(file(), SIZE, committed), committed);
+        assertEquals(1D, replayed.get(A), 0D);
+        assertEquals(7D, replayed.get(B), 0D);
+    }
+
+    @Test
+    void uncommittedFlushIsReplayed() throws IOException {
+        PlayerJournal journal = PlayerJournal.open(file(), SIZE, 0L);
+        replay(journal, 0L);
+        journal.appendDelta(0, A, 5D);
+
+        PlayerJournal.Rewrite rewrite = journal.beginRewrite(1);
+        rewrite.flushing(PlayerJournal.PendingKind.DELTA, A, 0, 5D);
+        journal.commit(rewrite);
+        // crash trước khi DB commit
+
+        Map<UUID, Double> replayed = replay(PlayerJournal.open(file(), SIZE, 0L), 0L);
+        assertEquals(5D, replayed.get(A), 0D);
+    }
+
+    @Test
+    void crashMidRewriteKeepsOldRegion() throws IOException {
+        PlayerJournal journal = PlayerJournal.open(file(), SIZE, 0L);
+        replay(journal, 0L);
+        journal.appendDelta(0, A, 5D);
+        journal.appendDelta(0, A, 2D);
+
+        PlayerJournal.Rewrite rewrite = journal.beginRewrite(1);
+        rewrite.flushing(PlayerJournal.PendingKind.DELTA, A, 0, 7D);
+        // crash trước commit: vùng mới đã có dữ liệu nhưng header chưa đổi
+
+        Map<UUID, Double> replayed = replay(PlayerJournal.open(file(), SIZE, 0L), 0L);
+        assertEquals(7D, replayed.get(A), 0D);
+    }
+
+    @Test
+    void repeatedFlushesNeverDoubleCount() throws IOException {
+        PlayerJournal journal = PlayerJournal.open(file(), SIZE, 0L);
+        replay(journal, 0L);
+        double db = 0D;
+        long committed = 0L;
+        int generation = 0;
+        for (int round = 0; round < 50; round++) {
+            journal.appendDelta(generation, A, 1D);
+            PlayerJournal.Rewrite rewrite = journal.beginRewrite(++generation);
+            rewrite.flushing(PlayerJournal.PendingKind.DELTA, A, 0, 1D);
+            journal.commit(rewrite);
+            db += 1D;
+            committed = rewrite.flushEpoch;
+        }
+        journal.appendDelta(generation, A, 3D); // chưa ghi DB
+
+        PlayerJournal reopened = PlayerJournal.open(file(), SIZE, committed);
+        Map<UUID, Double> replayed = replay(reopened, committed);
+        assertEquals(53D, db + replayed.get(A), 0D);
+
+        // Sau replay vẫn ghi tiếp được và epoch mới lớn hơn epoch đã commit
+        PlayerJournal.Rewrite next = reopened.beginRewrite(1);
+        assertTrue(next.flushEpoch > committed);
+    }
+
+    @Test
+    void smallerFileIsGrownKeepingUncommittedRecords() throws IOException {
+        PlayerJournal small = PlayerJournal.open(file(), SIZE, 0L);
+        replay(small, 0L);
+        small.appendDelta(0, A, 5D);
+        PlayerJournal.Rewrite rewrite = small.beginRewrite(1);
+        rewrite.flushing(PlayerJournal.PendingKind.DELTA, A, 0, 5D);
+        small.commit(rewrite);
+        small.appendDelta(1, B, 2.5D);
+        small.close();
+        long committed = rewrite.flushEpoch; // A đã vào DB
+
+        PlayerJournal grown = PlayerJournal.open(file(), SIZE * 4, committed);
+        Map<UUID, Double> replayed = replay(grown, committed);
+        assertEquals(1, replayed.size());
+        assertEquals(2.5D, replayed.get(B), 0D);
+        assertTrue(file().length() >= SIZE * 4 - PlayerJournal.HEADER_SIZE);
+    }
+
+    @Test
+    void incompleteRewriteIsNeverCommitted() throws IOException {
+        PlayerJournal journal = PlayerJournal.open(file(), SIZE, 0L);
+        replay(journal, 0L);
+        journal.appendDelta(0, A, 5D);
+
+        // Phần chụp lớn hơn cả vùng: commit phải từ chối, vùng cũ giữ nguyên hiệu lực
+        PlayerJournal.Rewrite rewrite = journal.beginRewrite(1);
+        for (int i = 0; i < SIZE / PlayerJournal.RECORD_SIZE; i++) {
+            rewrite.flushing(PlayerJournal.PendingKind.DELTA, new UUID(3L, i), 0, 1D);
+        }
+        assertFalse(journal.commit(rewrite));
+        journal.appendDelta(1, B, 2D); // vẫn ghi tiếp vào vùng cũ
+
+        Map<UUID, Double> replayed = replay(PlayerJournal.open(file(), SIZE, 0L), 0L);
+        assertEquals(2, replayed.size());
+        assertEquals(5D, replayed.get(A), 0D);
+        assertEquals(2D, replayed.get(B), 0D);
+    }
+
+    @Test
+    void rewriteIsRequestedPastThreeQuarters() throws IOException {
+        PlayerJournal journal = PlayerJournal.open(file(), SIZE, 0L);
+        replay(journal, 0L);
+        int capacity = (SIZE - PlayerJournal.HEADER_SIZE) / 2 / PlayerJournal.RECORD_SIZE;
+        while (journal.size() < capacity * 3 / 4 - 1) {
+            journal.appendDelta(0, A, 1D);
+        }
+        assertFalse(journal.needsRewrite());
+        journal.appendDelta(0, A, 1D);
+        journal.appendDelta(0, A, 1D);
+        assertTrue(journal.needsRewrite());
+
+        PlayerJournal.Rewrite rewrite = journal.beginRewrite(1);
+        rewrite.flushing(PlayerJournal.PendingKind.DELTA, A, 0, journal.size());
+        assertTrue(journal.commit(rewrite));
+        assertFalse(journal.needsRewrite());
+    }
+
+    @Test
+    void appendsDuringFlushAreNeitherLostNorDoubled() throws Exception {
+        PlayerJournal journal = PlayerJournal.open(file(), 16 * 1024 * 1024, 0L);
+        PendingGate gate = new PendingGate();
+        PointsLedger ledger = new PointsLedger();
+        journal.replay(0L, gate.current(), new CountingVisitor());
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        DoubleAdder appended = new DoubleAdder();
+        Thread[] players = new Thread[4];
+        for (int t = 0; t < players.length; t++) {
+            UUID uuid = new UUID(7L, t);
+            players[t] = new Thread(() -> {
+                while (running.get()) {
+                    int generation = gate.enter();
+                    try {
+                        if (journal.appendDelta(generation, uuid, 1D)) {
+                            ledger.add(generation, uuid, 1D);
+                            appended.add(1D);
+                        }
+                    } finally {
+                        gate.exit(generation);
+                    }
+                }
+            });
+            players[t].start();
+        }
+
+        // Luồng flush như DatabaseManager.flushPending: mọi round đều ghi DB thành công
+        double db = 0D;
+        long committed = 0L;
+        for (int round = 0; round < 200; round++) {
+            PlayerJournal.Rewrite rewrite = journal.beginRewrite(gate.current() + 1);
+            Map<UUID, Double> drained = ledger.drain(gate.advance());
+            if (round == 199) Thread.sleep(2); // round cuối: nhiều append cần chép sang + append kép lúc chép
+            for (Map.Entry<UUID, Double> entry : drained.entrySet()) {
+                rewrite.flushing(PlayerJournal.PendingKind.DELTA, entry.getKey(), 0, entry.getValue());
+            }
+            assertTrue(journal.commit(rewrite));
+            for (double delta : drained.values()) {
+                db += delta;
+            }
+            committed = rewrite.flushEpoch;
+        }
+        running.set(false);
+        for (Thread player : players) {
+            player.join();
+        }
+
+        // Crash: phần chưa ghi DB phải replay ra đúng bằng phần còn trong sổ
+        CountingVisitor replayed = new CountingVisitor();
+        PlayerJournal.open(file(), 16 * 1024 * 1024, committed).replay(committed, 0, replayed);
+        assertEquals(appended.sum(), db + replayed.total, 0D);
+    }
+
+    private static final class CountingVisitor implements PlayerJournal.Visitor {
+        double total;
+
+        @Override
+        public void delta(UUID uuid, double delta) {
+            total += delta;
+        }
+
+        @Override
+        public void absolute(UUID uuid, int level, double points) {
+        }
+
+        @Override
+        public void claim(UUID uuid, int level) {
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.nio.file.Path;
+
+/** H2 nhúng (mặc định): MERGE ... KEY, cột uuid kiểu UUID gốc */
+class H2StorageTest extends JdbcStorageContract {
+
+    @Override
+    SqlDialect dialect() {
+        return new H2Dialect();
+    }
+
+    @Override
+    String url(Path dir) {
+        return fileUrl(dir);
+    }
+
+    static String fileUrl(Path dir) {
+        return "jdbc:h2:file:" + dir.resolve("data").toAbsolutePath() + ";TRACE_LEVEL_FILE=0";
+    }
+}
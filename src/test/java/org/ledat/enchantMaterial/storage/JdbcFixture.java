@@ -0,0 +1,39 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Database thật cho test/benchmark: tạo bảng theo dialect rồi nối repository với nguồn connection,
+ * mỗi lệnh ghi là 1 transaction riêng như luồng writer.
+ */
+final class JdbcFixture {
+
+    private JdbcFixture() {
+    }
+
+    static StorageBackend open(SqlDialect dialect, ConnectionProvider connections) throws SQLException {
+        try (Connection connection = connections.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : dialect.createTableStatements()) {
+                statement.executeUpdate(sql);
+            }
+        }
+        return new StorageBackend(dialect, connections, work -> transact(connections, work), Logger.getLogger("test"));
+    }
+
+    /** Như luồng writer: 1 transaction cho mỗi lệnh ghi, lỗi thì rollback */
+    private static void transact(ConnectionProvider connections, SqlWork work) throws SQLException {
+        try (Connection connection = connections.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                work.run(connection);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+}
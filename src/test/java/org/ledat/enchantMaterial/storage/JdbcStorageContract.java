@@ -0,0 +1,172 @@
+package org.ledat.enchantMaterial.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ledat.enchantMaterial.rebirth.RebirthData;
+
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cùng bộ kiểm tra cho mọi engine: upsert, cộng delta, loadTop và load theo lô "WHERE uuid IN (...)".
+ * Mỗi engine chạy trên file database thật trong thư mục tạm, mỗi lệnh mở connection mới
+ * nên dữ liệu đọc lại luôn đi qua file.
+ */
+abstract class JdbcStorageContract {
+
+    @TempDir
+    Path dir;
+
+    private StorageBackend storage;
+
+    abstract SqlDialect dialect();
+
+    abstract String url(Path dir);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        String url = url(dir);
+        storage = JdbcFixture.open(dialect(), () -> DriverManager.getConnection(url));
+    }
+
+    private static UUID uuid(int i) {
+        return new UUID(0x1234L, i);
+    }
+
+    @Test
+    void upsertInsertsThenReplaces() throws SQLException {
+        PlayerRepository players = storage.players();
+        players.write(Collections.singletonList(new PlayerRow(uuid(1), 2, 10D)), Collections.emptyMap(), id -> 1, 0L);
+        players.write(Collections.singletonList(new PlayerRow(uuid(1), 3, 15.5D)), Collections.emptyMap(), id -> 1, 0L);
+
+        PlayerRow row = players.load(uuid(1));
+        assertEquals(3, row.getLevel());
+        assertEquals(15.5D, row.getPoints(), 0D);
+        assertNull(players.load(uuid(2)));
+        assertEquals(1, players.loadEverything().size());
+    }
+
+    @Test
+    void deltasAddToExistingRowsAndCreateMissingOnes() throws SQLException {
+        PlayerRepository players = storage.players();
+        players.write(Collections.singletonList(new PlayerRow(uuid(1), 2, 10D)), Collections.emptyMap(), id -> 1, 0L);
+
+        Map<UUID, Double> deltas = new HashMap<>();
+        deltas.put(uuid(1), 5D);
+        deltas.put(uuid(2), 7D);
+        players.write(Collections.emptyList(), deltas, id -> 4, 0L);
+        players.write(Collections.emptyList(), Collections.singletonMap(uuid(2), 1.5D), id -> 9, 0L);
+
+        PlayerRow existing = players.load(uuid(1));
+        assertEquals(2, existing.getLevel());
+        assertEquals(15D, existing.getPoints(), 0D);
+        PlayerRow created = players.load(uuid(2));
+        assertEquals(4, created.getLevel());
+        assertEquals(8.5D, created.getPoints(), 0D);
+    }
+
+    @Test
+    void journalEpochIsStoredWithTheWrite() throws SQLException {
+        PlayerRepository players = storage.players();
+        assertEquals(0L, players.committedJournalEpoch());
+
+        players.write(Collections.singletonList(new PlayerRow(uuid(1), 1, 1D)), Collections.emptyMap(), id -> 1, 42L);
+        assertEquals(42L, players.committedJournalEpoch());
+        players.write(Collections.emptyList(), Collections.singletonMap(uuid(1), 1D), id -> 1, 43L);
+        assertEquals(43L, players.committedJournalEpoch());
+        // epoch <= 0: không đổi
+        players.write(Collections.emptyList(), Collections.singletonMap(uuid(1), 1D), id -> 1, 0L);
+        assertEquals(43L, players.committedJournalEpoch());
+    }
+
+    @Test
+    void loadTopReturnsHighestPointsDescending() throws SQLException {
+        List<PlayerRow> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rows.add(new PlayerRow(uuid(i), 1, (i * 37) % 50)); // hoán vị của 0..49
+        }
+        storage.players().write(rows, Collections.emptyMap(), id -> 1, 0L);
+
+        List<PlayerRow> top = storage.players().loadTop(5);
+        assertEquals(5, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(49D - i, top.get(i).getPoints(), 0D);
+        }
+        assertEquals(50, storage.players().loadTop(100).size());
+
+        double[] sum = {0D};
+        storage.players().forEachPoints((id, points) -> sum[0] += points);
+        assertEquals(49D * 50D / 2D, sum[0], 0D);
+    }
+
+    @Test
+    void chunkedInLoadsFindEveryStoredUuid() throws SQLException {
+        List<PlayerRow> rows = new ArrayList<>();
+        List<UUID> query = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            if (i % 3 != 0) rows.add(new PlayerRow(uuid(i), i, i * 2D));
+            query.add(uuid(i));
+        }
+        storage.players().write(rows, Collections.emptyMap(), id -> 1, 0L);
+
+        // Lô 7 không chia hết 60: lô cuối ngắn hơn
+        Map<UUID, PlayerRow> loaded = storage.players().loadAll(query, 7);
+        assertEquals(rows.size(), loaded.size());
+        for (PlayerRow row : rows) {
+            PlayerRow found = loaded.get(row.getUuid());
+            assertEquals(row.getLevel(), found.getLevel());
+            assertEquals(row.getPoints(), found.getPoints(), 0D);
+        }
+        assertTrue(storage.players().loadAll(Collections.emptyList(), 7).isEmpty());
+    }
+
+    @Test
+    void rewardClaimsAreIdempotentAndLoadInChunks() throws SQLException {
+        RewardClaimRepository claims = storage.rewardClaims();
+        Map<UUID, Set<Integer>> batch = new HashMap<>();
+        batch.put(uuid(1), new HashSet<>(Arrays.asList(5, 10)));
+        batch.put(uuid(2), new HashSet<>(Collections.singletonList(5)));
+        claims.claimAll(batch);
+        claims.claimAll(Collections.singletonMap(uuid(1), Arrays.asList(10, 15)));
+
+        assertEquals(new HashSet<>(Arrays.asList(5, 10, 15)), claims.claimedLevels(uuid(1)));
+        Map<UUID, Set<Integer>> loaded = claims.loadAll(Arrays.asList(uuid(1), uuid(2), uuid(3)), 2);
+        assertEquals(2, loaded.size());
+        assertEquals(new HashSet<>(Collections.singletonList(5)), loaded.get(uuid(2)));
+    }
+
+    @Test
+    void rebirthUpsertAndTopOrder() throws SQLException {
+        RebirthRepository rebirths = storage.rebirths();
+        rebirths.save(new RebirthData(uuid(1), 1, 100L));
+        rebirths.save(new RebirthData(uuid(1), 3, 300L));
+        rebirths.save(new RebirthData(uuid(2), 3, 200L));
+        rebirths.save(new RebirthData(uuid(3), 0, 0L));
+
+        RebirthData first = rebirths.load(uuid(1));
+        assertEquals(3, first.getRebirthLevel());
+        assertEquals(300L, first.getLastRebirthTime());
+
+        // Cùng cấp: ai đạt trước đứng trên; cấp 0 không vào top
+        List<RebirthData> top = rebirths.loadTop(10);
+        assertEquals(2, top.size());
+        assertEquals(uuid(2), top.get(0).getUuid());
+        assertEquals(uuid(1), top.get(1).getUuid());
+        assertEquals(2, rebirths.loadAll(Arrays.asList(uuid(1), uuid(2), uuid(9)), 1).size());
+    }
+}
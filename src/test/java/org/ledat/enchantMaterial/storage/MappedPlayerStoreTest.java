@@ -0,0 +1,125 @@
+package org.ledat.enchantMaterial.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/** Ghi/đọc lại qua file và phục hồi lượt ghi bị crash cắt ngang bằng file redo */
+class MappedPlayerStoreTest {
+
+    private static final Logger LOGGER = Logger.getLogger("test");
+    private static final UUID A = new UUID(1L, 1L);
+    private static final UUID B = new UUID(2L, 2L);
+
+    @TempDir
+    Path dir;
+
+    private File file() {
+        return dir.resolve("players.dat").toFile();
+    }
+
+    private File redo() {
+        return dir.resolve("players.dat.redo").toFile();
+    }
+
+    @Test
+    void writesSurviveReopen() throws IOException, SQLException {
+        MappedPlayerStore store = MappedPlayerStore.open(file(), 64, LOGGER);
+        store.write(Collections.singletonList(new PlayerRow(A, 3, 10D)), Collections.emptyMap(), id -> 1, 5L);
+        Map<UUID, Double> deltas = new HashMap<>();
+        deltas.put(A, 2.5D);
+        deltas.put(B, 4D);
+        store.write(Collections.emptyList(), deltas, id -> 7, 6L);
+        store.close();
+
+        MappedPlayerStore reopened = MappedPlayerStore.open(file(), 64, LOGGER);
+        assertEquals(12.5D, reopened.load(A).getPoints(), 0D);
+        assertEquals(3, reopened.load(A).getLevel());
+        assertEquals(4D, reopened.load(B).getPoints(), 0D);
+        assertEquals(7, reopened.load(B).getLevel());
+        assertEquals(6L, reopened.committedJournalEpoch());
+        assertFalse(redo().exists());
+        reopened.close();
+    }
+
+    @Test
+    void growsBeforeApplyingAnyValue() throws IOException, SQLException {
+        MappedPlayerStore store = MappedPlayerStore.open(file(), 64, LOGGER);
+        Map<UUID, Double> deltas = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            deltas.put(new UUID(9L, i), 1D);
+        }
+        store.write(Collections.emptyList(), deltas, id -> 1, 0L);
+        assertEquals(500, store.size());
+        assertEquals(1D, store.load(new UUID(9L, 499)).getPoints(), 0D);
+        store.close();
+    }
+
+    @Test
+    void interruptedWriteIsCompletedFromRedo() throws IOException, SQLException {
+        MappedPlayerStore store = MappedPlayerStore.open(file(), 64, LOGGER);
+        store.write(Collections.singletonList(new PlayerRow(A, 2, 10D)), Collections.emptyMap(), id -> 1, 5L);
+        store.close();
+
+        // Crash sau khi redo đã force nhưng trước khi giá trị vào mmap (sequence 2 > header 1)
+        writeRedo(2L, 9L, new PlayerRow(A, 2, 15D), new PlayerRow(B, 1, 3D));
+        MappedPlayerStore recovered = MappedPlayerStore.open(file(), 64, LOGGER);
+        assertEquals(15D, recovered.load(A).getPoints(), 0D);
+        assertEquals(3D, recovered.load(B).getPoints(), 0D);
+        assertEquals(9L, recovered.committedJournalEpoch());
+        assertFalse(redo().exists());
+        recovered.close();
+
+        // Redo cũ (sequence đã có trong header) không được đặt lại
+        writeRedo(2L, 9L, new PlayerRow(A, 2, 99D));
+        MappedPlayerStore again = MappedPlayerStore.open(file(), 64, LOGGER);
+        assertEquals(15D, again.load(A).getPoints(), 0D);
+        again.close();
+    }
+
+    @Test
+    void tornRedoIsIgnored() throws IOException, SQLException {
+        MappedPlayerStore store = MappedPlayerStore.open(file(), 64, LOGGER);
+        store.write(Collections.singletonList(new PlayerRow(A, 2, 10D)), Collections.emptyMap(), id -> 1, 5L);
+        store.close();
+
+        writeRedo(2L, 9L, new PlayerRow(A, 2, 15D));
+        byte[] bytes = Files.readAllBytes(redo().toPath());
+        Files.write(redo().toPath(), Arrays.copyOf(bytes, bytes.length - 3)); // crash khi đang ghi redo
+
+        MappedPlayerStore reopened = MappedPlayerStore.open(file(), 64, LOGGER);
+        assertEquals(10D, reopened.load(A).getPoints(), 0D);
+        assertEquals(5L, reopened.committedJournalEpoch());
+        reopened.close();
+    }
+
+    /** Định dạng file redo: [magic][count][sequence][epoch] + [msb][lsb][level][points]... + [crc] */
+    private void writeRedo(long sequence, long epoch, PlayerRow... rows) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(24 + rows.length * 28 + 8);
+        out.putInt(0x454D5052).putInt(rows.length).putLong(sequence).putLong(epoch);
+        for (PlayerRow row : rows) {
+            out.putLong(row.getUuid().getMostSignificantBits()).putLong(row.getUuid().getLeastSignificantBits())
+                    .putInt(row.getLevel()).putDouble(row.getPoints());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putLong(crc.getValue());
+        Files.write(redo().toPath(), out.array());
+    }
+}
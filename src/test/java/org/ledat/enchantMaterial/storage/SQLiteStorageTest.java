@@ -0,0 +1,17 @@
+package org.ledat.enchantMaterial.storage;
+
+import java.nio.file.Path;
+
+/** SQLite: ON CONFLICT ... DO UPDATE, uuid lưu BLOB 16 byte */
+class SQLiteStorageTest extends JdbcStorageContract {
+
+    @Override
+    SqlDialect dialect() {
+        return new SQLiteDialect();
+    }
+
+    @Override
+    String url(Path dir) {
+        return "jdbc:sqlite:" + dir.resolve("data.db").toAbsolutePath();
+    }
+}